@@ -1,6 +1,9 @@
 package com.acgist.snail.downloader;
 
 import java.time.Duration;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
@@ -12,6 +15,7 @@ import com.acgist.snail.pojo.IStatisticsSession;
 import com.acgist.snail.pojo.ITaskSession;
 import com.acgist.snail.pojo.ITaskSession.Status;
 import com.acgist.snail.system.IStatistics;
+import com.acgist.snail.system.bandwidth.BandwidthScheduler;
 import com.acgist.snail.utils.FileUtils;
 import com.acgist.snail.utils.StringUtils;
 import com.acgist.snail.utils.ThreadUtils;
@@ -52,6 +56,14 @@ public abstract class Downloader implements IDownloader, IStatistics {
 	 * <p>任务删除时检查该锁，判断是否可以删除任务，如果任务不能删除需要等待任务结束。</p>
 	 */
 	private final AtomicBoolean deleteLock = new AtomicBoolean(false);
+	/**
+	 * <p>删除等待锁</p>
+	 */
+	private final Lock deleteWaitLock = new ReentrantLock();
+	/**
+	 * <p>删除条件</p>
+	 */
+	private final Condition deleteCondition = this.deleteWaitLock.newCondition();
 
 	protected Downloader(ITaskSession taskSession) {
 		this.taskSession = taskSession;
@@ -130,10 +142,13 @@ public abstract class Downloader implements IDownloader, IStatistics {
 		this.pause(); // 暂停任务
 		// 等待删除锁释放
 		if(!this.deleteLock.get()) {
-			synchronized (this.deleteLock) {
+			this.deleteWaitLock.lock();
+			try {
 				if(!this.deleteLock.get()) {
-					ThreadUtils.wait(this.deleteLock, Duration.ofSeconds(DELETE_WAIT_TIME));
+					ThreadUtils.await(this.deleteCondition, Duration.ofSeconds(DELETE_WAIT_TIME));
 				}
+			} finally {
+				this.deleteWaitLock.unlock();
 			}
 		}
 		this.taskSession.delete(); // 删除任务
@@ -206,9 +221,16 @@ public abstract class Downloader implements IDownloader, IStatistics {
 		this.taskSession.statistics().upload(buffer);
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>统计数据后申请下载令牌：没有令牌时阻塞下载线程</p>
+	 */
 	@Override
 	public void download(int buffer) {
-		this.taskSession.statistics().download(buffer);
+		final IStatisticsSession statistics = this.taskSession.statistics();
+		statistics.download(buffer);
+		BandwidthScheduler.download().acquire(statistics.downloadBandwidth(), buffer);
 	}
 	
 	@Override
@@ -237,9 +259,12 @@ public abstract class Downloader implements IDownloader, IStatistics {
 	 * <p>释放{@linkplain #deleteLock 删除锁}</p>
 	 */
 	private void unlockDelete() {
-		synchronized (this.deleteLock) {
+		this.deleteWaitLock.lock();
+		try {
 			this.deleteLock.set(true);
-			this.deleteLock.notifyAll();
+			this.deleteCondition.signalAll();
+		} finally {
+			this.deleteWaitLock.unlock();
 		}
 	}
 	
@@ -11,10 +11,13 @@ import org.slf4j.LoggerFactory;
 
 import com.acgist.snail.gui.GuiManager;
 import com.acgist.snail.pojo.ITaskSession;
+import com.acgist.snail.protocol.Protocol.Type;
 import com.acgist.snail.protocol.ProtocolManager;
+import com.acgist.snail.system.bencode.BEncodeEncoder;
 import com.acgist.snail.system.config.DownloadConfig;
 import com.acgist.snail.system.context.SystemThreadContext;
 import com.acgist.snail.system.exception.DownloadException;
+import com.acgist.snail.utils.CollectionUtils;
 
 /**
  * <p>下载器管理器</p>
@@ -60,9 +63,23 @@ public final class DownloaderManager {
 	 * @throws DownloadException 下载异常
 	 */
 	public void newTask(String url) throws DownloadException {
+		this.newTask(url, List.of());
+	}
+	
+	/**
+	 * <p>新建下载任务</p>
+	 * <p>HTTP、FTP任务可以设置镜像下载链接：多个下载源同时下载同一个文件</p>
+	 * 
+	 * @param url 下载链接
+	 * @param mirrors 镜像下载链接
+	 * 
+	 * @throws DownloadException 下载异常
+	 */
+	public void newTask(String url, List<String> mirrors) throws DownloadException {
 		try {
 			final var session = this.manager.buildTaskSession(url);
 			if(session != null) {
+				this.mirrors(session, mirrors);
 				this.start(session);
 			}
 		} finally {
@@ -70,6 +87,32 @@ public final class DownloaderManager {
 		}
 	}
 	
+	/**
+	 * <p>设置镜像下载链接</p>
+	 * <p>只有HTTP、FTP任务支持镜像下载，镜像下载链接只能是HTTP、FTP链接。</p>
+	 * 
+	 * @param taskSession 任务信息
+	 * @param mirrors 镜像下载链接
+	 */
+	private void mirrors(ITaskSession taskSession, List<String> mirrors) {
+		final Type type = taskSession.getType();
+		if(CollectionUtils.isEmpty(mirrors) || (type != Type.HTTP && type != Type.FTP)) {
+			return;
+		}
+		final List<String> list = mirrors.stream()
+			.map(String::trim)
+			.filter(mirror -> Type.HTTP.verify(mirror) || Type.FTP.verify(mirror))
+			.filter(mirror -> !mirror.equals(taskSession.getUrl()))
+			.distinct()
+			.collect(Collectors.toList());
+		if(list.isEmpty()) {
+			return;
+		}
+		LOGGER.debug("设置镜像下载链接：{}-{}", taskSession.getName(), list);
+		taskSession.setMirrors(BEncodeEncoder.encodeListString(list));
+		taskSession.update();
+	}
+	
 	/**
 	 * <p>开始下载任务</p>
 	 * <p>添加下载任务并开始下载</p>
@@ -1,6 +1,9 @@
 package com.acgist.snail.downloader;
 
 import java.time.Duration;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.acgist.snail.net.torrent.TorrentManager;
 import com.acgist.snail.net.torrent.peer.bootstrap.PeerManager;
@@ -29,7 +32,12 @@ public abstract class TorrentSessionDownloader extends Downloader {
 	 * <p>下载锁</p>
 	 * <p>下载时阻塞下载任务线程</p>
 	 */
-	protected final Object downloadLock = new Object();
+	protected final Lock downloadLock = new ReentrantLock();
+	/**
+	 * <p>下载条件</p>
+	 * <p>任务完成、暂停时唤醒下载任务线程</p>
+	 */
+	protected final Condition downloadCondition = this.downloadLock.newCondition();
 	
 	protected TorrentSessionDownloader(ITaskSession taskSession) {
 		super(taskSession);
@@ -56,18 +64,19 @@ public abstract class TorrentSessionDownloader extends Downloader {
 	@Override
 	public void download() throws DownloadException {
 		while(downloadable()) {
-			synchronized (this.downloadLock) {
-				ThreadUtils.wait(this.downloadLock, Duration.ofSeconds(Integer.MAX_VALUE));
+			this.downloadLock.lock();
+			try {
+				ThreadUtils.await(this.downloadCondition, Duration.ofSeconds(Integer.MAX_VALUE));
 				this.complete = this.torrentSession.checkCompleted();
+			} finally {
+				this.downloadLock.unlock();
 			}
 		}
 	}
 	
 	@Override
 	public void unlockDownload() {
-		synchronized (this.downloadLock) {
-			this.downloadLock.notifyAll();
-		}
+		ThreadUtils.signalAll(this.downloadLock, this.downloadCondition);
 	}
 	
 	/**
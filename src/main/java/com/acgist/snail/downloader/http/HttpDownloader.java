@@ -1,9 +1,19 @@
 package com.acgist.snail.downloader.http;
 
 import java.io.BufferedInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.http.HttpResponse;
 import java.net.http.HttpResponse.BodyHandlers;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,12 +23,15 @@ import com.acgist.snail.net.http.HTTPClient;
 import com.acgist.snail.pojo.ITaskSession;
 import com.acgist.snail.pojo.wrapper.HttpHeaderWrapper;
 import com.acgist.snail.system.config.SystemConfig;
+import com.acgist.snail.system.context.SystemThreadContext;
+import com.acgist.snail.system.exception.DownloadException;
 import com.acgist.snail.system.exception.NetException;
 import com.acgist.snail.utils.FileUtils;
 import com.acgist.snail.utils.IoUtils;
 
 /**
  * <p>HTTP下载器</p>
+ * <p>服务器支持断点续传并且文件足够大时使用多个连接{@linkplain HttpSegmentGroup 分段下载}，否则使用单个连接下载。</p>
  * 
  * @author acgist
  * @since 1.0.0
@@ -27,6 +40,26 @@ public final class HttpDownloader extends SingleFileDownloader {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(HttpDownloader.class);
 	
+	/**
+	 * <p>分段下载线程池</p>
+	 */
+	private static final ExecutorService EXECUTOR = SystemThreadContext.newCacheExecutor(SystemThreadContext.SNAIL_THREAD_HTTP_SEGMENT);
+	
+	/**
+	 * <p>分段组</p>
+	 * <p>{@code null}-单个连接下载</p>
+	 */
+	private HttpSegmentGroup segmentGroup;
+	/**
+	 * <p>分段下载输入流</p>
+	 * <p>没有下载速度时关闭输入流解除阻塞</p>
+	 */
+	private final Set<InputStream> inputs = ConcurrentHashMap.newKeySet();
+	/**
+	 * <p>分段下载失败信息</p>
+	 */
+	private volatile String segmentMessage;
+	
 	private HttpDownloader(ITaskSession taskSession) {
 		super(taskSession);
 	}
@@ -42,13 +75,220 @@ public final class HttpDownloader extends SingleFileDownloader {
 		return new HttpDownloader(taskSession);
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>支持分段下载时创建分段组，否则使用单个连接下载。</p>
+	 */
+	@Override
+	public void open() throws NetException, DownloadException {
+		this.segmentGroup = this.buildSegmentGroup();
+		if(this.segmentGroup == null) {
+			super.open();
+		} else {
+			this.taskSession.downloadSize(this.segmentGroup.downloadSize());
+			if(this.segmentGroup.complete()) {
+				this.complete = true;
+			}
+		}
+	}
+	
+	@Override
+	public void download() throws DownloadException {
+		if(this.segmentGroup == null) {
+			super.download();
+		} else {
+			this.downloadSegments();
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>分段下载时关闭所有分段输入流</p>
+	 */
+	@Override
+	public void unlockDownload() {
+		super.unlockDownload();
+		if(!this.statistics().downloading()) {
+			this.inputs.forEach(IoUtils::close);
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>分段下载时文件大小不是已下载大小：使用分段下载进度或者快速恢复文件计算已下载大小</p>
+	 */
+	@Override
+	public long downloadSize() {
+		final HttpSegmentGroup group = this.segmentGroup;
+		if(group != null) {
+			return group.downloadSize();
+		}
+		final Long size = this.taskSession.getSize();
+		if(size == null) {
+			return super.downloadSize();
+		}
+		return HttpSegmentGroup.downloadSize(this.taskSession.getFile(), size);
+	}
+	
 	@Override
 	public void release() {
+		if(this.segmentGroup != null) {
+			this.segmentGroup.release();
+			this.segmentGroup = null;
+		}
 		IoUtils.close(this.input);
 		IoUtils.close(this.output);
 		super.release();
 	}
 	
+	/**
+	 * <p>创建分段组</p>
+	 * <p>分段下载条件：分段数量大于一、文件大小大于两个最小分段、服务器支持断点续传并且文件大小一致</p>
+	 * <p>不能分段下载时如果存在快速恢复文件转为单个连接下载</p>
+	 * 
+	 * @return 分段组：{@code null}-不能分段下载
+	 * 
+	 * @throws DownloadException 下载异常
+	 */
+	private HttpSegmentGroup buildSegmentGroup() throws DownloadException {
+		final String file = this.taskSession.getFile();
+		final Long size = this.taskSession.getSize();
+		final int segmentSize = SystemConfig.getHttpSegmentSize();
+		if(size == null) {
+			return null;
+		}
+		if(segmentSize <= 1 || size < 2 * HttpSegmentGroup.MIN_SEGMENT_SIZE || !this.range(size)) {
+			HttpSegmentGroup.single(file, size);
+			return null;
+		}
+		return HttpSegmentGroup.newInstance(file, size, segmentSize);
+	}
+	
+	/**
+	 * <p>判断服务器是否支持分段下载</p>
+	 * <p>支持断点续传并且文件大小和任务大小一致</p>
+	 * 
+	 * @param size 任务大小
+	 * 
+	 * @return {@code true}-支持；{@code false}-不支持；
+	 */
+	private boolean range(long size) {
+		try {
+			final var headers = HTTPClient.newInstance(this.taskSession.getUrl(), SystemConfig.CONNECT_TIMEOUT, SystemConfig.DOWNLOAD_TIMEOUT).head();
+			return headers.range() && headers.fileSize() == size;
+		} catch (NetException e) {
+			LOGGER.error("HTTP分段下载验证异常", e);
+			return false;
+		}
+	}
+	
+	/**
+	 * <p>分段下载</p>
+	 * <p>每个连接循环获取下载分段，定时保存快速恢复文件。</p>
+	 * 
+	 * @throws DownloadException 下载异常
+	 */
+	private void downloadSegments() throws DownloadException {
+		final HttpSegmentGroup group = this.segmentGroup;
+		final int segmentSize = SystemConfig.getHttpSegmentSize();
+		final List<Future<?>> futures = new ArrayList<>(segmentSize);
+		for (int index = 0; index < segmentSize; index++) {
+			futures.add(EXECUTOR.submit(() -> this.downloadSegments(group)));
+		}
+		final int interval = SystemConfig.getResumeInterval();
+		final ScheduledFuture<?> resumeTimer = SystemThreadContext.timerFixedDelay(interval, interval, TimeUnit.SECONDS, group::saveResume);
+		try {
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DownloadException("HTTP分段下载中断", e);
+		} catch (ExecutionException e) {
+			throw new DownloadException("HTTP分段下载异常", e);
+		} finally {
+			SystemThreadContext.shutdown(resumeTimer);
+		}
+		if(group.complete()) {
+			this.complete = true;
+		} else if(downloadable() && this.segmentMessage != null) {
+			throw new DownloadException(this.segmentMessage);
+		}
+	}
+	
+	/**
+	 * <p>分段下载线程</p>
+	 * <p>分段下载失败时结束线程，其他连接可以继续下载没有完成的分段。</p>
+	 * 
+	 * @param group 分段组
+	 */
+	private void downloadSegments(HttpSegmentGroup group) {
+		HttpSegment segment;
+		while(downloadable() && (segment = group.next()) != null) {
+			try {
+				this.downloadSegment(group, segment);
+			} catch (NetException | IOException e) {
+				if(downloadable()) {
+					LOGGER.error("HTTP分段下载异常：{}", segment, e);
+				} else {
+					LOGGER.debug("HTTP分段下载异常：{}", segment, e);
+				}
+				this.segmentMessage = e.getMessage();
+				return;
+			} finally {
+				group.release(segment);
+			}
+		}
+	}
+	
+	/**
+	 * <p>下载分段</p>
+	 * 
+	 * @param group 分段组
+	 * @param segment 下载分段
+	 * 
+	 * @throws NetException 网络异常
+	 * @throws IOException IO异常
+	 * 
+	 * @see HttpHeaderWrapper#HEADER_RANGE
+	 */
+	private void downloadSegment(HttpSegmentGroup group, HttpSegment segment) throws NetException, IOException {
+		final long position = segment.position();
+		final var client = HTTPClient.newInstance(this.taskSession.getUrl(), SystemConfig.CONNECT_TIMEOUT, SystemConfig.DOWNLOAD_TIMEOUT);
+		final HttpResponse<InputStream> response = client
+			.range(position, segment.end())
+			.get(BodyHandlers.ofInputStream());
+		if(response == null) {
+			throw new NetException("HTTP请求失败");
+		}
+		final InputStream input = response.body();
+		this.inputs.add(input);
+		try {
+			final var headers = HttpHeaderWrapper.newInstance(response.headers());
+			if(!HTTPClient.partialContent(response) || headers.beginRange() != position) {
+				throw new NetException("HTTP分段请求失败：" + response.statusCode());
+			}
+			int length;
+			final byte[] bytes = new byte[EXCHANGE_BYTES_LENGTH];
+			while(downloadable() && !segment.complete()) {
+				length = input.read(bytes, 0, bytes.length);
+				if(length < 0) {
+					break;
+				}
+				this.download(segment.write(group.channel(), bytes, length));
+			}
+			if(downloadable() && !segment.complete()) {
+				throw new NetException("HTTP分段数据不完整");
+			}
+		} finally {
+			this.inputs.remove(input);
+			IoUtils.close(input);
+		}
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 * 
@@ -62,7 +302,7 @@ public final class HttpDownloader extends SingleFileDownloader {
 		final var client = HTTPClient.newInstance(this.taskSession.getUrl(), SystemConfig.CONNECT_TIMEOUT, SystemConfig.DOWNLOAD_TIMEOUT);
 		// HTTP响应
 		final HttpResponse<InputStream> response = client
-			.header(HttpHeaderWrapper.HEADER_RANGE, "bytes=" + size + "-")
+			.range(size)
 			.get(BodyHandlers.ofInputStream());
 		// 请求成功和部分请求成功
 		if(HTTPClient.ok(response) || HTTPClient.partialContent(response)) {
@@ -0,0 +1,154 @@
+package com.acgist.snail.downloader.http;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.acgist.snail.utils.ObjectUtils;
+
+/**
+ * <p>HTTP下载分段</p>
+ * <p>下载范围：{@link #position}（包含）-{@link #end}（不包含）</p>
+ * <p>下载中的分段可以被{@linkplain #split(long) 拆分}：拆分后结束位置减小，下载线程写到结束位置后结束当前分段。</p>
+ * 
+ * @author acgist
+ * @since 1.3.0
+ */
+public final class HttpSegment {
+
+	/**
+	 * <p>下载位置</p>
+	 * <p>数据写入文件后更新</p>
+	 */
+	private long position;
+	/**
+	 * <p>结束位置（不包含）</p>
+	 */
+	private long end;
+	/**
+	 * <p>是否正在下载</p>
+	 */
+	private boolean downloading;
+
+	private HttpSegment(long position, long end) {
+		this.position = position;
+		this.end = end;
+		this.downloading = false;
+	}
+
+	public static final HttpSegment newInstance(long position, long end) {
+		return new HttpSegment(position, end);
+	}
+
+	/**
+	 * <p>获取下载位置</p>
+	 * 
+	 * @return 下载位置
+	 */
+	public synchronized long position() {
+		return this.position;
+	}
+
+	/**
+	 * <p>获取结束位置（不包含）</p>
+	 * 
+	 * @return 结束位置
+	 */
+	public synchronized long end() {
+		return this.end;
+	}
+
+	/**
+	 * <p>获取剩余下载大小</p>
+	 * 
+	 * @return 剩余下载大小
+	 */
+	public synchronized long remaining() {
+		return this.end - this.position;
+	}
+
+	/**
+	 * <p>判断是否下载完成</p>
+	 * 
+	 * @return {@code true}-完成；{@code false}-没有完成；
+	 */
+	public synchronized boolean complete() {
+		return this.position >= this.end;
+	}
+
+	/**
+	 * <p>判断是否正在下载</p>
+	 * 
+	 * @return {@code true}-正在下载；{@code false}-没有下载；
+	 */
+	public synchronized boolean downloading() {
+		return this.downloading;
+	}
+
+	/**
+	 * <p>设置是否正在下载</p>
+	 * 
+	 * @param downloading 是否正在下载
+	 */
+	public synchronized void downloading(boolean downloading) {
+		this.downloading = downloading;
+	}
+
+	/**
+	 * <p>拆分分段</p>
+	 * <p>剩余下载大小的后一半拆分为新的分段</p>
+	 * <p>拆分位置距离下载位置大于等于最小分段大小：最小分段大小必须大于单次写入数据大小，保证正在写入的数据不会超过拆分位置。</p>
+	 * 
+	 * @param minSize 最小分段大小
+	 * 
+	 * @return 新的分段：{@code null}-剩余下载大小太小不能拆分
+	 */
+	public synchronized HttpSegment split(long minSize) {
+		final long remaining = this.end - this.position;
+		if(remaining < 2 * minSize) {
+			return null;
+		}
+		final long middle = this.position + remaining / 2;
+		final HttpSegment segment = new HttpSegment(middle, this.end);
+		this.end = middle;
+		return segment;
+	}
+
+	/**
+	 * <p>写入数据</p>
+	 * <p>只写入结束位置之前的数据，写入完成后更新下载位置。</p>
+	 * 
+	 * @param channel 文件通道
+	 * @param bytes 数据
+	 * @param length 数据长度
+	 * 
+	 * @return 写入数据长度
+	 * 
+	 * @throws IOException IO异常
+	 */
+	public int write(FileChannel channel, byte[] bytes, int length) throws IOException {
+		final long position;
+		final int size;
+		synchronized (this) {
+			position = this.position;
+			size = (int) Math.min(length, this.end - position);
+		}
+		if(size <= 0) {
+			return 0;
+		}
+		final ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, size);
+		while(buffer.hasRemaining()) {
+			channel.write(buffer, position + buffer.position());
+		}
+		synchronized (this) {
+			this.position += size;
+		}
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		return ObjectUtils.toString(this, this.position, this.end);
+	}
+
+}
@@ -0,0 +1,392 @@
+package com.acgist.snail.downloader.http;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.acgist.snail.system.bencode.BEncodeDecoder;
+import com.acgist.snail.system.bencode.BEncodeEncoder;
+import com.acgist.snail.system.config.SystemConfig;
+import com.acgist.snail.system.exception.DownloadException;
+import com.acgist.snail.utils.FileUtils;
+import com.acgist.snail.utils.IoUtils;
+
+/**
+ * <p>HTTP下载分段组</p>
+ * <p>文件分为多个{@linkplain HttpSegment 分段}，每个连接下载一个分段，数据按照位置写入文件。</p>
+ * <p>没有可以下载的分段时拆分剩余下载大小最大的分段（工作窃取），下载速度快的连接帮助下载速度慢的连接。</p>
+ * <p>分段进度保存到快速恢复文件，任务重新开始时按照分段继续下载。</p>
+ * <p>创建分段组时立即保存快速恢复文件：分段写入的文件可能存在空洞，文件大小不能作为已下载大小，没有快速恢复文件的文件只能是单个连接下载（连续写入）的文件。</p>
+ * <p>快速恢复文件无效时不能确定哪些数据已经写入：分段下载从零开始重新下载，单个连接下载截断文件后重新下载。</p>
+ * <p>快速恢复文件格式：B编码</p>
+ * <pre>
+ * d
+ * 	4:sizei文件大小e
+ * 	8:segmentsl
+ * 		li下载位置ei结束位置ee
+ * 	e
+ * e
+ * </pre>
+ * 
+ * @author acgist
+ * @since 1.3.0
+ */
+public final class HttpSegmentGroup {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(HttpSegmentGroup.class);
+
+	/**
+	 * <p>最小分段大小：{@value}</p>
+	 */
+	public static final long MIN_SEGMENT_SIZE = SystemConfig.ONE_MB;
+	/**
+	 * <p>文件后缀：{@value}</p>
+	 */
+	private static final String RESUME_SUFFIX = ".resume";
+	/**
+	 * <p>临时文件后缀：{@value}</p>
+	 * <p>先写入临时文件再替换，防止写入过程中退出导致文件损坏。</p>
+	 */
+	private static final String RESUME_TEMP_SUFFIX = ".tmp";
+	/**
+	 * <p>文件大小：{@value}</p>
+	 */
+	private static final String KEY_SIZE = "size";
+	/**
+	 * <p>分段列表：{@value}</p>
+	 */
+	private static final String KEY_SEGMENTS = "segments";
+
+	/**
+	 * <p>文件大小</p>
+	 */
+	private final long size;
+	/**
+	 * <p>快速恢复文件路径</p>
+	 */
+	private final String resumeFile;
+	/**
+	 * <p>文件通道</p>
+	 */
+	private final FileChannel channel;
+	/**
+	 * <p>分段</p>
+	 */
+	private final List<HttpSegment> segments;
+
+	private HttpSegmentGroup(long size, String resumeFile, FileChannel channel, List<HttpSegment> segments) {
+		this.size = size;
+		this.resumeFile = resumeFile;
+		this.channel = channel;
+		this.segments = segments;
+	}
+
+	/**
+	 * <p>创建分段组</p>
+	 * <p>快速恢复文件有效时使用保存的分段，否则截断文件从零开始按照分段数量拆分：文件可能是预分配或者存在空洞的文件，文件大小不是已下载大小。</p>
+	 * <p>写入数据之前保存快速恢复文件</p>
+	 * 
+	 * @param file 文件路径
+	 * @param size 文件大小
+	 * @param segmentSize 分段数量
+	 * 
+	 * @return 分段组
+	 * 
+	 * @throws DownloadException 下载异常
+	 */
+	public static final HttpSegmentGroup newInstance(String file, long size, int segmentSize) throws DownloadException {
+		final String resumeFile = file + RESUME_SUFFIX;
+		List<HttpSegment> segments = load(resumeFile, size);
+		final boolean rebuild = segments == null;
+		if(rebuild) {
+			LOGGER.debug("快速恢复文件无效：重新下载：{}", file);
+			segments = buildSegments(size, segmentSize);
+		}
+		try {
+			FileUtils.buildFolder(file, true);
+			final FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			if(rebuild) {
+				channel.truncate(0L);
+			}
+			final HttpSegmentGroup group = new HttpSegmentGroup(size, resumeFile, channel, segments);
+			if(!group.saveResume()) {
+				IoUtils.close(channel);
+				throw new DownloadException("保存快速恢复文件失败：" + resumeFile);
+			}
+			return group;
+		} catch (IOException e) {
+			throw new DownloadException("下载文件打开失败", e);
+		}
+	}
+
+	/**
+	 * <p>获取已下载大小</p>
+	 * <p>快速恢复文件有效时使用分段计算，没有快速恢复文件时返回文件大小（单个连接下载），快速恢复文件无效时返回零。</p>
+	 * 
+	 * @param file 文件路径
+	 * @param size 文件大小
+	 * 
+	 * @return 已下载大小
+	 */
+	public static final long downloadSize(String file, long size) {
+		final String resumeFile = file + RESUME_SUFFIX;
+		if(!new File(resumeFile).exists()) {
+			return FileUtils.fileSize(file);
+		}
+		final List<HttpSegment> segments = load(resumeFile, size);
+		if(segments == null) {
+			return 0L;
+		}
+		return size - remaining(segments);
+	}
+
+	/**
+	 * <p>转为单个连接下载</p>
+	 * <p>服务器不再支持分段下载时：文件截断到连续下载完成的位置（最小的分段下载位置），然后删除快速恢复文件。</p>
+	 * <p>快速恢复文件无效时文件截断到零</p>
+	 * 
+	 * @param file 文件路径
+	 * @param size 文件大小
+	 * 
+	 * @throws DownloadException 下载异常
+	 */
+	public static final void single(String file, long size) throws DownloadException {
+		final String resumeFile = file + RESUME_SUFFIX;
+		if(!new File(resumeFile).exists()) {
+			return;
+		}
+		final List<HttpSegment> segments = load(resumeFile, size);
+		long position = 0L;
+		if(segments != null) {
+			position = size;
+			for (HttpSegment segment : segments) {
+				if(!segment.complete()) {
+					position = Math.min(position, segment.position());
+				}
+			}
+		}
+		LOGGER.debug("HTTP分段下载转为单个连接下载：{}-{}", file, position);
+		if(new File(file).exists()) {
+			try (final FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.WRITE)) {
+				channel.truncate(position);
+			} catch (IOException e) {
+				throw new DownloadException("下载文件截断失败", e);
+			}
+		}
+		FileUtils.delete(resumeFile);
+	}
+
+	/**
+	 * <p>加载快速恢复文件</p>
+	 * 
+	 * @param resumeFile 快速恢复文件路径
+	 * @param size 文件大小
+	 * 
+	 * @return 分段：{@code null}-文件不存在、格式错误或者文件大小不一致
+	 */
+	private static final List<HttpSegment> load(String resumeFile, long size) {
+		final File file = new File(resumeFile);
+		if(!file.exists()) {
+			return null;
+		}
+		try {
+			final var decoder = BEncodeDecoder.newInstance(Files.readAllBytes(file.toPath()));
+			final Map<String, Object> resume = decoder.nextMap();
+			final Long resumeSize = BEncodeDecoder.getLong(resume, KEY_SIZE);
+			final List<Object> list = BEncodeDecoder.getList(resume, KEY_SEGMENTS);
+			if(resumeSize == null || resumeSize != size || list == null) {
+				LOGGER.warn("快速恢复文件无效：{}", resumeFile);
+				return null;
+			}
+			final List<HttpSegment> segments = new ArrayList<>(list.size());
+			for (Object object : list) {
+				final List<?> value = (List<?>) object;
+				final long position = (Long) value.get(0);
+				final long end = (Long) value.get(1);
+				if(position < 0 || position > end || end > size) {
+					LOGGER.warn("快速恢复文件分段错误：{}", resumeFile);
+					return null;
+				}
+				segments.add(HttpSegment.newInstance(position, end));
+			}
+			return segments;
+		} catch (Exception e) {
+			LOGGER.error("加载快速恢复文件异常：{}", resumeFile, e);
+			return null;
+		}
+	}
+
+	/**
+	 * <p>拆分分段</p>
+	 * 
+	 * @param size 文件大小
+	 * @param segmentSize 分段数量
+	 * 
+	 * @return 分段
+	 */
+	private static final List<HttpSegment> buildSegments(long size, int segmentSize) {
+		final int count = (int) Math.max(1, Math.min(segmentSize, size / MIN_SEGMENT_SIZE));
+		final long length = size / count;
+		final List<HttpSegment> segments = new ArrayList<>(count);
+		long position = 0L;
+		for (int index = 0; index < count; index++) {
+			final long end = index == count - 1 ? size : position + length;
+			segments.add(HttpSegment.newInstance(position, end));
+			position = end;
+		}
+		return segments;
+	}
+
+	/**
+	 * <p>计算剩余下载大小</p>
+	 * 
+	 * @param segments 分段
+	 * 
+	 * @return 剩余下载大小
+	 */
+	private static final long remaining(List<HttpSegment> segments) {
+		long remaining = 0L;
+		for (HttpSegment segment : segments) {
+			remaining += segment.remaining();
+		}
+		return remaining;
+	}
+
+	/**
+	 * <p>获取文件通道</p>
+	 * 
+	 * @return 文件通道
+	 */
+	public FileChannel channel() {
+		return this.channel;
+	}
+
+	/**
+	 * <p>获取下载分段</p>
+	 * <p>优先选择没有下载的分段，没有时拆分剩余下载大小最大的正在下载分段。</p>
+	 * 
+	 * @return 下载分段：{@code null}-没有可以下载的分段
+	 */
+	public synchronized HttpSegment next() {
+		HttpSegment max = null;
+		for (HttpSegment segment : this.segments) {
+			if(segment.complete()) {
+				continue;
+			}
+			if(!segment.downloading()) {
+				segment.downloading(true);
+				return segment;
+			}
+			if(max == null || segment.remaining() > max.remaining()) {
+				max = segment;
+			}
+		}
+		if(max == null) {
+			return null;
+		}
+		final HttpSegment segment = max.split(MIN_SEGMENT_SIZE);
+		if(segment == null) {
+			return null;
+		}
+		LOGGER.debug("拆分HTTP下载分段：{}-{}", max, segment);
+		segment.downloading(true);
+		this.segments.add(segment);
+		return segment;
+	}
+
+	/**
+	 * <p>释放下载分段</p>
+	 * <p>分段下载结束（完成、失败、暂停）时释放，没有完成的分段可以重新下载。</p>
+	 * 
+	 * @param segment 下载分段
+	 */
+	public synchronized void release(HttpSegment segment) {
+		segment.downloading(false);
+	}
+
+	/**
+	 * <p>获取已下载大小</p>
+	 * <p>使用分段下载进度计算</p>
+	 * 
+	 * @return 已下载大小
+	 */
+	public synchronized long downloadSize() {
+		return this.size - remaining(this.segments);
+	}
+
+	/**
+	 * <p>判断是否下载完成</p>
+	 * 
+	 * @return {@code true}-完成；{@code false}-没有完成；
+	 */
+	public synchronized boolean complete() {
+		return remaining(this.segments) <= 0L;
+	}
+
+	/**
+	 * <p>保存快速恢复文件</p>
+	 * <p>保存前将文件数据刷出到磁盘：分段下载位置之前的数据必须已经写入文件</p>
+	 * <p>定时任务和释放资源可能同时保存：加锁防止同时写入临时文件</p>
+	 * 
+	 * @return {@code true}-成功；{@code false}-失败；
+	 */
+	public synchronized boolean saveResume() {
+		if(!this.channel.isOpen()) {
+			return false;
+		}
+		try {
+			this.channel.force(false);
+		} catch (IOException e) {
+			LOGGER.error("刷出文件数据异常", e);
+			return false;
+		}
+		final List<Object> list = new ArrayList<>(this.segments.size());
+		for (HttpSegment segment : this.segments) {
+			if(!segment.complete()) {
+				list.add(List.of(segment.position(), segment.end()));
+			}
+		}
+		final Map<String, Object> resume = new LinkedHashMap<>();
+		resume.put(KEY_SIZE, this.size);
+		resume.put(KEY_SEGMENTS, list);
+		final String tempFile = this.resumeFile + RESUME_TEMP_SUFFIX;
+		FileUtils.write(tempFile, BEncodeEncoder.encodeMap(resume));
+		try {
+			Files.move(Paths.get(tempFile), Paths.get(this.resumeFile), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			LOGGER.debug("保存快速恢复文件：{}-{}", this.resumeFile, list.size());
+			return true;
+		} catch (IOException e) {
+			LOGGER.error("保存快速恢复文件异常：{}", this.resumeFile, e);
+			return false;
+		}
+	}
+
+	/**
+	 * <p>释放资源</p>
+	 * <p>下载完成删除快速恢复文件，否则保存快速恢复文件。</p>
+	 */
+	public synchronized void release() {
+		if(this.complete()) {
+			IoUtils.close(this.channel);
+			final File file = new File(this.resumeFile);
+			if(file.exists()) {
+				FileUtils.delete(this.resumeFile);
+			}
+		} else {
+			this.saveResume();
+			IoUtils.close(this.channel);
+		}
+	}
+
+}
@@ -0,0 +1,81 @@
+package com.acgist.snail.downloader.mirror;
+
+import java.io.InputStream;
+
+import com.acgist.snail.net.ftp.FtpClient;
+import com.acgist.snail.net.ftp.bootstrap.FtpClientBuilder;
+import com.acgist.snail.system.exception.NetException;
+
+/**
+ * <p>FTP镜像下载源</p>
+ * <p>FTP只能设置开始位置：读取到分段结束位置后关闭客户端（中断传输）</p>
+ * 
+ * @author acgist
+ * @since 1.3.0
+ */
+public final class FtpMirrorSource extends MirrorSource {
+
+	/**
+	 * <p>FTP客户端</p>
+	 */
+	private volatile FtpClient client;
+
+	private FtpMirrorSource(String url) {
+		super(url);
+	}
+
+	public static final FtpMirrorSource newInstance(String url) {
+		return new FtpMirrorSource(url);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>使用新的FTP客户端获取文件大小：不影响下载分段使用的客户端</p>
+	 * <p>FTP只有下载时才能判断是否支持断点续传：{@linkplain #open(long, long) 打开分段}时判断</p>
+	 */
+	@Override
+	public void verify(long size) throws NetException {
+		final FtpClient client = FtpClientBuilder.newInstance(this.url).build();
+		try {
+			if(!client.connect()) {
+				throw new NetException(client.failMessage("FTP服务器连接失败"));
+			}
+			final long fileSize = client.size();
+			if(fileSize != size) {
+				throw new NetException("文件大小不一致：" + fileSize + "-" + size);
+			}
+		} finally {
+			client.close();
+		}
+	}
+
+	@Override
+	public InputStream open(long position, long end) throws NetException {
+		this.client = FtpClientBuilder.newInstance(this.url).build();
+		if(!this.client.connect()) {
+			throw new NetException(this.client.failMessage("FTP服务器连接失败"));
+		}
+		this.input = this.client.download(position);
+		if(position > 0L && !this.client.range()) {
+			throw new NetException("FTP镜像不支持断点续传");
+		}
+		return this.input;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>FTP客户端关闭时关闭输入流</p>
+	 */
+	@Override
+	public void close() {
+		final FtpClient client = this.client;
+		if(client != null) {
+			client.close();
+			this.client = null;
+		}
+		super.close();
+	}
+
+}
@@ -0,0 +1,69 @@
+package com.acgist.snail.downloader.mirror;
+
+import java.io.InputStream;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+
+import com.acgist.snail.net.http.HTTPClient;
+import com.acgist.snail.pojo.wrapper.HttpHeaderWrapper;
+import com.acgist.snail.system.config.SystemConfig;
+import com.acgist.snail.system.exception.NetException;
+import com.acgist.snail.utils.IoUtils;
+
+/**
+ * <p>HTTP镜像下载源</p>
+ * 
+ * @author acgist
+ * @since 1.3.0
+ */
+public final class HttpMirrorSource extends MirrorSource {
+
+	private HttpMirrorSource(String url) {
+		super(url);
+	}
+
+	public static final HttpMirrorSource newInstance(String url) {
+		return new HttpMirrorSource(url);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>使用HEAD请求获取文件大小和是否支持断点续传</p>
+	 */
+	@Override
+	public void verify(long size) throws NetException {
+		final var headers = HTTPClient.newInstance(this.url, SystemConfig.CONNECT_TIMEOUT, SystemConfig.RECEIVE_TIMEOUT).head();
+		final long fileSize = headers.fileSize();
+		if(fileSize != size) {
+			throw new NetException("文件大小不一致：" + fileSize + "-" + size);
+		}
+		if(!headers.range()) {
+			throw new NetException("HTTP镜像不支持断点续传");
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see HttpHeaderWrapper#HEADER_RANGE
+	 */
+	@Override
+	public InputStream open(long position, long end) throws NetException {
+		final var client = HTTPClient.newInstance(this.url, SystemConfig.CONNECT_TIMEOUT, SystemConfig.DOWNLOAD_TIMEOUT);
+		final HttpResponse<InputStream> response = client
+			.range(position, end)
+			.get(BodyHandlers.ofInputStream());
+		if(response == null) {
+			throw new NetException("HTTP请求失败");
+		}
+		final var headers = HttpHeaderWrapper.newInstance(response.headers());
+		if(!HTTPClient.partialContent(response) || headers.beginRange() != position) {
+			IoUtils.close(response.body());
+			throw new NetException("HTTP镜像不支持断点续传：" + response.statusCode());
+		}
+		this.input = response.body();
+		return this.input;
+	}
+
+}
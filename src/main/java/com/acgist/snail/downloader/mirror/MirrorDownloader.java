@@ -0,0 +1,294 @@
+package com.acgist.snail.downloader.mirror;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.acgist.snail.downloader.Downloader;
+import com.acgist.snail.downloader.http.HttpSegment;
+import com.acgist.snail.downloader.http.HttpSegmentGroup;
+import com.acgist.snail.pojo.ITaskSession;
+import com.acgist.snail.system.config.SystemConfig;
+import com.acgist.snail.system.context.SystemThreadContext;
+import com.acgist.snail.system.exception.DownloadException;
+import com.acgist.snail.system.exception.NetException;
+import com.acgist.snail.utils.ThreadUtils;
+
+/**
+ * <p>镜像下载器</p>
+ * <p>任务下载链接和{@linkplain ITaskSession#mirrorUrls() 镜像下载链接}（HTTP、FTP）同时下载同一个文件：每个下载源一个连接，数据按照位置写入文件。</p>
+ * <p>下载源完成分段后继续获取分段，没有分段时拆分剩余最大的分段（{@link HttpSegmentGroup}），所以每个下载源下载的数据和下载速度成正比。</p>
+ * <p>下载源（包括任务下载链接）文件大小和任务文件大小不一致或者不支持断点续传时不使用。</p>
+ * <p>下载源连续失败超过{@linkplain #MAX_FAIL_TIMES 最大次数}或者速度远低于最快下载源时丢弃，没有完成的分段由其他下载源继续下载。</p>
+ * 
+ * @author acgist
+ * @since 1.3.0
+ */
+public final class MirrorDownloader extends Downloader {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(MirrorDownloader.class);
+
+	/**
+	 * <p>镜像下载线程池</p>
+	 */
+	private static final ExecutorService EXECUTOR = SystemThreadContext.newCacheExecutor(SystemThreadContext.SNAIL_THREAD_MIRROR);
+
+	/**
+	 * <p>下载字节缓存大小：{@value}</p>
+	 */
+	private static final int EXCHANGE_BYTES_LENGTH = 16 * SystemConfig.ONE_KB;
+	/**
+	 * <p>最大连续失败次数：{@value}</p>
+	 */
+	private static final int MAX_FAIL_TIMES = 3;
+	/**
+	 * <p>失败重试等待时间（毫秒）：{@value}</p>
+	 * <p>等待时间=失败重试等待时间*连续失败次数</p>
+	 */
+	private static final long RETRY_INTERVAL = 2000L;
+	/**
+	 * <p>等待分段时间（毫秒）：{@value}</p>
+	 * <p>没有可以下载的分段时等待其他下载源释放分段</p>
+	 */
+	private static final long SEGMENT_WAIT = 1000L;
+	/**
+	 * <p>慢速下载源比例：{@value}</p>
+	 * <p>下载速度低于最快下载源速度除以该比例时丢弃</p>
+	 */
+	private static final int SLOW_RATIO = 10;
+
+	/**
+	 * <p>分段组</p>
+	 */
+	private HttpSegmentGroup segmentGroup;
+	/**
+	 * <p>下载源</p>
+	 */
+	private final List<MirrorSource> sources;
+
+	private MirrorDownloader(ITaskSession taskSession) {
+		super(taskSession);
+		this.sources = new ArrayList<>();
+	}
+
+	/**
+	 * <p>创建镜像下载器</p>
+	 * 
+	 * @param taskSession 任务信息
+	 * 
+	 * @return {@link MirrorDownloader}
+	 */
+	public static final MirrorDownloader newInstance(ITaskSession taskSession) {
+		return new MirrorDownloader(taskSession);
+	}
+
+	@Override
+	public void open() throws NetException, DownloadException {
+		final Long size = this.taskSession.getSize();
+		if(size == null || size <= 0L) {
+			throw new DownloadException("镜像下载文件大小未知");
+		}
+		this.sources.clear();
+		this.buildSource(this.taskSession.getUrl(), size);
+		this.taskSession.mirrorUrls().forEach(mirror -> this.buildSource(mirror, size));
+		if(this.sources.isEmpty()) {
+			throw new DownloadException("镜像下载失败：没有可用下载源");
+		}
+		final String file = this.taskSession.getFile();
+		this.segmentGroup = HttpSegmentGroup.newInstance(file, size, this.sources.size());
+		this.taskSession.downloadSize(this.segmentGroup.downloadSize());
+		if(this.segmentGroup.complete()) {
+			this.complete = true;
+		}
+	}
+
+	@Override
+	public void download() throws DownloadException {
+		final HttpSegmentGroup group = this.segmentGroup;
+		final List<Future<?>> futures = new ArrayList<>(this.sources.size());
+		for (MirrorSource source : this.sources) {
+			futures.add(EXECUTOR.submit(() -> this.download(group, source)));
+		}
+		final int interval = SystemConfig.getResumeInterval();
+		final ScheduledFuture<?> resumeTimer = SystemThreadContext.timerFixedDelay(interval, interval, TimeUnit.SECONDS, group::saveResume);
+		try {
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DownloadException("镜像下载中断", e);
+		} catch (ExecutionException e) {
+			throw new DownloadException("镜像下载异常", e);
+		} finally {
+			SystemThreadContext.shutdown(resumeTimer);
+		}
+		if(group.complete()) {
+			this.complete = true;
+		} else if(downloadable()) {
+			throw new DownloadException("镜像下载失败：没有可用下载源");
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>如果没有数据下载，下载源会被读取输入流阻塞，通过直接关闭下载源来避免任务不能正常结束。</p>
+	 */
+	@Override
+	public void unlockDownload() {
+		if(!this.statistics().downloading()) {
+			LOGGER.debug("镜像下载解锁：没有速度关闭下载源");
+			this.sources.forEach(MirrorSource::close);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>使用分段下载进度或者快速恢复文件计算已下载大小</p>
+	 */
+	@Override
+	public long downloadSize() {
+		final HttpSegmentGroup group = this.segmentGroup;
+		if(group != null) {
+			return group.downloadSize();
+		}
+		final Long size = this.taskSession.getSize();
+		if(size == null) {
+			return super.downloadSize();
+		}
+		return HttpSegmentGroup.downloadSize(this.taskSession.getFile(), size);
+	}
+
+	@Override
+	public void release() {
+		this.sources.forEach(MirrorSource::close);
+		if(this.segmentGroup != null) {
+			this.segmentGroup.release();
+			this.segmentGroup = null;
+		}
+		super.release();
+	}
+
+	/**
+	 * <p>创建下载源</p>
+	 * <p>任务下载链接和镜像下载链接使用相同校验：不能分段下载时开始下载前丢弃，不用等到下载失败。</p>
+	 * 
+	 * @param url 下载链接
+	 * @param size 任务文件大小
+	 * 
+	 * @see MirrorSource#verify(long)
+	 */
+	private void buildSource(String url, long size) {
+		final MirrorSource source = MirrorSource.newSource(url);
+		if(source == null) {
+			LOGGER.warn("不支持的镜像下载链接：{}", url);
+			return;
+		}
+		try {
+			source.verify(size);
+			this.sources.add(source);
+		} catch (NetException e) {
+			LOGGER.warn("丢弃镜像下载源（校验失败）：{}", url, e);
+		}
+	}
+
+	/**
+	 * <p>下载源下载线程</p>
+	 * <p>循环获取分段下载，下载失败等待后重试，连续失败或者速度过慢时丢弃下载源。</p>
+	 * 
+	 * @param group 分段组
+	 * @param source 下载源
+	 */
+	private void download(HttpSegmentGroup group, MirrorSource source) {
+		while(downloadable() && !source.dropped() && !group.complete()) {
+			if(source.retryTime() > System.currentTimeMillis()) {
+				// 等待重试：分段等待时间检查一次，下载完成时不用等待重试。
+				ThreadUtils.sleep(SEGMENT_WAIT);
+				continue;
+			}
+			final HttpSegment segment = group.next();
+			if(segment == null) {
+				// 其他下载源正在下载剩余分段：等待分段失败释放
+				ThreadUtils.sleep(SEGMENT_WAIT);
+				continue;
+			}
+			try {
+				final long position = segment.position();
+				final long beginTime = System.currentTimeMillis();
+				this.download(group, segment, source);
+				source.success(segment.position() - position, System.currentTimeMillis() - beginTime);
+				this.checkSlow(source);
+			} catch (NetException | IOException e) {
+				if(!downloadable()) {
+					LOGGER.debug("镜像下载异常：{}", source, e);
+					break;
+				}
+				final int failTimes = source.fail(RETRY_INTERVAL);
+				LOGGER.warn("镜像下载异常：{}-{}", source, failTimes, e);
+				if(failTimes >= MAX_FAIL_TIMES) {
+					LOGGER.info("丢弃镜像下载源（连续失败）：{}", source);
+					source.drop();
+				}
+			} finally {
+				source.close();
+				group.release(segment);
+			}
+		}
+	}
+
+	/**
+	 * <p>下载分段</p>
+	 * 
+	 * @param group 分段组
+	 * @param segment 分段
+	 * @param source 下载源
+	 * 
+	 * @throws NetException 网络异常
+	 * @throws IOException IO异常
+	 */
+	private void download(HttpSegmentGroup group, HttpSegment segment, MirrorSource source) throws NetException, IOException {
+		final InputStream input = source.open(segment.position(), segment.end());
+		int length;
+		final byte[] bytes = new byte[EXCHANGE_BYTES_LENGTH];
+		while(downloadable() && !segment.complete()) {
+			length = input.read(bytes, 0, bytes.length);
+			if(length < 0) {
+				break;
+			}
+			this.download(segment.write(group.channel(), bytes, length));
+		}
+		if(downloadable() && !segment.complete()) {
+			throw new NetException("镜像分段数据不完整");
+		}
+	}
+
+	/**
+	 * <p>丢弃慢速下载源</p>
+	 * <p>只有存在其他可用下载源并且速度远低于最快下载源时丢弃</p>
+	 * 
+	 * @param source 下载源
+	 */
+	private void checkSlow(MirrorSource source) {
+		final long fastest = this.sources.stream()
+			.filter(value -> !value.dropped())
+			.mapToLong(MirrorSource::speed)
+			.max()
+			.orElse(0L);
+		if(source.speed() * SLOW_RATIO < fastest) {
+			LOGGER.info("丢弃镜像下载源（速度过慢）：{}-{}-{}", source, source.speed(), fastest);
+			source.drop();
+		}
+	}
+
+}
@@ -0,0 +1,168 @@
+package com.acgist.snail.downloader.mirror;
+
+import java.io.InputStream;
+
+import com.acgist.snail.protocol.Protocol.Type;
+import com.acgist.snail.system.exception.NetException;
+import com.acgist.snail.utils.IoUtils;
+
+/**
+ * <p>镜像下载源</p>
+ * <p>每个下载源使用一个连接下载分段，记录下载速度和连续失败次数。</p>
+ * 
+ * @author acgist
+ * @since 1.3.0
+ */
+public abstract class MirrorSource {
+
+	/**
+	 * <p>下载链接</p>
+	 */
+	protected final String url;
+	/**
+	 * <p>当前分段输入流</p>
+	 */
+	protected volatile InputStream input;
+	/**
+	 * <p>连续失败次数</p>
+	 */
+	private volatile int failTimes;
+	/**
+	 * <p>重试时间（时间戳）</p>
+	 * <p>下载失败后等待重试</p>
+	 */
+	private volatile long retryTime;
+	/**
+	 * <p>是否丢弃</p>
+	 */
+	private volatile boolean drop;
+	/**
+	 * <p>下载速度（最近一个分段）：B/s</p>
+	 */
+	private volatile long speed;
+
+	protected MirrorSource(String url) {
+		this.url = url;
+	}
+
+	/**
+	 * <p>创建下载源</p>
+	 * 
+	 * @param url 下载链接
+	 * 
+	 * @return 下载源：{@code null}-不支持的下载链接
+	 */
+	public static final MirrorSource newSource(String url) {
+		if(Type.HTTP.verify(url)) {
+			return HttpMirrorSource.newInstance(url);
+		} else if(Type.FTP.verify(url)) {
+			return FtpMirrorSource.newInstance(url);
+		}
+		return null;
+	}
+
+	/**
+	 * <p>获取下载链接</p>
+	 * 
+	 * @return 下载链接
+	 */
+	public String url() {
+		return this.url;
+	}
+
+	/**
+	 * <p>校验下载源</p>
+	 * <p>文件大小和任务文件大小不一致或者不支持断点续传时不能作为下载源</p>
+	 * 
+	 * @param size 任务文件大小
+	 * 
+	 * @throws NetException 网络异常：下载源不可用
+	 */
+	public abstract void verify(long size) throws NetException;
+
+	/**
+	 * <p>打开分段输入流</p>
+	 * <p>输入流必须从开始位置读取数据：服务器不支持断点续传时抛出异常</p>
+	 * 
+	 * @param position 开始位置
+	 * @param end 结束位置（不包含）
+	 * 
+	 * @return 输入流
+	 * 
+	 * @throws NetException 网络异常
+	 */
+	public abstract InputStream open(long position, long end) throws NetException;
+
+	/**
+	 * <p>关闭分段输入流</p>
+	 */
+	public void close() {
+		IoUtils.close(this.input);
+		this.input = null;
+	}
+
+	/**
+	 * <p>分段下载成功</p>
+	 * 
+	 * @param size 下载大小
+	 * @param millis 下载时间（毫秒）
+	 */
+	public void success(long size, long millis) {
+		this.failTimes = 0;
+		this.speed = size * 1000 / Math.max(1L, millis);
+	}
+
+	/**
+	 * <p>分段下载失败</p>
+	 * <p>重试等待时间=失败重试等待时间*连续失败次数</p>
+	 * 
+	 * @param retryInterval 失败重试等待时间（毫秒）
+	 * 
+	 * @return 连续失败次数
+	 */
+	public int fail(long retryInterval) {
+		this.failTimes++;
+		this.retryTime = System.currentTimeMillis() + retryInterval * this.failTimes;
+		return this.failTimes;
+	}
+
+	/**
+	 * <p>获取重试时间</p>
+	 * 
+	 * @return 重试时间（时间戳）
+	 */
+	public long retryTime() {
+		return this.retryTime;
+	}
+
+	/**
+	 * <p>获取下载速度</p>
+	 * 
+	 * @return 下载速度
+	 */
+	public long speed() {
+		return this.speed;
+	}
+
+	/**
+	 * <p>丢弃下载源</p>
+	 */
+	public void drop() {
+		this.drop = true;
+	}
+
+	/**
+	 * <p>判断是否丢弃</p>
+	 * 
+	 * @return {@code true}-丢弃；{@code false}-可用；
+	 */
+	public boolean dropped() {
+		return this.drop;
+	}
+
+	@Override
+	public String toString() {
+		return this.url;
+	}
+
+}
@@ -2,7 +2,9 @@ package com.acgist.snail.gui.build;
 
 import java.io.File;
 import java.net.URL;
+import java.util.List;
 import java.util.ResourceBundle;
+import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,6 +13,7 @@ import com.acgist.snail.downloader.DownloaderManager;
 import com.acgist.snail.gui.Alerts;
 import com.acgist.snail.gui.Choosers;
 import com.acgist.snail.gui.Controller;
+import com.acgist.snail.protocol.Protocol.Type;
 import com.acgist.snail.protocol.ProtocolManager;
 import com.acgist.snail.utils.StringUtils;
 
@@ -60,6 +63,7 @@ public final class BuildController extends Controller implements Initializable {
 
 	/**
 	 * <p>确认下载按钮</p>
+	 * <p>HTTP、FTP链接使用空白字符分隔多个下载链接：第一个是下载链接，其他是镜像下载链接。</p>
 	 * 
 	 * @param event 事件
 	 */
@@ -72,7 +76,12 @@ public final class BuildController extends Controller implements Initializable {
 		boolean ok = true;
 		try {
 			// TODO：优化卡死现象
-			DownloaderManager.getInstance().newTask(url);
+			final String[] urls = url.trim().split("\\s+");
+			if(urls.length > 1 && Stream.of(urls).allMatch(value -> Type.HTTP.verify(value) || Type.FTP.verify(value))) {
+				DownloaderManager.getInstance().newTask(urls[0], List.of(urls).subList(1, urls.length));
+			} else {
+				DownloaderManager.getInstance().newTask(url);
+			}
 		} catch (Exception e) {
 			LOGGER.error("新建下载任务异常：{}", url, e);
 			ok = false;
@@ -0,0 +1,123 @@
+package com.acgist.snail.net;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.acgist.snail.system.config.SystemConfig;
+
+/**
+ * <p>直接内存缓冲池</p>
+ * <p>按照容量分级（{@linkplain #MIN_SIZE 最小容量}-{@linkplain #MAX_SIZE 最大容量}，每级容量翻倍）缓存直接内存，减少读取数据时重复申请内存。</p>
+ * <p>超过最大容量的缓冲不缓存：直接申请堆内存</p>
+ * <p>注意：归还后的缓冲不能继续使用</p>
+ * 
+ * @author acgist
+ * @since 1.3.0
+ */
+public final class ByteBufferPool {
+
+	private static final ByteBufferPool INSTANCE = new ByteBufferPool();
+
+	/**
+	 * <p>最小容量：{@value}</p>
+	 */
+	private static final int MIN_SIZE = SystemConfig.ONE_KB;
+	/**
+	 * <p>最大容量：{@value}</p>
+	 */
+	private static final int MAX_SIZE = 64 * SystemConfig.ONE_KB;
+	/**
+	 * <p>每级最大缓存数量：{@value}</p>
+	 */
+	private static final int MAX_CACHE_SIZE = 64;
+
+	/**
+	 * <p>缓存缓冲</p>
+	 */
+	private final List<Queue<ByteBuffer>> caches;
+	/**
+	 * <p>缓存缓冲数量</p>
+	 * <p>{@code ConcurrentLinkedQueue}获取数量需要遍历</p>
+	 */
+	private final AtomicInteger[] cacheSizes;
+
+	private ByteBufferPool() {
+		final int length = this.level(MAX_SIZE) + 1;
+		this.caches = new ArrayList<>(length);
+		this.cacheSizes = new AtomicInteger[length];
+		for (int index = 0; index < length; index++) {
+			this.caches.add(new ConcurrentLinkedQueue<>());
+			this.cacheSizes[index] = new AtomicInteger(0);
+		}
+	}
+
+	public static final ByteBufferPool getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * <p>获取缓冲</p>
+	 * <p>缓冲容量可能大于申请大小：{@code limit}等于申请大小</p>
+	 * 
+	 * @param size 大小
+	 * 
+	 * @return 缓冲
+	 */
+	public ByteBuffer allocate(int size) {
+		if(size > MAX_SIZE) {
+			return ByteBuffer.allocate(size);
+		}
+		final int level = this.level(size);
+		ByteBuffer buffer = this.caches.get(level).poll();
+		if(buffer == null) {
+			buffer = ByteBuffer.allocateDirect(MIN_SIZE << level);
+		} else {
+			this.cacheSizes[level].decrementAndGet();
+			buffer.clear();
+		}
+		buffer.limit(size);
+		return buffer;
+	}
+
+	/**
+	 * <p>归还缓冲</p>
+	 * <p>堆内存缓冲和超过缓存数量的缓冲直接丢弃</p>
+	 * 
+	 * @param buffer 缓冲
+	 */
+	public void release(ByteBuffer buffer) {
+		if(buffer == null || !buffer.isDirect()) {
+			return;
+		}
+		final int capacity = buffer.capacity();
+		if(capacity < MIN_SIZE || capacity > MAX_SIZE || Integer.bitCount(capacity) != 1) {
+			return;
+		}
+		final int level = this.level(capacity);
+		if(this.cacheSizes[level].incrementAndGet() > MAX_CACHE_SIZE) {
+			this.cacheSizes[level].decrementAndGet();
+			return;
+		}
+		this.caches.get(level).offer(buffer);
+	}
+
+	/**
+	 * <p>获取容量等级</p>
+	 * 
+	 * @param size 大小
+	 * 
+	 * @return 容量等级
+	 */
+	private int level(int size) {
+		if(size <= MIN_SIZE) {
+			return 0;
+		}
+		// 向上取整到2的幂
+		return 32 - Integer.numberOfLeadingZeros(size - 1) - Integer.numberOfTrailingZeros(MIN_SIZE);
+	}
+
+}
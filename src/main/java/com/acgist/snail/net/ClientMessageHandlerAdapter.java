@@ -33,6 +33,15 @@ public abstract class ClientMessageHandlerAdapter<T extends IMessageHandler> imp
 		}
 	}
 
+	@Override
+	public boolean writable() {
+		if(this.handler == null) {
+			return false;
+		} else {
+			return this.handler.writable();
+		}
+	}
+
 	@Override
 	public void send(String message) throws NetException {
 		this.handler.send(message);
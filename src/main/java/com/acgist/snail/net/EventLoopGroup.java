@@ -0,0 +1,105 @@
+package com.acgist.snail.net;
+
+import java.io.IOException;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.acgist.snail.system.context.SystemThreadContext;
+import com.acgist.snail.utils.IoUtils;
+
+/**
+ * <p>事件循环组</p>
+ * <p>固定数量的事件循环，每个事件循环是一个单线程的通道组：通道创建时轮流绑定事件循环，通道所有回调都在绑定的事件循环线程中执行（不会切换线程）。</p>
+ * <p>线程数量固定：连接数量增加不会增加线程</p>
+ * <p>注意：回调不能阻塞事件循环线程，耗时任务需要提交到其他线程池执行。</p>
+ * 
+ * @author acgist
+ * @since 1.3.0
+ */
+public final class EventLoopGroup {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(EventLoopGroup.class);
+	
+	/**
+	 * <p>默认事件循环数量：CPU核心数量</p>
+	 */
+	public static final int DEFAULT_SIZE = Runtime.getRuntime().availableProcessors();
+	
+	/**
+	 * <p>名称</p>
+	 */
+	private final String name;
+	/**
+	 * <p>绑定索引</p>
+	 */
+	private final AtomicInteger index;
+	/**
+	 * <p>事件循环</p>
+	 */
+	private final AsynchronousChannelGroup[] loops;
+	
+	private EventLoopGroup(String name, AsynchronousChannelGroup[] loops) {
+		this.name = name;
+		this.index = new AtomicInteger(0);
+		this.loops = loops;
+	}
+	
+	/**
+	 * <p>创建事件循环组</p>
+	 * 
+	 * @param name 名称
+	 * @param size 事件循环数量
+	 * 
+	 * @return 事件循环组
+	 * 
+	 * @throws IOException IO异常
+	 */
+	public static final EventLoopGroup newInstance(String name, int size) throws IOException {
+		final AsynchronousChannelGroup[] loops = new AsynchronousChannelGroup[Math.max(1, size)];
+		try {
+			for (int index = 0; index < loops.length; index++) {
+				loops[index] = AsynchronousChannelGroup.withFixedThreadPool(1, SystemThreadContext.newThreadFactory(name + "-" + index));
+			}
+		} catch (IOException e) {
+			for (AsynchronousChannelGroup loop : loops) {
+				IoUtils.close(loop);
+			}
+			throw e;
+		}
+		LOGGER.debug("创建事件循环组：{}-{}", name, loops.length);
+		return new EventLoopGroup(name, loops);
+	}
+	
+	/**
+	 * <p>获取下一个事件循环</p>
+	 * <p>轮流绑定：使用该事件循环创建的通道生命周期内都绑定该事件循环</p>
+	 * 
+	 * @return 事件循环
+	 */
+	public AsynchronousChannelGroup next() {
+		return this.loops[Math.floorMod(this.index.getAndIncrement(), this.loops.length)];
+	}
+	
+	/**
+	 * <p>获取事件循环数量</p>
+	 * 
+	 * @return 事件循环数量
+	 */
+	public int size() {
+		return this.loops.length;
+	}
+	
+	/**
+	 * <p>关闭事件循环组</p>
+	 */
+	public void shutdown() {
+		LOGGER.debug("关闭事件循环组：{}", this.name);
+		for (AsynchronousChannelGroup loop : this.loops) {
+			IoUtils.close(loop);
+		}
+	}
+	
+}
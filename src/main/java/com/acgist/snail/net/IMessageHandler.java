@@ -27,6 +27,16 @@ public interface IMessageHandler {
 	 */
 	boolean available();
 	
+	/**
+	 * <p>可写状态</p>
+	 * <p>发送队列积压过多时不可写：生产者需要暂停发送</p>
+	 * 
+	 * @return true-可写；false-不可写；
+	 */
+	default boolean writable() {
+		return true;
+	}
+	
 	/**
 	 * <p>消息发送</p>
 	 * 
@@ -2,16 +2,19 @@ package com.acgist.snail.net;
 
 import java.io.IOException;
 import java.net.StandardSocketOptions;
-import java.nio.channels.AsynchronousChannelGroup;
 import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.acgist.snail.system.TimerWheel;
 import com.acgist.snail.system.context.SystemThreadContext;
 import com.acgist.snail.utils.IoUtils;
 import com.acgist.snail.utils.NetUtils;
@@ -27,14 +30,15 @@ public abstract class TcpClient<T extends TcpMessageHandler> extends ClientMessa
 	private static final Logger LOGGER = LoggerFactory.getLogger(TcpClient.class);
 	
 	/**
-	 * <p>客户端线程池</p>
+	 * <p>客户端事件循环组</p>
+	 * <p>每个连接绑定一个事件循环</p>
 	 */
-	private static final AsynchronousChannelGroup GROUP;
+	private static final EventLoopGroup GROUP;
 	
 	static {
-		AsynchronousChannelGroup group = null;
+		EventLoopGroup group = null;
 		try {
-			group = AsynchronousChannelGroup.withThreadPool(SystemThreadContext.newCacheExecutor(SystemThreadContext.SNAIL_THREAD_TCP_CLIENT));
+			group = EventLoopGroup.newInstance(SystemThreadContext.SNAIL_THREAD_TCP_CLIENT, EventLoopGroup.DEFAULT_SIZE);
 		} catch (Exception e) {
 			LOGGER.error("启动TCP Client Group异常", e);
 		}
@@ -75,7 +79,7 @@ public abstract class TcpClient<T extends TcpMessageHandler> extends ClientMessa
 		boolean ok = true;
 		AsynchronousSocketChannel socket = null;
 		try {
-			socket = AsynchronousSocketChannel.open(GROUP);
+			socket = AsynchronousSocketChannel.open(GROUP.next());
 			socket.setOption(StandardSocketOptions.TCP_NODELAY, true);
 			socket.setOption(StandardSocketOptions.SO_REUSEADDR, true);
 			socket.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
@@ -100,6 +104,70 @@ public abstract class TcpClient<T extends TcpMessageHandler> extends ClientMessa
 		return ok;
 	}
 	
+	/**
+	 * <p>异步连接服务端</p>
+	 * <p>连接不会阻塞线程：连接完成、失败或者超时后执行回调（只执行一次）</p>
+	 * <p>注意：回调在网络线程或者时间轮线程中执行，不能阻塞。</p>
+	 * 
+	 * @param host 服务端地址
+	 * @param port 服务端端口
+	 * @param callback 连接回调：{@code true}-连接成功；{@code false}-连接失败；
+	 */
+	protected void connect(final String host, final int port, final Consumer<Boolean> callback) {
+		final AsynchronousSocketChannel socket;
+		try {
+			socket = AsynchronousSocketChannel.open(GROUP.next());
+			socket.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			socket.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+			socket.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+		} catch (IOException e) {
+			LOGGER.error("TCP客户端连接异常：{}-{}", host, port, e);
+			this.handler.close();
+			callback.accept(false);
+			return;
+		}
+		// 是否完成：连接回调和超时回调只能执行一个
+		final AtomicBoolean done = new AtomicBoolean(false);
+		final TimerWheel.Timeout timeout = TimerWheel.getInstance().timeout(this.timeout, TimeUnit.SECONDS, () -> {
+			if(done.compareAndSet(false, true)) {
+				LOGGER.debug("TCP客户端连接超时：{}-{}", host, port);
+				IoUtils.close(socket);
+				this.handler.close();
+				callback.accept(false);
+			}
+		});
+		try {
+			socket.connect(NetUtils.buildSocketAddress(host, port), socket, new CompletionHandler<Void, AsynchronousSocketChannel>() {
+				@Override
+				public void completed(Void result, AsynchronousSocketChannel channel) {
+					timeout.cancel();
+					if(done.compareAndSet(false, true)) {
+						TcpClient.this.handler.handle(channel);
+						callback.accept(true);
+					}
+				}
+				@Override
+				public void failed(Throwable ex, AsynchronousSocketChannel channel) {
+					timeout.cancel();
+					if(done.compareAndSet(false, true)) {
+						LOGGER.debug("TCP客户端连接失败：{}-{}", host, port, ex);
+						IoUtils.close(channel);
+						TcpClient.this.handler.close();
+						callback.accept(false);
+					}
+				}
+			});
+		} catch (Exception e) {
+			timeout.cancel();
+			if(done.compareAndSet(false, true)) {
+				LOGGER.error("TCP客户端连接异常：{}-{}", host, port, e);
+				IoUtils.close(socket);
+				this.handler.close();
+				callback.accept(false);
+			}
+		}
+	}
+	
 	/**
 	 * <p>关闭资源</p>
 	 * <p>使用消息代理关闭资源</p>
@@ -115,7 +183,9 @@ public abstract class TcpClient<T extends TcpMessageHandler> extends ClientMessa
 	 */
 	public static final void shutdown() {
 		LOGGER.info("关闭TCP Client线程池");
-		IoUtils.close(GROUP);
+		if(GROUP != null) {
+			GROUP.shutdown();
+		}
 	}
 
 }
@@ -5,21 +5,28 @@ import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.AsynchronousSocketChannel;
 import java.nio.channels.CompletionHandler;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.acgist.snail.net.codec.IMessageCodec;
+import com.acgist.snail.system.TimerWheel;
+import com.acgist.snail.system.bandwidth.Bandwidth;
+import com.acgist.snail.system.bandwidth.BandwidthScheduler;
 import com.acgist.snail.system.config.SystemConfig;
 import com.acgist.snail.system.exception.NetException;
 import com.acgist.snail.utils.IoUtils;
 
 /**
  * <p>TCP消息代理</p>
+ * <p>读取缓冲：每个连接使用一个{@linkplain ByteBufferPool 直接内存缓冲}循环读取，连接关闭后归还。</p>
+ * <p>发送队列：发送消息放入连接发送队列后直接返回，由写入回调依次取出队列中的消息合并写入（同时只有一个写入）。</p>
+ * <p>背压：发送队列数据大小超过{@linkplain SystemConfig#getTcpSendHighWaterByte() 高水位}时{@linkplain #writable() 不可写}，生产者需要暂停发送，发送队列低于高水位时{@linkplain #onWritable() 通知}生产者继续发送。</p>
+ * <p>写入异常：异步写入失败后关闭连接，之后发送消息抛出写入异常。</p>
+ * <p>限速：读取和写入前向{@linkplain BandwidthScheduler 带宽调度器}申请令牌，没有令牌时等待分配令牌后继续读取和写入（不会阻塞线程）。</p>
  * 
  * @author acgist
  * @since 1.0.0
@@ -28,14 +35,65 @@ public abstract class TcpMessageHandler implements CompletionHandler<Integer, By
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(TcpMessageHandler.class);
 	
+	/**
+	 * <p>单次合并写入最大消息数量：{@value}</p>
+	 */
+	private static final int MAX_WRITE_BATCH_SIZE = 64;
+	/**
+	 * <p>关闭等待发送队列时间（秒）：{@value}</p>
+	 * <p>超过时间强制关闭</p>
+	 */
+	private static final int CLOSE_WAIT_TIME = 4;
+	
 	/**
 	 * <p>是否关闭</p>
 	 */
-	private boolean close = false;
+	private volatile boolean close = false;
 	/**
 	 * <p>Socket</p>
 	 */
 	protected AsynchronousSocketChannel socket;
+	/**
+	 * <p>读取缓冲</p>
+	 * <p>每次读取完成处理消息后重复使用</p>
+	 */
+	private ByteBuffer readBuffer;
+	/**
+	 * <p>读取申请令牌的带宽</p>
+	 * <p>读取完成后归还没有使用的令牌</p>
+	 */
+	private Bandwidth readBandwidth;
+	/**
+	 * <p>读取申请令牌数量</p>
+	 */
+	private int readSize;
+	/**
+	 * <p>发送队列</p>
+	 * <p>发送队列、发送队列大小、写入状态和写入超时时间使用发送队列加锁</p>
+	 */
+	private final Deque<ByteBuffer> sendQueue = new ArrayDeque<>();
+	/**
+	 * <p>发送队列数据大小</p>
+	 */
+	private volatile long sendQueueSize = 0L;
+	/**
+	 * <p>是否正在写入</p>
+	 */
+	private boolean writing = false;
+	/**
+	 * <p>写入超时时间（秒）</p>
+	 * <p>使用触发写入的消息超时时间</p>
+	 */
+	private int writeTimeout = TIMEOUT_NONE;
+	/**
+	 * <p>写入异常</p>
+	 * <p>异步写入失败时记录，之后发送消息时抛出。</p>
+	 */
+	private volatile Throwable writeException;
+	/**
+	 * <p>写入回调</p>
+	 */
+	private final WriteHandler writeHandler = new WriteHandler();
 	/**
 	 * <p>消息处理器</p>
 	 */
@@ -45,6 +103,7 @@ public abstract class TcpMessageHandler implements CompletionHandler<Integer, By
 	 * <p>收到消息</p>
 	 * <p>使用消息处理器处理消息</p>
 	 * <p>如果没有实现消息处理器，请重写该方法。</p>
+	 * <p>注意：消息缓冲会被重复使用，方法返回后不能继续引用消息缓冲（需要保存的数据必须复制）。</p>
 	 * 
 	 * @param buffer 消息
 	 * 
@@ -65,6 +124,7 @@ public abstract class TcpMessageHandler implements CompletionHandler<Integer, By
 	 */
 	public void handle(AsynchronousSocketChannel socket) {
 		this.socket = socket;
+		this.readBuffer = ByteBufferPool.getInstance().allocate(SystemConfig.TCP_BUFFER_LENGTH);
 		this.loopMessage();
 	}
 	
@@ -73,6 +133,26 @@ public abstract class TcpMessageHandler implements CompletionHandler<Integer, By
 		return !this.close && this.socket != null;
 	}
 	
+	/**
+	 * <p>获取上传带宽</p>
+	 * <p>默认不限速，需要限速的消息代理重写该方法。</p>
+	 * 
+	 * @return 上传带宽：{@code null}-不限速
+	 */
+	protected Bandwidth uploadBandwidth() {
+		return null;
+	}
+	
+	/**
+	 * <p>获取下载带宽</p>
+	 * <p>默认不限速，需要限速的消息代理重写该方法。</p>
+	 * 
+	 * @return 下载带宽：{@code null}-不限速
+	 */
+	protected Bandwidth downloadBandwidth() {
+		return null;
+	}
+	
 	@Override
 	public void send(String message, String charset) throws NetException {
 		if(this.messageCodec == null) {
@@ -81,9 +161,49 @@ public abstract class TcpMessageHandler implements CompletionHandler<Integer, By
 		send(this.charset(this.messageCodec.encode(message), charset));
 	}
 	
+	@Override
+	public boolean writable() {
+		return this.sendQueueSize < SystemConfig.getTcpSendHighWaterByte();
+	}
+	
+	/**
+	 * <p>发送队列恢复可写</p>
+	 * <p>发送队列数据大小从高水位以上降到高水位以下时回调（写入回调线程），需要继续发送暂停消息的消息代理重写该方法。</p>
+	 */
+	protected void onWritable() {
+	}
+	
+	/**
+	 * <p>减少发送队列数据大小</p>
+	 * <p>必须在发送队列加锁后调用</p>
+	 * 
+	 * @param size 写入数据大小
+	 * 
+	 * @return 是否恢复可写
+	 */
+	private boolean releaseSendQueueSize(long size) {
+		final long highWater = SystemConfig.getTcpSendHighWaterByte();
+		final boolean unwritable = this.sendQueueSize >= highWater;
+		this.sendQueueSize -= size;
+		return unwritable && this.sendQueueSize < highWater;
+	}
+	
+	/**
+	 * <p>消息发送</p>
+	 * <p>消息放入发送队列后直接返回，没有写入时开始写入。</p>
+	 * <p>超时时间：写入超时关闭连接</p>
+	 * <p>注意：发送后消息缓冲归发送队列所有（写入完成后{@linkplain ByteBufferPool#release(ByteBuffer) 归还}），不能继续使用。</p>
+	 * 
+	 * @throws NetException 之前的消息写入失败（连接已经关闭）
+	 */
 	@Override
 	public void send(ByteBuffer buffer, int timeout) throws NetException {
 		if(!available()) {
+			ByteBufferPool.getInstance().release(buffer);
+			final Throwable exception = this.writeException;
+			if(exception != null) {
+				throw new NetException("TCP消息发送失败：写入异常", exception);
+			}
 			LOGGER.debug("TCP消息发送失败：Socket不可用");
 			return;
 		}
@@ -94,32 +214,81 @@ public abstract class TcpMessageHandler implements CompletionHandler<Integer, By
 			LOGGER.warn("TCP消息发送失败：{}", buffer);
 			return;
 		}
-		synchronized (this.socket) {
-			try {
-				final Future<Integer> future = this.socket.write(buffer);
-				/*
-				 * 阻塞线程：等待发送完成，防止多线程同时写导致WritePendingException。
-				 * 超时时间：超时异常会导致数据并没有发送完成而释放了锁，从而引起一连串的WritePendingException异常。
-				 * 建议：除了第一条消息以外的所有消息都不要使用超时时间。
-				 */
-				int size = 0;
-				if(timeout <= TIMEOUT_NONE) {
-					size = future.get();
-				} else {
-					size = future.get(timeout, TimeUnit.SECONDS);
-				}
-				if(size <= 0) {
-					LOGGER.warn("TCP消息发送失败：{}", size);
-				}
-			} catch (InterruptedException e) {
-				Thread.currentThread().interrupt();
-				throw new NetException(e);
-			} catch (TimeoutException | ExecutionException e) {
-				throw new NetException(e);
+		ByteBuffer[] buffers = null;
+		synchronized (this.sendQueue) {
+			this.sendQueue.offer(buffer);
+			this.sendQueueSize += buffer.remaining();
+			if(!this.writing) {
+				this.writing = true;
+				this.writeTimeout = timeout;
+				buffers = this.pollSendQueue();
 			}
 		}
+		if(buffers != null) {
+			this.acquireWrite(buffers);
+		}
 	}
-
+	
+	/**
+	 * <p>取出发送队列中的消息</p>
+	 * <p>必须在发送队列加锁后调用</p>
+	 * 
+	 * @return 消息；{@code null}-发送队列为空
+	 */
+	private ByteBuffer[] pollSendQueue() {
+		final int size = Math.min(this.sendQueue.size(), MAX_WRITE_BATCH_SIZE);
+		if(size == 0) {
+			return null;
+		}
+		final ByteBuffer[] buffers = new ByteBuffer[size];
+		for (int index = 0; index < size; index++) {
+			buffers[index] = this.sendQueue.poll();
+		}
+		return buffers;
+	}
+	
+	/**
+	 * <p>申请上传令牌后合并写入</p>
+	 * 
+	 * @param buffers 消息
+	 */
+	private void acquireWrite(ByteBuffer[] buffers) {
+		final Bandwidth bandwidth = this.uploadBandwidth();
+		if(bandwidth == null) {
+			this.write(buffers);
+			return;
+		}
+		long size = 0L;
+		for (ByteBuffer buffer : buffers) {
+			size += buffer.remaining();
+		}
+		BandwidthScheduler.upload().acquire(bandwidth, (int) Math.min(size, Integer.MAX_VALUE), () -> this.write(buffers));
+	}
+	
+	/**
+	 * <p>合并写入</p>
+	 * 
+	 * @param buffers 消息
+	 * @param offset 开始写入的消息偏移
+	 */
+	private void write(ByteBuffer[] buffers, int offset) {
+		try {
+			// 超时时间小于等于零：没有超时时间
+			this.socket.write(buffers, offset, buffers.length - offset, this.writeTimeout, TimeUnit.SECONDS, buffers, this.writeHandler);
+		} catch (Exception e) {
+			this.writeHandler.failed(e, buffers);
+		}
+	}
+	
+	/**
+	 * <p>合并写入</p>
+	 * 
+	 * @param buffers 消息
+	 */
+	private void write(ByteBuffer[] buffers) {
+		this.write(buffers, 0);
+	}
+	
 	@Override
 	public InetSocketAddress remoteSocketAddress() {
 		try {
@@ -130,14 +299,40 @@ public abstract class TcpMessageHandler implements CompletionHandler<Integer, By
 		return null;
 	}
 	
+	/**
+	 * <p>关闭资源</p>
+	 * <p>发送队列没有写入完成时等待写入完成后关闭，超过{@linkplain #CLOSE_WAIT_TIME 等待时间}强制关闭。</p>
+	 */
 	@Override
 	public void close() {
 		this.close = true;
+		synchronized (this.sendQueue) {
+			if(this.writing) {
+				TimerWheel.getInstance().timeout(CLOSE_WAIT_TIME, TimeUnit.SECONDS, this::closeSocket);
+				return;
+			}
+		}
+		this.closeSocket();
+	}
+	
+	/**
+	 * <p>关闭Socket</p>
+	 * <p>归还发送队列中没有写入的消息</p>
+	 */
+	private void closeSocket() {
 		IoUtils.close(this.socket);
+		synchronized (this.sendQueue) {
+			ByteBuffer buffer;
+			while((buffer = this.sendQueue.poll()) != null) {
+				ByteBufferPool.getInstance().release(buffer);
+			}
+			this.sendQueueSize = 0L;
+		}
 	}
 	
 	@Override
 	public void completed(Integer result, ByteBuffer buffer) {
+		this.refundRead(result == null ? 0 : result);
 		if (result == null) {
 			this.close();
 		} else if(result == -1) { // 服务端关闭
@@ -155,22 +350,149 @@ public abstract class TcpMessageHandler implements CompletionHandler<Integer, By
 			loopMessage();
 		} else {
 			LOGGER.debug("TCP消息代理跳出循环：{}", result);
+			this.releaseReadBuffer();
 		}
 	}
 	
 	@Override
 	public void failed(Throwable ex, ByteBuffer buffer) {
 		LOGGER.error("TCP消息处理异常", ex);
+		this.refundRead(0);
+		this.releaseReadBuffer();
 	}
 	
 	/**
 	 * <p>消息轮询</p>
+	 * <p>申请下载令牌后读取</p>
 	 */
 	private void loopMessage() {
-		if(available()) {
-			final ByteBuffer buffer = ByteBuffer.allocate(SystemConfig.TCP_BUFFER_LENGTH);
+		final ByteBuffer buffer = this.readBuffer;
+		if(available() && buffer != null) {
+			final Bandwidth bandwidth = this.downloadBandwidth();
+			if(bandwidth == null) {
+				this.read();
+				return;
+			}
+			this.readBandwidth = bandwidth;
+			this.readSize = buffer.capacity();
+			BandwidthScheduler.download().acquire(bandwidth, this.readSize, this::read);
+		} else {
+			this.releaseReadBuffer();
+		}
+	}
+	
+	/**
+	 * <p>读取消息</p>
+	 */
+	private void read() {
+		final ByteBuffer buffer = this.readBuffer;
+		if(available() && buffer != null) {
+			buffer.clear();
 			this.socket.read(buffer, buffer, this);
+		} else {
+			this.refundRead(0);
+			this.releaseReadBuffer();
+		}
+	}
+	
+	/**
+	 * <p>归还没有使用的下载令牌</p>
+	 * 
+	 * @param size 读取数据大小
+	 */
+	private void refundRead(int size) {
+		final Bandwidth bandwidth = this.readBandwidth;
+		if(bandwidth != null) {
+			this.readBandwidth = null;
+			BandwidthScheduler.download().refund(bandwidth, this.readSize - Math.max(0, size));
+		}
+	}
+	
+	/**
+	 * <p>归还读取缓冲</p>
+	 * <p>读取结束（跳出循环、读取失败）后归还：关闭Socket时可能还有没有完成的读取</p>
+	 */
+	private void releaseReadBuffer() {
+		final ByteBuffer buffer;
+		synchronized (this) {
+			buffer = this.readBuffer;
+			this.readBuffer = null;
+		}
+		ByteBufferPool.getInstance().release(buffer);
+	}
+	
+	/**
+	 * <p>写入回调</p>
+	 * <p>写入完成后继续写入发送队列中的消息，发送队列为空时结束写入。</p>
+	 * 
+	 * @author acgist
+	 * @since 1.3.0
+	 */
+	private final class WriteHandler implements CompletionHandler<Long, ByteBuffer[]> {
+		
+		@Override
+		public void completed(Long result, ByteBuffer[] buffers) {
+			final TcpMessageHandler handler = TcpMessageHandler.this;
+			if(result == null || result < 0) {
+				this.failed(new NetException("TCP消息发送失败：" + result), buffers);
+				return;
+			}
+			// 没有写入完成：继续写入剩余数据
+			for (int index = 0; index < buffers.length; index++) {
+				if(buffers[index].hasRemaining()) {
+					final boolean writable;
+					synchronized (handler.sendQueue) {
+						writable = handler.releaseSendQueueSize(result);
+					}
+					handler.write(buffers, index);
+					if(writable && handler.available()) {
+						handler.onWritable();
+					}
+					return;
+				}
+			}
+			for (ByteBuffer buffer : buffers) {
+				ByteBufferPool.getInstance().release(buffer);
+			}
+			final ByteBuffer[] nextBuffers;
+			final boolean closeSocket;
+			final boolean writable;
+			synchronized (handler.sendQueue) {
+				writable = handler.releaseSendQueueSize(result);
+				nextBuffers = handler.pollSendQueue();
+				handler.writing = nextBuffers != null;
+				closeSocket = !handler.writing && handler.close;
+			}
+			if(nextBuffers != null) {
+				handler.acquireWrite(nextBuffers);
+			} else if(closeSocket) {
+				// 发送队列写入完成：关闭Socket
+				handler.closeSocket();
+			}
+			if(writable && handler.available()) {
+				handler.onWritable();
+			}
+		}
+		
+		@Override
+		public void failed(Throwable ex, ByteBuffer[] buffers) {
+			final TcpMessageHandler handler = TcpMessageHandler.this;
+			if(handler.available()) {
+				LOGGER.error("TCP消息发送异常", ex);
+			} else {
+				LOGGER.debug("TCP消息发送异常", ex);
+			}
+			for (ByteBuffer buffer : buffers) {
+				ByteBufferPool.getInstance().release(buffer);
+			}
+			synchronized (handler.sendQueue) {
+				handler.writing = false;
+			}
+			handler.writeException = ex;
+			handler.close = true;
+			handler.closeSocket();
 		}
+		
 	}
 
 }
@@ -22,13 +22,15 @@ public abstract class TcpServer<T extends TcpMessageHandler> {
 	
 	/**
 	 * <p>服务端线程池</p>
+	 * <p>固定线程数量（{@linkplain EventLoopGroup#DEFAULT_SIZE CPU核心数量}），回调直接在轮询线程中执行。</p>
+	 * <p>接入连接和服务端通道使用同一个通道组，所以服务端不能使用{@linkplain EventLoopGroup 事件循环组}绑定连接。</p>
 	 */
 	private static final AsynchronousChannelGroup GROUP;
 	
 	static {
 		AsynchronousChannelGroup group = null;
 		try {
-			group = AsynchronousChannelGroup.withThreadPool(SystemThreadContext.newCacheExecutor(SystemThreadContext.SNAIL_THREAD_TCP_SERVER));
+			group = AsynchronousChannelGroup.withFixedThreadPool(EventLoopGroup.DEFAULT_SIZE, SystemThreadContext.newThreadFactory(SystemThreadContext.SNAIL_THREAD_TCP_SERVER));
 		} catch (Exception e) {
 			LOGGER.error("启动TCP Server Group异常");
 		}
@@ -33,6 +33,11 @@ public interface UdpChannel {
 	 * <p>不重用地址</p>
 	 */
 	boolean ADDR_USENEW = false;
+	/**
+	 * <p>接收缓冲大小：{@value}</p>
+	 * <p>轮询线程批量读取消息：系统缓冲需要能够保存两次轮询之间收到的消息</p>
+	 */
+	int RECEIVE_BUFFER_SIZE = 1024 * 1024;
 	
 	/**
 	 * <p>创建UDP通道</p>
@@ -108,6 +113,7 @@ public interface UdpChannel {
 //			channel = DatagramChannel.open();
 			channel = DatagramChannel.open(StandardProtocolFamily.INET); // IPv4
 			channel.configureBlocking(false); // 不阻塞
+			channel.setOption(StandardSocketOptions.SO_RCVBUF, RECEIVE_BUFFER_SIZE);
 			if(reuse) {
 				channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
 			}
@@ -5,13 +5,16 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.StandardSocketOptions;
 import java.nio.ByteBuffer;
-import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
 import java.nio.channels.DatagramChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.util.Iterator;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,6 +28,9 @@ import com.acgist.snail.utils.NetUtils;
 /**
  * <p>UDP服务端</p>
  * <p>全部使用单例：初始化时立即开始监听（客户端和服务端使用同一个通道）</p>
+ * <p>事件循环：所有服务端通道注册到同一个Selector，使用一个轮询线程接收消息（线程数量不随服务端数量增加）。</p>
+ * <p>轮询线程每次唤醒读取通道中所有消息（使用{@linkplain ByteBufferPool 缓冲池}），然后按照远程地址分配给{@linkplain #WORKER_SIZE 处理线程}：同一个地址的消息使用同一个处理线程按照顺序处理。</p>
+ * <p>注意：消息代理处理完成后归还消息缓冲，不能继续引用消息缓冲（需要保存的数据必须复制）。</p>
  * 
  * @author acgist
  * @since 1.0.0
@@ -33,10 +39,57 @@ public abstract class UdpServer<T extends UdpAcceptHandler> implements UdpChanne
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(UdpServer.class);
 	
+	/**
+	 * <p>处理线程数量：CPU核心数量（最少两个）</p>
+	 */
+	private static final int WORKER_SIZE = Math.max(2, Runtime.getRuntime().availableProcessors());
+	/**
+	 * <p>处理线程等待队列长度：{@value}</p>
+	 * <p>超过长度丢弃消息</p>
+	 */
+	private static final int WORKER_QUEUE_SIZE = 1024;
+	/**
+	 * <p>单个通道每次唤醒最大读取消息数量：{@value}</p>
+	 * <p>防止一个通道消息过多导致其他通道没有读取</p>
+	 */
+	private static final int MAX_RECEIVE_SIZE = 256;
+	
+	/**
+	 * <p>轮询线程池：单线程（平台线程）</p>
+	 */
 	private static final ExecutorService EXECUTOR;
+	/**
+	 * <p>处理线程池：每个处理线程都是单线程（平台线程）</p>
+	 */
+	private static final ExecutorService[] WORKERS;
+	/**
+	 * <p>Selector：所有服务端共用</p>
+	 */
+	private static final Selector SELECTOR;
+	/**
+	 * <p>等待注册服务端队列</p>
+	 * <p>注册必须在轮询线程中执行：防止注册时Selector正在阻塞</p>
+	 */
+	private static final Queue<UdpServer<?>> REGISTER_QUEUE = new ConcurrentLinkedQueue<>();
 	
 	static {
-		EXECUTOR = SystemThreadContext.newCacheExecutor(SystemThreadContext.SNAIL_THREAD_UDP_SERVER);
+		Selector selector = null;
+		try {
+			selector = Selector.open();
+		} catch (IOException e) {
+			LOGGER.error("打开Selector异常", e);
+		}
+		SELECTOR = selector;
+		EXECUTOR = SystemThreadContext.newSingleExecutor(SystemThreadContext.SNAIL_THREAD_UDP_SERVER);
+		WORKERS = new ExecutorService[WORKER_SIZE];
+		for (int index = 0; index < WORKER_SIZE; index++) {
+			WORKERS[index] = SystemThreadContext.newSingleExecutor(WORKER_QUEUE_SIZE, SystemThreadContext.SNAIL_THREAD_UDP_SERVER + "-" + index);
+		}
+		if(SELECTOR != null) {
+			EXECUTOR.submit(() -> {
+				loopMessage();
+			});
+		}
 	}
 	
 	/**
@@ -47,10 +100,6 @@ public abstract class UdpServer<T extends UdpAcceptHandler> implements UdpChanne
 	 * <p>消息代理</p>
 	 */
 	private final T handler;
-	/**
-	 * <p>Selector：每个服务端独立</p>
-	 */
-	private final Selector selector;
 	/**
 	 * <p>UDP通道</p>
 	 */
@@ -111,24 +160,9 @@ public abstract class UdpServer<T extends UdpAcceptHandler> implements UdpChanne
 	protected UdpServer(int port, String host, boolean reuse, String name, T handler) {
 		this.name = name;
 		this.handler = handler;
-		this.selector = this.buildSelector();
 		this.channel = this.buildChannel(port, host, reuse);
 	}
 	
-	/**
-	 * <p>创建Selector</p>
-	 * 
-	 * @return Selector
-	 */
-	private Selector buildSelector() {
-		try {
-			return Selector.open();
-		} catch (IOException e) {
-			LOGGER.error("打开Selector异常", e);
-		}
-		return null;
-	}
-	
 	/**
 	 * <p>创建UDP通道</p>
 	 * 
@@ -169,7 +203,7 @@ public abstract class UdpServer<T extends UdpAcceptHandler> implements UdpChanne
 	
 	/**
 	 * <p>消息代理</p>
-	 * <p>开始消息轮询</p>
+	 * <p>注册到事件循环开始接收消息</p>
 	 */
 	public void handle() {
 		if(this.channel == null) {
@@ -180,57 +214,117 @@ public abstract class UdpServer<T extends UdpAcceptHandler> implements UdpChanne
 			LOGGER.warn("UDP Server通道已经关闭：{}", this.name);
 			return;
 		}
-		EXECUTOR.submit(() -> {
-			this.loopMessage();
-		});
+		if(SELECTOR == null) {
+			LOGGER.warn("UDP Server Selector没有初始化：{}", this.name);
+			return;
+		}
+		REGISTER_QUEUE.offer(this);
+		SELECTOR.wakeup();
 	}
 	
 	/**
 	 * <p>消息轮询</p>
 	 */
-	private void loopMessage() {
-		this.selector();
-		while (this.channel.isOpen()) {
-			this.receive();
+	private static final void loopMessage() {
+		while (SELECTOR.isOpen()) {
+			register();
+			select();
 		}
 	}
 	
 	/**
 	 * <p>注册Selector消息读取</p>
 	 */
-	private void selector() {
-		try {
-			this.channel.register(this.selector, SelectionKey.OP_READ);
-		} catch (ClosedChannelException e) {
-			LOGGER.error("UDP Server注册Selector消息读取异常", e);
+	private static final void register() {
+		UdpServer<?> server;
+		while((server = REGISTER_QUEUE.poll()) != null) {
+			try {
+				server.channel.register(SELECTOR, SelectionKey.OP_READ, server);
+			} catch (Exception e) {
+				LOGGER.error("UDP Server注册Selector消息读取异常：{}", server.name, e);
+			}
 		}
 	}
 	
 	/**
-	 * <p>接收消息</p>
+	 * <p>轮询消息</p>
 	 */
-	private void receive() {
+	private static final void select() {
 		try {
-			if(this.selector.select() > 0) {
-				final Set<SelectionKey> selectionKeys = this.selector.selectedKeys();
+			if(SELECTOR.select() > 0) {
+				final Set<SelectionKey> selectionKeys = SELECTOR.selectedKeys();
 				final Iterator<SelectionKey> iterator = selectionKeys.iterator();
 				while (iterator.hasNext()) {
 					final SelectionKey selectionKey = iterator.next();
 					iterator.remove(); // 移除已经取出来的信息
 					if (selectionKey.isValid() && selectionKey.isReadable()) {
-						final ByteBuffer buffer = ByteBuffer.allocate(SystemConfig.UDP_BUFFER_LENGTH);
-						// 单例客户端通道=服务端通道，TCP需要这样获取不同的通道。
-						// final DatagramChannel channel = (DatagramChannel) selectionKey.channel();
-						final InetSocketAddress socketAddress = (InetSocketAddress) this.channel.receive(buffer);
-						this.handler.handle(this.channel, buffer, socketAddress);
+						final UdpServer<?> server = (UdpServer<?>) selectionKey.attachment();
+						try {
+							server.receive();
+						} catch (Exception e) {
+							LOGGER.error("UDP Server消息接收异常：{}", server.name, e);
+						}
 					}
 				}
 			}
+		} catch (ClosedSelectorException e) {
+			LOGGER.debug("UDP Server Selector已经关闭", e);
 		} catch (Exception e) {
 			LOGGER.error("UDP Server消息接收异常", e);
 		}
 	}
 	
+	/**
+	 * <p>接收消息</p>
+	 * <p>读取通道中所有消息（最多{@linkplain #MAX_RECEIVE_SIZE 最大读取消息数量}）分配给处理线程</p>
+	 * 
+	 * @throws IOException IO异常
+	 */
+	private void receive() throws IOException {
+		final ByteBufferPool pool = ByteBufferPool.getInstance();
+		for (int index = 0; index < MAX_RECEIVE_SIZE; index++) {
+			final ByteBuffer buffer = pool.allocate(SystemConfig.UDP_BUFFER_LENGTH);
+			// 单例客户端通道=服务端通道，TCP需要这样获取不同的通道。
+			// final DatagramChannel channel = (DatagramChannel) selectionKey.channel();
+			final InetSocketAddress socketAddress;
+			try {
+				socketAddress = (InetSocketAddress) this.channel.receive(buffer);
+			} catch (IOException e) {
+				pool.release(buffer);
+				throw e;
+			}
+			if(socketAddress == null) { // 没有消息
+				pool.release(buffer);
+				break;
+			}
+			this.dispatch(buffer, socketAddress);
+		}
+	}
+	
+	/**
+	 * <p>分配消息</p>
+	 * <p>按照远程地址选择处理线程：保证同一个地址（UTP连接）的消息顺序</p>
+	 * <p>处理线程队列已满时丢弃消息</p>
+	 * 
+	 * @param buffer 消息
+	 * @param socketAddress 地址
+	 */
+	private void dispatch(ByteBuffer buffer, InetSocketAddress socketAddress) {
+		final ExecutorService worker = WORKERS[Math.floorMod(socketAddress.hashCode(), WORKER_SIZE)];
+		try {
+			worker.execute(() -> {
+				try {
+					this.handler.handle(this.channel, buffer, socketAddress);
+				} finally {
+					ByteBufferPool.getInstance().release(buffer);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			LOGGER.debug("UDP Server处理线程队列已满（丢弃消息）：{}", socketAddress);
+			ByteBufferPool.getInstance().release(buffer);
+		}
+	}
+	
 	/**
 	 * @return UDP通道
 	 */
@@ -243,8 +337,8 @@ public abstract class UdpServer<T extends UdpAcceptHandler> implements UdpChanne
 	 */
 	public void close() {
 		LOGGER.info("关闭UDP Server：{}", this.name);
+		// 关闭通道后取消注册
 		IoUtils.close(this.channel);
-		IoUtils.close(this.selector);
 	}
 	
 	/**
@@ -252,7 +346,11 @@ public abstract class UdpServer<T extends UdpAcceptHandler> implements UdpChanne
 	 */
 	public static final void shutdown() {
 		LOGGER.info("关闭UDP Server线程池");
+		IoUtils.close(SELECTOR);
 		SystemThreadContext.shutdown(EXECUTOR);
+		for (ExecutorService worker : WORKERS) {
+			SystemThreadContext.shutdown(worker);
+		}
 	}
 
 }
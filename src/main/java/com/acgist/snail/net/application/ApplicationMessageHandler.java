@@ -168,6 +168,7 @@ public final class ApplicationMessageHandler extends TcpMessageHandler implement
 	 * 	<dt>body：Map（B编码）</dt>
 	 * 	<dd>url：下载链接</dd>
 	 * 	<dd>files：种子文件选择列表（文件包含路径：snail/video/demo.mp4）</dd>
+	 * 	<dd>mirrors：镜像下载链接列表（可选：HTTP、FTP任务）</dd>
 	 * </dl>
 	 * 
 	 * @param message 系统消息
@@ -185,8 +186,11 @@ public final class ApplicationMessageHandler extends TcpMessageHandler implement
 			}
 			final String url = decoder.getString("url");
 			final String files = decoder.getString("files");
+			final List<String> mirrors = decoder.getList("mirrors").stream()
+				.map(value -> BEncodeDecoder.getString(value))
+				.collect(Collectors.toList());
 			TorrentEvent.getInstance().files(files); // 设置选择文件
-			DownloaderManager.getInstance().newTask(url); // 开始下载任务
+			DownloaderManager.getInstance().newTask(url, mirrors); // 开始下载任务
 			send(ApplicationMessage.response(ApplicationMessage.SUCCESS));
 		} catch (NetException | DownloadException e) {
 			LOGGER.debug("新建下载任务异常：{}", body, e);
@@ -5,6 +5,9 @@ import java.io.InputStream;
 import java.net.Socket;
 import java.time.Duration;
 import java.util.StringTokenizer;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
@@ -76,6 +79,14 @@ public final class FtpMessageHandler extends TcpMessageHandler implements IMessa
 	 * <p>等待命令执行响应</p>
 	 */
 	private final AtomicBoolean lock = new AtomicBoolean(false);
+	/**
+	 * <p>命令等待锁</p>
+	 */
+	private final Lock waitLock = new ReentrantLock();
+	/**
+	 * <p>命令响应条件</p>
+	 */
+	private final Condition responseCondition = this.waitLock.newCondition();
 	
 	public FtpMessageHandler() {
 		final var multilineMessageCodec = new MultilineMessageCodec(this, SPLIT, END_REGEX);
@@ -231,10 +242,13 @@ public final class FtpMessageHandler extends TcpMessageHandler implements IMessa
 	 */
 	public void lock() {
 		if(!this.lock.get()) {
-			synchronized (this.lock) {
+			this.waitLock.lock();
+			try {
 				if(!this.lock.get()) {
-					ThreadUtils.wait(this.lock, TIMEOUT);
+					ThreadUtils.await(this.responseCondition, TIMEOUT);
 				}
+			} finally {
+				this.waitLock.unlock();
 			}
 		}
 	}
@@ -243,9 +257,12 @@ public final class FtpMessageHandler extends TcpMessageHandler implements IMessa
 	 * <p>释放命令锁</p>
 	 */
 	private void unlock() {
-		synchronized (this.lock) {
+		this.waitLock.lock();
+		try {
 			this.lock.set(true);
-			this.lock.notifyAll();
+			this.responseCondition.signalAll();
+		} finally {
+			this.waitLock.unlock();
 		}
 	}
 
@@ -20,6 +20,7 @@ import java.security.cert.X509Certificate;
 import java.time.Duration;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
 
@@ -42,6 +43,8 @@ import com.acgist.snail.utils.UrlUtils;
 /**
  * <p>HTTP客户端</p>
  * <p>使用JDK内置HTTP客户端</p>
+ * <p>原生HTTP客户端按照连接超时时间缓存共享：复用连接池（Keep-Alive、HTTP/2多路复用）和TLS会话，避免每次请求重新握手。</p>
+ * <p>范围请求和并行下载{@linkplain #http1() 使用HTTP/1.1}：每个请求使用独立连接</p>
  * <p>配置参考：https://docs.oracle.com/javase/8/docs/technotes/guides/security/StandardNames.html</p>
  * 
  * @author acgist
@@ -103,10 +106,20 @@ public final class HTTPClient {
 	 * <p>HTTP客户端信息（User-Agent）</p>
 	 */
 	private static final String USER_AGENT;
+	/**
+	 * <p>HTTPS协议：{@value}</p>
+	 */
+	public static final String HTTPS_SCHEME = "https";
 	/**
 	 * <p>HTTP客户端线程池</p>
 	 */
 	private static final ExecutorService EXECUTOR = SystemThreadContext.newExecutor(2, 10, 1000, 60L, SystemThreadContext.SNAIL_THREAD_HTTP_CLIENT);
+	/**
+	 * <p>原生HTTP客户端缓存</p>
+	 * <p>key=超时时间（连接）</p>
+	 * <p>重定向等其他配置全部相同，超时时间只有几种，所以缓存数量很少。</p>
+	 */
+	private static final Map<Integer, HttpClient> CLIENTS = new ConcurrentHashMap<>();
 	
 	static {
 		final StringBuilder userAgentBuilder = new StringBuilder();
@@ -153,7 +166,7 @@ public final class HTTPClient {
 	
 	/**
 	 * <p>新建客户端</p>
-	 * <p>HTTP请求版本{@link Version#HTTP_1_1}</p>
+	 * <p>使用{@linkplain #getClient(int) 共享原生HTTP客户端}</p>
 	 * 
 	 * @param url 请求地址
 	 * @param connectTimeout 超时时间（连接），单位：秒
@@ -162,7 +175,7 @@ public final class HTTPClient {
 	 * @return HTTP客户端
 	 */
 	public static final HTTPClient newInstance(String url, int connectTimeout, int receiveTimeout) {
-		final HttpClient client = newClient(connectTimeout);
+		final HttpClient client = getClient(connectTimeout);
 		final Builder builder = newBuilder(url, receiveTimeout);
 		return new HTTPClient(client, builder);
 	}
@@ -189,6 +202,46 @@ public final class HTTPClient {
 		return this;
 	}
 
+	/**
+	 * <p>使用{@link Version#HTTP_1_1}</p>
+	 * <p>分段下载、镜像下载和Web种子同时发送多个请求：HTTP/2多路复用时所有请求共享一个TCP连接（拥塞窗口和流量控制窗口），HTTP/1.1每个正在执行的请求使用独立连接。</p>
+	 * 
+	 * @return 客户端
+	 */
+	public HTTPClient http1() {
+		this.builder.version(Version.HTTP_1_1);
+		return this;
+	}
+	
+	/**
+	 * <p>设置下载范围：开始位置到文件结束</p>
+	 * <p>范围请求{@linkplain #http1() 使用HTTP/1.1}</p>
+	 * 
+	 * @param begin 开始位置
+	 * 
+	 * @return 客户端
+	 * 
+	 * @see HttpHeaderWrapper#HEADER_RANGE
+	 */
+	public HTTPClient range(long begin) {
+		return this.http1().header(HttpHeaderWrapper.HEADER_RANGE, "bytes=" + begin + "-");
+	}
+	
+	/**
+	 * <p>设置下载范围</p>
+	 * <p>范围请求{@linkplain #http1() 使用HTTP/1.1}</p>
+	 * 
+	 * @param begin 开始位置（包含）
+	 * @param end 结束位置（不包含）
+	 * 
+	 * @return 客户端
+	 * 
+	 * @see HttpHeaderWrapper#HEADER_RANGE
+	 */
+	public HTTPClient range(long begin, long end) {
+		return this.http1().header(HttpHeaderWrapper.HEADER_RANGE, "bytes=" + begin + "-" + (end - 1));
+	}
+
 	/**
 	 * <p>执行GET请求</p>
 	 * 
@@ -434,8 +487,21 @@ public final class HTTPClient {
 		return response != null && statusCode.equalsCode(response.statusCode());
 	}
 	
+	/**
+	 * <p>获取共享原生HTTP客户端</p>
+	 * <p>相同超时时间（连接）的请求使用同一个客户端</p>
+	 * 
+	 * @param timeout 超时时间（连接），单位：秒
+	 * 
+	 * @return 原生HTTP客户端
+	 */
+	public static final HttpClient getClient(int timeout) {
+		return CLIENTS.computeIfAbsent(timeout, HTTPClient::newClient);
+	}
+	
 	/**
 	 * <p>新建原生HTTP客户端</p>
+	 * <p>HTTP请求版本{@link Version#HTTP_2}：服务器不支持时自动使用{@link Version#HTTP_1_1}</p>
 	 * <p>设置{@code sslContext}需要同时设置{@code sslParameters}才有效</p>
 	 * 
 	 * @param timeout 超时时间（连接），单位：秒
@@ -446,7 +512,7 @@ public final class HTTPClient {
 		return HttpClient
 			.newBuilder()
 			.executor(EXECUTOR) // 线程池
-			.version(Version.HTTP_1_1)
+			.version(Version.HTTP_2) // 协商失败使用HTTP/1.1
 			.followRedirects(Redirect.NORMAL) // 重定向：正常
 //			.followRedirects(Redirect.ALWAYS) // 重定向：全部
 //			.proxy(ProxySelector.getDefault()) // 代理
@@ -460,6 +526,7 @@ public final class HTTPClient {
 
 	/**
 	 * <p>新建请求Builder</p>
+	 * <p>HTTPS请求使用客户端版本（TLS ALPN协商HTTP/2）；HTTP请求使用{@link Version#HTTP_1_1}：明文升级（h2c）很少支持，并且部分服务器不能正确处理升级请求头。</p>
 	 * 
 	 * @param url 请求地址
 	 * @param timeout 超时时间（响应），单位：秒
@@ -467,12 +534,16 @@ public final class HTTPClient {
 	 * @return 请求Builder
 	 */
 	private static final Builder newBuilder(String url, int timeout) {
-		return HttpRequest
+		final URI uri = URI.create(url);
+		final Builder builder = HttpRequest
 			.newBuilder()
-			.uri(URI.create(url))
-			.version(Version.HTTP_1_1) // HTTP协议使用1.1版本：2.0版本没有普及
+			.uri(uri)
 			.timeout(Duration.ofSeconds(timeout))
 			.header("User-Agent", USER_AGENT);
+		if(!HTTPS_SCHEME.equalsIgnoreCase(uri.getScheme())) {
+			builder.version(Version.HTTP_1_1);
+		}
+		return builder;
 	}
 	
 	/**
@@ -493,7 +564,7 @@ public final class HTTPClient {
 //		});
 		// 不使用TLSv1.3：CPU占用过高
 		sslParameters.setProtocols(new String[] {"TLSv1.1", "TLSv1.2"});
-		// HTTP协议配置：newBuilder
+		// HTTP协议配置（ALPN）：客户端根据请求版本设置
 //		sslParameters.setApplicationProtocols(new String[] {"h2", "http/1.1"});
 		return sslParameters;
 	}
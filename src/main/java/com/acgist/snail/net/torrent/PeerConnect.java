@@ -1,25 +1,31 @@
 package com.acgist.snail.net.torrent;
 
-import java.time.Duration;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.acgist.snail.net.torrent.bootstrap.PiecePipeline;
 import com.acgist.snail.net.torrent.peer.bootstrap.PeerSubMessageHandler;
 import com.acgist.snail.pojo.bean.TorrentPiece;
 import com.acgist.snail.pojo.session.PeerConnectSession;
 import com.acgist.snail.pojo.session.PeerSession;
 import com.acgist.snail.pojo.session.TorrentSession;
+import com.acgist.snail.system.TimerWheel;
 import com.acgist.snail.utils.ObjectUtils;
-import com.acgist.snail.utils.ThreadUtils;
 
 /**
  * <p>Peer连接</p>
  * <p>连接：下载、上传（解除阻塞可以上传）</p>
  * <p>接入：上传、下载（解除阻塞可以下载）</p>
+ * <p>下载：根据{@linkplain PeerRequestWindow 请求窗口}保持一定数量的未完成请求，当前Piece请求发送完成后直接选择下一个Piece继续请求，不用等待当前Piece下载完成。</p>
+ * <p>同时下载多个Piece：根据{@linkplain #downloadMark() 下载评分}分配同时下载Piece数量，下载越快同时下载的Piece越多。</p>
+ * <p>下载由事件驱动（开始下载、收到数据、阻塞、解除阻塞、定时检查），不会占用线程等待数据响应：线程数量和Peer数量无关。</p>
+ * <p>下载完成的Piece提交到{@linkplain PiecePipeline 流水线}校验和保存，超时检查使用{@linkplain TimerWheel 时间轮}。</p>
  * 
  * @author acgist
  * @since 1.1.1
@@ -29,29 +35,24 @@ public abstract class PeerConnect {
 	private static final Logger LOGGER = LoggerFactory.getLogger(PeerConnect.class);
 
 	/**
-	 * <p>Piece每次请求SLICE数量</p>
-	 * <p>注：过大会导致UTP信号量阻塞</p>
-	 * 
-	 * TODO：根据速度优化
-	 */
-	private static final int SLICE_REQUEST_SIZE = 2;
-	/**
-	 * <p>最大等待请求最大数量</p>
-	 * <p>超过这个数量直接跳出下载</p>
+	 * <p>下载检查时间间隔（秒）</p>
+	 * <p>检查请求超时、Peer新增Piece</p>
 	 */
-	private static final int MAX_WAIT_SLICE_REQUEST_SIZE = 4;
+	private static final int CHECK_INTERVAL = 10;
 	/**
-	 * <p>SLICE请求等待时间</p>
+	 * <p>PICEC完成等待时间（秒）</p>
+	 * <p>超过时间没有收到数据：请求超时</p>
 	 */
-	private static final int SLICE_WAIT_TIME = 10;
+	private static final int PIECE_WAIT_TIME = 30;
 	/**
-	 * <p>PICEC完成等待时间</p>
+	 * <p>同时下载Piece最小数量：{@value}</p>
+	 * <p>当前Piece请求发送完成后可以选择下一个Piece</p>
 	 */
-	private static final int PIECE_WAIT_TIME = 30;
+	private static final int MIN_PIECE_SIZE = 2;
 	/**
-	 * <p>释放时等待时间</p>
+	 * <p>同时下载Piece最大数量：{@value}</p>
 	 */
-	private static final int RELEASE_WAIT_TIME = 4;
+	private static final int MAX_PIECE_SIZE = 16;
 	
 	/**
 	 * <p>是否已被评分</p>
@@ -66,10 +67,37 @@ public abstract class PeerConnect {
 	 * <p>是否下载</p>
 	 */
 	private volatile boolean downloading = false;
+	/**
+	 * <p>下载检查任务</p>
+	 * <p>使用请求锁</p>
+	 */
+	private TimerWheel.Timeout checkTimeout;
+	/**
+	 * <p>最后收到数据时间</p>
+	 */
+	private volatile long receiveTime;
+	/**
+	 * <p>未完成请求数量</p>
+	 * <p>使用请求锁</p>
+	 */
+	private int requestSize = 0;
 	/**
 	 * <p>当前下载Piece信息</p>
+	 * <p>使用请求锁：请求发送完成、下载没有完成的Piece</p>
+	 */
+	private final List<TorrentPiece> requestPieces = new ArrayList<>();
+	/**
+	 * <p>同时下载Piece数量</p>
+	 */
+	private volatile int pieceSize = MIN_PIECE_SIZE;
+	/**
+	 * <p>最近一次下载评分</p>
 	 */
-	private TorrentPiece downloadPiece;
+	private volatile long lastDownloadMark = 0L;
+	/**
+	 * <p>请求窗口</p>
+	 */
+	private final PeerRequestWindow requestWindow = PeerRequestWindow.newInstance(PeerRequestWindow.MAX_SIZE);
 	/**
 	 * <p>Peer上传评分</p>
 	 */
@@ -79,17 +107,15 @@ public abstract class PeerConnect {
 	 */
 	private final AtomicLong downloadMark = new AtomicLong(0);
 	/**
-	 * <p>Piece分片锁</p>
-	 */
-	private final AtomicInteger countLock = new AtomicInteger(0);
-	/**
-	 * <p>Peer释放锁</p>
+	 * <p>请求锁</p>
+	 * <p>未完成请求数量、当前下载Piece信息</p>
 	 */
-	private final AtomicBoolean releaseLock = new AtomicBoolean(false);
+	private final Object requestLock = new Object();
 	/**
-	 * <p>Piece完成锁</p>
+	 * <p>选择Piece使用的Piece位图</p>
+	 * <p>每次选择Piece时重复使用：使用时需要加锁</p>
 	 */
-	private final AtomicBoolean completeLock = new AtomicBoolean(false);
+	private final BitSet pickPieces = new BitSet();
 	/**
 	 * <p>Peer连接信息</p>
 	 */
@@ -204,7 +230,24 @@ public abstract class PeerConnect {
 	 * @return Peer下载评分
 	 */
 	public final long downloadMark() {
-		return this.downloadMark.getAndSet(0);
+		final long downloadMark = this.downloadMark.getAndSet(0);
+		this.lastDownloadMark = downloadMark;
+		return downloadMark;
+	}
+	
+	/**
+	 * <p>设置同时下载Piece数量</p>
+	 * <p>按照最近一次下载评分和最高下载评分的比例分配：{@linkplain #MIN_PIECE_SIZE 最小数量}-{@linkplain #MAX_PIECE_SIZE 最大数量}</p>
+	 * 
+	 * @param maxDownloadMark 所有Peer最高下载评分
+	 */
+	public final void pieceSize(long maxDownloadMark) {
+		if(maxDownloadMark <= 0L) {
+			this.pieceSize = MIN_PIECE_SIZE;
+			return;
+		}
+		final long downloadMark = Math.min(this.lastDownloadMark, maxDownloadMark);
+		this.pieceSize = MIN_PIECE_SIZE + (int) ((MAX_PIECE_SIZE - MIN_PIECE_SIZE) * downloadMark / maxDownloadMark);
 	}
 
 	/**
@@ -218,22 +261,34 @@ public abstract class PeerConnect {
 	
 	/**
 	 * <p>开始下载</p>
+	 * <p>已经开始下载：发送请求</p>
 	 */
 	public void download() {
-		if(!this.downloading) {
-			synchronized (this) {
-				if(!this.downloading) {
-					this.downloading = true;
-					this.torrentSession.submit(() -> {
-						requests();
-					});
-				}
+		synchronized (this.requestLock) {
+			if(!this.downloading) {
+				LOGGER.debug("开始请求下载：{}", this.peerSession);
+				this.downloading = true;
+				this.receiveTime = System.currentTimeMillis();
+				this.buildCheckTimeout();
 			}
 		}
+		this.request();
+	}
+	
+	/**
+	 * <p>阻塞</p>
+	 * <p>Peer阻塞后丢弃所有没有响应的请求：释放没有完成的Piece，然后使用快速允许Piece继续下载。</p>
+	 */
+	public final void choke() {
+		if(this.downloading) {
+			this.undonePieces();
+			this.request();
+		}
 	}
 	
 	/**
 	 * <p>保存Piece数据</p>
+	 * <p>Piece下载完成后提交到流水线校验和保存，然后继续发送请求。</p>
 	 * 
 	 * @param index Piece索引
 	 * @param begin Piece偏移
@@ -241,29 +296,33 @@ public abstract class PeerConnect {
 	 */
 	public final void piece(int index, int begin, byte[] bytes) {
 		// 数据不完整抛弃当前Piece：重新选择下载Piece
-		if(bytes == null || this.downloadPiece == null) {
-			return;
-		}
-		if(index != this.downloadPiece.getIndex()) {
-			LOGGER.warn("下载Piece索引和当前Piece索引不符：{}-{}", index, this.downloadPiece.getIndex());
+		if(bytes == null) {
 			return;
 		}
-		downloadMark(bytes.length); // 下载评分
-		// 请求数据下载完成：释放下载等待
-		synchronized (this.countLock) {
-			if (this.countLock.decrementAndGet() <= 0) {
-				this.countLock.notifyAll();
+		final TorrentPiece piece;
+		final boolean complete;
+		synchronized (this.requestLock) {
+			piece = this.requestPiece(index);
+			if(piece == null) {
+				// 超时、阻塞后收到的数据
+				LOGGER.debug("下载Piece索引不在当前下载Piece中：{}", index);
+				return;
+			}
+			if(this.requestSize > 0) {
+				this.requestSize--;
+			}
+			this.receiveTime = System.currentTimeMillis();
+			this.requestWindow.receive(index, begin, bytes.length);
+			downloadMark(bytes.length); // 下载评分
+			complete = piece.write(begin, bytes);
+			if(complete) {
+				this.requestPieces.remove(piece);
 			}
 		}
-		final boolean complete = this.downloadPiece.write(begin, bytes);
-		// 释放下载完成等待
 		if(complete) {
-			synchronized (this.completeLock) {
-				if (this.completeLock.getAndSet(true)) {
-					this.completeLock.notifyAll();
-				}
-			}
+			this.torrentSession.complete(this.peerSession, piece);
 		}
+		this.request();
 	}
 
 	/**
@@ -277,163 +336,243 @@ public abstract class PeerConnect {
 		this.peerSubMessageHandler.close();
 	}
 	
-	/**
-	 * <p>请求下载</p>
-	 * <p>跳出请求循环：设置完成状态、释放下载资源、完成检测、验证Piece状态</p>
-	 */
-	private void requests() {
-		LOGGER.debug("开始请求下载：{}", this.peerSession);
-		boolean ok = true;
-		while(ok) {
-			try {
-				ok = request();
-			} catch (Exception e) {
-				LOGGER.error("Peer请求异常", e);
-				ok = false;
-			}
-		}
-		this.completeLock.set(true);
-		this.releaseDownload();
-		this.torrentSession.checkCompletedAndDone();
-		// 验证最后选择的Piece是否下载完成
-		if(this.downloadPiece != null && !this.downloadPiece.complete()) {
-			this.undone();
-		}
-		LOGGER.debug("结束请求下载：{}", this.peerSession);
-	}
-	
 	/**
 	 * <p>请求数据</p>
-	 * <p>每次发送{@linkplain #SLICE_REQUEST_SIZE 固定数量}请求，然后进入等待，当全部数据响应后，又开始发送请求，直到Piece下载完成。</p>
-	 * <p>请求发送完成后必须进入完成等待</p>
-	 * <p>请求等待队列数量超过{@linkplain #MAX_WAIT_SLICE_REQUEST_SIZE 最大等待数量}时跳出循环</p>
-	 * 
-	 * @return 是否可以继续下载
+	 * <p>发送请求直到未完成请求数量达到{@linkplain PeerRequestWindow#size() 窗口大小}</p>
+	 * <p>没有匹配Piece下载：发送不感兴趣消息、结束下载</p>
 	 */
-	private boolean request() {
+	private void request() {
+		if(!this.downloading) {
+			return;
+		}
 		if(!available()) {
-			return false;
+			this.end();
+			return;
 		}
 		if(!this.torrentSession.downloadable()) {
 			LOGGER.debug("释放Peer：任务不可下载");
-			return false;
+			this.end();
+			return;
+		}
+		// UTP发送窗口较小：限制请求数量
+		if(this.peerSubMessageHandler.utp()) {
+			this.requestWindow.maxSize(Math.min(this.peerSession.reqq(), PeerRequestWindow.MAX_UTP_SIZE));
+		} else {
+			this.requestWindow.maxSize(this.peerSession.reqq());
 		}
-		this.pick(); // 挑选Piece
-		if(this.downloadPiece == null) {
+		this.requestPieces();
+		final boolean empty;
+		synchronized (this.requestLock) {
+			empty = this.downloading && this.requestPieces.isEmpty();
+		}
+		if(empty) {
 			LOGGER.debug("释放Peer：没有匹配Piece下载");
 			this.peerSubMessageHandler.notInterested(); // 发送不感兴趣消息
-			return false;
+			this.end();
 		}
-		final int index = this.downloadPiece.getIndex();
-		final var sliceAwaitTime = Duration.ofSeconds(SLICE_WAIT_TIME);
-		while(available()) {
-			if (this.countLock.get() >= SLICE_REQUEST_SIZE) {
-				synchronized (this.countLock) {
-					ThreadUtils.wait(this.countLock, sliceAwaitTime);
-					// 等待slice数量超过最大等待数量跳出循环
-					if (this.countLock.get() >= MAX_WAIT_SLICE_REQUEST_SIZE) {
-						LOGGER.debug("请求数量超过最大等待数量：{}-{}", this.downloadPiece.getIndex(), this.countLock.get());
-						break;
-					}
-				}
+	}
+	
+	/**
+	 * <p>设置下载检查任务</p>
+	 * <p>使用请求锁</p>
+	 */
+	private void buildCheckTimeout() {
+		// 时间轮线程不能阻塞：检查任务提交到任务线程池
+		this.checkTimeout = TimerWheel.getInstance().timeout(CHECK_INTERVAL, TimeUnit.SECONDS, () -> this.torrentSession.submit(this::check));
+	}
+	
+	/**
+	 * <p>下载检查</p>
+	 * <p>超过{@linkplain #PIECE_WAIT_TIME 完成等待时间}没有收到数据：释放没有完成Piece、窗口减半</p>
+	 * <p>检查完成后继续发送请求：Peer可能新增Piece</p>
+	 */
+	private void check() {
+		final boolean timeout;
+		synchronized (this.requestLock) {
+			if(!this.downloading) {
+				return;
 			}
-			this.countLock.incrementAndGet();
-			final int begin = this.downloadPiece.position();
-			final int length = this.downloadPiece.length(); // 顺序不能调换
-			this.peerSubMessageHandler.request(index, begin, length);
-			// 是否还有更多SLICE
-			if(!this.downloadPiece.haveMoreSlice()) {
-				break;
+			timeout = !this.requestPieces.isEmpty() && System.currentTimeMillis() - this.receiveTime >= PIECE_WAIT_TIME * 1000L;
+		}
+		if(timeout) {
+			LOGGER.debug("Piece请求超时：{}-{}", this.peerSession, this.requestWindow);
+			this.requestWindow.timeout();
+			this.undonePieces();
+		}
+		this.request();
+		synchronized (this.requestLock) {
+			if(this.downloading) {
+				this.buildCheckTimeout();
 			}
 		}
-		/*
-		 * <p>此处不论是否有数据返回都需要进行结束等待，防止数据小于{@link #SLICE_REQUEST_SIZE}个slice时直接跳出了slice wait（countLock）导致响应还没有收到就直接结束了。</p>
-		 */
-		synchronized (this.completeLock) {
-			if(!this.completeLock.getAndSet(true)) {
-				ThreadUtils.wait(this.completeLock, Duration.ofSeconds(PIECE_WAIT_TIME));
+	}
+	
+	/**
+	 * <p>结束下载</p>
+	 * <p>取消下载检查、释放没有完成Piece</p>
+	 */
+	private void end() {
+		synchronized (this.requestLock) {
+			if(!this.downloading) {
+				return;
+			}
+			this.downloading = false;
+			if(this.checkTimeout != null) {
+				this.checkTimeout.cancel();
+				this.checkTimeout = null;
 			}
 		}
-		// 如果已经释放：释放释放锁
-		if(this.releaseLock.get()) {
-			synchronized (this.releaseLock) {
-				if(this.releaseLock.getAndSet(true)) {
-					this.releaseLock.notifyAll();
+		this.undonePieces();
+		LOGGER.debug("结束请求下载：{}", this.peerSession);
+	}
+	
+	/**
+	 * <p>发送请求</p>
+	 * <p>当前Piece请求发送完成后选择下一个Piece</p>
+	 * <p>多个事件可能同时发送请求：Piece偏移和未完成请求数量必须加锁修改</p>
+	 */
+	private void requestPieces() {
+		while(this.downloading && available()) {
+			TorrentPiece piece;
+			synchronized (this.requestLock) {
+				if(this.requestSize >= this.requestWindow.size()) {
+					return;
+				}
+				piece = this.requestPiece();
+				// 同时下载Piece数量达到限制：等待Piece下载完成
+				if(piece == null && this.requestPieces.size() >= this.pieceSize) {
+					return;
+				}
+				// 流水线已满：等待Piece保存完成
+				if(piece == null && this.torrentSession.pipelineFull()) {
+					return;
+				}
+			}
+			if(piece == null) {
+				piece = this.pick(); // 挑选Piece
+				if(piece == null) {
+					return;
+				}
+				synchronized (this.requestLock) {
+					if(this.downloading) {
+						this.requestPieces.add(piece);
+					} else {
+						piece = null;
+					}
+				}
+				if(piece == null) {
+					return;
+				}
+			}
+			final int index = piece.getIndex();
+			final int begin;
+			final int length;
+			synchronized (this.requestLock) {
+				if(!piece.haveMoreSlice() || this.requestSize >= this.requestWindow.size()) {
+					continue;
+				}
+				begin = piece.position();
+				length = piece.length(); // 顺序不能调换
+				if(this.requestSize++ == 0) {
+					this.receiveTime = System.currentTimeMillis();
 				}
 			}
+			this.requestWindow.request(index, begin);
+			this.peerSubMessageHandler.request(index, begin, length);
 		}
-		return true;
 	}
 	
 	/**
-	 * <p>选择下载Piece</p>
-	 * <p>如果上个Piece没有完成：标记失败</p>
-	 */
-	private void pick() {
-		if(this.downloadPiece == null) { // 没有Piece
-		} else if(this.downloadPiece.complete()) { // 下载完成
-			// 验证数据
-			if(this.downloadPiece.verify()) {
-				// 保存数据
-				final boolean ok = this.torrentSession.write(this.downloadPiece);
-				if(ok) {
-					// 统计下载数据
-					this.peerSession.download(this.downloadPiece.getLength());
-				} else {
-					LOGGER.debug("Piece保存失败：{}", this.downloadPiece.getIndex());
-					this.undone();
-				}
-			} else {
-				LOGGER.warn("Piece校验失败：{}", this.downloadPiece.getIndex());
-				this.peerSession.badPieces(this.downloadPiece.getIndex());
-				this.undone();
+	 * <p>获取还有SLICE没有请求的Piece</p>
+	 * <p>使用请求锁</p>
+	 * 
+	 * @return Piece
+	 */
+	private TorrentPiece requestPiece() {
+		for (TorrentPiece piece : this.requestPieces) {
+			if(piece.haveMoreSlice()) {
+				return piece;
 			}
-		} else { // Piece没有下载完成
-			LOGGER.debug("Piece没有下载完成：{}", this.downloadPiece.getIndex());
-			this.undone();
 		}
-		// 挑选Piece
+		return null;
+	}
+	
+	/**
+	 * <p>获取当前下载Piece</p>
+	 * <p>使用请求锁</p>
+	 * 
+	 * @param index Piece索引
+	 * 
+	 * @return Piece
+	 */
+	private TorrentPiece requestPiece(int index) {
+		for (TorrentPiece piece : this.requestPieces) {
+			if(piece.getIndex() == index) {
+				return piece;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * <p>释放所有没有完成的Piece</p>
+	 * <p>清空当前下载Piece、重置未完成请求数量、取消请求窗口采样</p>
+	 */
+	private void undonePieces() {
+		final List<TorrentPiece> pieces;
+		synchronized (this.requestLock) {
+			pieces = new ArrayList<>(this.requestPieces);
+			this.requestPieces.clear();
+			this.requestSize = 0;
+			this.requestWindow.cancel();
+		}
+		for (TorrentPiece piece : pieces) {
+			LOGGER.debug("Piece没有下载完成：{}", piece.getIndex());
+			this.undone(piece);
+		}
+	}
+	
+	/**
+	 * <p>选择下载Piece</p>
+	 * 
+	 * @return 下载Piece：{@code null}-没有匹配Piece
+	 */
+	private TorrentPiece pick() {
+		final TorrentPiece piece;
 		if(this.peerConnectSession.isPeerUnchoked()) { // 解除阻塞
 			LOGGER.debug("选择下载Piece：解除阻塞");
-			this.downloadPiece = this.torrentSession.pick(this.peerSession.availablePieces(), this.peerSession.suggestPieces());
+			synchronized (this.pickPieces) {
+				piece = this.torrentSession.pick(this.peerSession.availablePieces(this.pickPieces), this.peerSession.suggestPieces());
+			}
 		} else { // 快速允许
 			LOGGER.debug("选择下载Piece：快速允许");
-			this.downloadPiece = this.torrentSession.pick(this.peerSession.allowedPieces(), this.peerSession.allowedPieces());
+			piece = this.torrentSession.pick(this.peerSession.allowedPieces(), this.peerSession.allowedPieces());
 		}
-		if(this.downloadPiece != null) {
-			LOGGER.debug("选取Piece：{}-{}-{}", this.downloadPiece.getIndex(), this.downloadPiece.getBegin(), this.downloadPiece.getEnd());
+		if(piece != null) {
+			LOGGER.debug("选取Piece：{}-{}-{}", piece.getIndex(), piece.getBegin(), piece.getEnd());
 		}
-		// 设置状态
-		this.countLock.set(0);
-		this.completeLock.set(false);
+		return piece;
 	}
 	
 	/**
 	 * <p>下载失败</p>
+	 * 
+	 * @param piece Piece
 	 */
-	private void undone() {
-		LOGGER.debug("Piece下载失败：{}", this.downloadPiece.getIndex());
-		this.torrentSession.undone(this.downloadPiece);
+	private void undone(TorrentPiece piece) {
+		LOGGER.debug("Piece下载失败：{}", piece.getIndex());
+		this.torrentSession.undone(piece);
 	}
 	
 	/**
 	 * <p>PeerConnect释放下载</p>
+	 * <p>不用等待没有响应的请求：释放没有完成的Piece，下载完成的Piece继续校验保存。</p>
 	 */
 	protected final void releaseDownload() {
 		try {
 			if(this.downloading) {
 				LOGGER.debug("PeerConnect释放下载：{}-{}", this.peerSession.host(), this.peerSession.port());
-				this.downloading = false;
-				// 没有完成：等待下载完成
-				if(!this.completeLock.get()) {
-					if(!this.releaseLock.get()) {
-						synchronized (this.releaseLock) {
-							if(!this.releaseLock.getAndSet(true)) {
-								ThreadUtils.wait(this.releaseLock, Duration.ofSeconds(RELEASE_WAIT_TIME));
-							}
-						}
-					}
-				}
+				this.end();
 			}
 		} catch (Exception e) {
 			LOGGER.error("PeerConnect释放下载异常", e);
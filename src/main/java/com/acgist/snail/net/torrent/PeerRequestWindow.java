@@ -0,0 +1,216 @@
+package com.acgist.snail.net.torrent;
+
+import com.acgist.snail.pojo.bean.TorrentPiece;
+import com.acgist.snail.utils.ObjectUtils;
+
+/**
+ * <p>Peer请求窗口</p>
+ * <p>限制Peer同时发送请求（未响应的SLICE请求）的数量</p>
+ * <p>窗口大小 = 下载速度 * 往返时间 * {@linkplain #QUEUE_FACTOR 队列系数} / SLICE大小</p>
+ * <p>下载速度受窗口限制时窗口每个统计周期成倍增长（慢启动），达到Peer上传带宽后下载速度不再增长，窗口稳定在带宽时延积的{@linkplain #QUEUE_FACTOR 队列系数}倍。</p>
+ * <p>往返时间使用统计周期内的最小值：请求排队时间会随着窗口变大，使用平均值会导致窗口无限增长。</p>
+ * <p>窗口最大值：Peer支持的未完成请求数量（reqq）和{@linkplain #MAX_SIZE 最大窗口}中的最小值</p>
+ * <p>丢弃没有响应的请求（超时、阻塞、结束下载）时必须取消采样：否则采样请求不会再收到响应，往返时间不再更新。</p>
+ * 
+ * @author acgist
+ * @since 1.3.0
+ */
+public final class PeerRequestWindow {
+
+	/**
+	 * <p>最小窗口：{@value}</p>
+	 */
+	public static final int MIN_SIZE = 2;
+	/**
+	 * <p>最大窗口：{@value}</p>
+	 */
+	public static final int MAX_SIZE = 256;
+	/**
+	 * <p>UTP最大窗口：{@value}</p>
+	 * <p>UTP发送窗口较小，请求过多会导致信号量阻塞。</p>
+	 */
+	public static final int MAX_UTP_SIZE = 16;
+	/**
+	 * <p>队列系数：{@value}</p>
+	 */
+	private static final int QUEUE_FACTOR = 2;
+	/**
+	 * <p>统计周期（毫秒）：{@value}</p>
+	 */
+	private static final long STATISTICS_INTERVAL = 1000L;
+	/**
+	 * <p>往返时间统计周期数量：{@value}</p>
+	 * <p>超过周期数量后重新统计最小往返时间：防止网络变化后一直使用旧的往返时间</p>
+	 */
+	private static final int RTT_INTERVAL_SIZE = 10;
+
+	/**
+	 * <p>窗口大小</p>
+	 */
+	private volatile int size;
+	/**
+	 * <p>窗口最大值</p>
+	 */
+	private volatile int maxSize;
+	/**
+	 * <p>往返时间（毫秒）</p>
+	 * <p>{@code 0}-没有统计</p>
+	 */
+	private long rtt;
+	/**
+	 * <p>当前周期最小往返时间（毫秒）</p>
+	 */
+	private long periodRtt;
+	/**
+	 * <p>当前往返时间统计周期数量</p>
+	 */
+	private int rttIntervalSize;
+	/**
+	 * <p>采样请求Piece索引</p>
+	 * <p>同时只采样一个请求：{@code -1}-没有采样</p>
+	 */
+	private int sampleIndex;
+	/**
+	 * <p>采样请求Piece偏移</p>
+	 */
+	private int sampleBegin;
+	/**
+	 * <p>采样请求发送时间</p>
+	 */
+	private long sampleTime;
+	/**
+	 * <p>下载速度（字节/秒）</p>
+	 */
+	private long speed;
+	/**
+	 * <p>当前统计周期下载大小</p>
+	 */
+	private long receiveSize;
+	/**
+	 * <p>当前统计周期开始时间</p>
+	 */
+	private long receiveTime;
+
+	private PeerRequestWindow(int maxSize) {
+		this.size = MIN_SIZE;
+		this.maxSize = Math.max(MIN_SIZE, maxSize);
+		this.sampleIndex = -1;
+		this.receiveTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * <p>创建请求窗口</p>
+	 * 
+	 * @param maxSize 窗口最大值
+	 * 
+	 * @return 请求窗口
+	 */
+	public static final PeerRequestWindow newInstance(int maxSize) {
+		return new PeerRequestWindow(Math.min(maxSize, MAX_SIZE));
+	}
+
+	/**
+	 * <p>获取窗口大小</p>
+	 * 
+	 * @return 窗口大小
+	 */
+	public int size() {
+		return Math.min(this.size, this.maxSize);
+	}
+
+	/**
+	 * <p>设置窗口最大值</p>
+	 * <p>收到Peer支持的未完成请求数量（reqq）后设置</p>
+	 * 
+	 * @param maxSize 窗口最大值
+	 */
+	public void maxSize(int maxSize) {
+		this.maxSize = Math.max(MIN_SIZE, Math.min(maxSize, MAX_SIZE));
+	}
+
+	/**
+	 * <p>发送请求</p>
+	 * <p>没有采样请求时采样当前请求</p>
+	 * 
+	 * @param index Piece索引
+	 * @param begin Piece偏移
+	 */
+	public synchronized void request(int index, int begin) {
+		if(this.sampleIndex < 0) {
+			this.sampleIndex = index;
+			this.sampleBegin = begin;
+			this.sampleTime = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * <p>收到数据</p>
+	 * <p>统计往返时间和下载速度，统计周期结束后计算窗口大小。</p>
+	 * 
+	 * @param index Piece索引
+	 * @param begin Piece偏移
+	 * @param length 数据长度
+	 */
+	public synchronized void receive(int index, int begin, int length) {
+		final long now = System.currentTimeMillis();
+		if(this.sampleIndex == index && this.sampleBegin == begin) {
+			final long sampleRtt = Math.max(1L, now - this.sampleTime);
+			if(this.periodRtt == 0 || sampleRtt < this.periodRtt) {
+				this.periodRtt = sampleRtt;
+			}
+			if(this.rtt == 0 || sampleRtt < this.rtt) {
+				this.rtt = sampleRtt;
+			}
+			this.sampleIndex = -1;
+		}
+		this.receiveSize += length;
+		final long interval = now - this.receiveTime;
+		if(interval >= STATISTICS_INTERVAL) {
+			this.speed = this.receiveSize * 1000 / interval;
+			this.receiveSize = 0;
+			this.receiveTime = now;
+			if(++this.rttIntervalSize >= RTT_INTERVAL_SIZE && this.periodRtt > 0) {
+				this.rtt = this.periodRtt;
+				this.periodRtt = 0;
+				this.rttIntervalSize = 0;
+			}
+			this.buildSize();
+		}
+	}
+
+	/**
+	 * <p>请求超时</p>
+	 * <p>窗口减半、取消采样</p>
+	 */
+	public synchronized void timeout() {
+		this.size = Math.max(MIN_SIZE, this.size / 2);
+		this.sampleIndex = -1;
+	}
+
+	/**
+	 * <p>取消请求</p>
+	 * <p>丢弃所有没有响应的请求：取消采样</p>
+	 */
+	public synchronized void cancel() {
+		this.sampleIndex = -1;
+	}
+
+	/**
+	 * <p>计算窗口大小</p>
+	 */
+	private void buildSize() {
+		if(this.rtt <= 0) {
+			return;
+		}
+		// 带宽时延积（字节）
+		final long bdp = this.speed * this.rtt / 1000;
+		final long size = (bdp * QUEUE_FACTOR + TorrentPiece.SLICE_LENGTH - 1) / TorrentPiece.SLICE_LENGTH;
+		this.size = (int) Math.max(MIN_SIZE, Math.min(size, this.maxSize));
+	}
+
+	@Override
+	public String toString() {
+		return ObjectUtils.toString(this, this.size(), this.rtt, this.speed);
+	}
+
+}
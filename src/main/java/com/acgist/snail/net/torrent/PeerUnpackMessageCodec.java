@@ -3,6 +3,7 @@ package com.acgist.snail.net.torrent;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 
+import com.acgist.snail.net.ByteBufferPool;
 import com.acgist.snail.net.codec.MessageCodec;
 import com.acgist.snail.net.torrent.peer.bootstrap.PeerSubMessageHandler;
 import com.acgist.snail.system.config.PeerConfig;
@@ -11,6 +12,8 @@ import com.acgist.snail.system.exception.PacketSizeException;
 
 /**
  * <p>Peer消息处理器：拆包</p>
+ * <p>完整消息直接从读取缓冲中切片（不复制数据），不完整消息使用{@linkplain ByteBufferPool 缓冲池}缓冲拼接。</p>
+ * <p>注意：切片消息和读取缓冲共享数据，后续处理器不能保存消息缓冲。</p>
  * 
  * TODO：握手消息匹配协议名称
  * 
@@ -26,7 +29,7 @@ public final class PeerUnpackMessageCodec extends MessageCodec<ByteBuffer, ByteB
 	
 	/**
 	 * <p>消息缓存</p>
-	 * <p>处理消息没有接收完整的情况</p>
+	 * <p>处理消息没有接收完整的情况：{@code limit}等于消息长度</p>
 	 */
 	private ByteBuffer buffer;
 	/**
@@ -76,32 +79,56 @@ public final class PeerUnpackMessageCodec extends MessageCodec<ByteBuffer, ByteB
 					}
 				}
 				PacketSizeException.verify(length);
-				this.buffer = ByteBuffer.allocate(length);
-			} else {
-				// 上次消息没有读取完成：计算剩余消息数据长度
-				length = this.buffer.capacity() - this.buffer.position();
+				// 包含完整消息：直接切片
+				if(buffer.remaining() >= length) {
+					this.doNext(this.slice(buffer, length), address, haveAddress);
+					if(buffer.hasRemaining()) {
+						continue;
+					} else {
+						break;
+					}
+				}
+				this.buffer = ByteBufferPool.getInstance().allocate(length);
 			}
+			// 上次消息没有读取完成：计算剩余消息数据长度
+			length = this.buffer.remaining();
 			final int remaining = buffer.remaining();
-			if(remaining > length) { // 包含一条完整消息：处理完成后继续读取
-				final byte[] bytes = new byte[length];
-				buffer.get(bytes);
-				this.buffer.put(bytes);
-				this.doNext(this.buffer, address, haveAddress);
-				this.buffer = null;
-			} else if(remaining == length) { // 刚好一条完整消息：处理完成后跳出循环
-				final byte[] bytes = new byte[length];
-				buffer.get(bytes);
-				this.buffer.put(bytes);
-				this.doNext(this.buffer, address, haveAddress);
+			if(remaining >= length) { // 包含剩余消息：处理完成后继续读取
+				this.buffer.put(this.slice(buffer, length).flip());
+				final ByteBuffer message = this.buffer;
 				this.buffer = null;
-				break;
-			} else if(remaining < length) { // 不是一条完整消息：跳出循环等待后续数据
-				final byte[] bytes = new byte[remaining];
-				buffer.get(bytes);
-				this.buffer.put(bytes);
+				try {
+					this.doNext(message, address, haveAddress);
+				} finally {
+					// 处理异常也要归还缓冲
+					ByteBufferPool.getInstance().release(message);
+				}
+				if(!buffer.hasRemaining()) {
+					break;
+				}
+			} else { // 不是一条完整消息：跳出循环等待后续数据
+				this.buffer.put(buffer);
 				break;
 			}
 		}
 	}
+	
+	/**
+	 * <p>切片消息</p>
+	 * <p>切片位置等于消息长度：和复制消息状态一致（使用前需要{@code flip}）</p>
+	 * 
+	 * @param buffer 读取缓冲
+	 * @param length 消息长度
+	 * 
+	 * @return 消息
+	 */
+	private ByteBuffer slice(ByteBuffer buffer, int length) {
+		final int limit = buffer.limit();
+		final int position = buffer.position() + length;
+		buffer.limit(position);
+		final ByteBuffer message = buffer.slice();
+		buffer.limit(limit).position(position);
+		return message.position(length);
+	}
 
 }
@@ -7,17 +7,15 @@ import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.acgist.snail.net.torrent.dht.DhtClient;
-import com.acgist.snail.net.torrent.dht.bootstrap.NodeManager;
+import com.acgist.snail.net.torrent.dht.bootstrap.DhtLookup;
 import com.acgist.snail.pojo.bean.InfoHash;
-import com.acgist.snail.pojo.session.NodeSession;
 import com.acgist.snail.pojo.session.TorrentSession;
-import com.acgist.snail.utils.CollectionUtils;
+import com.acgist.snail.system.config.DhtConfig.QType;
 import com.acgist.snail.utils.NetUtils;
 
 /**
  * <p>DHT任务</p>
- * <p>定时使用系统最近的DHT节点和{@link #peerNodes}查询Peer</p>
+ * <p>定时使用系统最近的DHT节点和{@link #peerNodes}{@linkplain DhtLookup 迭代查找}Peer</p>
  * 
  * @author acgist
  * @since 1.0.0
@@ -32,7 +30,7 @@ public final class DhtLauncher implements Runnable {
 	private final InfoHash infoHash;
 	/**
 	 * <p>客户端节点队列</p>
-	 * <p>如果连接的Peer支持DHT，将该Peer放入到队列，下次查询时使用并加入到系统节点。</p>
+	 * <p>如果连接的Peer支持DHT，将该Peer放入到队列，下次查询时使用，响应后加入到系统节点。</p>
 	 */
 	private final List<InetSocketAddress> peerNodes = new ArrayList<>();
 	
@@ -53,9 +51,7 @@ public final class DhtLauncher implements Runnable {
 			this.peerNodes.clear(); // 清空节点信息
 		}
 		try {
-			joinSystemNodes(nodes);
-			final var list = pick(nodes);
-			findPeers(list);
+			DhtLookup.newInstance(QType.GET_PEERS, this.infoHash.infoHash()).lookup(nodes);
 		} catch (Exception e) {
 			LOGGER.error("执行DHT定时任务异常", e);
 		}
@@ -72,56 +68,5 @@ public final class DhtLauncher implements Runnable {
 			this.peerNodes.add(NetUtils.buildSocketAddress(host, port));
 		}
 	}
-
-	/**
-	 * <p>将客户端节点队列中的DHT节点加入系统节点</p>
-	 * 
-	 * @param peerNodes 客户端节点队列
-	 */
-	private void joinSystemNodes(List<InetSocketAddress> peerNodes) {
-		if(CollectionUtils.isNotEmpty(peerNodes)) {
-			peerNodes.forEach(address -> {
-				NodeManager.getInstance().newNodeSession(address.getHostString(), address.getPort());
-			});
-		}
-	}
-	
-	/**
-	 * <p>挑选DHT节点</p>
-	 * 
-	 * @param peerNodes 客户端节点队列
-	 * 
-	 * @return DHT节点
-	 */
-	private List<InetSocketAddress> pick(List<InetSocketAddress> peerNodes) {
-		final List<InetSocketAddress> nodes = new ArrayList<>();
-		// 客户端节点
-		if(CollectionUtils.isNotEmpty(peerNodes)) {
-			nodes.addAll(peerNodes);
-		}
-		// 系统节点
-		final var systemNodes = NodeManager.getInstance().findNode(this.infoHash.infoHash());
-		if(CollectionUtils.isNotEmpty(systemNodes)) {
-			for (NodeSession node : systemNodes) {
-				nodes.add(NetUtils.buildSocketAddress(node.getHost(), node.getPort()));
-			}
-		}
-		return nodes;
-	}
-	
-	/**
-	 * <p>使用DHT节点查询Peer</p>
-	 * 
-	 * @param list DHT节点
-	 */
-	private void findPeers(List<InetSocketAddress> list) {
-		if(CollectionUtils.isEmpty(list)) {
-			return;
-		}
-		for (InetSocketAddress socketAddress : list) {
-			final DhtClient client = DhtClient.newInstance(socketAddress);
-			client.getPeers(this.infoHash.infoHash());
-		}
-	}
 	
 }
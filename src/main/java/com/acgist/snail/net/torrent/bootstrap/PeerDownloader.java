@@ -1,5 +1,7 @@
 package com.acgist.snail.net.torrent.bootstrap;
 
+import java.util.function.Consumer;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -32,46 +34,76 @@ public final class PeerDownloader extends PeerConnect {
 	
 	/**
 	 * <p>握手</p>
-	 * <p>建立连接、发送握手</p>
+	 * <p>异步建立连接、发送握手，完成后执行回调。</p>
+	 * <p>发送握手消息可能等待加密握手，使用任务线程池执行：防止阻塞事件循环线程</p>
 	 * 
-	 * @return 是否握手成功
+	 * @param callback 握手回调：{@code true}-握手成功；{@code false}-握手失败；
 	 */
-	public boolean handshake() {
-		final boolean ok = connect();
-		if(ok) {
-			this.peerSubMessageHandler.handshake(this); // 发送握手消息
-		} else {
-			this.peerSession.fail(); // 记录失败次数
-		}
-		this.available = ok;
-		return ok;
+	public void handshake(Consumer<Boolean> callback) {
+		this.connect(ok -> {
+			if(ok) {
+				this.submit(() -> {
+					this.peerSubMessageHandler.handshake(this); // 发送握手消息
+					this.available = true;
+					callback.accept(true);
+				}, fail -> {
+					// 任务暂停：关闭已经建立的连接
+					this.peerSubMessageHandler.close();
+					callback.accept(false);
+				});
+			} else {
+				this.peerSession.fail(); // 记录失败次数
+				this.available = false;
+				callback.accept(false);
+			}
+		});
 	}
 	
 	/**
 	 * <p>建立连接</p>
 	 * <p>优先直接使用TCP/UTP进行连接，如果连接失败使用holepunch协议重连。</p>
+	 * <p>TCP连接不会阻塞线程；UTP连接和重连会阻塞线程，使用任务线程池执行。</p>
 	 * 
-	 * @return 是否连接成功
+	 * @param callback 连接回调
 	 */
-	private boolean connect() {
+	private void connect(Consumer<Boolean> callback) {
 		if(this.peerSession.utp()) {
 			LOGGER.debug("Peer连接（uTP）：{}-{}", this.peerSession.host(), this.peerSession.port());
-			final UtpClient utpClient = UtpClient.newInstance(this.peerSession, this.peerSubMessageHandler);
-			final boolean utpOk = utpClient.connect();
-			if(utpOk) {
-				return utpOk;
-			} else {
-				return this.holepunchConnect(false);
-			}
+			this.submit(() -> {
+				final UtpClient utpClient = UtpClient.newInstance(this.peerSession, this.peerSubMessageHandler);
+				final boolean utpOk = utpClient.connect();
+				if(utpOk) {
+					callback.accept(utpOk);
+				} else {
+					callback.accept(this.holepunchConnect(false));
+				}
+			}, callback);
 		} else {
 			LOGGER.debug("Peer连接（TCP）：{}-{}", this.peerSession.host(), this.peerSession.port());
 			final PeerClient peerClient = PeerClient.newInstance(this.peerSession, this.peerSubMessageHandler);
-			final boolean tcpOk = peerClient.connect();
-			if(tcpOk) {
-				return tcpOk;
-			} else {
-				return this.holepunchConnect(true);
-			}
+			peerClient.connect(tcpOk -> {
+				if(tcpOk) {
+					callback.accept(tcpOk);
+				} else {
+					this.submit(() -> callback.accept(this.holepunchConnect(true)), callback);
+				}
+			});
+		}
+	}
+
+	/**
+	 * <p>使用任务线程池执行连接</p>
+	 * <p>任务线程池关闭（任务暂停）时直接执行连接失败回调</p>
+	 * 
+	 * @param runnable 连接任务
+	 * @param callback 连接回调
+	 */
+	private void submit(Runnable runnable, Consumer<Boolean> callback) {
+		try {
+			this.torrentSession.submit(runnable);
+		} catch (Exception e) {
+			LOGGER.debug("Peer连接任务提交失败", e);
+			callback.accept(false);
 		}
 	}
 
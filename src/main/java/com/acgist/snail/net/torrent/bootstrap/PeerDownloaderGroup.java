@@ -1,13 +1,14 @@
 package com.acgist.snail.net.torrent.bootstrap;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.Semaphore;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.acgist.snail.net.torrent.peer.bootstrap.PeerConnectManager;
 import com.acgist.snail.net.torrent.peer.bootstrap.PeerManager;
 import com.acgist.snail.pojo.session.PeerSession;
 import com.acgist.snail.pojo.session.TorrentSession;
@@ -20,7 +21,7 @@ import com.acgist.snail.utils.ThreadUtils;
  * <p>PeerDownloader组</p>
  * <dl>
  * 	<dt>管理PeerDownloader</dt>
- * 	<dd>创建PeerDownloader</dd>
+ * 	<dd>创建PeerDownloader：异步连接，连接完成后继续创建，直到Peer数量足够。</dd>
  * 	<dd>剔除劣质PeerDownloader</dd>
  * </dl>
  * 
@@ -32,10 +33,10 @@ public final class PeerDownloaderGroup {
 	private static final Logger LOGGER = LoggerFactory.getLogger(PeerDownloaderGroup.class);
 	
 	/**
-	 * <p>同时创建PeerDownloader数量：{@value}</p>
-	 * <p>如果TorrentSession线程池是固定线程池，请不要超过线程池大小。</p>
+	 * <p>单个任务半开连接数量（正在连接）：{@value}</p>
+	 * <p>全局半开连接数量：{@link PeerConnectManager}</p>
 	 */
-	private static final int BUILD_SIZE = 3;
+	private static final int HALF_OPEN_SIZE = 16;
 	/**
 	 * <p>单次创建PeerDownloader最大数量：{@value}</p>
 	 * <p>包含失败次数</p>
@@ -47,13 +48,24 @@ public final class PeerDownloaderGroup {
 	private static final int SPIN_LOCK_TIME = 1000;
 	
 	/**
-	 * <p>是否继续创建PeerDownloader</p>
+	 * <p>是否可用</p>
+	 * <p>释放后连接完成的PeerDownloader直接释放</p>
 	 */
-	private final AtomicBoolean build = new AtomicBoolean(false);
+	private volatile boolean available = true;
 	/**
-	 * <p>创建PeerDownloader信号量</p>
+	 * <p>半开连接数量</p>
+	 * <p>创建数据（半开连接数量、剩余创建数量）使用创建锁</p>
 	 */
-	private final Semaphore buildSemaphore = new Semaphore(BUILD_SIZE);
+	private int halfOpenSize = 0;
+	/**
+	 * <p>本轮剩余创建数量</p>
+	 * <p>包含失败次数</p>
+	 */
+	private int buildSize = 0;
+	/**
+	 * <p>创建锁</p>
+	 */
+	private final Object buildLock = new Object();
 	/**
 	 * <p>PeerDownloader队列</p>
 	 */
@@ -95,9 +107,8 @@ public final class PeerDownloaderGroup {
 	 */
 	public void release() {
 		LOGGER.debug("释放PeerDownloaderGroup");
-		// 解除信号量：防止暂停任务时正在执行优化任务导致获取不到锁进而卡死暂停任务操作
-		this.release(false);
 		synchronized (this.peerDownloaders) {
+			this.available = false;
 			this.peerDownloaders.forEach(launcher -> {
 				SystemThreadContext.submit(() -> {
 					launcher.release();
@@ -126,70 +137,95 @@ public final class PeerDownloaderGroup {
 	
 	/**
 	 * <p>创建PeerDownloader列表</p>
-	 * <p>创建数量达到最大Peer连接数量或者创建次数超过{@link #MAX_BUILD_SIZE}时退出创建</p>
+	 * <p>重置本轮创建数量后开始创建</p>
 	 */
 	private void buildPeerDownloaders() {
 		LOGGER.debug("创建PeerDownloader");
-		int size = 0;
-		this.build.set(true); // 重置创建状态
-		this.buildSemaphore.drainPermits(); // 重置信号量
-		this.buildSemaphore.release(BUILD_SIZE);
-		while(this.build.get()) {
-			this.acquire(); // 获取信号量
-			if(!this.build.get()) { // 再次判断状态
-				break;
-			}
-			this.torrentSession.submit(() -> {
-				boolean ok = true; // 是否继续创建
-				try {
-					ok = buildPeerDownloader();
-				} catch (Exception e) {
-					LOGGER.error("创建PeerDownloader异常", e);
-				} finally {
-					this.release(ok); // 释放信号量
-				}
-			});
-			if(++size >= MAX_BUILD_SIZE) {
-				LOGGER.debug("超过PeerDownloader单次最大创建数量：退出循环");
-				break;
-			}
+		synchronized (this.buildLock) {
+			this.buildSize = MAX_BUILD_SIZE;
 		}
+		this.buildPeerDownloader();
 	}
 	
 	/**
 	 * <p>创建PeerDownloader</p>
-	 * <p>从Peer队列尾部拿出一个Peer创建下载，失败后插入Peer队列头部。</p>
+	 * <p>从Peer队列尾部拿出Peer异步连接，同时发起多个连接直到半开连接已满。</p>
 	 * <dl>
-	 * 	<dt>跳出创建循环条件</dt>
+	 * 	<dt>停止创建条件</dt>
 	 * 	<dd>任务不处于下载状态</dd>
-	 * 	<dd>下载队列的Peer数量大于等于配置的最大数量</dd>
+	 * 	<dd>下载队列的Peer数量和半开连接数量大于等于配置的最大数量</dd>
+	 * 	<dd>单个任务或者全局半开连接已满</dd>
+	 * 	<dd>本轮创建数量超过{@link #MAX_BUILD_SIZE}</dd>
 	 * 	<dd>不能查找到更多的Peer</dd>
 	 * </dl>
-	 * 
-	 * @return 创建状态：{@code true}-继续；{@code false}-停止；
+	 * <p>连接完成后继续创建</p>
 	 */
-	private boolean buildPeerDownloader() {
-		if(!this.torrentSession.downloading()) {
-			return false;
+	private void buildPeerDownloader() {
+		final List<PeerDownloader> list = new ArrayList<>();
+		final PeerConnectManager peerConnectManager = PeerConnectManager.getInstance();
+		synchronized (this.buildLock) {
+			while(true) {
+				if(!this.available || !this.torrentSession.downloading()) {
+					break;
+				}
+				if(this.peerDownloaders.size() + this.halfOpenSize >= SystemConfig.getPeerSize()) {
+					break;
+				}
+				if(this.halfOpenSize >= HALF_OPEN_SIZE || this.buildSize <= 0) {
+					break;
+				}
+				if(!peerConnectManager.acquire()) {
+					LOGGER.debug("全局半开连接已满");
+					break;
+				}
+				final PeerSession peerSession = PeerManager.getInstance().pick(this.torrentSession.infoHashHex());
+				if(peerSession == null) {
+					peerConnectManager.release();
+					break;
+				}
+				this.buildSize--;
+				this.halfOpenSize++;
+				list.add(PeerDownloader.newInstance(peerSession, this.torrentSession));
+			}
+		}
+		// 不在创建锁中连接：防止连接回调同步执行时死锁
+		for (PeerDownloader peerDownloader : list) {
+			try {
+				peerDownloader.handshake(ok -> this.buildPeerDownloader(peerDownloader, ok));
+			} catch (Exception e) {
+				LOGGER.error("创建PeerDownloader异常", e);
+				this.buildPeerDownloader(peerDownloader, false);
+			}
 		}
-		if(this.peerDownloaders.size() >= SystemConfig.getPeerSize()) {
-			return false;
+	}
+	
+	/**
+	 * <p>PeerDownloader连接完成</p>
+	 * <p>释放半开连接：连接成功加入下载队列，连接失败放回Peer队列头部，然后继续创建。</p>
+	 * 
+	 * @param peerDownloader PeerDownloader
+	 * @param ok 是否连接成功
+	 */
+	private void buildPeerDownloader(PeerDownloader peerDownloader, boolean ok) {
+		PeerConnectManager.getInstance().release();
+		synchronized (this.buildLock) {
+			this.halfOpenSize--;
 		}
-		final PeerSession peerSession = PeerManager.getInstance().pick(this.torrentSession.infoHashHex());
-		if(peerSession != null) {
-			final PeerDownloader peerDownloader = PeerDownloader.newInstance(peerSession, this.torrentSession);
-			final boolean ok = peerDownloader.handshake();
-			if(ok) {
-				peerSession.status(PeerConfig.STATUS_DOWNLOAD);
-				this.offer(peerDownloader);
-			} else {
-				// 失败后需要放回队列
-				PeerManager.getInstance().inferior(this.torrentSession.infoHashHex(), peerSession);
+		final PeerSession peerSession = peerDownloader.peerSession();
+		if(ok) {
+			synchronized (this.peerDownloaders) {
+				if(this.available) {
+					peerSession.status(PeerConfig.STATUS_DOWNLOAD);
+					this.offer(peerDownloader);
+				} else {
+					this.inferiorPeerDownloader(peerDownloader);
+				}
 			}
-			return true;
 		} else {
-			return false;
+			// 失败后需要放回队列
+			PeerManager.getInstance().inferior(this.torrentSession.infoHashHex(), peerSession);
 		}
+		this.buildPeerDownloader();
 	}
 	
 	/**
@@ -197,6 +233,7 @@ public final class PeerDownloaderGroup {
 	 * <p>直接剔除：不可用的Peer（评分等于{@code 0}、状态不可用）</p>
 	 * <p>劣质Peer：评分最低的Peer为劣质Peer，释放劣质Peer后放入Peer队列头部。</p>
 	 * <p>如果最后Peer列表小于系统最大数量不剔除劣质Peer</p>
+	 * <p>剔除完成后根据评分设置Peer同时下载Piece数量</p>
 	 * <p>必须循环完所有的PeerDownloader，从而清除评分进行新一轮的评分，防止评分被重复计算。</p>
 	 */
 	private void inferiorPeerDownloaders() {
@@ -204,7 +241,7 @@ public final class PeerDownloaderGroup {
 		int index = 0;
 		PeerDownloader tmp = null;
 		PeerDownloader inferior = null; // 劣质PeerDownloader
-		long downloadMark = 0, minMark = 0;
+		long downloadMark = 0, minMark = 0, maxMark = 0;
 		final int size = this.peerDownloaders.size();
 		while(true) {
 			if(index++ >= size) {
@@ -230,6 +267,9 @@ public final class PeerDownloaderGroup {
 				inferiorPeerDownloader(tmp);
 				continue;
 			}
+			if(downloadMark > maxMark) {
+				maxMark = downloadMark;
+			}
 			if(inferior == null) {
 				inferior = tmp;
 				minMark = downloadMark;
@@ -249,6 +289,9 @@ public final class PeerDownloaderGroup {
 				inferiorPeerDownloader(inferior);
 			}
 		}
+		// 根据评分设置同时下载Piece数量
+		final long maxDownloadMark = maxMark;
+		this.peerDownloaders.forEach(peerDownloader -> peerDownloader.pieceSize(maxDownloadMark));
 	}
 	
 	/**
@@ -279,27 +322,5 @@ public final class PeerDownloaderGroup {
 			PeerManager.getInstance().inferior(this.torrentSession.infoHashHex(), peerSession);
 		}
 	}
-	
-	/**
-	 * <p>获取信号量</p>
-	 */
-	private void acquire() {
-		try {
-			this.buildSemaphore.acquire();
-		} catch (InterruptedException e) {
-			LOGGER.debug("信号量获取异常", e);
-			Thread.currentThread().interrupt();
-		}
-	}
-	
-	/**
-	 * <p>释放信号量：设置创建状态</p>
-	 * 
-	 * @param build 创建状态：{@code true}-继续；{@code false}-停止；
-	 */
-	private void release(boolean build) {
-		this.build.set(build);
-		this.buildSemaphore.release();
-	}
 
 }
@@ -133,13 +133,14 @@ public final class PeerUploaderGroup {
 	 * 	<li>长时间没有请求的连接</li>
 	 * 	<li>超过最大连接数的连接</li>
 	 * </ul>
+	 * <p>剔除完成后根据评分设置Peer同时下载Piece数量</p>
 	 */
 	private void inferiorPeerUploaders() {
 		LOGGER.debug("剔除无效PeerUploader");
 		int index = 0;
 		PeerUploader tmp;
 		int offerSize = 0; // 有效数量
-		long uploadMark, downloadMark;
+		long uploadMark, downloadMark, maxMark = 0;
 		final int size = this.peerUploaders.size();
 		final int maxSize = SystemConfig.getPeerSize();
 		while(true) {
@@ -158,6 +159,9 @@ public final class PeerUploaderGroup {
 			// 获取评分
 			uploadMark = tmp.uploadMark(); // 上传评分
 			downloadMark = tmp.downloadMark(); // 下载评分
+			if(downloadMark > maxMark) {
+				maxMark = downloadMark;
+			}
 			// 首次评分忽略
 			if(!tmp.marked()) {
 				offerSize++;
@@ -185,6 +189,9 @@ public final class PeerUploaderGroup {
 				this.offer(tmp);
 			}
 		}
+		// 根据评分设置同时下载Piece数量
+		final long maxDownloadMark = maxMark;
+		this.peerUploaders.forEach(peerUploader -> peerUploader.pieceSize(maxDownloadMark));
 	}
 	
 	/**
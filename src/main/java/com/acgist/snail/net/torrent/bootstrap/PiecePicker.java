@@ -0,0 +1,407 @@
+package com.acgist.snail.net.torrent.bootstrap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import com.acgist.snail.system.config.SystemConfig;
+
+/**
+ * <p>Piece选择器</p>
+ * <p>稀有优先：统计已经连接的Peer含有Piece的数量（可用度），优先选择可用度最低的Piece，可用度相同时随机选择。</p>
+ * <p>顺序下载：索引小于{@linkplain SystemConfig#getPieceSequentialSize() 顺序下载数量}的Piece按照索引顺序优先选择。</p>
+ * <p>待选Piece按照可用度分桶（可用度=待选Piece索引数组），数组记录Piece位置，修改可用度只需要在两个桶之间移动Piece：时间复杂度O(1)。</p>
+ * <p>选择Piece时从可用度最低的桶开始，按照随机顺序（逐个随机交换到数组前面）查找桶中Peer含有的Piece，选中后从待选Piece中删除。</p>
+ * <p>Peer含有全部Piece（做种Peer）时第一次查找就能选中：时间复杂度O(1)；Peer含有桶中k个Piece时平均查找次数为桶大小/(k+1)，可用度相同的Piece被选中的概率相同。</p>
+ * 
+ * @author acgist
+ * @since 1.3.0
+ */
+public final class PiecePicker {
+
+	/**
+	 * <p>Piece数量</p>
+	 */
+	private final int pieceSize;
+	/**
+	 * <p>顺序下载Piece数量</p>
+	 */
+	private final int sequentialSize;
+	/**
+	 * <p>Piece可用度</p>
+	 * <p>索引=含有Piece的Peer数量</p>
+	 */
+	private final int[] availabilities;
+	/**
+	 * <p>随机数</p>
+	 * <p>可用度相同时随机选择：不同客户端选择不同的Piece</p>
+	 */
+	private final Random random;
+	/**
+	 * <p>待选Piece位图</p>
+	 * <p>被选中下载、没有下载、不处于下载中的Piece</p>
+	 */
+	private final BitSet candidatePieces;
+	/**
+	 * <p>可用度桶</p>
+	 * <p>索引=可用度；值=该可用度的待选Piece（不含顺序下载Piece）；</p>
+	 */
+	private final List<Bucket> buckets;
+	/**
+	 * <p>Piece在可用度桶中的位置</p>
+	 * <p>索引=Piece索引；值=桶中位置（{@code -1}-不在桶中）；</p>
+	 */
+	private final int[] positions;
+
+	private PiecePicker(int pieceSize, int sequentialSize) {
+		this.pieceSize = pieceSize;
+		this.sequentialSize = sequentialSize;
+		this.availabilities = new int[pieceSize];
+		this.random = new Random();
+		this.candidatePieces = new BitSet(pieceSize);
+		this.buckets = new ArrayList<>();
+		this.positions = new int[pieceSize];
+		Arrays.fill(this.positions, -1);
+	}
+
+	/**
+	 * <p>创建Piece选择器</p>
+	 * 
+	 * @param pieceSize Piece数量
+	 * 
+	 * @return Piece选择器
+	 */
+	public static final PiecePicker newInstance(int pieceSize) {
+		return new PiecePicker(pieceSize, SystemConfig.getPieceSequentialSize());
+	}
+
+	/**
+	 * <p>创建Piece选择器</p>
+	 * 
+	 * @param pieceSize Piece数量
+	 * @param sequentialSize 顺序下载Piece数量
+	 * 
+	 * @return Piece选择器
+	 */
+	public static final PiecePicker newInstance(int pieceSize, int sequentialSize) {
+		return new PiecePicker(pieceSize, sequentialSize);
+	}
+
+	/**
+	 * <p>重置待选Piece</p>
+	 * <p>待选Piece：被选中Piece位图排除已下载Piece位图</p>
+	 * 
+	 * @param selectPieces 被选中Piece位图
+	 * @param pieces 已下载Piece位图
+	 */
+	public synchronized void candidates(BitSet selectPieces, BitSet pieces) {
+		this.candidatePieces.clear();
+		this.buckets.forEach(bucket -> bucket.clear(this.positions));
+		int index = selectPieces.nextSetBit(0);
+		while(index >= 0 && index < this.pieceSize) {
+			if(!pieces.get(index)) {
+				this.candidatePieces.set(index);
+				this.bucketSet(index);
+			}
+			index = selectPieces.nextSetBit(index + 1);
+		}
+	}
+
+	/**
+	 * <p>添加待选Piece</p>
+	 * 
+	 * @param index Piece索引
+	 */
+	public synchronized void candidate(int index) {
+		if(this.invalid(index) || this.candidatePieces.get(index)) {
+			return;
+		}
+		this.candidatePieces.set(index);
+		this.bucketSet(index);
+	}
+
+	/**
+	 * <p>删除待选Piece</p>
+	 * <p>Piece下载完成、开始下载</p>
+	 * 
+	 * @param index Piece索引
+	 */
+	public synchronized void remove(int index) {
+		if(this.invalid(index) || !this.candidatePieces.get(index)) {
+			return;
+		}
+		this.candidatePieces.clear(index);
+		this.bucketClear(index);
+	}
+
+	/**
+	 * <p>增加Piece可用度</p>
+	 * 
+	 * @param index Piece索引
+	 */
+	public synchronized void addAvailability(int index) {
+		this.availability(index, 1);
+	}
+
+	/**
+	 * <p>增加Piece可用度</p>
+	 * 
+	 * @param pieces Piece位图
+	 */
+	public synchronized void addAvailability(BitSet pieces) {
+		int index = pieces.nextSetBit(0);
+		while(index >= 0 && index < this.pieceSize) {
+			this.availability(index, 1);
+			index = pieces.nextSetBit(index + 1);
+		}
+	}
+
+	/**
+	 * <p>减少Piece可用度</p>
+	 * 
+	 * @param index Piece索引
+	 */
+	public synchronized void removeAvailability(int index) {
+		this.availability(index, -1);
+	}
+
+	/**
+	 * <p>减少Piece可用度</p>
+	 * 
+	 * @param pieces Piece位图
+	 */
+	public synchronized void removeAvailability(BitSet pieces) {
+		int index = pieces.nextSetBit(0);
+		while(index >= 0 && index < this.pieceSize) {
+			this.availability(index, -1);
+			index = pieces.nextSetBit(index + 1);
+		}
+	}
+
+	/**
+	 * <p>修改Piece可用度</p>
+	 * <p>待选Piece从原来的桶移动到新的桶</p>
+	 * 
+	 * @param index Piece索引
+	 * @param value 修改数量
+	 */
+	private void availability(int index, int value) {
+		if(this.invalid(index)) {
+			return;
+		}
+		final int availability = this.availabilities[index] + value;
+		if(availability < 0) {
+			return;
+		}
+		final boolean candidate = this.candidatePieces.get(index);
+		if(candidate) {
+			this.bucketClear(index);
+		}
+		this.availabilities[index] = availability;
+		if(candidate) {
+			this.bucketSet(index);
+		}
+	}
+
+	/**
+	 * <p>获取Piece可用度</p>
+	 * 
+	 * @param index Piece索引
+	 * 
+	 * @return Piece可用度
+	 */
+	public synchronized int availability(int index) {
+		if(this.invalid(index)) {
+			return 0;
+		}
+		return this.availabilities[index];
+	}
+
+	/**
+	 * <p>选择Piece</p>
+	 * <p>优先选择Peer推荐Piece，然后选择顺序下载Piece，最后按照可用度从低到高选择Peer含有的Piece。</p>
+	 * <p>选中的Piece从待选Piece中删除，下载失败时需要重新{@linkplain #candidate(int) 添加}。</p>
+	 * 
+	 * @param peerPieces Peer已下载Piece位图
+	 * @param suggestPieces Peer推荐Piece位图
+	 * 
+	 * @return Piece索引：{@code -1}-没有符合条件的Piece
+	 */
+	public synchronized int pick(BitSet peerPieces, BitSet suggestPieces) {
+		if(peerPieces.isEmpty() || this.candidatePieces.isEmpty()) {
+			return -1;
+		}
+		// 推荐Piece
+		int index = suggestPieces.nextSetBit(0);
+		while(index >= 0 && index < this.pieceSize) {
+			if(this.candidatePieces.get(index) && peerPieces.get(index)) {
+				this.remove(index);
+				return index;
+			}
+			index = suggestPieces.nextSetBit(index + 1);
+		}
+		// 顺序下载Piece
+		index = this.candidatePieces.nextSetBit(0);
+		while(index >= 0 && index < this.sequentialSize) {
+			if(peerPieces.get(index)) {
+				this.remove(index);
+				return index;
+			}
+			index = this.candidatePieces.nextSetBit(index + 1);
+		}
+		// 稀有优先
+		for (Bucket bucket : this.buckets) {
+			index = this.pick(bucket, peerPieces);
+			if(index >= 0) {
+				this.remove(index);
+				return index;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * <p>按照随机顺序查找桶中Peer含有的Piece</p>
+	 * <p>每次从没有查找的Piece中随机选择一个交换到已经查找的Piece后面，第一个Peer含有的Piece就是随机选中的Piece。</p>
+	 * 
+	 * @param bucket 可用度桶
+	 * @param peerPieces Peer已下载Piece位图
+	 * 
+	 * @return Piece索引：{@code -1}-没有符合条件的Piece
+	 */
+	private int pick(Bucket bucket, BitSet peerPieces) {
+		for (int position = 0; position < bucket.size; position++) {
+			bucket.swap(position, position + this.random.nextInt(bucket.size - position), this.positions);
+			final int index = bucket.pieces[position];
+			if(peerPieces.get(index)) {
+				return index;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * <p>待选Piece放入可用度桶</p>
+	 * <p>顺序下载Piece不放入可用度桶</p>
+	 * 
+	 * @param index Piece索引
+	 */
+	private void bucketSet(int index) {
+		if(index < this.sequentialSize) {
+			return;
+		}
+		final int availability = this.availabilities[index];
+		while(this.buckets.size() <= availability) {
+			this.buckets.add(new Bucket());
+		}
+		this.buckets.get(availability).add(index, this.positions);
+	}
+
+	/**
+	 * <p>待选Piece移出可用度桶</p>
+	 * 
+	 * @param index Piece索引
+	 */
+	private void bucketClear(int index) {
+		if(index < this.sequentialSize) {
+			return;
+		}
+		this.buckets.get(this.availabilities[index]).remove(index, this.positions);
+	}
+
+	/**
+	 * <p>判断Piece索引是否无效</p>
+	 * 
+	 * @param index Piece索引
+	 * 
+	 * @return {@code true}-无效；{@code false}-有效；
+	 */
+	private boolean invalid(int index) {
+		return index < 0 || index >= this.pieceSize;
+	}
+
+	/**
+	 * <p>可用度桶</p>
+	 * <p>删除Piece时使用最后一个Piece填充位置：时间复杂度O(1)</p>
+	 * 
+	 * @author acgist
+	 * @since 1.3.0
+	 */
+	private static final class Bucket {
+
+		/**
+		 * <p>Piece索引数组</p>
+		 */
+		private int[] pieces = new int[16];
+		/**
+		 * <p>Piece数量</p>
+		 */
+		private int size;
+
+		/**
+		 * <p>添加Piece</p>
+		 * 
+		 * @param index Piece索引
+		 * @param positions Piece位置
+		 */
+		private void add(int index, int[] positions) {
+			if(positions[index] >= 0) {
+				return;
+			}
+			if(this.size == this.pieces.length) {
+				this.pieces = Arrays.copyOf(this.pieces, this.size << 1);
+			}
+			this.pieces[this.size] = index;
+			positions[index] = this.size;
+			this.size++;
+		}
+
+		/**
+		 * <p>删除Piece</p>
+		 * 
+		 * @param index Piece索引
+		 * @param positions Piece位置
+		 */
+		private void remove(int index, int[] positions) {
+			final int position = positions[index];
+			if(position < 0) {
+				return;
+			}
+			this.size--;
+			this.swap(position, this.size, positions);
+			positions[index] = -1;
+		}
+
+		/**
+		 * <p>交换Piece位置</p>
+		 * 
+		 * @param source 位置
+		 * @param target 位置
+		 * @param positions Piece位置
+		 */
+		private void swap(int source, int target, int[] positions) {
+			final int sourceIndex = this.pieces[source];
+			final int targetIndex = this.pieces[target];
+			this.pieces[source] = targetIndex;
+			this.pieces[target] = sourceIndex;
+			positions[targetIndex] = source;
+			positions[sourceIndex] = target;
+		}
+
+		/**
+		 * <p>清空Piece</p>
+		 * 
+		 * @param positions Piece位置
+		 */
+		private void clear(int[] positions) {
+			for (int position = 0; position < this.size; position++) {
+				positions[this.pieces[position]] = -1;
+			}
+			this.size = 0;
+		}
+
+	}
+
+}
@@ -0,0 +1,368 @@
+package com.acgist.snail.net.torrent.bootstrap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.acgist.snail.pojo.bean.TorrentPiece;
+import com.acgist.snail.pojo.session.PeerSession;
+import com.acgist.snail.pojo.session.TorrentSession;
+import com.acgist.snail.system.config.DownloadConfig;
+import com.acgist.snail.system.context.SystemThreadContext;
+
+/**
+ * <p>Piece保存流水线</p>
+ * <p>下载完成的Piece依次经过校验和保存两个阶段，网络线程只负责提交Piece，不会等待校验和保存。</p>
+ * <dl>
+ * 	<dt>校验阶段</dt>
+ * 	<dd>使用系统校验线程池计算Hash，同时最多{@linkplain #MAX_VERIFY_TASK_SIZE CPU核心数量}个校验任务，每个任务依次校验队列中的Piece。</dd>
+ * 	<dt>保存阶段</dt>
+ * 	<dd>使用任务线程池，同时只有一个保存任务，每次批量保存队列中的Piece。</dd>
+ * </dl>
+ * <p>背压：流水线中Piece数据大小超过{@linkplain DownloadConfig#getMemoryBufferByte() 磁盘缓存}时{@linkplain #full() 流水线已满}，Peer暂停选择新的Piece。</p>
+ * <p>每个阶段队列中的数据大小也不能超过磁盘缓存：校验队列已满时提交线程直接校验，保存队列已满时校验线程直接保存。</p>
+ * 
+ * @author acgist
+ * @since 1.3.0
+ */
+public final class PiecePipeline {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PiecePipeline.class);
+
+	/**
+	 * <p>批量保存Piece最大数量：{@value}</p>
+	 */
+	private static final int MAX_WRITE_BATCH_SIZE = 16;
+	/**
+	 * <p>校验任务最大数量</p>
+	 */
+	private static final int MAX_VERIFY_TASK_SIZE = Runtime.getRuntime().availableProcessors();
+	/**
+	 * <p>释放资源等待时间（秒）：{@value}</p>
+	 */
+	private static final long RELEASE_TIMEOUT = 30L;
+
+	/**
+	 * <p>是否可用</p>
+	 * <p>释放后提交的Piece直接标记下载失败</p>
+	 */
+	private volatile boolean available = true;
+	/**
+	 * <p>流水线最大数据大小</p>
+	 * <p>同时也是每个阶段队列的最大数据大小</p>
+	 */
+	private final long maxSize;
+	/**
+	 * <p>流水线数据大小</p>
+	 * <p>提交时增加、保存或者失败时减少</p>
+	 */
+	private final AtomicLong size = new AtomicLong(0);
+	/**
+	 * <p>校验队列数据大小</p>
+	 */
+	private final AtomicLong verifySize = new AtomicLong(0);
+	/**
+	 * <p>保存队列数据大小</p>
+	 */
+	private final AtomicLong writeSize = new AtomicLong(0);
+	/**
+	 * <p>校验任务数量</p>
+	 */
+	private final AtomicInteger verifying = new AtomicInteger(0);
+	/**
+	 * <p>是否含有保存任务</p>
+	 */
+	private final AtomicBoolean writing = new AtomicBoolean(false);
+	/**
+	 * <p>等待校验Piece队列</p>
+	 */
+	private final BlockingQueue<VerifyPiece> verifyQueue = new LinkedBlockingQueue<>();
+	/**
+	 * <p>等待保存Piece队列</p>
+	 */
+	private final BlockingQueue<TorrentPiece> writeQueue = new LinkedBlockingQueue<>();
+	/**
+	 * <p>任务结束锁</p>
+	 * <p>释放资源时等待校验任务和保存任务结束</p>
+	 */
+	private final Lock idleLock = new ReentrantLock();
+	/**
+	 * <p>任务结束条件</p>
+	 */
+	private final Condition idleCondition = this.idleLock.newCondition();
+
+	private final TorrentSession torrentSession;
+
+	private PiecePipeline(long maxSize, TorrentSession torrentSession) {
+		this.maxSize = maxSize;
+		this.torrentSession = torrentSession;
+	}
+
+	public static final PiecePipeline newInstance(TorrentSession torrentSession) {
+		return new PiecePipeline(DownloadConfig.getMemoryBufferByte(), torrentSession);
+	}
+
+	/**
+	 * <p>判断流水线是否已满</p>
+	 * 
+	 * @return {@code true}-已满；{@code false}-未满；
+	 */
+	public boolean full() {
+		return this.size.get() >= this.maxSize;
+	}
+
+	/**
+	 * <p>提交下载完成的Piece</p>
+	 * <p>校验队列已满时直接校验：提交线程（网络线程）变慢，Peer读取数据变慢。</p>
+	 * 
+	 * @param peerSession Peer信息
+	 * @param piece Piece
+	 */
+	public void submit(PeerSession peerSession, TorrentPiece piece) {
+		if(!this.available) {
+			this.torrentSession.undone(piece);
+			return;
+		}
+		this.size.addAndGet(piece.getLength());
+		if(this.verifySize.get() >= this.maxSize) {
+			LOGGER.debug("校验队列已满：直接校验Piece：{}", piece.getIndex());
+			this.verify(peerSession, piece);
+			return;
+		}
+		this.verifySize.addAndGet(piece.getLength());
+		this.verifyQueue.offer(new VerifyPiece(peerSession, piece));
+		if(this.acquireVerify()) {
+			SystemThreadContext.submitVerify(this::verify);
+		}
+	}
+
+	/**
+	 * <p>获取校验任务</p>
+	 * 
+	 * @return 是否获取成功：{@code false}-校验任务数量已经达到最大数量
+	 */
+	private boolean acquireVerify() {
+		int count;
+		do {
+			count = this.verifying.get();
+			if(count >= MAX_VERIFY_TASK_SIZE) {
+				return false;
+			}
+		} while(!this.verifying.compareAndSet(count, count + 1));
+		return true;
+	}
+
+	/**
+	 * <p>校验阶段</p>
+	 * <p>依次校验队列中的Piece，队列为空时结束校验任务。</p>
+	 */
+	private void verify() {
+		VerifyPiece verifyPiece;
+		while(true) {
+			verifyPiece = this.verifyQueue.poll();
+			if(verifyPiece == null) {
+				this.verifying.decrementAndGet();
+				// 重新判断：防止修改数量前加入队列的Piece没有校验
+				if(this.verifyQueue.isEmpty() || !this.acquireVerify()) {
+					this.signalIdle();
+					return;
+				}
+				continue;
+			}
+			this.verifySize.addAndGet(-verifyPiece.piece.getLength());
+			this.verify(verifyPiece.peerSession, verifyPiece.piece);
+		}
+	}
+
+	/**
+	 * <p>校验Piece</p>
+	 * <p>校验成功放入保存队列，校验失败标记下载失败。</p>
+	 * <p>保存队列已满时直接保存：校验线程变慢，校验队列变满。</p>
+	 * 
+	 * @param peerSession Peer信息
+	 * @param piece Piece
+	 */
+	private void verify(PeerSession peerSession, TorrentPiece piece) {
+		if(piece.verify()) {
+			// 统计下载数据
+			peerSession.download(piece.getLength());
+			if(this.writeSize.get() >= this.maxSize) {
+				LOGGER.debug("保存队列已满：直接保存Piece：{}", piece.getIndex());
+				this.write(List.of(piece));
+				return;
+			}
+			this.writeSize.addAndGet(piece.getLength());
+			this.writeQueue.offer(piece);
+			if(this.writing.compareAndSet(false, true)) {
+				this.torrentSession.submit(this::write);
+			}
+		} else {
+			LOGGER.warn("Piece校验失败：{}", piece.getIndex());
+			peerSession.badPieces(piece.getIndex());
+			this.undone(piece);
+		}
+	}
+
+	/**
+	 * <p>保存阶段</p>
+	 * <p>批量保存队列中的Piece，队列为空时结束保存任务。</p>
+	 */
+	private void write() {
+		final List<TorrentPiece> pieces = new ArrayList<>(MAX_WRITE_BATCH_SIZE);
+		while(true) {
+			this.drainWriteQueue(pieces, MAX_WRITE_BATCH_SIZE);
+			if(pieces.isEmpty()) {
+				this.writing.set(false);
+				// 重新判断：防止修改状态前加入队列的Piece没有保存
+				if(this.writeQueue.isEmpty() || !this.writing.compareAndSet(false, true)) {
+					this.signalIdle();
+					return;
+				}
+				continue;
+			}
+			this.write(pieces);
+			pieces.clear();
+		}
+	}
+
+	/**
+	 * <p>取出保存队列中的Piece</p>
+	 * 
+	 * @param pieces Piece
+	 * @param maxSize 最大数量
+	 */
+	private void drainWriteQueue(List<TorrentPiece> pieces, int maxSize) {
+		this.writeQueue.drainTo(pieces, maxSize);
+		for (TorrentPiece piece : pieces) {
+			this.writeSize.addAndGet(-piece.getLength());
+		}
+	}
+
+	/**
+	 * <p>批量保存Piece</p>
+	 * <p>保存完成后检测任务是否下载完成，唤醒等待流水线的Web种子。</p>
+	 * 
+	 * @param pieces Piece
+	 */
+	private void write(List<TorrentPiece> pieces) {
+		for (TorrentPiece piece : pieces) {
+			final boolean ok = this.torrentSession.write(piece);
+			if(ok) {
+				this.size.addAndGet(-piece.getLength());
+			} else {
+				LOGGER.debug("Piece保存失败：{}", piece.getIndex());
+				this.undone(piece);
+			}
+		}
+		this.torrentSession.checkCompletedAndDone();
+		this.torrentSession.signalWebSeed();
+	}
+
+	/**
+	 * <p>Piece下载失败</p>
+	 * 
+	 * @param piece Piece
+	 */
+	private void undone(TorrentPiece piece) {
+		this.size.addAndGet(-piece.getLength());
+		this.torrentSession.undone(piece);
+	}
+
+	/**
+	 * <p>通知任务结束</p>
+	 */
+	private void signalIdle() {
+		this.idleLock.lock();
+		try {
+			this.idleCondition.signalAll();
+		} finally {
+			this.idleLock.unlock();
+		}
+	}
+
+	/**
+	 * <p>判断校验任务和保存任务是否都已经结束</p>
+	 * 
+	 * @return 是否结束
+	 */
+	private boolean idle() {
+		return this.verifying.get() == 0 && !this.writing.get();
+	}
+
+	/**
+	 * <p>释放资源</p>
+	 * <p>先停止接收新的Piece，等待校验阶段校验完成队列中的Piece，再等待保存阶段保存完成。</p>
+	 * <p>保存完成之前不能关闭任务线程池：中断保存线程会关闭文件通道。</p>
+	 * <p>必须在刷出缓存之前释放</p>
+	 */
+	public void release() {
+		LOGGER.debug("释放Piece保存流水线");
+		this.available = false;
+		final long timeout = TimeUnit.SECONDS.toNanos(RELEASE_TIMEOUT);
+		long remaining = timeout;
+		this.idleLock.lock();
+		try {
+			while(!this.idle() && remaining > 0) {
+				remaining = this.idleCondition.awaitNanos(remaining);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			LOGGER.debug("等待Piece保存流水线释放被中断");
+		} finally {
+			this.idleLock.unlock();
+		}
+		if(!this.idle()) {
+			LOGGER.warn("等待Piece保存流水线释放超时");
+			return;
+		}
+		// 任务已经结束：校验并保存剩余Piece（释放时同时提交的Piece）
+		final List<TorrentPiece> pieces = new ArrayList<>();
+		VerifyPiece verifyPiece;
+		while((verifyPiece = this.verifyQueue.poll()) != null) {
+			this.verifySize.addAndGet(-verifyPiece.piece.getLength());
+			if(verifyPiece.piece.verify()) {
+				verifyPiece.peerSession.download(verifyPiece.piece.getLength());
+				pieces.add(verifyPiece.piece);
+			} else {
+				this.undone(verifyPiece.piece);
+			}
+		}
+		this.drainWriteQueue(pieces, Integer.MAX_VALUE);
+		if(!pieces.isEmpty()) {
+			this.write(pieces);
+		}
+	}
+
+	/**
+	 * <p>等待校验Piece</p>
+	 */
+	private static final class VerifyPiece {
+
+		/**
+		 * <p>Peer信息</p>
+		 */
+		private final PeerSession peerSession;
+		/**
+		 * <p>Piece</p>
+		 */
+		private final TorrentPiece piece;
+
+		private VerifyPiece(PeerSession peerSession, TorrentPiece piece) {
+			this.peerSession = peerSession;
+			this.piece = piece;
+		}
+
+	}
+
+}
@@ -1,11 +1,8 @@
 package com.acgist.snail.net.torrent.bootstrap;
 
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.RandomAccessFile;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
 import java.util.BitSet;
-import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -14,13 +11,13 @@ import java.util.concurrent.atomic.AtomicLong;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.acgist.snail.net.torrent.bootstrap.store.FileChannelTorrentStore;
+import com.acgist.snail.net.torrent.bootstrap.store.ITorrentStore;
+import com.acgist.snail.net.torrent.bootstrap.store.MappedTorrentStore;
 import com.acgist.snail.pojo.bean.TorrentPiece;
 import com.acgist.snail.system.config.SystemConfig;
 import com.acgist.snail.system.context.SystemThreadContext;
 import com.acgist.snail.system.exception.DownloadException;
-import com.acgist.snail.utils.ArrayUtils;
-import com.acgist.snail.utils.CollectionUtils;
-import com.acgist.snail.utils.FileUtils;
 import com.acgist.snail.utils.ObjectUtils;
 import com.acgist.snail.utils.StringUtils;
 
@@ -102,22 +99,33 @@ public final class TorrentStream {
 	 * <p>暂停Piece位图</p>
 	 * <p>上次下载失败的Piece，下次请求时不选择，选择成功后清除，以后还可以选择该Piece。</p>
 	 * <p>主要用来处理两个文件处于同一个Piece，并且两个文件没有同时被选择下载。</p>
+	 * <p>使用{@link #pickLock}加锁</p>
 	 */
 	private final BitSet pausePieces;
 	/**
 	 * <p>下载中Piece位图</p>
+	 * <p>使用{@link #pickLock}加锁</p>
 	 */
 	private final BitSet downloadPieces;
 	/**
-	 * <p>文件流</p>
-	 * 
-	 * TODO：替换FileChannel
+	 * <p>选择锁</p>
+	 * <p>选择Piece只锁定暂停Piece位图和下载中Piece位图，不用锁定文件流：保存Piece和异步加载文件（校验Hash）时也可以选择Piece。</p>
+	 */
+	private final Object pickLock = new Object();
+	/**
+	 * <p>刷出锁</p>
+	 * <p>Piece缓存写入文件时加锁，读取数据不用加锁。</p>
+	 */
+	private final Object flushLock = new Object();
+	/**
+	 * <p>文件存储</p>
+	 * <p>使用文件内偏移读写，读取数据不用加锁。</p>
 	 */
-	private final RandomAccessFile fileStream;
+	private final ITorrentStore fileStore;
 	
 	private TorrentStream(
 		long pieceLength, String file, long size, long pos,
-		AtomicLong fileBuffer, TorrentStreamGroup torrentStreamGroup
+		AtomicLong fileBuffer, TorrentStreamGroup torrentStreamGroup, boolean complete
 	) throws DownloadException {
 		this.pieceLength = pieceLength;
 		this.file = file;
@@ -126,12 +134,14 @@ public final class TorrentStream {
 		this.fileEndPos = pos + size;
 		this.fileBuffer = fileBuffer;
 		this.torrentStreamGroup = torrentStreamGroup;
-		this.pieces = new BitSet();
-		this.pausePieces = new BitSet();
-		this.downloadPieces = new BitSet();
+		// 读取数据不加锁：预先分配位图大小防止扩容
+		final int pieceSize = (int) (this.fileEndPos / pieceLength) + 1;
+		this.pieces = new BitSet(pieceSize);
+		this.pausePieces = new BitSet(pieceSize);
+		this.downloadPieces = new BitSet(pieceSize);
 		this.fileDownloadSize = new AtomicLong(0);
 		this.filePieces = new LinkedBlockingQueue<>();
-		this.fileStream = this.buildFileStream(); // 创建文件流
+		this.fileStore = this.buildFileStore(complete); // 创建文件存储
 	}
 	
 	/**
@@ -156,7 +166,7 @@ public final class TorrentStream {
 		AtomicLong fileBuffer, TorrentStreamGroup torrentStreamGroup,
 		BitSet selectPieces, boolean complete, CountDownLatch sizeCount
 	) throws DownloadException {
-		final var stream = new TorrentStream(pieceLength, file, size, pos, fileBuffer, torrentStreamGroup);
+		final var stream = new TorrentStream(pieceLength, file, size, pos, fileBuffer, torrentStreamGroup, complete);
 		stream.buildFilePiece(); // 加载文件Piece
 		stream.buildFileAsyn(complete, sizeCount); // 异步加载文件
 		stream.buildSelectPieces(selectPieces); // 加载被选中的Piece
@@ -176,20 +186,20 @@ public final class TorrentStream {
 	}
 	
 	/**
-	 * <p>创建文件流</p>
+	 * <p>创建文件存储</p>
+	 * <p>任务已经完成（做种）并且开启内存映射时使用内存映射，其他情况使用FileChannel。</p>
 	 * 
-	 * @return 文件流
+	 * @param complete 任务是否完成
+	 * 
+	 * @return 文件存储
 	 * 
 	 * @throws DownloadException 下载异常
 	 */
-	private RandomAccessFile buildFileStream() throws DownloadException {
-		// 创建文件父目录：父目录不存在会抛出FileNotFoundException
-		FileUtils.buildFolder(this.file, true);
-		try {
-			return new RandomAccessFile(this.file, "rw");
-		} catch (FileNotFoundException e) {
-			throw new DownloadException("创建文件流失败：" + this.file, e);
+	private ITorrentStore buildFileStore(boolean complete) throws DownloadException {
+		if(complete && SystemConfig.getTorrentStoreMapped()) {
+			return MappedTorrentStore.newInstance(this.file, this.fileSize);
 		}
+		return FileChannelTorrentStore.newInstance(this.file);
 	}
 	
 	/**
@@ -202,10 +212,11 @@ public final class TorrentStream {
 	
 	/**
 	 * <p>卸载文件流</p>
-	 * <p>设置不选中下载</p>
+	 * <p>设置不选中下载、卸载文件存储</p>
 	 */
 	public void uninstall() {
 		this.selected = false;
+		this.fileStore.uninstall();
 	}
 	
 	/**
@@ -217,6 +228,15 @@ public final class TorrentStream {
 		return this.selected;
 	}
 	
+	/**
+	 * <p>获取文件路径</p>
+	 * 
+	 * @return 文件路径
+	 */
+	public String file() {
+		return this.file;
+	}
+	
 	/**
 	 * <p>判断{@code path}是不是当前文件流的文件路径</p>
 	 * 
@@ -241,6 +261,7 @@ public final class TorrentStream {
 	 * <p>选择未下载的Piece</p>
 	 * <p>选择Piece没有下载完成、不处于暂停Piece和下载中的Piece，选择后清除暂停的Piece。</p>
 	 * <p>如果挑选不到符合条件的Piece并且任务处于接近完成状态时，那么可以选择下载中的Piece进行下载。</p>
+	 * <p>只在文件Piece范围内逐个判断Peer含有的Piece（{@link BitSet#nextSetBit(int)}按字跳过空位），不用创建临时位图。</p>
 	 * 
 	 * @param peerPieces Peer已下载Piece位图
 	 * @param suggestPieces Peer推荐Piece位图：优先使用
@@ -251,68 +272,110 @@ public final class TorrentStream {
 		if(peerPieces.isEmpty()) { // Peer没有已下载Piece数据
 			return null;
 		}
-		synchronized (this) {
-			final BitSet pickPieces = new BitSet(); // 挑选的Piece
+		synchronized (this.pickLock) {
+			int index = -1;
 			if(!suggestPieces.isEmpty()) {
 				// 优先使用Peer推荐Piece位图
-				pickPieces.or(suggestPieces);
-				pickPieces.andNot(this.pieces);
-				pickPieces.andNot(this.pausePieces);
-				pickPieces.andNot(this.downloadPieces);
+				index = this.pickIndex(suggestPieces, true, true);
 			}
-			if(pickPieces.isEmpty()) {
+			if(index < 0) {
 				// Peer已下载Piece位图
-				pickPieces.or(peerPieces);
-				pickPieces.andNot(this.pieces);
-				pickPieces.andNot(this.pausePieces);
-				pickPieces.andNot(this.downloadPieces);
+				index = this.pickIndex(peerPieces, true, true);
 			}
 			this.pausePieces.clear(); // 清空暂停Piece位图
 			// 如果挑选不到Piece
-			if(pickPieces.isEmpty()) {
+			if(index < 0) {
 				// 任务接近完成
 				if(this.torrentStreamGroup.remainingPieceSize() <= SystemConfig.getPieceRepeatSize()) {
 					LOGGER.debug("选择Piece：任务接近完成重复选择下载中的Piece");
-					pickPieces.or(peerPieces);
-					pickPieces.andNot(this.pieces);
-					if(pickPieces.isEmpty()) {
-						LOGGER.debug("选择Piece：Piece已经全部下载完成（接近完成）");
-						return null;
-					}
+					index = this.pickIndex(peerPieces, false, false);
 				} else {
 					// 排除暂停Piece位图
 					LOGGER.debug("选择Piece：排除暂停Piece");
-					pickPieces.or(peerPieces);
-					pickPieces.andNot(this.pieces);
-					pickPieces.andNot(this.downloadPieces);
-					if(pickPieces.isEmpty()) {
-						LOGGER.debug("选择Piece：Piece已经全部下载完成（排除暂停）");
-						return null;
-					}
+					index = this.pickIndex(peerPieces, false, true);
 				}
 			}
-			final int index = pickPieces.nextSetBit(this.fileBeginPieceIndex);
-			if(index == -1 || index > this.fileEndPieceIndex) {
+			if(index < 0) {
 				LOGGER.debug("选择Piece：找不到Piece");
 				return null;
 			}
 			LOGGER.debug("下载中Piece：{}-{}", index, this.downloadPieces);
 			this.downloadPieces.set(index); // 设置下载中
-			int begin = 0; // Piece开始内偏移
-			boolean verify = true; // 是否验证
-			// 第一块获取开始偏移
-			if(index == this.fileBeginPieceIndex) {
-				verify = false;
-				begin = firstPiecePos();
+			return this.buildTorrentPiece(index);
+		}
+	}
+	
+	/**
+	 * <p>在文件Piece范围内挑选Piece</p>
+	 * <p>必须在{@link #pickLock}中调用</p>
+	 * 
+	 * @param peerPieces 可以选择的Piece位图
+	 * @param excludePause 是否排除暂停Piece
+	 * @param excludeDownload 是否排除下载中Piece
+	 * 
+	 * @return Piece索引：{@code -1}-没有符合条件的Piece
+	 */
+	private int pickIndex(final BitSet peerPieces, boolean excludePause, boolean excludeDownload) {
+		int index = peerPieces.nextSetBit(this.fileBeginPieceIndex);
+		while(index >= 0 && index <= this.fileEndPieceIndex) {
+			if(
+				!this.pieces.get(index) &&
+				!(excludePause && this.pausePieces.get(index)) &&
+				!(excludeDownload && this.downloadPieces.get(index))
+			) {
+				return index;
 			}
-			int end = (int) this.pieceLength; // Piece结束内偏移
-			// 最后一块获取结束偏移
-			if(index == this.fileEndPieceIndex) {
-				verify = false;
-				end = lastPiecePos();
+			index = peerPieces.nextSetBit(index + 1);
+		}
+		return -1;
+	}
+	
+	/**
+	 * <p>选择指定的Piece</p>
+	 * <p>{@linkplain PiecePicker Piece选择器}选中Piece后创建下载Piece</p>
+	 * 
+	 * @param index Piece索引
+	 * 
+	 * @return 下载Piece：{@code null}-Piece不在文件范围内、已经下载或者下载中
+	 */
+	public TorrentPiece pick(int index) {
+		if(!this.haveIndex(index)) {
+			return null;
+		}
+		synchronized (this.pickLock) {
+			// 重新加载任务时下载中的Piece会重新成为待选Piece：不能重复下载
+			if(this.havePiece(index) || this.downloadPieces.get(index)) {
+				return null;
 			}
-			return TorrentPiece.newInstance(this.torrentStreamGroup.pieceHash(index), this.pieceLength, index, begin, end, verify);
+			LOGGER.debug("下载中Piece：{}-{}", index, this.downloadPieces);
+			this.downloadPieces.set(index); // 设置下载中
+			return this.buildTorrentPiece(index);
+		}
+	}
+	
+	/**
+	 * <p>创建下载Piece</p>
+	 * <p>第一块和最后一块Piece只下载文件范围内的数据，不用校验。</p>
+	 * 
+	 * @param index Piece索引
+	 * 
+	 * @return 下载Piece
+	 */
+	private TorrentPiece buildTorrentPiece(int index) {
+		int begin = 0; // Piece开始内偏移
+		boolean verify = true; // 是否验证
+		// 第一块获取开始偏移
+		if(index == this.fileBeginPieceIndex) {
+			verify = false;
+			begin = firstPiecePos();
 		}
+		int end = (int) this.pieceLength; // Piece结束内偏移
+		// 最后一块获取结束偏移
+		if(index == this.fileEndPieceIndex) {
+			verify = false;
+			end = lastPiecePos();
+		}
+		return TorrentPiece.newInstance(this.torrentStreamGroup.pieceHash(index), this.pieceLength, index, begin, end, verify);
 	}
 
 	/**
@@ -386,6 +449,7 @@ public final class TorrentStream {
 	
 	/**
 	 * <p>读取Piece数据</p>
+	 * <p>读取数据不用加锁：多个Peer可以同时读取不同的Piece</p>
 	 * 
 	 * @param index Piece索引
 	 * @param size 数据大小
@@ -396,15 +460,14 @@ public final class TorrentStream {
 	 * @see #read(int, int, int, boolean)
 	 */
 	public byte[] read(int index, int size, int pos) {
-		synchronized (this) {
-			return read(index, size, pos, false);
-		}
+		return read(index, size, pos, false);
 	}
 	
 	/**
 	 * <p>读取Piece数据</p>
 	 * <p>如果选择的Piece不在文件范围内返回：{@code null}</p>
 	 * <p>如果读取数据只有部分符合文件的范围，会自动修正范围，读取符合部分数据返回。</p>
+	 * <p>Piece缓存写入文件完成后才会从缓存队列中删除，所以先读缓存再读文件可以保证读取数据完整。</p>
 	 * 
 	 * @param index Piece索引
 	 * @param size 数据大小
@@ -428,35 +491,92 @@ public final class TorrentStream {
 			return torrentPiece.read(pos, size);
 		}
 		// 从文件中读取数据
-		long seek = 0L; // 文件偏移
 		final long beginPos = this.pieceLength * index + pos; // 开始偏移
-		final long endPos = beginPos + size; // 结束偏移
-		if(beginPos >= this.fileEndPos) {
+		final int length = this.fileLength(beginPos, size);
+		if(length <= 0) {
 			return null;
 		}
-		if(endPos <= this.fileBeginPos) {
-			return null;
+		final byte[] bytes = new byte[length];
+		try {
+			this.fileStore.read(ByteBuffer.wrap(bytes), this.fileSeek(beginPos));
+		} catch (IOException e) {
+			LOGGER.error("Piece读取异常：{}-{}-{}-{}", index, size, pos, ignorePieces, e);
 		}
-		if(beginPos <= this.fileBeginPos) { // Piece包含文件开始
-			size = (int) (size - (this.fileBeginPos - beginPos));
-		} else { // 文件包含Piece开始
-			seek = beginPos - this.fileBeginPos;
+		return bytes;
+	}
+	
+	/**
+	 * <p>读取Piece数据写入缓冲</p>
+	 * <p>直接读取文件数据写入缓冲，不用创建临时数组。</p>
+	 * <p>如果读取数据只有部分符合文件的范围，会自动修正范围，读取符合部分数据写入缓冲。</p>
+	 * 
+	 * @param index Piece索引
+	 * @param size 数据大小
+	 * @param pos 数据偏移
+	 * @param buffer 缓冲
+	 * 
+	 * @return 读取数据长度：{@code 0}-Piece不在文件范围内或者没有下载
+	 */
+	public int read(int index, int size, int pos, ByteBuffer buffer) {
+		if(!this.haveIndex(index) || !this.havePiece(index)) {
+			return 0;
 		}
-		// Piece包含文件结束
-		if(endPos >= this.fileEndPos) {
-			size = (int) (size - (endPos - this.fileEndPos));
+		// 从Piece缓存中读取数据
+		final TorrentPiece torrentPiece = this.torrentPiece(index);
+		if(torrentPiece != null) {
+			final byte[] bytes = torrentPiece.read(pos, size);
+			if(bytes == null) {
+				return 0;
+			}
+			buffer.put(bytes);
+			return bytes.length;
 		}
-		if(size <= 0) {
-			return null;
+		// 从文件中读取数据
+		final long beginPos = this.pieceLength * index + pos; // 开始偏移
+		final int length = this.fileLength(beginPos, size);
+		if(length <= 0) {
+			return 0;
 		}
-		final byte[] bytes = new byte[size];
+		final int limit = buffer.limit();
+		buffer.limit(buffer.position() + length);
 		try {
-			this.fileStream.seek(seek); // 注意线程安全
-			this.fileStream.read(bytes);
+			return this.fileStore.read(buffer, this.fileSeek(beginPos));
 		} catch (IOException e) {
-			LOGGER.error("Piece读取异常：{}-{}-{}-{}", index, size, pos, ignorePieces, e);
+			LOGGER.error("Piece读取异常：{}-{}-{}", index, size, pos, e);
+		} finally {
+			buffer.limit(limit);
 		}
-		return bytes;
+		return 0;
+	}
+	
+	/**
+	 * <p>获取文件内偏移</p>
+	 * 
+	 * @param beginPos 开始偏移（任务绝对偏移）
+	 * 
+	 * @return 文件内偏移
+	 */
+	private long fileSeek(long beginPos) {
+		if(beginPos <= this.fileBeginPos) { // Piece包含文件开始
+			return 0L;
+		}
+		return beginPos - this.fileBeginPos; // 文件包含Piece开始
+	}
+	
+	/**
+	 * <p>获取文件范围内的数据长度</p>
+	 * 
+	 * @param beginPos 开始偏移（任务绝对偏移）
+	 * @param size 数据大小
+	 * 
+	 * @return 数据长度：小于等于{@code 0}-不在文件范围内
+	 */
+	private int fileLength(long beginPos, int size) {
+		final long endPos = beginPos + size; // 结束偏移
+		if(beginPos >= this.fileEndPos || endPos <= this.fileBeginPos) {
+			return 0;
+		}
+		return (int) (Math.min(endPos, this.fileEndPos) - Math.max(beginPos, this.fileBeginPos));
 	}
 	
 	/**
@@ -474,8 +594,10 @@ public final class TorrentStream {
 	 * @param index Piece索引
 	 */
 	private void done(int index) {
-		this.pieces.set(index); // 下载成功
-		this.downloadPieces.clear(index); // 去掉下载状态
+		synchronized (this.pickLock) {
+			this.pieces.set(index); // 下载成功
+			this.downloadPieces.clear(index); // 去掉下载状态
+		}
 		this.torrentStreamGroup.done(index); // 设置Piece下载完成
 	}
 
@@ -489,7 +611,7 @@ public final class TorrentStream {
 		if(!piece.contain(this.fileBeginPos, this.fileEndPos)) {
 			return;
 		}
-		synchronized (this) {
+		synchronized (this.pickLock) {
 			this.pausePieces.set(piece.getIndex()); // 设置暂停Piece位图
 			this.downloadPieces.clear(piece.getIndex()); // 清除下载中Piece位图
 		}
@@ -510,34 +632,22 @@ public final class TorrentStream {
 	 */
 	public void release() {
 		this.flush();
-		try {
-			this.fileStream.close();
-		} catch (IOException e) {
-			LOGGER.error("TorrentStream关闭异常", e);
-		}
+		this.fileStore.release();
 	}
 	
 	/**
 	 * <p>将Piece缓存写入文件</p>
+	 * <p>Piece写入文件后才从缓存队列中删除：防止读取数据时Piece既不在缓存也不在文件</p>
+	 * <p>只有刷出线程删除队列头部元素，所以{@code peek}和{@code poll}获取的是同一个Piece。</p>
 	 */
 	public void flush() {
-		synchronized (this) {
-			final var list = new ArrayList<TorrentPiece>();
-			this.filePieces.drainTo(list);
-			this.flush(list);
-		}
-	}
-
-	/**
-	 * <p>将Piece数据写入文件</p>
-	 * 
-	 * @param list Piece数据
-	 */
-	private void flush(List<TorrentPiece> list) {
-		if(CollectionUtils.isEmpty(list)) {
-			return;
+		synchronized (this.flushLock) {
+			TorrentPiece piece;
+			while((piece = this.filePieces.peek()) != null) {
+				this.flush(piece);
+				this.filePieces.poll();
+			}
 		}
-		list.stream().forEach(piece -> this.flush(piece));
 	}
 	
 	/**
@@ -570,8 +680,7 @@ public final class TorrentStream {
 			return;
 		}
 		try {
-			this.fileStream.seek(seek); // 注意线程安全
-			this.fileStream.write(piece.getData(), offset, length);
+			this.fileStore.write(ByteBuffer.wrap(piece.getData(), offset, length), seek);
 		} catch (IOException e) {
 			LOGGER.error("Piece写入文件异常", e);
 		}
@@ -653,59 +762,50 @@ public final class TorrentStream {
 	
 	/**
 	 * <p>加载文件Piece位图</p>
-	 * <p>任务没有完成时已下载的Piece需要校验Hash（第一块和最后一块不校验）</p>
+	 * <p>任务没有完成时优先使用快速恢复数据，文件信息不一致时已下载的Piece需要校验Hash（第一块和最后一块不校验）。</p>
+	 * <p>中间的Piece使用{@linkplain TorrentStreamVerifier 文件Piece校验}多线程校验</p>
 	 * 
 	 * @param complete 任务是否完成
 	 * 
 	 * @throws IOException IO异常
 	 */
 	private void buildFilePieces(boolean complete) throws IOException {
-		int pos = 0;
-		int length = 0;
-		byte[] hash = null;
-		byte[] bytes = null;
-		boolean verify = true; // 是否校验
-		if(this.fileStream.length() == 0) { // 文件还没有开始下载
+		if(this.fileStore.size() == 0) { // 文件还没有开始下载
 			return;
 		}
-		// TODO：优化加载速度
-		for (int index = this.fileBeginPieceIndex; index <= this.fileEndPieceIndex; index++) {
-			if(complete) { // 任务已经完成
+		if(complete) { // 任务已经完成
+			for (int index = this.fileBeginPieceIndex; index <= this.fileEndPieceIndex; index++) {
 				this.done(index);
-				continue;
-			}
-			if(this.fileInOnePiece()) {
-				verify = false;
-				pos = this.firstPiecePos();
-				length = this.firstPieceSize();
-			} else {
-				// TODO：只有单个文件、填充文件
-				if(index == this.fileBeginPieceIndex) {
-					verify = false;
-					pos = this.firstPiecePos();
-					length = this.firstPieceSize();
-				} else if(index == this.fileEndPieceIndex) {
-					verify = false;
-					pos = 0;
-					length = this.lastPieceSize();
-				} else {
-					verify = true;
-					pos = 0;
-					length = (int) this.pieceLength;
-				}
-			}
-			bytes = read(index, length, pos, true); // 读取数据
-			if(verify) { // 校验Hash
-				hash = StringUtils.sha1(bytes); // TODO：优化使用一个算法对象
-				if(ArrayUtils.equals(hash, this.torrentStreamGroup.pieceHash(index))) {
-					this.done(index);
-				}
-			} else { // 不校验Hash：验证是否有数据
-				if(this.haveData(bytes)) {
-					this.done(index);
-				}
 			}
+			return;
 		}
+		// 快速恢复数据：文件信息没有变化
+		final BitSet resumePieces = this.torrentStreamGroup.resumePieces(this.file);
+		if(resumePieces != null) {
+			resumePieces.stream()
+				.filter(this::haveIndex)
+				.forEach(this::done);
+			LOGGER.debug("文件流使用快速恢复数据：{}-{}", this.file, this.pieces.cardinality());
+			return;
+		}
+		// 第一块和最后一块不校验Hash：验证是否有数据
+		if(this.haveData(this.read(this.fileBeginPieceIndex, this.firstPieceSize(), this.firstPiecePos(), true))) {
+			this.done(this.fileBeginPieceIndex);
+		}
+		if(this.fileInOnePiece()) {
+			return;
+		}
+		// TODO：只有单个文件、填充文件
+		if(this.haveData(this.read(this.fileEndPieceIndex, this.lastPieceSize(), 0, true))) {
+			this.done(this.fileEndPieceIndex);
+		}
+		// 校验Hash：多线程
+		final BitSet verifyPieces = TorrentStreamVerifier.verify(
+			this.file, this.fileStore, this.pieceLength, this.fileBeginPos,
+			this.fileBeginPieceIndex + 1, this.fileEndPieceIndex - 1,
+			this.torrentStreamGroup
+		);
+		verifyPieces.stream().forEach(this::done);
 		if(LOGGER.isDebugEnabled()) {
 			LOGGER.debug("当前文件流已下载Piece数量：{}，剩余下载Piece数量：{}",
 				this.pieces.cardinality(),
@@ -79,25 +79,36 @@ public final class TorrentStreamGroup {
 	 * <p>如果文件开始选择下载然后不选择下载时，文件流不删除，标记为不下载即可。</p>
 	 */
 	private final List<TorrentStream> streams;
+	/**
+	 * <p>快速恢复数据</p>
+	 */
+	private final TorrentStreamResume resume;
+	/**
+	 * <p>Piece选择器</p>
+	 */
+	private final PiecePicker picker;
 	/**
 	 * <p>BT任务信息</p>
 	 */
 	private final TorrentSession torrentSession;
 
-	private TorrentStreamGroup(BitSet pieces, BitSet selectPieces, List<TorrentStream> streams, TorrentSession torrentSession) {
+	private TorrentStreamGroup(BitSet pieces, BitSet selectPieces, List<TorrentStream> streams, TorrentStreamResume resume, TorrentSession torrentSession) {
 		this.pieces = pieces;
 		this.selectPieces = selectPieces;
 		this.full = false;
 		this.fullPieces = new BitSet();
 		this.fullPieces.or(this.pieces);
 		this.streams = streams;
+		this.resume = resume;
 		this.torrent = torrentSession.torrent();
+		this.picker = PiecePicker.newInstance(this.torrent.getInfo().pieceSize());
 		this.torrentSession = torrentSession;
 		this.fileBuffer = new AtomicLong(0);
 	}
 	
 	/**
 	 * <p>创建文件流组</p>
+	 * <p>加载快速恢复数据：文件信息没有变化时不用校验Hash</p>
 	 * 
 	 * @param folder 任务下载目录
 	 * @param files 任务文件
@@ -113,7 +124,8 @@ public final class TorrentStreamGroup {
 		final BitSet pieces = new BitSet(torrentInfo.pieceSize());
 		final BitSet selectPieces = new BitSet(torrentInfo.pieceSize());
 		final List<TorrentStream> streams = new ArrayList<>(files.size());
-		final TorrentStreamGroup torrentStreamGroup = new TorrentStreamGroup(pieces, selectPieces, streams, torrentSession);
+		final TorrentStreamResume resume = TorrentStreamResume.newInstance(folder, torrentSession.infoHashHex(), torrentInfo.pieceSize());
+		final TorrentStreamGroup torrentStreamGroup = new TorrentStreamGroup(pieces, selectPieces, streams, resume, torrentSession);
 		// 下载文件数量
 		final int fileCount = (int) files.stream()
 			.filter(file -> file.selected())
@@ -211,6 +223,10 @@ public final class TorrentStreamGroup {
 			final int bIndex = sortList.indexOf(b);
 			return Integer.compare(aIndex, bIndex);
 		});
+		// 重置待选Piece：异步加载的已下载Piece完成后删除
+		synchronized (this.pieces) {
+			this.picker.candidates(this.selectPieces, this.pieces);
+		}
 		// 异步等待加载完成
 		SystemThreadContext.submit(() -> {
 			try {
@@ -259,6 +275,8 @@ public final class TorrentStreamGroup {
 	
 	/**
 	 * <p>挑选下载Piece</p>
+	 * <p>优先使用{@linkplain PiecePicker Piece选择器}选择（稀有优先），没有选中时按照文件顺序挑选（暂停Piece、任务接近完成）。</p>
+	 * <p>Piece选择器选中的Piece已经下载或者下载中时（文件流拒绝）重新选择：拒绝的Piece已经从待选Piece中删除</p>
 	 * <p>如果文件流没有被选中下载不挑选Piece</p>
 	 * 
 	 * @param peerPieces Peer已下载Piece位图
@@ -266,14 +284,28 @@ public final class TorrentStreamGroup {
 	 * 
 	 * @return 下载Piece
 	 * 
+	 * @see PiecePicker#pick(BitSet, BitSet)
+	 * @see TorrentStream#pick(int)
 	 * @see TorrentStream#pick(BitSet, BitSet)
 	 */
 	public TorrentPiece pick(final BitSet peerPieces, final BitSet suggestPieces) {
 		TorrentPiece pickPiece = null;
+		int index;
+		while((index = this.picker.pick(peerPieces, suggestPieces)) >= 0) {
+			for (TorrentStream torrentStream : this.streams) {
+				if(torrentStream.selected()) { // 下载选中文件
+					pickPiece = torrentStream.pick(index);
+					if(pickPiece != null) {
+						return pickPiece;
+					}
+				}
+			}
+		}
 		for (TorrentStream torrentStream : this.streams) {
 			if(torrentStream.selected()) { // 下载选中文件
 				pickPiece = torrentStream.pick(peerPieces, suggestPieces);
 				if(pickPiece != null) {
+					this.picker.remove(pickPiece.getIndex());
 					break;
 				}
 			}
@@ -281,6 +313,50 @@ public final class TorrentStreamGroup {
 		return pickPiece;
 	}
 	
+	/**
+	 * <p>增加Piece可用度</p>
+	 * 
+	 * @param index Piece索引
+	 * 
+	 * @see PiecePicker#addAvailability(int)
+	 */
+	public void addAvailability(int index) {
+		this.picker.addAvailability(index);
+	}
+	
+	/**
+	 * <p>增加Piece可用度</p>
+	 * 
+	 * @param pieces Piece位图
+	 * 
+	 * @see PiecePicker#addAvailability(BitSet)
+	 */
+	public void addAvailability(BitSet pieces) {
+		this.picker.addAvailability(pieces);
+	}
+	
+	/**
+	 * <p>减少Piece可用度</p>
+	 * 
+	 * @param index Piece索引
+	 * 
+	 * @see PiecePicker#removeAvailability(int)
+	 */
+	public void removeAvailability(int index) {
+		this.picker.removeAvailability(index);
+	}
+	
+	/**
+	 * <p>减少Piece可用度</p>
+	 * 
+	 * @param pieces Piece位图
+	 * 
+	 * @see PiecePicker#removeAvailability(BitSet)
+	 */
+	public void removeAvailability(BitSet pieces) {
+		this.picker.removeAvailability(pieces);
+	}
+	
 	/**
 	 * <p>读取Piece数据</p>
 	 * <p>如果跨越多个文件则合并返回</p>
@@ -293,25 +369,50 @@ public final class TorrentStreamGroup {
 	 * 
 	 * @throws NetException 网络异常
 	 * 
-	 * @see TorrentStream#read(int, int, int)
+	 * @see #read(int, int, int, ByteBuffer)
 	 */
 	public byte[] read(final int index, final int begin, final int length) throws NetException {
 		PacketSizeException.verify(length);
 		final ByteBuffer buffer = ByteBuffer.allocate(length);
+		if(!this.read(index, begin, length, buffer)) {
+			return null;
+		}
+		return buffer.array();
+	}
+	
+	/**
+	 * <p>读取Piece数据</p>
+	 * <p>数据从缓冲当前位置开始写入：发送piece消息时可以直接读取到消息缓冲，不用复制数据。</p>
+	 * 
+	 * @param index Piece索引
+	 * @param begin Piece偏移
+	 * @param length 数据长度
+	 * @param buffer 缓冲：剩余空间不能小于数据长度
+	 * 
+	 * @return 是否读取成功
+	 * 
+	 * @throws NetException 网络异常
+	 * 
+	 * @see TorrentStream#read(int, int, int, ByteBuffer)
+	 * 
+	 * @since 1.3.0
+	 */
+	public boolean read(final int index, final int begin, final int length, final ByteBuffer buffer) throws NetException {
+		PacketSizeException.verify(length);
+		final int position = buffer.position();
 		for (TorrentStream torrentStream : this.streams) {
-			final byte[] bytes = torrentStream.read(index, length, begin);
-			if(bytes != null) {
-				buffer.put(bytes);
-				if(buffer.position() >= length) {
-					break;
-				}
+			// 文件数据直接写入缓冲
+			torrentStream.read(index, length, begin, buffer);
+			if(buffer.position() - position >= length) {
+				break;
 			}
 		}
-		if(buffer.position() < length) {
-			LOGGER.warn("读取Piece数据错误，读取长度：{}，要求长度：{}", buffer.position(), length);
-			return null;
+		final int size = buffer.position() - position;
+		if(size < length) {
+			LOGGER.warn("读取Piece数据错误，读取长度：{}，要求长度：{}", size, length);
+			return false;
 		}
-		return buffer.array();
+		return true;
 	}
 
 	/**
@@ -375,10 +476,12 @@ public final class TorrentStreamGroup {
 		synchronized (this.pieces) {
 			this.pieces.set(index);
 		}
+		this.picker.remove(index);
 	}
 	
 	/**
 	 * <p>设置Piece下载失败</p>
+	 * <p>Piece没有下载并且被选中下载时重新添加待选Piece</p>
 	 * 
 	 * @param piece Piece
 	 * 
@@ -388,6 +491,10 @@ public final class TorrentStreamGroup {
 		for (TorrentStream torrentStream : this.streams) {
 			torrentStream.undone(piece);
 		}
+		final int index = piece.getIndex();
+		if(!this.havePiece(index) && this.selectPieces.get(index)) {
+			this.picker.candidate(index);
+		}
 	}
 	
 	/**
@@ -504,6 +611,42 @@ public final class TorrentStreamGroup {
 		}
 	}
 	
+	/**
+	 * <p>获取快速恢复数据中文件已下载Piece位图</p>
+	 * 
+	 * @param path 文件路径
+	 * 
+	 * @return 已下载Piece位图：{@code null}-文件信息不一致（需要校验Hash）
+	 * 
+	 * @see TorrentStreamResume#pieces(String)
+	 */
+	public BitSet resumePieces(String path) {
+		return this.resume.pieces(path);
+	}
+	
+	/**
+	 * <p>保存快速恢复数据</p>
+	 * <p>先复制Piece位图再刷出缓存：保存的Piece必须已经写入文件，刷出缓存后新增的Piece下次保存。</p>
+	 * <p>任务下载完成时刷出缓存并删除快速恢复文件</p>
+	 */
+	public void saveResume() {
+		if(this.complete()) {
+			this.flush();
+			this.resume.delete();
+			return;
+		}
+		final BitSet pieces;
+		synchronized (this.pieces) {
+			pieces = (BitSet) this.pieces.clone();
+		}
+		this.flush();
+		final List<String> paths = new ArrayList<>(this.streams.size());
+		for (TorrentStream torrentStream : this.streams) {
+			paths.add(torrentStream.file());
+		}
+		this.resume.save(pieces, paths);
+	}
+	
 	/**
 	 * <p>获取任务已下载大小</p>
 	 * 
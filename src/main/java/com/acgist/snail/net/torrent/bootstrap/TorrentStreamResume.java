@@ -0,0 +1,249 @@
+package com.acgist.snail.net.torrent.bootstrap;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.acgist.snail.system.bencode.BEncodeDecoder;
+import com.acgist.snail.system.bencode.BEncodeEncoder;
+import com.acgist.snail.utils.BitfieldUtils;
+import com.acgist.snail.utils.FileUtils;
+
+/**
+ * <p>快速恢复数据</p>
+ * <p>保存已下载Piece位图、文件大小和文件修改时间，任务重新加载时直接使用保存的Piece位图，不用重新校验Hash。</p>
+ * <p>保存前已经刷出缓存，保存时记录刷出缓存后的文件大小和修改时间。</p>
+ * <p>文件大小或者修改时间和保存时不一致（保存后继续写入、文件被截断或者替换）时使用Hash校验。</p>
+ * <p>任务下载完成后删除快速恢复文件</p>
+ * <p>文件格式：B编码</p>
+ * <pre>
+ * d
+ * 	6:pieces已下载Piece位图
+ * 	5:filesl
+ * 		d4:path文件路径4:sizei文件大小e8:modifiedi文件修改时间ee
+ * 	e
+ * e
+ * </pre>
+ * 
+ * @author acgist
+ * @since 1.3.0
+ */
+public final class TorrentStreamResume {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(TorrentStreamResume.class);
+
+	/**
+	 * <p>文件后缀：{@value}</p>
+	 */
+	private static final String RESUME_SUFFIX = ".resume";
+	/**
+	 * <p>临时文件后缀：{@value}</p>
+	 * <p>先写入临时文件再替换，防止写入过程中退出导致文件损坏。</p>
+	 */
+	private static final String RESUME_TEMP_SUFFIX = ".tmp";
+	/**
+	 * <p>已下载Piece位图：{@value}</p>
+	 */
+	private static final String KEY_PIECES = "pieces";
+	/**
+	 * <p>文件信息列表：{@value}</p>
+	 */
+	private static final String KEY_FILES = "files";
+	/**
+	 * <p>文件路径：{@value}</p>
+	 */
+	private static final String KEY_PATH = "path";
+	/**
+	 * <p>文件大小：{@value}</p>
+	 */
+	private static final String KEY_SIZE = "size";
+	/**
+	 * <p>文件修改时间：{@value}</p>
+	 */
+	private static final String KEY_MODIFIED = "modified";
+
+	/**
+	 * <p>快速恢复文件路径</p>
+	 */
+	private final String file;
+	/**
+	 * <p>Piece数量</p>
+	 */
+	private final int pieceSize;
+	/**
+	 * <p>保存的已下载Piece位图</p>
+	 */
+	private final BitSet pieces;
+	/**
+	 * <p>保存的文件信息</p>
+	 * <p>文件路径=文件信息</p>
+	 */
+	private final Map<String, FileInfo> files;
+
+	private TorrentStreamResume(String file, int pieceSize) {
+		this.file = file;
+		this.pieceSize = pieceSize;
+		this.pieces = new BitSet(pieceSize);
+		this.files = new HashMap<>();
+	}
+
+	/**
+	 * <p>创建快速恢复数据</p>
+	 * <p>创建时加载已经保存的数据</p>
+	 * 
+	 * @param folder 任务下载目录
+	 * @param infoHashHex 种子InfoHashHex
+	 * @param pieceSize Piece数量
+	 * 
+	 * @return 快速恢复数据
+	 */
+	public static final TorrentStreamResume newInstance(String folder, String infoHashHex, int pieceSize) {
+		final String file = FileUtils.file(folder, infoHashHex + RESUME_SUFFIX);
+		final var resume = new TorrentStreamResume(file, pieceSize);
+		resume.load();
+		return resume;
+	}
+
+	/**
+	 * <p>加载快速恢复文件</p>
+	 * <p>文件不存在或者格式错误时忽略：所有文件使用Hash校验</p>
+	 */
+	private void load() {
+		final File resumeFile = new File(this.file);
+		if(!resumeFile.exists()) {
+			return;
+		}
+		try {
+			final var decoder = BEncodeDecoder.newInstance(Files.readAllBytes(resumeFile.toPath()));
+			final Map<String, Object> resume = decoder.nextMap();
+			final byte[] bitfield = BEncodeDecoder.getBytes(resume, KEY_PIECES);
+			final List<Object> files = BEncodeDecoder.getList(resume, KEY_FILES);
+			if(bitfield == null) {
+				LOGGER.warn("快速恢复文件格式错误：{}", this.file);
+				return;
+			}
+			this.pieces.or(BitfieldUtils.toBitSet(bitfield));
+			for (Object object : files) {
+				final Map<?, ?> fileInfo = (Map<?, ?>) object;
+				final String path = BEncodeDecoder.getString(fileInfo, KEY_PATH);
+				final Long size = BEncodeDecoder.getLong(fileInfo, KEY_SIZE);
+				final Long modified = BEncodeDecoder.getLong(fileInfo, KEY_MODIFIED);
+				if(path != null && size != null && modified != null) {
+					this.files.put(path, new FileInfo(size, modified));
+				}
+			}
+			LOGGER.debug("加载快速恢复文件：{}-{}", this.file, this.pieces.cardinality());
+		} catch (Exception e) {
+			LOGGER.error("加载快速恢复文件异常：{}", this.file, e);
+			this.pieces.clear();
+			this.files.clear();
+		}
+	}
+
+	/**
+	 * <p>获取文件已下载Piece位图</p>
+	 * <p>文件大小和修改时间都和保存时一致时返回保存的Piece位图，否则返回{@code null}（需要校验Hash）。</p>
+	 * <p>返回的Piece位图包含所有文件的Piece，使用时需要过滤文件范围。</p>
+	 * 
+	 * @param path 文件路径
+	 * 
+	 * @return 已下载Piece位图：{@code null}-文件信息不一致
+	 */
+	public BitSet pieces(String path) {
+		final FileInfo fileInfo = this.files.get(path);
+		if(fileInfo == null) {
+			return null;
+		}
+		final File file = new File(path);
+		if(
+			!file.exists() ||
+			file.length() != fileInfo.size ||
+			file.lastModified() != fileInfo.modified
+		) {
+			LOGGER.debug("快速恢复文件信息不一致：{}", path);
+			return null;
+		}
+		return this.pieces;
+	}
+
+	/**
+	 * <p>保存快速恢复文件</p>
+	 * <p>保存前必须将Piece缓存写入文件：Piece位图中的Piece必须已经写入文件，文件大小和修改时间在刷出缓存后读取。</p>
+	 * <p>定时任务和释放资源可能同时保存：加锁防止同时写入临时文件</p>
+	 * 
+	 * @param pieces 已下载Piece位图
+	 * @param paths 文件路径
+	 */
+	public synchronized void save(BitSet pieces, List<String> paths) {
+		final List<Object> files = new ArrayList<>(paths.size());
+		for (String path : paths) {
+			final File file = new File(path);
+			if(!file.exists()) {
+				continue;
+			}
+			final Map<String, Object> fileInfo = new LinkedHashMap<>();
+			fileInfo.put(KEY_PATH, path);
+			fileInfo.put(KEY_SIZE, file.length());
+			fileInfo.put(KEY_MODIFIED, file.lastModified());
+			files.add(fileInfo);
+		}
+		final Map<String, Object> resume = new LinkedHashMap<>();
+		resume.put(KEY_PIECES, BitfieldUtils.toBytes(this.pieceSize, pieces));
+		resume.put(KEY_FILES, files);
+		final String tempFile = this.file + RESUME_TEMP_SUFFIX;
+		FileUtils.write(tempFile, BEncodeEncoder.encodeMap(resume));
+		try {
+			Files.move(Paths.get(tempFile), Paths.get(this.file), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			LOGGER.debug("保存快速恢复文件：{}-{}", this.file, pieces.cardinality());
+		} catch (IOException e) {
+			LOGGER.error("保存快速恢复文件异常：{}", this.file, e);
+		}
+	}
+
+	/**
+	 * <p>删除快速恢复文件</p>
+	 * <p>任务下载完成后不再需要快速恢复数据</p>
+	 */
+	public synchronized void delete() {
+		if(new File(this.file).exists()) {
+			LOGGER.debug("删除快速恢复文件：{}", this.file);
+			FileUtils.delete(this.file);
+		}
+	}
+
+	/**
+	 * <p>保存的文件信息</p>
+	 * 
+	 * @author acgist
+	 * @since 1.3.0
+	 */
+	private static final class FileInfo {
+
+		/**
+		 * <p>文件大小</p>
+		 */
+		private final long size;
+		/**
+		 * <p>文件修改时间</p>
+		 */
+		private final long modified;
+
+		private FileInfo(long size, long modified) {
+			this.size = size;
+			this.modified = modified;
+		}
+
+	}
+
+}
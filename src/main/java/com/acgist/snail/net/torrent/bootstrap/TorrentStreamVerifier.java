@@ -0,0 +1,235 @@
+package com.acgist.snail.net.torrent.bootstrap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.BitSet;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.acgist.snail.net.ByteBufferPool;
+import com.acgist.snail.net.torrent.bootstrap.store.ITorrentStore;
+import com.acgist.snail.system.config.SystemConfig;
+import com.acgist.snail.system.context.SystemThreadContext;
+import com.acgist.snail.utils.DigestUtils;
+
+/**
+ * <p>文件Piece校验</p>
+ * <p>使用ForkJoin拆分Piece范围，多个线程同时读取文件数据校验Hash。</p>
+ * <p>每个线程复用散列算法对象，数据缓冲从缓冲池获取，按照缓冲大小分段读取Piece数据计算Hash。</p>
+ * 
+ * @author acgist
+ * @since 1.3.0
+ */
+public final class TorrentStreamVerifier extends RecursiveTask<BitSet> {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(TorrentStreamVerifier.class);
+
+	/**
+	 * <p>拆分阈值：{@value}</p>
+	 * <p>Piece数量小于等于阈值时直接校验</p>
+	 */
+	private static final int THRESHOLD = 8;
+	/**
+	 * <p>进度日志比例：{@value}</p>
+	 */
+	private static final int PROGRESS_SCALE = 10;
+	/**
+	 * <p>线程散列算法对象</p>
+	 */
+	private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(DigestUtils::sha1);
+	/**
+	 * <p>数据缓冲大小：{@value}</p>
+	 * <p>不超过缓冲池最大容量：Piece大小超过缓冲大小时分段读取</p>
+	 */
+	private static final int BUFFER_SIZE = 64 * SystemConfig.ONE_KB;
+
+	/**
+	 * <p>文件路径</p>
+	 */
+	private final String file;
+	/**
+	 * <p>文件存储</p>
+	 */
+	private final ITorrentStore fileStore;
+	/**
+	 * <p>Piece大小</p>
+	 */
+	private final long pieceLength;
+	/**
+	 * <p>文件开始偏移</p>
+	 */
+	private final long fileBeginPos;
+	/**
+	 * <p>校验Piece开始索引：包含</p>
+	 */
+	private final int beginIndex;
+	/**
+	 * <p>校验Piece结束索引：包含</p>
+	 */
+	private final int endIndex;
+	/**
+	 * <p>Piece数量</p>
+	 * <p>用于计算校验进度</p>
+	 */
+	private final int total;
+	/**
+	 * <p>已校验Piece数量</p>
+	 */
+	private final AtomicInteger progress;
+	/**
+	 * <p>下载文件组</p>
+	 * <p>获取Piece的Hash数据</p>
+	 */
+	private final TorrentStreamGroup torrentStreamGroup;
+
+	private TorrentStreamVerifier(
+		String file, ITorrentStore fileStore, long pieceLength, long fileBeginPos,
+		int beginIndex, int endIndex, int total, AtomicInteger progress,
+		TorrentStreamGroup torrentStreamGroup
+	) {
+		this.file = file;
+		this.fileStore = fileStore;
+		this.pieceLength = pieceLength;
+		this.fileBeginPos = fileBeginPos;
+		this.beginIndex = beginIndex;
+		this.endIndex = endIndex;
+		this.total = total;
+		this.progress = progress;
+		this.torrentStreamGroup = torrentStreamGroup;
+	}
+
+	/**
+	 * <p>校验Piece</p>
+	 * <p>所有校验的Piece必须完整的处于文件之中</p>
+	 * 
+	 * @param file 文件路径
+	 * @param fileStore 文件存储
+	 * @param pieceLength Piece大小
+	 * @param fileBeginPos 文件开始偏移
+	 * @param beginIndex 校验Piece开始索引：包含
+	 * @param endIndex 校验Piece结束索引：包含
+	 * @param torrentStreamGroup 下载文件组
+	 * 
+	 * @return 校验成功Piece位图
+	 */
+	public static final BitSet verify(
+		String file, ITorrentStore fileStore, long pieceLength, long fileBeginPos,
+		int beginIndex, int endIndex, TorrentStreamGroup torrentStreamGroup
+	) {
+		if(beginIndex > endIndex) {
+			return new BitSet();
+		}
+		final int total = endIndex - beginIndex + 1;
+		final var verifier = new TorrentStreamVerifier(
+			file, fileStore, pieceLength, fileBeginPos,
+			beginIndex, endIndex, total, new AtomicInteger(0),
+			torrentStreamGroup
+		);
+		return SystemThreadContext.invoke(verifier);
+	}
+
+	@Override
+	protected BitSet compute() {
+		if(this.endIndex - this.beginIndex < THRESHOLD) {
+			return this.verify();
+		}
+		final int middle = (this.beginIndex + this.endIndex) >>> 1;
+		final var left = this.fork(this.beginIndex, middle);
+		final var right = this.fork(middle + 1, this.endIndex);
+		left.fork();
+		final BitSet pieces = right.compute();
+		pieces.or(left.join());
+		return pieces;
+	}
+
+	/**
+	 * <p>创建子任务</p>
+	 * 
+	 * @param beginIndex 校验Piece开始索引
+	 * @param endIndex 校验Piece结束索引
+	 * 
+	 * @return 子任务
+	 */
+	private TorrentStreamVerifier fork(int beginIndex, int endIndex) {
+		return new TorrentStreamVerifier(
+			this.file, this.fileStore, this.pieceLength, this.fileBeginPos,
+			beginIndex, endIndex, this.total, this.progress,
+			this.torrentStreamGroup
+		);
+	}
+
+	/**
+	 * <p>校验Piece</p>
+	 * 
+	 * @return 校验成功Piece位图
+	 */
+	private BitSet verify() {
+		final BitSet pieces = new BitSet();
+		final MessageDigest digest = DIGEST.get();
+		final ByteBuffer buffer = ByteBufferPool.getInstance().allocate((int) Math.min(BUFFER_SIZE, this.pieceLength));
+		try {
+			for (int index = this.beginIndex; index <= this.endIndex; index++) {
+				try {
+					if(this.digest(digest, buffer, index)) {
+						pieces.set(index);
+					}
+				} catch (IOException e) {
+					LOGGER.error("Piece校验异常：{}-{}", this.file, index, e);
+				}
+				this.progress();
+			}
+		} finally {
+			ByteBufferPool.getInstance().release(buffer);
+		}
+		return pieces;
+	}
+
+	/**
+	 * <p>分段读取Piece数据计算Hash</p>
+	 * 
+	 * @param digest 散列算法
+	 * @param buffer 数据缓冲
+	 * @param index Piece索引
+	 * 
+	 * @return 是否校验成功
+	 * 
+	 * @throws IOException IO异常
+	 */
+	private boolean digest(MessageDigest digest, ByteBuffer buffer, int index) throws IOException {
+		digest.reset();
+		final long position = this.pieceLength * index - this.fileBeginPos;
+		long size = 0; // 已经读取数据长度
+		int length; // 单次读取数据长度
+		while(size < this.pieceLength) {
+			buffer.clear().limit((int) Math.min(BUFFER_SIZE, this.pieceLength - size));
+			length = this.fileStore.read(buffer, position + size);
+			if(length <= 0) { // 文件数据不完整
+				return false;
+			}
+			buffer.flip();
+			digest.update(buffer);
+			size += length;
+		}
+		return MessageDigest.isEqual(digest.digest(), this.torrentStreamGroup.pieceHash(index));
+	}
+
+	/**
+	 * <p>记录校验进度</p>
+	 */
+	private void progress() {
+		final int value = this.progress.incrementAndGet();
+		if(LOGGER.isDebugEnabled()) {
+			final int step = Math.max(1, this.total / PROGRESS_SCALE);
+			if(value % step == 0 || value == this.total) {
+				LOGGER.debug("Piece校验进度：{}-{}/{}", this.file, value, this.total);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,474 @@
+package com.acgist.snail.net.torrent.bootstrap;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.acgist.snail.net.http.HTTPClient;
+import com.acgist.snail.pojo.bean.Torrent;
+import com.acgist.snail.pojo.bean.TorrentFile;
+import com.acgist.snail.pojo.bean.TorrentInfo;
+import com.acgist.snail.pojo.bean.TorrentPiece;
+import com.acgist.snail.pojo.session.PeerSession;
+import com.acgist.snail.pojo.session.TorrentSession;
+import com.acgist.snail.pojo.wrapper.HttpHeaderWrapper;
+import com.acgist.snail.system.bandwidth.BandwidthScheduler;
+import com.acgist.snail.system.config.SystemConfig;
+import com.acgist.snail.system.exception.NetException;
+import com.acgist.snail.utils.IoUtils;
+import com.acgist.snail.utils.ThreadUtils;
+import com.acgist.snail.utils.UrlUtils;
+
+/**
+ * <p>Web种子下载器</p>
+ * <p>Web种子作为一个拥有所有Piece的虚拟Peer：使用Piece选择器选择Piece，下载完成的Piece和Peer下载一样提交到流水线校验保存。</p>
+ * <dl>
+ * 	<dt>Web种子（BEP 19）</dt>
+ * 	<dd>通过推荐Piece选择连续的Piece，使用HTTP范围请求下载，跨越多个文件时每个文件发送一个请求。</dd>
+ * 	<dt>HTTP种子（BEP 17）</dt>
+ * 	<dd>每次请求下载一个Piece：{@code url?info_hash=InfoHash&piece=Piece索引&ranges=开始偏移-结束偏移}</dd>
+ * </dl>
+ * <p>协议链接：http://www.bittorrent.org/beps/bep_0019.html</p>
+ * <p>协议链接：http://www.bittorrent.org/beps/bep_0017.html</p>
+ * 
+ * @author acgist
+ * @since 1.3.0
+ */
+public final class WebSeedDownloader implements Runnable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(WebSeedDownloader.class);
+
+	/**
+	 * <p>单次请求最大下载大小：{@value}</p>
+	 */
+	private static final int MAX_DOWNLOAD_LENGTH = 4 * SystemConfig.ONE_MB;
+	/**
+	 * <p>最大连续失败次数：{@value}</p>
+	 */
+	private static final int MAX_FAIL_TIMES = 3;
+	/**
+	 * <p>失败重试等待时间（毫秒）：{@value}</p>
+	 * <p>等待时间=失败重试等待时间*连续失败次数</p>
+	 */
+	private static final long RETRY_INTERVAL = 5000L;
+	/**
+	 * <p>等待Piece最大时间</p>
+	 * <p>没有可以下载的Piece或者流水线已满时等待：Piece下载失败和流水线保存Piece后唤醒</p>
+	 */
+	private static final Duration PIECE_WAIT = Duration.ofSeconds(10);
+	/**
+	 * <p>HTTPS默认端口：{@value}</p>
+	 */
+	private static final int DEFAULT_HTTPS_PORT = 443;
+	/**
+	 * <p>HTTP默认端口：{@value}</p>
+	 */
+	private static final int DEFAULT_HTTP_PORT = 80;
+
+	/**
+	 * <p>是否可用</p>
+	 */
+	private volatile boolean available = true;
+	/**
+	 * <p>当前请求输入流</p>
+	 */
+	private volatile InputStream input;
+	/**
+	 * <p>下载链接</p>
+	 */
+	private final String url;
+	/**
+	 * <p>是否是HTTP种子（BEP 17）</p>
+	 */
+	private final boolean httpSeed;
+	/**
+	 * <p>所有Piece位图</p>
+	 */
+	private final BitSet pieces;
+	/**
+	 * <p>Piece大小</p>
+	 */
+	private final long pieceLength;
+	/**
+	 * <p>种子名称</p>
+	 */
+	private final String name;
+	/**
+	 * <p>是否是多文件种子</p>
+	 */
+	private final boolean multiFile;
+	/**
+	 * <p>下载文件列表（包含填充文件）</p>
+	 */
+	private final List<TorrentFile> files;
+	/**
+	 * <p>Peer信息</p>
+	 * <p>统计下载数据</p>
+	 */
+	private final PeerSession peerSession;
+	/**
+	 * <p>WebSeedDownloader组</p>
+	 * <p>等待Piece</p>
+	 */
+	private final WebSeedDownloaderGroup group;
+	/**
+	 * <p>BT任务信息</p>
+	 */
+	private final TorrentSession torrentSession;
+
+	private WebSeedDownloader(String url, boolean httpSeed, PeerSession peerSession, WebSeedDownloaderGroup group, TorrentSession torrentSession) {
+		final Torrent torrent = torrentSession.torrent();
+		final TorrentInfo info = torrent.getInfo();
+		this.url = url;
+		this.httpSeed = httpSeed;
+		this.pieces = torrentSession.allPieces();
+		this.pieceLength = info.getPieceLength();
+		this.name = torrent.name();
+		this.multiFile = !info.getFiles().isEmpty();
+		this.files = info.files();
+		this.peerSession = peerSession;
+		this.group = group;
+		this.torrentSession = torrentSession;
+	}
+
+	/**
+	 * <p>创建Web种子下载器</p>
+	 * 
+	 * @param url 下载链接
+	 * @param httpSeed 是否是HTTP种子（BEP 17）
+	 * @param group WebSeedDownloader组
+	 * @param torrentSession BT任务信息
+	 * 
+	 * @return Web种子下载器：{@code null}-下载链接错误
+	 */
+	public static final WebSeedDownloader newInstance(String url, boolean httpSeed, WebSeedDownloaderGroup group, TorrentSession torrentSession) {
+		final URI uri;
+		try {
+			uri = new URI(url);
+		} catch (URISyntaxException e) {
+			LOGGER.warn("Web种子链接错误：{}", url, e);
+			return null;
+		}
+		if(uri.getHost() == null) {
+			LOGGER.warn("Web种子链接错误：{}", url);
+			return null;
+		}
+		int port = uri.getPort();
+		if(port < 0) {
+			port = HTTPClient.HTTPS_SCHEME.equalsIgnoreCase(uri.getScheme()) ? DEFAULT_HTTPS_PORT : DEFAULT_HTTP_PORT;
+		}
+		final PeerSession peerSession = PeerSession.newInstance(torrentSession.statistics(), uri.getHost(), port);
+		return new WebSeedDownloader(url, httpSeed, peerSession, group, torrentSession);
+	}
+
+	/**
+	 * <p>下载线程</p>
+	 * <p>循环选择Piece下载，下载失败等待后重试，连续失败超过{@linkplain #MAX_FAIL_TIMES 最大次数}时丢弃。</p>
+	 * <p>流水线已满或者没有可以下载的Piece时等待唤醒</p>
+	 */
+	@Override
+	public void run() {
+		LOGGER.debug("Web种子开始下载：{}", this.url);
+		int failTimes = 0;
+		while(this.downloadable()) {
+			// 选择Piece前记录唤醒次数：防止判断后等待前唤醒丢失
+			final int signals = this.group.signals();
+			if(this.torrentSession.pipelineFull()) {
+				this.group.await(signals, PIECE_WAIT);
+				continue;
+			}
+			final List<TorrentPiece> pieces = this.pick();
+			if(pieces.isEmpty()) {
+				// 剩余Piece正在被其他Peer下载
+				this.group.await(signals, PIECE_WAIT);
+				continue;
+			}
+			try {
+				this.download(pieces);
+				failTimes = 0;
+			} catch (NetException | IOException e) {
+				if(!this.downloadable()) {
+					LOGGER.debug("Web种子下载异常：{}", this.url, e);
+					break;
+				}
+				failTimes++;
+				LOGGER.warn("Web种子下载异常：{}-{}", this.url, failTimes, e);
+				if(failTimes >= MAX_FAIL_TIMES) {
+					LOGGER.info("丢弃Web种子（连续失败）：{}", this.url);
+					this.available = false;
+					break;
+				}
+				ThreadUtils.sleep(RETRY_INTERVAL * failTimes);
+			} finally {
+				this.close();
+			}
+		}
+		LOGGER.debug("Web种子结束下载：{}", this.url);
+	}
+
+	/**
+	 * <p>释放资源</p>
+	 * <p>关闭输入流：防止下载线程被读取阻塞</p>
+	 */
+	public void release() {
+		LOGGER.debug("释放Web种子：{}", this.url);
+		this.available = false;
+		this.close();
+	}
+
+	/**
+	 * <p>判断是否可以下载</p>
+	 * 
+	 * @return 是否可以下载
+	 */
+	private boolean downloadable() {
+		return
+			this.available &&
+			this.torrentSession.downloadable() &&
+			!this.torrentSession.completed() &&
+			!Thread.currentThread().isInterrupted();
+	}
+
+	/**
+	 * <p>选择下载Piece</p>
+	 * <p>推荐Piece设置为上个Piece结束位置所在的Piece，选择的Piece不连续时放回。</p>
+	 * <p>HTTP种子每次只选择一个Piece</p>
+	 * 
+	 * @return 连续的Piece
+	 */
+	private List<TorrentPiece> pick() {
+		long length = 0L;
+		final BitSet suggestPieces = new BitSet();
+		final List<TorrentPiece> list = new ArrayList<>();
+		while(length < MAX_DOWNLOAD_LENGTH) {
+			final TorrentPiece piece = this.torrentSession.pick(this.pieces, suggestPieces);
+			if(piece == null) {
+				break;
+			}
+			if(!list.isEmpty() && piece.beginPos() != list.get(list.size() - 1).endPos()) {
+				this.torrentSession.undone(piece);
+				break;
+			}
+			list.add(piece);
+			length += piece.getLength();
+			if(this.httpSeed) {
+				break;
+			}
+			suggestPieces.clear();
+			suggestPieces.set((int) (piece.endPos() / this.pieceLength));
+		}
+		return list;
+	}
+
+	/**
+	 * <p>下载Piece</p>
+	 * <p>数据读取到Piece结束位置时提交Piece，没有完成的Piece放回。</p>
+	 * 
+	 * @param pieces 连续的Piece
+	 * 
+	 * @throws NetException 网络异常
+	 * @throws IOException IO异常
+	 */
+	private void download(List<TorrentPiece> pieces) throws NetException, IOException {
+		final long begin = pieces.get(0).beginPos();
+		final long end = pieces.get(pieces.size() - 1).endPos();
+		final byte[] bytes = new byte[(int) (end - begin)];
+		int index = 0;
+		int position = 0;
+		try {
+			if(this.httpSeed) {
+				this.input = this.openHttpSeed(pieces.get(0));
+				position = this.read(bytes, position, bytes.length);
+				index = this.complete(pieces, index, bytes, begin, position);
+				return;
+			}
+			long fileBegin = 0L;
+			for (TorrentFile file : this.files) {
+				final long fileEnd = fileBegin + file.getLength();
+				if(fileEnd > begin && fileBegin < end) {
+					final long regionBegin = Math.max(begin, fileBegin);
+					final long regionEnd = Math.min(end, fileEnd);
+					final int length = (int) (regionEnd - regionBegin);
+					if(file.path().startsWith(TorrentInfo.PADDING_FILE_PREFIX)) {
+						// 填充文件：数据全是零
+						position += length;
+					} else {
+						this.input = this.openWebSeed(this.fileUrl(file), regionBegin - fileBegin, regionEnd - fileBegin);
+						position = this.read(bytes, position, length);
+						this.close();
+					}
+					index = this.complete(pieces, index, bytes, begin, position);
+				}
+				if(fileEnd >= end) {
+					break;
+				}
+				fileBegin = fileEnd;
+			}
+		} finally {
+			for (; index < pieces.size(); index++) {
+				this.torrentSession.undone(pieces.get(index));
+			}
+		}
+	}
+
+	/**
+	 * <p>读取数据</p>
+	 * <p>每次读取后申请下载令牌：没有令牌时阻塞下载线程</p>
+	 * 
+	 * @param bytes 数据
+	 * @param position 写入位置
+	 * @param length 读取长度
+	 * 
+	 * @return 读取后写入位置
+	 * 
+	 * @throws NetException 网络异常
+	 * @throws IOException IO异常
+	 */
+	private int read(byte[] bytes, int position, int length) throws NetException, IOException {
+		int size;
+		int remaining = length;
+		while(remaining > 0 && this.downloadable()) {
+			size = this.input.read(bytes, position, remaining);
+			if(size < 0) {
+				throw new NetException("Web种子数据不完整");
+			}
+			position += size;
+			remaining -= size;
+			BandwidthScheduler.download().acquire(this.peerSession.statistics().downloadBandwidth(), size);
+		}
+		if(remaining > 0) {
+			throw new NetException("Web种子下载中断");
+		}
+		return position;
+	}
+
+	/**
+	 * <p>提交已经读取完成的Piece</p>
+	 * 
+	 * @param pieces 连续的Piece
+	 * @param index 没有提交的Piece索引
+	 * @param bytes 数据
+	 * @param begin 数据开始偏移
+	 * @param position 数据读取位置
+	 * 
+	 * @return 没有提交的Piece索引
+	 */
+	private int complete(List<TorrentPiece> pieces, int index, byte[] bytes, long begin, int position) {
+		while(index < pieces.size()) {
+			final TorrentPiece piece = pieces.get(index);
+			final int offset = (int) (piece.beginPos() - begin);
+			if(offset + piece.getLength() > position) {
+				break;
+			}
+			piece.write(piece.getBegin(), Arrays.copyOfRange(bytes, offset, offset + piece.getLength()));
+			this.torrentSession.complete(this.peerSession, piece);
+			index++;
+		}
+		return index;
+	}
+
+	/**
+	 * <p>获取文件下载链接（BEP 19）</p>
+	 * <p>单文件种子：链接以{@code /}结尾时添加种子名称</p>
+	 * <p>多文件种子：链接/种子名称/文件路径</p>
+	 * 
+	 * @param file 文件
+	 * 
+	 * @return 文件下载链接
+	 */
+	private String fileUrl(TorrentFile file) {
+		if(!this.multiFile) {
+			return this.url.endsWith(TorrentFile.SEPARATOR) ? this.url + UrlUtils.encode(this.name) : this.url;
+		}
+		final String path = Stream.of(file.path().split(TorrentFile.SEPARATOR))
+			.map(UrlUtils::encode)
+			.collect(Collectors.joining(TorrentFile.SEPARATOR));
+		final String url = this.url.endsWith(TorrentFile.SEPARATOR) ? this.url : this.url + TorrentFile.SEPARATOR;
+		return url + UrlUtils.encode(this.name) + TorrentFile.SEPARATOR + path;
+	}
+
+	/**
+	 * <p>打开Web种子输入流（BEP 19）</p>
+	 * <p>服务器不支持范围请求时只能从文件开始位置读取</p>
+	 * 
+	 * @param url 文件下载链接
+	 * @param begin 文件开始偏移
+	 * @param end 文件结束偏移（不包含）
+	 * 
+	 * @return 输入流
+	 * 
+	 * @throws NetException 网络异常
+	 * 
+	 * @see HttpHeaderWrapper#HEADER_RANGE
+	 */
+	private InputStream openWebSeed(String url, long begin, long end) throws NetException {
+		final var client = HTTPClient.newInstance(url, SystemConfig.CONNECT_TIMEOUT, SystemConfig.DOWNLOAD_TIMEOUT);
+		final HttpResponse<InputStream> response = client
+			.range(begin, end)
+			.get(BodyHandlers.ofInputStream());
+		if(response == null) {
+			throw new NetException("Web种子请求失败");
+		}
+		final var headers = HttpHeaderWrapper.newInstance(response.headers());
+		if(HTTPClient.partialContent(response) && headers.beginRange() == begin) {
+			return response.body();
+		}
+		if(HTTPClient.ok(response) && begin == 0L) {
+			return response.body();
+		}
+		IoUtils.close(response.body());
+		throw new NetException("Web种子请求失败：" + response.statusCode());
+	}
+
+	/**
+	 * <p>打开HTTP种子输入流（BEP 17）</p>
+	 * 
+	 * @param piece Piece
+	 * 
+	 * @return 输入流
+	 * 
+	 * @throws NetException 网络异常
+	 */
+	private InputStream openHttpSeed(TorrentPiece piece) throws NetException {
+		final String url = this.url +
+			(this.url.contains("?") ? "&" : "?") +
+			"info_hash=" + this.torrentSession.infoHash().infoHashUrl() +
+			"&piece=" + piece.getIndex() +
+			"&ranges=" + piece.getBegin() + "-" + (piece.getBegin() + piece.getLength() - 1);
+		final var client = HTTPClient.newInstance(url, SystemConfig.CONNECT_TIMEOUT, SystemConfig.DOWNLOAD_TIMEOUT);
+		final HttpResponse<InputStream> response = client
+			.http1()
+			.get(BodyHandlers.ofInputStream());
+		if(response == null) {
+			throw new NetException("HTTP种子请求失败");
+		}
+		if(HTTPClient.ok(response)) {
+			return response.body();
+		}
+		// 503：服务器繁忙
+		IoUtils.close(response.body());
+		throw new NetException("HTTP种子请求失败：" + response.statusCode());
+	}
+
+	/**
+	 * <p>关闭输入流</p>
+	 */
+	private void close() {
+		IoUtils.close(this.input);
+		this.input = null;
+	}
+
+}
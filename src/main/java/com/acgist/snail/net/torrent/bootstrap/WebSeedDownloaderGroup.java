@@ -0,0 +1,154 @@
+package com.acgist.snail.net.torrent.bootstrap;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.acgist.snail.pojo.bean.Torrent;
+import com.acgist.snail.pojo.session.TorrentSession;
+import com.acgist.snail.utils.CollectionUtils;
+import com.acgist.snail.utils.ThreadUtils;
+
+/**
+ * <p>WebSeedDownloader组</p>
+ * <p>加载种子中的Web种子（BEP 19）和HTTP种子（BEP 17），每个下载链接使用一个下载线程。</p>
+ * <p>没有可以下载的Piece或者流水线已满时下载线程等待：Piece下载失败和流水线保存Piece后唤醒</p>
+ * 
+ * @author acgist
+ * @since 1.3.0
+ */
+public final class WebSeedDownloaderGroup {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(WebSeedDownloaderGroup.class);
+
+	/**
+	 * <p>WebSeedDownloader</p>
+	 * <p>任务线程加载、释放资源时清空：使用线程安全集合</p>
+	 */
+	private final List<WebSeedDownloader> downloaders;
+	/**
+	 * <p>唤醒次数</p>
+	 * <p>选择Piece前记录：等待前判断是否已经唤醒，防止丢失唤醒。</p>
+	 */
+	private volatile int signals = 0;
+	/**
+	 * <p>Piece等待锁</p>
+	 */
+	private final Lock pieceLock = new ReentrantLock();
+	/**
+	 * <p>Piece等待条件</p>
+	 */
+	private final Condition pieceCondition = this.pieceLock.newCondition();
+	/**
+	 * <p>BT任务信息</p>
+	 */
+	private final TorrentSession torrentSession;
+
+	private WebSeedDownloaderGroup(TorrentSession torrentSession) {
+		this.downloaders = new CopyOnWriteArrayList<>();
+		this.torrentSession = torrentSession;
+	}
+
+	public static final WebSeedDownloaderGroup newInstance(TorrentSession torrentSession) {
+		return new WebSeedDownloaderGroup(torrentSession);
+	}
+
+	/**
+	 * <p>开始下载</p>
+	 */
+	public void download() {
+		final Torrent torrent = this.torrentSession.torrent();
+		if(torrent == null) {
+			return;
+		}
+		if(CollectionUtils.isNotEmpty(torrent.getUrlList())) {
+			torrent.getUrlList().stream()
+				.distinct()
+				.forEach(url -> this.download(url, false));
+		}
+		if(CollectionUtils.isNotEmpty(torrent.getHttpseeds())) {
+			torrent.getHttpseeds().stream()
+				.distinct()
+				.forEach(url -> this.download(url, true));
+		}
+		LOGGER.debug("加载WebSeedDownloader数量：{}", this.downloaders.size());
+	}
+
+	/**
+	 * <p>创建WebSeedDownloader并开始下载</p>
+	 * 
+	 * @param url 下载链接
+	 * @param httpSeed 是否是HTTP种子（BEP 17）
+	 */
+	private void download(String url, boolean httpSeed) {
+		final WebSeedDownloader downloader = WebSeedDownloader.newInstance(url, httpSeed, this, this.torrentSession);
+		if(downloader != null) {
+			this.downloaders.add(downloader);
+			this.torrentSession.submit(downloader);
+		}
+	}
+
+	/**
+	 * <p>获取唤醒次数</p>
+	 * 
+	 * @return 唤醒次数
+	 * 
+	 * @see #await(int, Duration)
+	 */
+	int signals() {
+		return this.signals;
+	}
+
+	/**
+	 * <p>等待Piece</p>
+	 * <p>记录唤醒次数后已经唤醒时不再等待</p>
+	 * 
+	 * @param signals 选择Piece前的唤醒次数
+	 * @param timeout 最大等待时间
+	 */
+	void await(int signals, Duration timeout) {
+		this.pieceLock.lock();
+		try {
+			if(this.signals == signals) {
+				ThreadUtils.await(this.pieceCondition, timeout);
+			}
+		} finally {
+			this.pieceLock.unlock();
+		}
+	}
+
+	/**
+	 * <p>唤醒等待Piece的下载线程</p>
+	 * <p>Piece下载失败（重新成为待选Piece）、流水线保存Piece（流水线空闲）时唤醒</p>
+	 */
+	public void signal() {
+		if(this.downloaders.isEmpty()) {
+			return;
+		}
+		this.pieceLock.lock();
+		try {
+			this.signals++;
+			this.pieceCondition.signalAll();
+		} finally {
+			this.pieceLock.unlock();
+		}
+	}
+
+	/**
+	 * <p>释放资源</p>
+	 * <p>唤醒等待Piece的下载线程：下载线程判断不可下载后结束</p>
+	 */
+	public void release() {
+		LOGGER.debug("释放WebSeedDownloaderGroup");
+		this.downloaders.forEach(WebSeedDownloader::release);
+		this.signal();
+		this.downloaders.clear();
+	}
+
+}
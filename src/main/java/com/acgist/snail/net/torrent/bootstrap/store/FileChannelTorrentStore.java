@@ -0,0 +1,102 @@
+package com.acgist.snail.net.torrent.bootstrap.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.acgist.snail.system.exception.DownloadException;
+import com.acgist.snail.utils.FileUtils;
+
+/**
+ * <p>文件存储：FileChannel</p>
+ * <p>使用{@link FileChannel#read(ByteBuffer, long)}和{@link FileChannel#write(ByteBuffer, long)}读写数据，不会修改文件指针，多个线程可以同时读写同一个文件的不同位置。</p>
+ * 
+ * @author acgist
+ * @since 1.3.0
+ */
+public final class FileChannelTorrentStore implements ITorrentStore {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(FileChannelTorrentStore.class);
+
+	/**
+	 * <p>文件路径</p>
+	 */
+	private final String file;
+	/**
+	 * <p>文件通道</p>
+	 */
+	private final FileChannel channel;
+
+	private FileChannelTorrentStore(String file, FileChannel channel) {
+		this.file = file;
+		this.channel = channel;
+	}
+
+	/**
+	 * <p>创建文件存储</p>
+	 * 
+	 * @param file 文件路径
+	 * 
+	 * @return 文件存储
+	 * 
+	 * @throws DownloadException 下载异常
+	 */
+	public static final FileChannelTorrentStore newInstance(String file) throws DownloadException {
+		// 创建文件父目录：父目录不存在会抛出NoSuchFileException
+		FileUtils.buildFolder(file, true);
+		try {
+			final FileChannel channel = FileChannel.open(
+				Paths.get(file),
+				StandardOpenOption.READ,
+				StandardOpenOption.WRITE,
+				StandardOpenOption.CREATE
+			);
+			return new FileChannelTorrentStore(file, channel);
+		} catch (IOException e) {
+			throw new DownloadException("创建文件流失败：" + file, e);
+		}
+	}
+
+	@Override
+	public long size() throws IOException {
+		return this.channel.size();
+	}
+
+	@Override
+	public int read(ByteBuffer buffer, long position) throws IOException {
+		int size = 0; // 读取数据长度
+		int length = 0; // 单次读取数据长度
+		while(buffer.hasRemaining()) {
+			length = this.channel.read(buffer, position + size);
+			if(length < 0) { // 文件结束
+				break;
+			}
+			size += length;
+		}
+		return size;
+	}
+
+	@Override
+	public int write(ByteBuffer buffer, long position) throws IOException {
+		int size = 0; // 写入数据长度
+		while(buffer.hasRemaining()) {
+			size += this.channel.write(buffer, position + size);
+		}
+		return size;
+	}
+
+	@Override
+	public void release() {
+		try {
+			this.channel.close();
+		} catch (IOException e) {
+			LOGGER.error("文件通道关闭异常：{}", this.file, e);
+		}
+	}
+
+}
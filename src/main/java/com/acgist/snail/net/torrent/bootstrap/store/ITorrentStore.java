@@ -0,0 +1,63 @@
+package com.acgist.snail.net.torrent.bootstrap.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * <p>文件存储接口</p>
+ * <p>{@linkplain com.acgist.snail.net.torrent.bootstrap.TorrentStream 文件流}读写文件数据使用的存储引擎</p>
+ * <p>所有读写操作都使用文件绝对偏移（文件内偏移），不能依赖文件指针，实现必须保证多线程同时读写安全。</p>
+ * 
+ * @author acgist
+ * @since 1.3.0
+ */
+public interface ITorrentStore {
+
+	/**
+	 * <p>获取文件大小</p>
+	 * 
+	 * @return 文件大小
+	 * 
+	 * @throws IOException IO异常
+	 */
+	long size() throws IOException;
+
+	/**
+	 * <p>读取数据</p>
+	 * <p>读取数据直到{@code buffer}填满或者文件结束</p>
+	 * 
+	 * @param buffer 数据缓冲
+	 * @param position 文件内偏移
+	 * 
+	 * @return 读取数据长度
+	 * 
+	 * @throws IOException IO异常
+	 */
+	int read(ByteBuffer buffer, long position) throws IOException;
+
+	/**
+	 * <p>写入数据</p>
+	 * <p>写入{@code buffer}全部剩余数据</p>
+	 * 
+	 * @param buffer 数据缓冲
+	 * @param position 文件内偏移
+	 * 
+	 * @return 写入数据长度
+	 * 
+	 * @throws IOException IO异常
+	 */
+	int write(ByteBuffer buffer, long position) throws IOException;
+
+	/**
+	 * <p>卸载文件存储</p>
+	 * <p>释放临时资源（例如：内存映射），再次读写数据时重新加载。</p>
+	 */
+	default void uninstall() {
+	}
+	
+	/**
+	 * <p>释放资源</p>
+	 */
+	void release();
+
+}
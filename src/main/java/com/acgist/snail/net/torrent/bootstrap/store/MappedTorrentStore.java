@@ -0,0 +1,292 @@
+package com.acgist.snail.net.torrent.bootstrap.store;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.acgist.snail.system.config.SystemConfig;
+import com.acgist.snail.system.exception.DownloadException;
+import com.acgist.snail.utils.FileUtils;
+
+/**
+ * <p>文件存储：内存映射</p>
+ * <p>按照窗口大小分段映射文件，读写数据直接操作映射内存，不用分配堆内存和系统调用。</p>
+ * <p>适用于做种：大量读取已经下载完成的文件数据</p>
+ * <p>注意：映射内存释放后不能再被访问（JVM崩溃），所以读写数据加读锁，释放映射加写锁。</p>
+ * <p>注意：只映射文件已有的数据（映射超过文件大小的区域会修改文件大小），没有映射的区域直接使用文件通道读写。</p>
+ * 
+ * @author acgist
+ * @since 1.3.0
+ */
+public final class MappedTorrentStore implements ITorrentStore {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(MappedTorrentStore.class);
+
+	/**
+	 * <p>映射窗口大小：{@value}</p>
+	 */
+	private static final int WINDOW_SIZE = 64 * SystemConfig.ONE_MB;
+	/**
+	 * <p>释放映射内存工具：{@code sun.misc.Unsafe}</p>
+	 * <p>通过反射获取，不能获取时等待GC释放映射内存。</p>
+	 */
+	private static final Object UNSAFE;
+	/**
+	 * <p>释放映射内存方法：{@code invokeCleaner}</p>
+	 */
+	private static final Method INVOKE_CLEANER;
+
+	static {
+		Object unsafe = null;
+		Method invokeCleaner = null;
+		try {
+			final Class<?> clazz = Class.forName("sun.misc.Unsafe");
+			final Field field = clazz.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			unsafe = field.get(null);
+			invokeCleaner = clazz.getMethod("invokeCleaner", ByteBuffer.class);
+		} catch (Exception e) {
+			LOGGER.warn("获取Unsafe异常：映射内存等待GC释放", e);
+			unsafe = null;
+			invokeCleaner = null;
+		}
+		UNSAFE = unsafe;
+		INVOKE_CLEANER = invokeCleaner;
+	}
+
+	/**
+	 * <p>文件路径</p>
+	 */
+	private final String file;
+	/**
+	 * <p>文件大小</p>
+	 * <p>任务文件大小：读写数据不能超过文件大小</p>
+	 */
+	private final long fileSize;
+	/**
+	 * <p>文件通道</p>
+	 */
+	private final FileChannel channel;
+	/**
+	 * <p>映射窗口</p>
+	 * <p>窗口索引=映射窗口</p>
+	 */
+	private final Map<Integer, MappedByteBuffer> windows;
+	/**
+	 * <p>映射锁</p>
+	 * <p>读锁：读写数据；写锁：释放映射；</p>
+	 */
+	private final ReadWriteLock lock;
+
+	private MappedTorrentStore(String file, long fileSize, FileChannel channel) {
+		this.file = file;
+		this.fileSize = fileSize;
+		this.channel = channel;
+		this.windows = new ConcurrentHashMap<>();
+		this.lock = new ReentrantReadWriteLock();
+	}
+
+	/**
+	 * <p>创建文件存储</p>
+	 * 
+	 * @param file 文件路径
+	 * @param fileSize 文件大小
+	 * 
+	 * @return 文件存储
+	 * 
+	 * @throws DownloadException 下载异常
+	 */
+	public static final MappedTorrentStore newInstance(String file, long fileSize) throws DownloadException {
+		// 创建文件父目录：父目录不存在会抛出NoSuchFileException
+		FileUtils.buildFolder(file, true);
+		try {
+			final FileChannel channel = FileChannel.open(
+				Paths.get(file),
+				StandardOpenOption.READ,
+				StandardOpenOption.WRITE,
+				StandardOpenOption.CREATE
+			);
+			return new MappedTorrentStore(file, fileSize, channel);
+		} catch (IOException e) {
+			throw new DownloadException("创建文件流失败：" + file, e);
+		}
+	}
+
+	@Override
+	public long size() throws IOException {
+		return this.channel.size();
+	}
+
+	@Override
+	public int read(ByteBuffer buffer, long position) throws IOException {
+		this.lock.readLock().lock();
+		try {
+			int size = 0; // 读取数据长度
+			int length; // 单次读取数据长度
+			ByteBuffer window;
+			while(buffer.hasRemaining() && position + size < this.fileSize) {
+				window = this.window(position + size);
+				if(window == null) { // 没有映射：直接读取
+					length = this.readChannel(buffer, position + size);
+					if(length <= 0) { // 文件结束
+						break;
+					}
+				} else {
+					length = Math.min(window.remaining(), buffer.remaining());
+					window.limit(window.position() + length);
+					buffer.put(window);
+				}
+				size += length;
+			}
+			return size;
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public int write(ByteBuffer buffer, long position) throws IOException {
+		this.lock.readLock().lock();
+		try {
+			int size = 0; // 写入数据长度
+			int length; // 单次写入数据长度
+			ByteBuffer window;
+			final int limit = buffer.limit();
+			while(buffer.hasRemaining()) {
+				if(position + size >= this.fileSize) {
+					throw new IOException("写入数据超过文件大小：" + this.file);
+				}
+				window = this.window(position + size);
+				if(window == null) { // 没有映射：直接写入
+					length = (int) Math.min(buffer.remaining(), this.fileSize - position - size);
+					buffer.limit(buffer.position() + length);
+					length = this.channel.write(buffer, position + size);
+				} else {
+					length = Math.min(window.remaining(), buffer.remaining());
+					buffer.limit(buffer.position() + length);
+					window.put(buffer);
+				}
+				buffer.limit(limit);
+				size += length;
+			}
+			return size;
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * <p>释放所有映射窗口</p>
+	 * <p>再次读写数据时重新映射</p>
+	 */
+	@Override
+	public void uninstall() {
+		this.lock.writeLock().lock();
+		try {
+			this.windows.values().forEach(this::unmap);
+			this.windows.clear();
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void release() {
+		this.uninstall();
+		try {
+			this.channel.close();
+		} catch (IOException e) {
+			LOGGER.error("文件通道关闭异常：{}", this.file, e);
+		}
+	}
+
+	/**
+	 * <p>使用文件通道读取数据</p>
+	 * <p>读取数据不超过文件大小</p>
+	 * 
+	 * @param buffer 缓冲
+	 * @param position 文件偏移
+	 * 
+	 * @return 读取数据长度
+	 * 
+	 * @throws IOException IO异常
+	 */
+	private int readChannel(ByteBuffer buffer, long position) throws IOException {
+		final int limit = buffer.limit();
+		final int length = (int) Math.min(buffer.remaining(), this.fileSize - position);
+		buffer.limit(buffer.position() + length);
+		try {
+			return this.channel.read(buffer, position);
+		} finally {
+			buffer.limit(limit);
+		}
+	}
+
+	/**
+	 * <p>获取文件偏移所在的映射窗口</p>
+	 * <p>返回窗口视图：{@code position}等于文件偏移在窗口中的偏移</p>
+	 * <p>窗口只映射文件已有的数据：文件长度小于窗口范围时不映射（等待文件写满后再映射）</p>
+	 * 
+	 * @param position 文件偏移
+	 * 
+	 * @return 映射窗口视图：{@code null}-没有映射
+	 * 
+	 * @throws IOException IO异常
+	 */
+	private ByteBuffer window(long position) throws IOException {
+		if(position >= this.fileSize) {
+			return null;
+		}
+		final int index = (int) (position / WINDOW_SIZE);
+		MappedByteBuffer window = this.windows.get(index);
+		if(window == null) {
+			final long windowPos = (long) index * WINDOW_SIZE;
+			final long windowSize = Math.min(WINDOW_SIZE, this.fileSize - windowPos);
+			if(this.channel.size() < windowPos + windowSize) {
+				// 映射超过文件长度的区域会修改文件大小
+				return null;
+			}
+			synchronized (this.windows) {
+				window = this.windows.get(index);
+				if(window == null) {
+					LOGGER.debug("映射文件窗口：{}-{}-{}", this.file, windowPos, windowSize);
+					window = this.channel.map(MapMode.READ_WRITE, windowPos, windowSize);
+					this.windows.put(index, window);
+				}
+			}
+		}
+		final ByteBuffer view = window.duplicate();
+		view.position((int) (position - (long) index * WINDOW_SIZE));
+		return view;
+	}
+
+	/**
+	 * <p>释放映射内存</p>
+	 * 
+	 * @param window 映射窗口
+	 */
+	private void unmap(MappedByteBuffer window) {
+		try {
+			window.force(); // 数据写入磁盘
+			if(INVOKE_CLEANER != null) {
+				INVOKE_CLEANER.invoke(UNSAFE, window);
+			}
+		} catch (Exception e) {
+			LOGGER.error("释放映射内存异常：{}", this.file, e);
+		}
+	}
+
+}
@@ -6,6 +6,9 @@ import java.security.KeyPair;
 import java.security.MessageDigest;
 import java.time.Duration;
 import java.util.Random;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -108,7 +111,11 @@ public final class MSECryptHandshakeHandler {
 	/**
 	 * <p>加密握手锁</p>
 	 */
-	private final Object handshakeLock = new Object();
+	private final Lock handshakeLock = new ReentrantLock();
+	/**
+	 * <p>加密握手完成条件</p>
+	 */
+	private final Condition handshakeCondition = this.handshakeLock.newCondition();
 	/**
 	 * <p>加密套件</p>
 	 */
@@ -270,10 +277,13 @@ public final class MSECryptHandshakeHandler {
 	 */
 	public void handshakeLock() {
 		if(!this.complete) {
-			synchronized (this.handshakeLock) {
+			this.handshakeLock.lock();
+			try {
 				if(!this.complete) {
-					ThreadUtils.wait(this.handshakeLock, Duration.ofSeconds(HANDSHAKE_TIMEOUT));
+					ThreadUtils.await(this.handshakeCondition, Duration.ofSeconds(HANDSHAKE_TIMEOUT));
 				}
+			} finally {
+				this.handshakeLock.unlock();
 			}
 		}
 		// 加密没有完成设置明文
@@ -287,9 +297,7 @@ public final class MSECryptHandshakeHandler {
 	 * <p>释放加密握手锁</p>
 	 */
 	private void unlockHandshake() {
-		synchronized (this.handshakeLock) {
-			this.handshakeLock.notifyAll();
-		}
+		ThreadUtils.signalAll(this.handshakeLock, this.handshakeCondition);
 	}
 
 	/**
@@ -1,9 +1,11 @@
 package com.acgist.snail.net.torrent.dht;
 
 import java.net.InetSocketAddress;
+import java.util.function.Consumer;
 
 import com.acgist.snail.net.UdpClient;
 import com.acgist.snail.net.torrent.TorrentServer;
+import com.acgist.snail.net.torrent.dht.bootstrap.Response;
 import com.acgist.snail.pojo.bean.InfoHash;
 import com.acgist.snail.pojo.session.NodeSession;
 import com.acgist.snail.system.config.SystemConfig;
@@ -65,6 +67,16 @@ public final class DhtClient extends UdpClient<DhtMessageHandler> {
 		this.handler.findNode(this.socketAddress, target);
 	}
 	
+	/**
+	 * <p>查询节点</p>
+	 * 
+	 * @param target NodeId或者InfoHash
+	 * @param callback 响应回调
+	 */
+	public void findNode(byte[] target, Consumer<Response> callback) {
+		this.handler.findNode(this.socketAddress, target, callback);
+	}
+	
 	/**
 	 * <p>查询Peer</p>
 	 * 
@@ -83,6 +95,16 @@ public final class DhtClient extends UdpClient<DhtMessageHandler> {
 		this.handler.getPeers(this.socketAddress, infoHash);
 	}
 	
+	/**
+	 * <p>查询Peer</p>
+	 * 
+	 * @param infoHash InfoHash
+	 * @param callback 响应回调
+	 */
+	public void getPeers(byte[] infoHash, Consumer<Response> callback) {
+		this.handler.getPeers(this.socketAddress, infoHash, callback);
+	}
+	
 	/**
 	 * <p>声明Peer</p>
 	 * 
@@ -2,6 +2,7 @@ package com.acgist.snail.net.torrent.dht;
 
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 import org.slf4j.Logger;
@@ -124,6 +125,7 @@ public final class DhtMessageHandler extends UdpMessageHandler {
 	
 	/**
 	 * <p>处理响应</p>
+	 * <p>处理完成后执行请求的{@linkplain Request#callback() 响应回调}</p>
 	 * 
 	 * @param response 响应
 	 */
@@ -133,6 +135,20 @@ public final class DhtMessageHandler extends UdpMessageHandler {
 			LOGGER.warn("处理DHT响应失败：没有对应的请求");
 			return;
 		}
+		try {
+			this.onResponse(request, response);
+		} finally {
+			request.callback();
+		}
+	}
+	
+	/**
+	 * <p>处理响应</p>
+	 * 
+	 * @param request 请求
+	 * @param response 响应
+	 */
+	private void onResponse(final Request request, final Response response) {
 		LOGGER.debug("处理DHT响应：{}", request.getQ());
 		if(request.getQ() == null) {
 			LOGGER.warn("处理DHT响应失败（类型不支持）：{}", request.getQ());
@@ -177,7 +193,6 @@ public final class DhtMessageHandler extends UdpMessageHandler {
 		final Response response = RESPONSE_GETTER.apply(request);
 		if(SUCCESS_VERIFY.apply(response)) {
 			final NodeSession nodeSession = NodeManager.getInstance().newNodeSession(response.getNodeId(), socketAddress.getHostString(), socketAddress.getPort());
-			NodeManager.getInstance().sortNodes();
 			return nodeSession;
 		}
 		return null;
@@ -204,8 +219,20 @@ public final class DhtMessageHandler extends UdpMessageHandler {
 	 * @param target NodeId或者InfoHash
 	 */
 	public void findNode(InetSocketAddress socketAddress, byte[] target) {
+		this.findNode(socketAddress, target, null);
+	}
+	
+	/**
+	 * <p>发送请求：findNode</p>
+	 * 
+	 * @param socketAddress 地址
+	 * @param target NodeId或者InfoHash
+	 * @param callback 响应回调
+	 */
+	public void findNode(InetSocketAddress socketAddress, byte[] target, Consumer<Response> callback) {
 		LOGGER.debug("发送DHT请求：findNode");
 		final FindNodeRequest request = FindNodeRequest.newRequest(target);
+		request.setCallback(callback);
 		pushMessage(request, socketAddress);
 	}
 	
@@ -237,8 +264,20 @@ public final class DhtMessageHandler extends UdpMessageHandler {
 	 * @param infoHash InfoHash
 	 */
 	public void getPeers(InetSocketAddress socketAddress, byte[] infoHash) {
+		this.getPeers(socketAddress, infoHash, null);
+	}
+	
+	/**
+	 * <p>发送请求：getPeers</p>
+	 * 
+	 * @param socketAddress 地址
+	 * @param infoHash InfoHash
+	 * @param callback 响应回调
+	 */
+	public void getPeers(InetSocketAddress socketAddress, byte[] infoHash, Consumer<Response> callback) {
 		LOGGER.debug("发送DHT请求：getPeers");
 		final GetPeersRequest request = GetPeersRequest.newRequest(infoHash);
+		request.setCallback(callback);
 		pushMessage(request, socketAddress);
 	}
 
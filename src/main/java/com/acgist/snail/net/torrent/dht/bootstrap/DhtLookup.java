@@ -0,0 +1,317 @@
+package com.acgist.snail.net.torrent.dht.bootstrap;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.acgist.snail.net.torrent.dht.DhtClient;
+import com.acgist.snail.net.torrent.dht.DhtMessageHandler;
+import com.acgist.snail.net.torrent.dht.bootstrap.response.FindNodeResponse;
+import com.acgist.snail.net.torrent.dht.bootstrap.response.GetPeersResponse;
+import com.acgist.snail.pojo.session.NodeSession;
+import com.acgist.snail.system.config.DhtConfig;
+import com.acgist.snail.system.config.DhtConfig.QType;
+import com.acgist.snail.system.exception.ArgumentException;
+import com.acgist.snail.utils.ArrayUtils;
+import com.acgist.snail.utils.NetUtils;
+
+/**
+ * <p>DHT迭代查找</p>
+ * <p>协议链接：http://www.bittorrent.org/beps/bep_0005.html</p>
+ * <p>候选节点按照和目标的距离（异或）排序，同时向最近的没有查询的节点发送{@linkplain #ALPHA 多个}请求，收到响应后将返回的节点加入候选节点，继续查询更近的节点。</p>
+ * <p>最近的{@linkplain #K K个}候选节点全部查询完成（没有更近的节点）时查找结束；没有响应的节点从候选节点中删除。</p>
+ * <p>没有NodeId的节点（{@linkplain #MAX_SEED_SIZE 限制数量}）和候选节点同时查询，不占用并发请求数量和请求数量：没有响应时不会阻塞查找。</p>
+ * <p>查找Peer时响应中的Peer在{@linkplain DhtMessageHandler 消息代理}处理响应时加入Peer管理器，不用等待查找结束。</p>
+ * <p>查找完全异步：请求响应和超时（{@link DhtManager}）时执行响应回调继续查找</p>
+ * 
+ * @author acgist
+ * @since 1.3.0
+ */
+public final class DhtLookup {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(DhtLookup.class);
+
+	/**
+	 * <p>并发请求数量：{@value}</p>
+	 */
+	private static final int ALPHA = 3;
+	/**
+	 * <p>最近节点数量：{@value}</p>
+	 */
+	private static final int K = NodeBucket.K;
+	/**
+	 * <p>最大请求数量：{@value}</p>
+	 * <p>防止节点返回大量无效节点导致查找无法结束</p>
+	 */
+	private static final int MAX_QUERY_SIZE = 128;
+	/**
+	 * <p>没有NodeId的节点最大查询数量：{@value}</p>
+	 */
+	private static final int MAX_SEED_SIZE = 32;
+
+	/**
+	 * <p>查找类型</p>
+	 * <p>{@linkplain QType#FIND_NODE 查找节点}或者{@linkplain QType#GET_PEERS 查找Peer}</p>
+	 */
+	private final QType type;
+	/**
+	 * <p>查找目标：NodeId或者InfoHash</p>
+	 */
+	private final byte[] target;
+	/**
+	 * <p>查询</p>
+	 */
+	private final Querier querier;
+	/**
+	 * <p>候选节点</p>
+	 * <p>key=节点和目标的距离（异或）</p>
+	 */
+	private final TreeMap<byte[], NodeSession> candidates;
+	/**
+	 * <p>已经查询的节点</p>
+	 */
+	private final Set<NodeSession> queried;
+	/**
+	 * <p>正在查询的请求数量</p>
+	 */
+	private int inflight;
+	/**
+	 * <p>正在查询的没有NodeId的节点数量</p>
+	 */
+	private int seedInflight;
+	/**
+	 * <p>请求数量</p>
+	 * <p>不含没有NodeId的节点</p>
+	 */
+	private int querySize;
+	/**
+	 * <p>是否完成</p>
+	 */
+	private volatile boolean complete;
+
+	/**
+	 * <p>DHT查询</p>
+	 * <p>向节点发送查找请求：收到响应或者超时（响应为{@code null}）时执行一次响应回调</p>
+	 * 
+	 * @author acgist
+	 * @since 1.3.0
+	 */
+	@FunctionalInterface
+	public interface Querier {
+		
+		/**
+		 * <p>发送查找请求</p>
+		 * 
+		 * @param address 节点地址
+		 * @param callback 响应回调
+		 */
+		void query(InetSocketAddress address, Consumer<Response> callback);
+		
+	}
+	
+	private DhtLookup(QType type, byte[] target, Querier querier) {
+		this.type = type;
+		this.target = target;
+		this.querier = querier;
+		this.candidates = new TreeMap<>(ArrayUtils::compareUnsigned);
+		this.queried = new HashSet<>();
+	}
+
+	/**
+	 * <p>创建查找</p>
+	 * 
+	 * @param type 查找类型：{@linkplain QType#FIND_NODE 查找节点}或者{@linkplain QType#GET_PEERS 查找Peer}
+	 * @param target NodeId或者InfoHash
+	 * 
+	 * @return 查找
+	 */
+	public static final DhtLookup newInstance(QType type, byte[] target) {
+		return newInstance(type, target, (address, callback) -> {
+			final DhtClient client = DhtClient.newInstance(address);
+			if(type == QType.GET_PEERS) {
+				client.getPeers(target, callback);
+			} else {
+				client.findNode(target, callback);
+			}
+		});
+	}
+	
+	/**
+	 * <p>创建查找</p>
+	 * 
+	 * @param type 查找类型：{@linkplain QType#FIND_NODE 查找节点}或者{@linkplain QType#GET_PEERS 查找Peer}
+	 * @param target NodeId或者InfoHash
+	 * @param querier 查询
+	 * 
+	 * @return 查找
+	 */
+	public static final DhtLookup newInstance(QType type, byte[] target, Querier querier) {
+		if(type != QType.FIND_NODE && type != QType.GET_PEERS) {
+			throw new ArgumentException("DHT查找类型错误：" + type);
+		}
+		if(target == null || target.length != DhtConfig.NODE_ID_LENGTH) {
+			throw new ArgumentException("DHT查找目标错误");
+		}
+		return new DhtLookup(type, target, querier);
+	}
+
+	/**
+	 * <p>判断是否完成</p>
+	 * 
+	 * @return {@code true}-完成；{@code false}-没有完成；
+	 */
+	public boolean complete() {
+		return this.complete;
+	}
+
+	/**
+	 * <p>开始查找</p>
+	 * <p>使用系统最近的节点和没有NodeId的节点（种子自带节点、Peer节点）开始查找，没有NodeId的节点响应后加入系统节点和候选节点。</p>
+	 * 
+	 * @param addresses 没有NodeId的节点：超过{@linkplain #MAX_SEED_SIZE 最大查询数量}时忽略多余节点
+	 */
+	public void lookup(List<InetSocketAddress> addresses) {
+		LOGGER.debug("开始DHT查找：{}", this.type);
+		final List<InetSocketAddress> seeds = addresses.size() > MAX_SEED_SIZE ? addresses.subList(0, MAX_SEED_SIZE) : addresses;
+		final List<NodeSession> nodes;
+		synchronized (this) {
+			NodeManager.getInstance().findNode(this.target).forEach(this::candidate);
+			nodes = this.select();
+			// 没有NodeId的节点不占用并发请求数量和请求数量
+			this.seedInflight += seeds.size();
+			this.complete(nodes);
+		}
+		seeds.forEach(address -> this.query(address, null));
+		nodes.forEach(this::query);
+	}
+
+	/**
+	 * <p>查询节点</p>
+	 * 
+	 * @param node 节点
+	 */
+	private void query(NodeSession node) {
+		this.query(NetUtils.buildSocketAddress(node.getHost(), node.getPort()), node);
+	}
+
+	/**
+	 * <p>查询节点</p>
+	 * 
+	 * @param address 节点地址
+	 * @param node 节点：{@code null}-没有NodeId的节点
+	 */
+	private void query(InetSocketAddress address, NodeSession node) {
+		this.querier.query(address, response -> this.response(address, node, response));
+	}
+
+	/**
+	 * <p>处理响应</p>
+	 * <p>成功响应将返回的节点加入候选节点，失败或者超时删除节点，然后继续查询。</p>
+	 * 
+	 * @param address 节点地址
+	 * @param node 节点：{@code null}-没有NodeId的节点
+	 * @param response 响应：{@code null}-超时
+	 */
+	private void response(InetSocketAddress address, NodeSession node, Response response) {
+		final boolean success = DhtMessageHandler.SUCCESS_VERIFY.apply(response);
+		final List<NodeSession> responseNodes = success ? this.nodes(response) : List.of();
+		final List<NodeSession> nodes;
+		synchronized (this) {
+			if(node == null) {
+				this.seedInflight--;
+				if(success) {
+					final NodeSession session = NodeManager.getInstance().newNodeSession(response.getNodeId(), address.getHostString(), address.getPort());
+					session.response();
+					if(this.candidate(session)) {
+						this.queried.add(session);
+					}
+				}
+			} else {
+				this.inflight--;
+				if(!success) {
+					this.candidates.remove(ArrayUtils.xor(node.getId(), this.target));
+				}
+			}
+			responseNodes.forEach(this::candidate);
+			nodes = this.select();
+			this.complete(nodes);
+		}
+		nodes.forEach(this::query);
+	}
+
+	/**
+	 * <p>获取响应节点</p>
+	 * 
+	 * @param response 响应
+	 * 
+	 * @return 响应节点
+	 */
+	private List<NodeSession> nodes(Response response) {
+		if(this.type == QType.GET_PEERS) {
+			return GetPeersResponse.newInstance(response).getNodes();
+		} else {
+			return FindNodeResponse.newInstance(response).getNodes();
+		}
+	}
+
+	/**
+	 * <p>加入候选节点</p>
+	 * 
+	 * @param node 节点
+	 * 
+	 * @return {@code true}-成功；{@code false}-失败（节点ID格式错误）；
+	 */
+	private boolean candidate(NodeSession node) {
+		if(node.getId().length != DhtConfig.NODE_ID_LENGTH) {
+			return false;
+		}
+		this.candidates.putIfAbsent(ArrayUtils.xor(node.getId(), this.target), node);
+		return true;
+	}
+
+	/**
+	 * <p>选择查询节点</p>
+	 * <p>选择最近的{@linkplain #K K个}候选节点中没有查询的节点，正在查询的请求数量不能超过{@linkplain #ALPHA 并发请求数量}。</p>
+	 * 
+	 * @return 查询节点
+	 */
+	private List<NodeSession> select() {
+		if(this.complete) {
+			return List.of();
+		}
+		int size = 0;
+		final List<NodeSession> nodes = new ArrayList<>();
+		for (NodeSession node : this.candidates.values()) {
+			if(size++ >= K || this.inflight >= ALPHA || this.querySize >= MAX_QUERY_SIZE) {
+				break;
+			}
+			if(this.queried.add(node)) {
+				this.inflight++;
+				this.querySize++;
+				nodes.add(node);
+			}
+		}
+		return nodes;
+	}
+
+	/**
+	 * <p>判断查找是否结束</p>
+	 * <p>没有需要查询的节点并且没有正在查询的请求（含没有NodeId的节点）时查找结束</p>
+	 * 
+	 * @param nodes 查询节点
+	 */
+	private void complete(List<NodeSession> nodes) {
+		if(nodes.isEmpty() && this.inflight <= 0 && this.seedInflight <= 0) {
+			LOGGER.debug("DHT查找完成：{}-{}", this.type, this.querySize);
+			this.complete = true;
+		}
+	}
+
+}
@@ -1,58 +1,54 @@
 package com.acgist.snail.net.torrent.dht.bootstrap;
 
-import java.util.LinkedList;
-import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.acgist.snail.system.TimerWheel;
 import com.acgist.snail.system.config.DhtConfig;
-import com.acgist.snail.system.context.SystemThreadContext;
-import com.acgist.snail.utils.ArrayUtils;
+import com.acgist.snail.utils.StringUtils;
 
 /**
  * <p>DHT管理器</p>
- * <p>管理DHT请求</p>
+ * <p>管理DHT请求：使用消息ID索引请求，使用时间轮处理超时请求。</p>
  * 
  * @author acgist
  * @since 1.0.0
  */
 public final class DhtManager {
-	
+
 	private static final Logger LOGGER = LoggerFactory.getLogger(DhtManager.class);
-	
+
 	private static final DhtManager INSTANCE = new DhtManager();
-	
+
+	/**
+	 * <p>消息ID长度：{@value}</p>
+	 * 
+	 * @see DhtService#buildRequestId()
+	 */
+	private static final int ID_LENGTH = 2;
+
 	/**
-	 * <p>DHT请求列表</p>
+	 * <p>DHT请求Map</p>
+	 * <p>key={@link #buildKey(byte[])}</p>
 	 */
-	private final List<Request> requests;
-	
+	private final Map<Integer, Request> requests;
+
 	private DhtManager() {
-		this.requests = new LinkedList<>();
+		this.requests = new ConcurrentHashMap<>();
 	}
-	
+
 	public static final DhtManager getInstance() {
 		return INSTANCE;
 	}
-	
-	/**
-	 * <p>注册DHT服务</p>
-	 */
-	public void register() {
-		LOGGER.debug("注册DHT服务：定时任务");
-		SystemThreadContext.timerFixedDelay(
-			DhtConfig.DHT_REQUEST_CLEAN_INTERVAL,
-			DhtConfig.DHT_REQUEST_CLEAN_INTERVAL,
-			TimeUnit.MINUTES,
-			() -> this.timeout() // 处理超时请求
-		);
-	}
-	
+
 	/**
 	 * <p>放入请求</p>
 	 * <p>如果请求列表中有相同ID的请求删除旧请求</p>
+	 * <p>请求超时后自动删除</p>
 	 * 
 	 * @param request 请求
 	 */
@@ -60,15 +56,20 @@ public final class DhtManager {
 		if(request == null) {
 			return;
 		}
-		synchronized (this.requests) {
-			final Request old = remove(request.getId());
-			if(old != null) {
-				LOGGER.warn("旧DHT请求没有收到响应（删除）");
-			}
-			this.requests.add(request);
+		final Integer key = this.buildKey(request.getId());
+		if(key == null) {
+			LOGGER.warn("放入DHT请求失败（消息ID格式错误）：{}", StringUtils.hex(request.getId()));
+			return;
+		}
+		final Request old = this.requests.put(key, request);
+		if(old != null) {
+			LOGGER.warn("旧DHT请求没有收到响应（删除）");
+			old.notifyResponse();
+			old.callback();
 		}
+		TimerWheel.getInstance().timeout(DhtConfig.TIMEOUT.toMillis(), TimeUnit.MILLISECONDS, () -> this.timeout(key, request));
 	}
-	
+
 	/**
 	 * <p>设置响应</p>
 	 * <p>删除响应对应的请求并返回，同时设置对应节点为可用状态。</p>
@@ -83,54 +84,48 @@ public final class DhtManager {
 		}
 		// 设置节点为可用状态
 		NodeManager.getInstance().available(response);
-		Request request = null;
-		synchronized (this.requests) {
-			request = remove(response.getId());
+		final Integer key = this.buildKey(response.getId());
+		if(key == null) {
+			return null;
 		}
+		final Request request = this.requests.remove(key);
 		if(request == null) {
 			return null;
 		}
 		request.setResponse(response);
 		return request;
 	}
-	
+
 	/**
 	 * <p>处理DHT超时请求</p>
+	 * <p>只删除超时请求本身：消息ID循环使用，相同ID可能已经是新的请求。</p>
+	 * <p>请求超时的节点标记为{@linkplain NodeManager#timeout(java.net.InetSocketAddress) 超时}</p>
+	 * 
+	 * @param key 消息ID
+	 * @param request 请求
 	 */
-	private void timeout() {
-		LOGGER.debug("处理DHT超时请求");
-		synchronized (this.requests) {
-			Request request;
-			final long timeout = DhtConfig.TIMEOUT.toMillis();
-			final long timestamp = System.currentTimeMillis();
-			final var iterator = this.requests.iterator();
-			while(iterator.hasNext()) {
-				request = iterator.next();
-				if(timestamp - request.getTimestamp() > timeout) {
-					iterator.remove();
-				}
-			}
+	private void timeout(Integer key, Request request) {
+		if(this.requests.remove(key, request)) {
+			LOGGER.debug("DHT请求超时：{}", request.getQ());
+			NodeManager.getInstance().timeout(request.getSocketAddress());
+			// 释放响应等待
+			request.notifyResponse();
+			request.callback();
 		}
 	}
-	
+
 	/**
-	 * <p>移除并返回请求</p>
+	 * <p>生成请求Map key</p>
 	 * 
 	 * @param id 消息ID
 	 * 
-	 * @return 请求
+	 * @return key（消息ID格式错误返回{@code null}）
 	 */
-	private Request remove(byte[] id) {
-		Request request;
-		final var iterator = this.requests.iterator();
-		while(iterator.hasNext()) {
-			request = iterator.next();
-			if(ArrayUtils.equals(id, request.getId())) {
-				iterator.remove();
-				return request;
-			}
+	private Integer buildKey(byte[] id) {
+		if(id == null || id.length != ID_LENGTH) {
+			return null;
 		}
-		return null;
+		return ((id[0] & 0xFF) << 8) | (id[1] & 0xFF);
 	}
 
 }
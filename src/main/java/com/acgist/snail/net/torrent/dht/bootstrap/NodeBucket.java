@@ -0,0 +1,228 @@
+package com.acgist.snail.net.torrent.dht.bootstrap;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.function.Predicate;
+
+import com.acgist.snail.pojo.session.NodeSession;
+import com.acgist.snail.utils.ArrayUtils;
+
+/**
+ * <p>DHT节点桶（K桶）</p>
+ * <p>节点按照最近响应时间排序：头部是最久没有响应的节点，尾部是最近响应的节点。</p>
+ * <p>桶满时新节点放入替换缓存；桶中的可疑节点（{@linkplain NodeSession#timeout() 请求超时}没有响应）可以被新节点或者替换缓存中响应的节点替换，正常响应和没有使用的节点不会被替换。</p>
+ * <p>非线程安全：由{@link NodeManager}加锁访问</p>
+ * 
+ * @author acgist
+ * @since 1.3.0
+ */
+public final class NodeBucket {
+
+	/**
+	 * <p>桶容量：{@value}</p>
+	 */
+	public static final int K = 8;
+	/**
+	 * <p>替换缓存容量：{@value}</p>
+	 */
+	private static final int CACHE_SIZE = K;
+
+	/**
+	 * <p>节点</p>
+	 */
+	private final LinkedList<NodeSession> nodes;
+	/**
+	 * <p>替换缓存</p>
+	 * <p>超过容量删除最早加入的节点</p>
+	 */
+	private final LinkedList<NodeSession> caches;
+
+	private NodeBucket() {
+		this.nodes = new LinkedList<>();
+		this.caches = new LinkedList<>();
+	}
+
+	public static final NodeBucket newInstance() {
+		return new NodeBucket();
+	}
+
+	/**
+	 * <p>获取节点（不含替换缓存）</p>
+	 * 
+	 * @return 节点
+	 */
+	public List<NodeSession> nodes() {
+		return this.nodes;
+	}
+
+	/**
+	 * <p>获取节点数量（不含替换缓存）</p>
+	 * 
+	 * @return 节点数量
+	 */
+	public int size() {
+		return this.nodes.size();
+	}
+
+	/**
+	 * <p>选择节点（含替换缓存）</p>
+	 * 
+	 * @param nodeId 节点ID
+	 * 
+	 * @return 节点
+	 */
+	public NodeSession select(byte[] nodeId) {
+		final NodeSession node = this.select(this.nodes, nodeId);
+		if(node != null) {
+			return node;
+		}
+		return this.select(this.caches, nodeId);
+	}
+
+	/**
+	 * <p>添加节点</p>
+	 * 
+	 * @param node 节点
+	 * 
+	 * @return {@code true}-成功；{@code false}-失败（桶已满）；
+	 */
+	public boolean put(NodeSession node) {
+		if(this.nodes.size() >= K) {
+			return false;
+		}
+		this.nodes.addLast(node);
+		return true;
+	}
+
+	/**
+	 * <p>替换可疑节点</p>
+	 * <p>替换连续失败次数最多的节点</p>
+	 * 
+	 * @param node 节点
+	 * 
+	 * @return {@code true}-成功；{@code false}-失败（没有可疑节点）；
+	 */
+	public boolean replace(NodeSession node) {
+		NodeSession replaced = null;
+		for (NodeSession value : this.nodes) {
+			if(value.getFailures() > 0 && (replaced == null || value.getFailures() > replaced.getFailures())) {
+				replaced = value;
+			}
+		}
+		if(replaced == null) {
+			return false;
+		}
+		this.nodes.remove(replaced);
+		this.nodes.addLast(node);
+		return true;
+	}
+
+	/**
+	 * <p>放入替换缓存</p>
+	 * 
+	 * @param node 节点
+	 */
+	public void cache(NodeSession node) {
+		this.caches.addLast(node);
+		if(this.caches.size() > CACHE_SIZE) {
+			this.caches.removeFirst();
+		}
+	}
+
+	/**
+	 * <p>节点响应</p>
+	 * <p>桶中节点移到尾部；替换缓存中节点替换可疑节点。</p>
+	 * 
+	 * @param node 节点
+	 */
+	public void touch(NodeSession node) {
+		if(this.nodes.remove(node)) {
+			this.nodes.addLast(node);
+		} else if(this.caches.remove(node)) {
+			if(!this.put(node) && !this.replace(node)) {
+				this.caches.addLast(node);
+			}
+		}
+	}
+
+	/**
+	 * <p>选择节点（不含替换缓存）</p>
+	 * 
+	 * @param host 地址
+	 * @param port 端口
+	 * 
+	 * @return 节点
+	 */
+	public NodeSession select(String host, int port) {
+		for (NodeSession node : this.nodes) {
+			if(node.getPort() == port && host.equals(node.getHost())) {
+				return node;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * <p>拆分节点桶</p>
+	 * <p>符合条件的节点（含替换缓存）移到新的节点桶</p>
+	 * 
+	 * @param predicate 条件
+	 * 
+	 * @return 新的节点桶
+	 */
+	public NodeBucket split(Predicate<NodeSession> predicate) {
+		final NodeBucket bucket = new NodeBucket();
+		this.split(this.nodes, bucket.nodes, predicate);
+		this.split(this.caches, bucket.caches, predicate);
+		// 拆分后节点桶未满时使用替换缓存补充
+		this.fill();
+		bucket.fill();
+		return bucket;
+	}
+
+	/**
+	 * <p>移动符合条件的节点</p>
+	 * 
+	 * @param source 原始节点
+	 * @param target 目标节点
+	 * @param predicate 条件
+	 */
+	private void split(List<NodeSession> source, List<NodeSession> target, Predicate<NodeSession> predicate) {
+		final Iterator<NodeSession> iterator = source.iterator();
+		while(iterator.hasNext()) {
+			final NodeSession node = iterator.next();
+			if(predicate.test(node)) {
+				iterator.remove();
+				target.add(node);
+			}
+		}
+	}
+
+	/**
+	 * <p>使用替换缓存中最近加入的节点补充节点桶</p>
+	 */
+	private void fill() {
+		while(this.nodes.size() < K && !this.caches.isEmpty()) {
+			this.nodes.addLast(this.caches.removeLast());
+		}
+	}
+
+	/**
+	 * <p>选择节点</p>
+	 * 
+	 * @param nodes 节点
+	 * @param nodeId 节点ID
+	 * 
+	 * @return 节点
+	 */
+	private NodeSession select(List<NodeSession> nodes, byte[] nodeId) {
+		for (NodeSession node : nodes) {
+			if(ArrayUtils.equals(nodeId, node.getId())) {
+				return node;
+			}
+		}
+		return null;
+	}
+
+}
@@ -1,12 +1,11 @@
 package com.acgist.snail.net.torrent.dht.bootstrap;
 
+import java.net.InetSocketAddress;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,8 +23,7 @@ import com.acgist.snail.utils.StringUtils;
  * <p>DHT节点管理器</p>
  * <p>协议链接（Kademlia）：https://baike.baidu.com/item/Kademlia</p>
  * <p>BT=DHT、eMule=KAD</p>
- * 
- * TODO：观察是否需要定时清理Node
+ * <p>路由表：节点按照和系统NodeId相同前缀长度放入{@linkplain NodeBucket 节点桶}，系统NodeId所在节点桶满时拆分，其他节点桶满时放入替换缓存，节点总数有上限。</p>
  * 
  * @author acgist
  * @since 1.0.0
@@ -43,15 +41,12 @@ public final class NodeManager {
 	/**
 	 * <p>Node查找时返回的Node列表长度：{@value}</p>
 	 */
-	private static final int FIND_NODE_SIZE = 8;
-	/**
-	 * <p>Node查找时分片大小：{@value}</p>
-	 */
-	private static final int FIND_NODE_SLICE_SIZE = 3;
+	private static final int FIND_NODE_SIZE = NodeBucket.K;
 	/**
-	 * <p>Node查找时分片最小列表长度：{@value}</p>
+	 * <p>节点桶最大数量：{@value}</p>
+	 * <p>NodeId位数</p>
 	 */
-	private static final int FIND_NODE_MIN_SLICE_SIZE = FIND_NODE_SIZE * FIND_NODE_SLICE_SIZE;
+	private static final int MAX_BUCKET_SIZE = DhtConfig.NODE_ID_LENGTH * Byte.SIZE;
 	
 	/**
 	 * <p>当前客户端的Token</p>
@@ -62,14 +57,16 @@ public final class NodeManager {
 	 */
 	private final byte[] nodeId;
 	/**
-	 * <p>节点列表</p>
+	 * <p>节点桶</p>
+	 * <p>索引=节点ID和系统NodeId相同前缀长度（位）</p>
 	 */
-	private final List<NodeSession> nodes;
+	private final List<NodeBucket> buckets;
 	
 	private NodeManager() {
 		this.token = buildToken();
 		this.nodeId = buildNodeId();
-		this.nodes = new ArrayList<>();
+		this.buckets = new ArrayList<>();
+		this.buckets.add(NodeBucket.newInstance());
 	}
 	
 	public static final NodeManager getInstance() {
@@ -132,8 +129,10 @@ public final class NodeManager {
 	 * @return 所有节点的拷贝
 	 */
 	public List<NodeSession> nodes() {
-		synchronized (this.nodes) {
-			return new ArrayList<>(this.nodes);
+		synchronized (this.buckets) {
+			final List<NodeSession> nodes = new ArrayList<>();
+			this.buckets.forEach(bucket -> nodes.addAll(bucket.nodes()));
+			return nodes;
 		}
 	}
 
@@ -156,7 +155,6 @@ public final class NodeManager {
 					LOGGER.warn("节点格式错误：{}-{}", nodeId, address);
 				}
 			});
-			sortNodes(); // 排序
 		}
 	}
 	
@@ -180,7 +178,7 @@ public final class NodeManager {
 	/**
 	 * <p>添加DHT节点</p>
 	 * <p>加入时不验证状态，使用时才验证。</p>
-	 * <p>添加完成后需要调用{@link #sortNodes()}进行排序</p>
+	 * <p>节点桶已满时节点可能没有加入系统节点列表</p>
 	 * 
 	 * @param nodeId 节点ID
 	 * @param host 地址
@@ -189,34 +187,23 @@ public final class NodeManager {
 	 * @return DHT节点
 	 */
 	public NodeSession newNodeSession(byte[] nodeId, String host, Integer port) {
-		synchronized (this.nodes) {
-			NodeSession nodeSession = select(nodeId);
-			if(nodeSession != null) {
-				return nodeSession;
+		final NodeSession nodeSession = NodeSession.newInstance(nodeId, host, port);
+		if(nodeId.length != DhtConfig.NODE_ID_LENGTH || ArrayUtils.equals(nodeId, this.nodeId)) {
+			return nodeSession;
+		}
+		synchronized (this.buckets) {
+			final NodeSession oldNodeSession = this.buckets.get(this.bucketIndex(nodeId)).select(nodeId);
+			if(oldNodeSession != null) {
+				return oldNodeSession;
 			}
-			if(nodeSession == null) {
-				nodeSession = NodeSession.newInstance(nodeId, host, port);
-				if(nodeSession.getId().length == DhtConfig.NODE_ID_LENGTH) {
-					if(LOGGER.isDebugEnabled()) {
-						LOGGER.debug("添加Node：{}-{}-{}", StringUtils.hex(nodeId), nodeSession.getHost(), nodeSession.getPort());
-					}
-					this.nodes.add(nodeSession);
-				}
+			if(LOGGER.isDebugEnabled()) {
+				LOGGER.debug("添加Node：{}-{}-{}", StringUtils.hex(nodeId), nodeSession.getHost(), nodeSession.getPort());
 			}
+			this.put(nodeSession);
 			return nodeSession;
 		}
 	}
 
-	/**
-	 * <p>排序节点</p>
-	 * <p>{@linkplain #newNodeSession(byte[], String, Integer) 添加DHT节点}后进行排序，添加大量节点时可以在添加完成后一次性排序。</p>
-	 */
-	public void sortNodes() {
-		synchronized (this.nodes) {
-			Collections.sort(this.nodes);
-		}
-	}
-	
 	/**
 	 * <p>验证节点</p>
 	 * 
@@ -243,147 +230,154 @@ public final class NodeManager {
 	
 	/**
 	 * <p>查找节点列表</p>
+	 * <p>节点和目标的距离按照所在节点桶分段：目标所在节点桶最近，其次是更靠近系统NodeId的节点桶，最后是其他节点桶（由近到远）。</p>
+	 * <p>依次从近到远选择节点桶，选出足够数量的节点后按照距离排序。</p>
+	 * <p>不修改节点状态：节点状态只由响应和请求超时修改</p>
 	 * 
 	 * @param target InfoHash或者NodeId
 	 * 
 	 * @return 节点列表
-	 * 
-	 * TODO：缓存结果（使用WeakReference）
 	 */
 	public List<NodeSession> findNode(byte[] target) {
-		List<NodeSession> nodes; // 筛选节点的副本
-		synchronized (this.nodes) {
-			nodes = this.nodes.stream()
-				// 排除正在验证中的节点
-				.filter(node -> node.getStatus() != NodeSession.Status.VERIFY)
+		if(target == null || target.length != DhtConfig.NODE_ID_LENGTH) {
+			return List.of();
+		}
+		final List<NodeSession> nodes = new ArrayList<>();
+		synchronized (this.buckets) {
+			final int index = this.bucketIndex(target);
+			this.selectNode(this.buckets.get(index), nodes);
+			if(nodes.size() < FIND_NODE_SIZE) {
+				for (int jndex = index + 1; jndex < this.buckets.size(); jndex++) {
+					this.selectNode(this.buckets.get(jndex), nodes);
+				}
+			}
+			for (int jndex = index - 1; jndex >= 0 && nodes.size() < FIND_NODE_SIZE; jndex--) {
+				this.selectNode(this.buckets.get(jndex), nodes);
+			}
+			return nodes.stream()
+				.map(node -> {
+					return Map.entry(ArrayUtils.xor(node.getId(), target), node);
+				})
+				.sorted((a, b) -> {
+					return ArrayUtils.compareUnsigned(a.getKey(), b.getKey());
+				})
+				.map(Map.Entry::getValue)
+				.limit(FIND_NODE_SIZE)
 				.collect(Collectors.toList());
 		}
-		return this.findNode(nodes, target, 0, nodes.size());
 	}
 
 	/**
-	 * <p>查找节点列表</p>
-	 * <p>查找时节点列表组成一个环形结构并{@linkplain #FIND_NODE_SLICE_SIZE 分片}，然后在所有分片中选出最接近目标的片段，然后使用该片段继续查找直到找到最小片段为止。</p>
+	 * <p>选择节点桶中的节点</p>
+	 * <p>排除请求超时的节点</p>
 	 * 
+	 * @param bucket 节点桶
 	 * @param nodes 节点列表
-	 * @param target 目标
-	 * @param begin 开始索引
-	 * @param end 结束索引
-	 * 
-	 * @return 节点列表
 	 */
-	private List<NodeSession> findNode(final List<NodeSession> nodes, final byte[] target, final int begin, final int end) {
-		int selectSize; // 当前选择Node的总数量
-		final int nodeSize = nodes.size(); // 当前节点的总数量
-		if(end > begin) { // 顺序
-			selectSize = end - begin;
-		} else { // 接头
-			selectSize = end + nodeSize - begin;
+	private void selectNode(NodeBucket bucket, List<NodeSession> nodes) {
+		for (NodeSession node : bucket.nodes()) {
+			if(node.getStatus() != NodeSession.Status.VERIFY) {
+				nodes.add(node);
+			}
 		}
-		if(selectSize < FIND_NODE_MIN_SLICE_SIZE) { // 最小片段选择节点
-			return selectNode(nodes, target, begin, end);
-		} else { // 分片
-			// 分片中Node的数量
-			final int sliceSize = selectSize / FIND_NODE_SLICE_SIZE;
-			int sliceA, sliceB, sliceC;
-			// 分割节点下标
-			if(end > begin) { // 顺序
-				sliceA = begin;
-				sliceB = sliceA + sliceSize;
-				sliceC = sliceB + sliceSize;
-			} else { // 接头
-				sliceA = begin;
-				sliceB = (sliceA + sliceSize) % nodeSize;
-				sliceC = (sliceB + sliceSize) % nodeSize;
+	}
+	
+	/**
+	 * <p>标记节点为可用状态</p>
+	 * 
+	 * @param response 响应
+	 */
+	public void available(Response response) {
+		if(response != null) {
+			final byte[] nodeId = response.getNodeId();
+			if(nodeId == null || nodeId.length != DhtConfig.NODE_ID_LENGTH) {
+				return;
 			}
-			// 分割节点
-			final var nodeA = nodes.get(sliceA);
-			final var nodeB = nodes.get(sliceB);
-			final var nodeC = nodes.get(sliceC);
-			// 节点不同字节索引
-			final int diffIndexA = ArrayUtils.diffIndex(nodeA.getId(), target);
-			final int diffIndexB = ArrayUtils.diffIndex(nodeB.getId(), target);
-			final int diffIndexC = ArrayUtils.diffIndex(nodeC.getId(), target);
-			// 选择最接近的片段
-			if(diffIndexA > diffIndexB && diffIndexA > diffIndexC) {
-				return findNode(nodes, target, sliceC, sliceB);
-			} else if(diffIndexB > diffIndexA && diffIndexB > diffIndexC) {
-				return findNode(nodes, target, sliceA, sliceC);
-			} else if(diffIndexC > diffIndexA && diffIndexC > diffIndexB) {
-				return findNode(nodes, target, sliceB, sliceA);
-			} else { // 三个值一致时选择节点
-				return this.selectNode(nodes, target, begin, end);
+			synchronized (this.buckets) {
+				final NodeBucket bucket = this.buckets.get(this.bucketIndex(nodeId));
+				final NodeSession node = bucket.select(nodeId);
+				if(node != null) {
+					node.response();
+					bucket.touch(node);
+				}
 			}
 		}
 	}
-
+	
 	/**
-	 * <p>选择节点列表</p>
-	 * <p>排序查找最近的节点</p>
-	 * <p>如果节点处于未知状态则修改为验证状态</p>
-	 * 
-	 * @param nodes 节点列表
-	 * @param target 目标
-	 * @param begin 开始索引
-	 * @param end 结束索引
+	 * <p>标记节点请求超时</p>
+	 * <p>增加节点失败次数：节点桶已满时可以被新节点替换</p>
 	 * 
-	 * @return 节点列表
+	 * @param socketAddress 节点地址
 	 */
-	private List<NodeSession> selectNode(final List<NodeSession> nodes, final byte[] target, final int begin, final int end) {
-		Stream<NodeSession> select;
-		if(begin < end) {
-			select = nodes.stream().skip(begin).limit(end - begin);
-		} else {
-			select = Stream.concat(nodes.stream().limit(end), nodes.stream().skip(begin));
+	public void timeout(InetSocketAddress socketAddress) {
+		if(socketAddress == null) {
+			return;
 		}
-		return select
-			.map(node -> {
-				return Map.entry(ArrayUtils.xor(node.getId(), target), node);
-			})
-			.sorted((a, b) -> {
-				return ArrayUtils.compareUnsigned(a.getKey(), b.getKey());
-			})
-			.map(Map.Entry::getValue)
-			.limit(FIND_NODE_SIZE)
-			.peek(node -> {
-				// 设置状态
-				if(node.getStatus() == NodeSession.Status.UNUSE) {
-					node.setStatus(NodeSession.Status.VERIFY);
+		final String host = socketAddress.getHostString();
+		final int port = socketAddress.getPort();
+		synchronized (this.buckets) {
+			for (NodeBucket bucket : this.buckets) {
+				final NodeSession node = bucket.select(host, port);
+				if(node != null) {
+					node.timeout();
+					return;
 				}
-			})
-			.collect(Collectors.toList());
+			}
+		}
 	}
 	
 	/**
-	 * <p>标记节点为可用状态</p>
+	 * <p>添加节点</p>
+	 * <p>节点桶已满时：如果是系统NodeId所在节点桶（最后一个节点桶）拆分节点桶，否则替换可疑节点或者放入替换缓存。</p>
 	 * 
-	 * @param response 响应
+	 * @param node 节点
 	 */
-	public void available(Response response) {
-		if(response != null) {
-			synchronized (this.nodes) {
-				final NodeSession node = select(response.getNodeId());
-				if(node != null) {
-					node.setStatus(NodeSession.Status.AVAILABLE);
-				}
+	private void put(NodeSession node) {
+		while(true) {
+			final int index = this.bucketIndex(node.getId());
+			final NodeBucket bucket = this.buckets.get(index);
+			if(bucket.put(node)) {
+				return;
 			}
+			if(index == this.buckets.size() - 1 && this.buckets.size() < MAX_BUCKET_SIZE) {
+				this.buckets.add(bucket.split(value -> this.prefixLength(value.getId()) > index));
+				continue;
+			}
+			if(!bucket.replace(node)) {
+				bucket.cache(node);
+			}
+			return;
 		}
 	}
 	
 	/**
-	 * <p>选择节点</p>
+	 * <p>获取节点桶索引</p>
+	 * <p>节点桶索引=节点ID和系统NodeId相同前缀长度（位），最后一个节点桶包含前缀长度大于等于索引的节点。</p>
+	 * 
+	 * @param nodeId 节点ID
+	 * 
+	 * @return 节点桶索引
+	 */
+	private int bucketIndex(byte[] nodeId) {
+		return Math.min(this.prefixLength(nodeId), this.buckets.size() - 1);
+	}
+	
+	/**
+	 * <p>计算节点ID和系统NodeId相同前缀长度（位）</p>
 	 * 
 	 * @param nodeId 节点ID
 	 * 
-	 * @return 节点
+	 * @return 相同前缀长度
 	 */
-	private NodeSession select(byte[] nodeId) {
-		for (NodeSession nodeSession : this.nodes) {
-			if(ArrayUtils.equals(nodeId, nodeSession.getId())) {
-				return nodeSession;
+	private int prefixLength(byte[] nodeId) {
+		for (int index = 0; index < this.nodeId.length; index++) {
+			final int value = (this.nodeId[index] ^ nodeId[index]) & 0xFF;
+			if(value != 0) {
+				return index * Byte.SIZE + Integer.numberOfLeadingZeros(value) - (Integer.SIZE - Byte.SIZE);
 			}
 		}
-		return null;
+		return MAX_BUCKET_SIZE;
 	}
 	
 }
@@ -4,6 +4,10 @@ import java.nio.ByteBuffer;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import com.acgist.snail.pojo.session.NodeSession;
@@ -42,6 +46,19 @@ public class Request extends DhtMessage {
 	 * <p>响应</p>
 	 */
 	private Response response;
+	/**
+	 * <p>响应回调</p>
+	 * <p>收到响应或者响应超时（响应为{@code null}）时执行一次</p>
+	 */
+	private Consumer<Response> callback;
+	/**
+	 * <p>响应等待锁</p>
+	 */
+	private final Lock responseLock = new ReentrantLock();
+	/**
+	 * <p>响应条件</p>
+	 */
+	private final Condition responseCondition = this.responseLock.newCondition();
 	
 	/**
 	 * <p>生成NodeId</p>
@@ -104,6 +121,33 @@ public class Request extends DhtMessage {
 		this.response = response;
 	}
 
+	/**
+	 * <p>设置响应回调</p>
+	 * <p>必须在发送请求之前设置</p>
+	 * 
+	 * @param callback 响应回调
+	 */
+	public void setCallback(Consumer<Response> callback) {
+		synchronized (this) {
+			this.callback = callback;
+		}
+	}
+	
+	/**
+	 * <p>执行响应回调</p>
+	 * <p>响应回调只执行一次</p>
+	 */
+	public void callback() {
+		final Consumer<Response> callback;
+		synchronized (this) {
+			callback = this.callback;
+			this.callback = null;
+		}
+		if(callback != null) {
+			callback.accept(this.response);
+		}
+	}
+
 	/**
 	 * <p>判断是否已经响应</p>
 	 * 
@@ -170,10 +214,13 @@ public class Request extends DhtMessage {
 	 * <p>等待响应</p>
 	 */
 	public void waitResponse() {
-		synchronized (this) {
+		this.responseLock.lock();
+		try {
 			if(!this.haveResponse()) {
-				ThreadUtils.wait(this, DhtConfig.TIMEOUT);
+				ThreadUtils.await(this.responseCondition, DhtConfig.TIMEOUT);
 			}
+		} finally {
+			this.responseLock.unlock();
 		}
 	}
 	
@@ -181,9 +228,7 @@ public class Request extends DhtMessage {
 	 * <p>释放响应等待</p>
 	 */
 	public void notifyResponse() {
-		synchronized (this) {
-			this.notifyAll();
-		}
+		ThreadUtils.signalAll(this.responseLock, this.responseCondition);
 	}
 	
 	@Override
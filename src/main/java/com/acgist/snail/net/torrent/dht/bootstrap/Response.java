@@ -135,7 +135,6 @@ public class Response extends DhtMessage {
 			}
 			list.add(session);
 		}
-		NodeManager.getInstance().sortNodes(); // 排序
 		return list;
 	}
 	
@@ -153,7 +152,6 @@ public class Response extends DhtMessage {
 			buffer.get(nodeId);
 			final String host = NetUtils.decodeIntToIp(buffer.getInt());
 			final int port = NetUtils.decodePort(buffer.getShort());
-			// 不排序：所有节点加入系统列表后再统一排序
 			return NodeManager.getInstance().newNodeSession(nodeId, host, port);
 		}
 		return null;
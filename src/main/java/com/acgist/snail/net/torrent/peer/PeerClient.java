@@ -1,5 +1,7 @@
 package com.acgist.snail.net.torrent.peer;
 
+import java.util.function.Consumer;
+
 import com.acgist.snail.net.TcpClient;
 import com.acgist.snail.net.torrent.peer.bootstrap.PeerSubMessageHandler;
 import com.acgist.snail.pojo.session.PeerSession;
@@ -30,6 +32,17 @@ public final class PeerClient extends TcpClient<PeerMessageHandler> {
 	public boolean connect() {
 		return connect(this.peerSession.host(), this.peerSession.port());
 	}
+	
+	/**
+	 * <p>异步连接Peer</p>
+	 * 
+	 * @param callback 连接回调
+	 * 
+	 * @see #connect(String, int, Consumer)
+	 */
+	public void connect(Consumer<Boolean> callback) {
+		connect(this.peerSession.host(), this.peerSession.port(), callback);
+	}
 
 	public PeerSession peerSession() {
 		return this.peerSession;
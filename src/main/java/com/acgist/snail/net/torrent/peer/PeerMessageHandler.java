@@ -7,6 +7,7 @@ import com.acgist.snail.net.torrent.IMessageEncryptHandler;
 import com.acgist.snail.net.torrent.PeerCryptMessageCodec;
 import com.acgist.snail.net.torrent.PeerUnpackMessageCodec;
 import com.acgist.snail.net.torrent.peer.bootstrap.PeerSubMessageHandler;
+import com.acgist.snail.system.bandwidth.Bandwidth;
 import com.acgist.snail.system.exception.NetException;
 
 /**
@@ -49,5 +50,20 @@ public final class PeerMessageHandler extends TcpMessageHandler implements IMess
 		this.messageCodec.encode(buffer);
 		this.send(buffer, timeout);
 	}
+	
+	@Override
+	protected void onWritable() {
+		this.peerSubMessageHandler.onWritable();
+	}
+	
+	@Override
+	protected Bandwidth uploadBandwidth() {
+		return this.peerSubMessageHandler.uploadBandwidth();
+	}
+	
+	@Override
+	protected Bandwidth downloadBandwidth() {
+		return this.peerSubMessageHandler.downloadBandwidth();
+	}
 
 }
@@ -0,0 +1,65 @@
+package com.acgist.snail.net.torrent.peer.bootstrap;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.acgist.snail.system.config.SystemConfig;
+
+/**
+ * <p>Peer连接管理器</p>
+ * <p>限制所有任务主动连接Peer的半开连接（已经发起连接但是没有完成）数量：防止同时发起过多连接导致系统或者路由器丢弃连接</p>
+ * <p>单个任务半开连接数量由PeerDownloader组限制</p>
+ * 
+ * @author acgist
+ * @since 1.3.0
+ */
+public final class PeerConnectManager {
+
+	private static final PeerConnectManager INSTANCE = new PeerConnectManager();
+	
+	/**
+	 * <p>半开连接数量</p>
+	 */
+	private final AtomicInteger halfOpenSize = new AtomicInteger(0);
+	
+	private PeerConnectManager() {
+	}
+	
+	public static final PeerConnectManager getInstance() {
+		return INSTANCE;
+	}
+	
+	/**
+	 * <p>获取半开连接</p>
+	 * <p>获取成功后发起连接，连接完成（成功或者失败）后必须{@linkplain #release() 释放}。</p>
+	 * 
+	 * @return {@code true}-获取成功；{@code false}-半开连接已满；
+	 */
+	public boolean acquire() {
+		final int maxSize = SystemConfig.getPeerHalfOpenSize();
+		int size;
+		do {
+			size = this.halfOpenSize.get();
+			if(size >= maxSize) {
+				return false;
+			}
+		} while(!this.halfOpenSize.compareAndSet(size, size + 1));
+		return true;
+	}
+	
+	/**
+	 * <p>释放半开连接</p>
+	 */
+	public void release() {
+		this.halfOpenSize.decrementAndGet();
+	}
+	
+	/**
+	 * <p>获取半开连接数量</p>
+	 * 
+	 * @return 半开连接数量
+	 */
+	public int halfOpenSize() {
+		return this.halfOpenSize.get();
+	}
+	
+}
@@ -2,11 +2,14 @@ package com.acgist.snail.net.torrent.peer.bootstrap;
 
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.BitSet;
+import java.util.Deque;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.acgist.snail.net.ByteBufferPool;
 import com.acgist.snail.net.codec.IMessageCodec;
 import com.acgist.snail.net.torrent.IMessageEncryptHandler;
 import com.acgist.snail.net.torrent.PeerConnect;
@@ -15,13 +18,16 @@ import com.acgist.snail.net.torrent.bootstrap.PeerDownloader;
 import com.acgist.snail.net.torrent.bootstrap.PeerUploader;
 import com.acgist.snail.net.torrent.peer.bootstrap.dht.DhtExtensionMessageHandler;
 import com.acgist.snail.net.torrent.peer.bootstrap.ltep.ExtensionMessageHandler;
+import com.acgist.snail.net.torrent.utp.UtpMessageHandler;
 import com.acgist.snail.pojo.session.PeerConnectSession;
 import com.acgist.snail.pojo.session.PeerSession;
 import com.acgist.snail.pojo.session.TorrentSession;
+import com.acgist.snail.system.bandwidth.Bandwidth;
 import com.acgist.snail.system.config.PeerConfig;
 import com.acgist.snail.system.config.PeerConfig.Type;
 import com.acgist.snail.system.config.SystemConfig;
 import com.acgist.snail.system.exception.NetException;
+import com.acgist.snail.system.exception.PacketSizeException;
 import com.acgist.snail.utils.ArrayUtils;
 import com.acgist.snail.utils.BitfieldUtils;
 import com.acgist.snail.utils.NumberUtils;
@@ -109,6 +115,20 @@ public final class PeerSubMessageHandler implements IMessageCodec<ByteBuffer> {
 	 * <p>DHT扩展消息代理</p>
 	 */
 	private DhtExtensionMessageHandler dhtExtensionMessageHandler;
+	/**
+	 * <p>计入可用度的Piece位图</p>
+	 * <p>当前连接已经计入{@linkplain TorrentSession#addAvailability(BitSet) Piece可用度}的Piece，关闭连接时减少可用度。</p>
+	 * <p>不能直接使用Peer已下载Piece位图：Peer信息在多个连接之间共享，关闭连接时不会清空。</p>
+	 * <p>只有have、haveAll和bitfield消息计入可用度：suggestPiece和allowedFast消息不计入</p>
+	 */
+	private final BitSet availabilityPieces = new BitSet();
+	/**
+	 * <p>等待发送的请求</p>
+	 * <p>发送队列已满时不支持FAST扩展的Peer不能收到rejectRequest消息（不知道请求被丢弃），所以请求放入队列，发送队列恢复可写后发送。</p>
+	 * <p>请求：[Piece索引, Piece内偏移, 请求数据长度]</p>
+	 * <p>阻塞Peer、Peer取消请求时删除</p>
+	 */
+	private final Deque<int[]> pendingRequests = new ArrayDeque<>();
 	
 	/**
 	 * <p>服务端</p>
@@ -220,6 +240,26 @@ public final class PeerSubMessageHandler implements IMessageCodec<ByteBuffer> {
 		return this.torrentSession;
 	}
 	
+	/**
+	 * <p>获取上传带宽</p>
+	 * 
+	 * @return 上传带宽：{@code null}-没有Peer信息（不限速）
+	 */
+	public Bandwidth uploadBandwidth() {
+		final PeerSession peerSession = this.peerSession;
+		return peerSession == null ? null : peerSession.statistics().uploadBandwidth();
+	}
+	
+	/**
+	 * <p>获取下载带宽</p>
+	 * 
+	 * @return 下载带宽：{@code null}-没有Peer信息（不限速）
+	 */
+	public Bandwidth downloadBandwidth() {
+		final PeerSession peerSession = this.peerSession;
+		return peerSession == null ? null : peerSession.statistics().downloadBandwidth();
+	}
+	
 	/**
 	 * <p>是否握手完成</p>
 	 * 
@@ -229,6 +269,15 @@ public final class PeerSubMessageHandler implements IMessageCodec<ByteBuffer> {
 		return this.handshakeRecv;
 	}
 	
+	/**
+	 * <p>是否使用UTP连接</p>
+	 * 
+	 * @return {@code true}-UTP；{@code false}-TCP；
+	 */
+	public boolean utp() {
+		return this.messageEncryptHandler instanceof UtpMessageHandler;
+	}
+	
 	/**
 	 * <p>是否需要加密</p>
 	 * <p>验证Peer是否偏爱加密</p>
@@ -444,6 +493,10 @@ public final class PeerSubMessageHandler implements IMessageCodec<ByteBuffer> {
 	public void choke() {
 		LOGGER.debug("发送阻塞消息");
 		this.peerConnectSession.amChoked();
+		// 阻塞后Peer丢弃所有没有响应的请求
+		synchronized (this.pendingRequests) {
+			this.pendingRequests.clear();
+		}
 		pushMessage(PeerConfig.Type.CHOKE, null);
 	}
 
@@ -456,9 +509,9 @@ public final class PeerSubMessageHandler implements IMessageCodec<ByteBuffer> {
 		LOGGER.debug("处理阻塞消息");
 		this.peerConnectSession.peerChoked();
 		// 不释放资源：让系统自动优化剔除
-//		if(this.peerConnect != null) {
-//			this.peerConnect.release();
-//		}
+		if(this.peerConnect != null) {
+			this.peerConnect.choke();
+		}
 	}
 	
 	/**
@@ -600,6 +653,7 @@ public final class PeerSubMessageHandler implements IMessageCodec<ByteBuffer> {
 		final int index = buffer.getInt();
 		LOGGER.debug("处理have消息：{}", index);
 		this.peerSession.piece(index);
+		this.addAvailability(index);
 		if(!this.torrentSession.havePiece(index)) {
 			interested();
 		}
@@ -637,6 +691,7 @@ public final class PeerSubMessageHandler implements IMessageCodec<ByteBuffer> {
 		LOGGER.debug("处理haveAll消息");
 		final BitSet allPieces = this.torrentSession.allPieces();
 		this.peerSession.pieces(allPieces);
+		this.addAvailability(allPieces);
 		this.torrentSession.fullPieces();
 		if(!this.torrentSession.completed()) { // 任务没有完成发送感兴趣消息
 			interested();
@@ -662,6 +717,7 @@ public final class PeerSubMessageHandler implements IMessageCodec<ByteBuffer> {
 	private void haveNone(ByteBuffer buffer) {
 		LOGGER.debug("处理haveAll消息");
 		this.peerSession.cleanPieces(); // 清空Peer所有Piece
+		this.removeAvailability();
 	}
 	
 	/**
@@ -870,6 +926,7 @@ public final class PeerSubMessageHandler implements IMessageCodec<ByteBuffer> {
 		final BitSet pieces = BitfieldUtils.toBitSet(bytes); // Peer已下载Piece位图
 		LOGGER.debug("处理Piece位图消息：{}", pieces);
 		this.peerSession.pieces(pieces);
+		this.addAvailability(pieces);
 		this.torrentSession.fullPieces(pieces);
 		final BitSet notHave = new BitSet(); // 没有下载的Piece位图
 		notHave.or(pieces);
@@ -940,13 +997,72 @@ public final class PeerSubMessageHandler implements IMessageCodec<ByteBuffer> {
 			rejectRequest(index, begin, length);
 			return;
 		}
+		// 发送队列积压：支持FAST扩展拒绝请求（Peer稍后重新请求），不支持FAST扩展等待发送队列可写后发送。
+		if(this.pendingRequest(index, begin, length)) {
+			return;
+		}
 		LOGGER.debug("处理request消息：{}-{}-{}", index, begin, length);
 		if(this.torrentSession.havePiece(index)) {
-			try {
-				final byte[] bytes = this.torrentSession.read(index, begin, length);
-				piece(index, begin, bytes);
-			} catch (NetException e) {
-				LOGGER.error("处理request消息异常", e);
+			piece(index, begin, length);
+		}
+	}
+
+	/**
+	 * <p>发送队列积压时处理请求</p>
+	 * <p>支持FAST扩展的Peer发送rejectRequest消息；不支持FAST扩展的Peer放入等待发送的请求，发送队列可写后发送。</p>
+	 * <p>已经有等待发送的请求时新的请求也要放入队列：保证按照请求顺序发送</p>
+	 * 
+	 * @param index Piece索引
+	 * @param begin Piece内偏移
+	 * @param length 请求数据长度
+	 * 
+	 * @return {@code true}-已经处理（拒绝或者等待）；{@code false}-直接发送；
+	 */
+	private boolean pendingRequest(int index, int begin, int length) {
+		if(this.peerSession.supportFastExtensionProtocol()) {
+			if(this.writable()) {
+				return false;
+			}
+			LOGGER.debug("处理request消息：发送队列已满");
+			rejectRequest(index, begin, length);
+			return true;
+		}
+		synchronized (this.pendingRequests) {
+			if(this.writable() && this.pendingRequests.isEmpty()) {
+				return false;
+			}
+			if(this.pendingRequests.size() >= PeerConfig.DEFAULT_REQQ) {
+				LOGGER.debug("处理request消息：等待发送的请求超过最大数量");
+				return true;
+			}
+			LOGGER.debug("处理request消息：发送队列已满（等待发送）：{}-{}-{}", index, begin, length);
+			this.pendingRequests.offer(new int[] { index, begin, length });
+		}
+		// 放入队列前发送队列可能已经恢复可写
+		if(this.writable()) {
+			this.onWritable();
+		}
+		return true;
+	}
+	
+	/**
+	 * <p>发送队列恢复可写</p>
+	 * <p>发送等待发送的请求，直到发送队列再次积压。</p>
+	 */
+	public void onWritable() {
+		int[] request;
+		while(this.writable()) {
+			synchronized (this.pendingRequests) {
+				request = this.pendingRequests.poll();
+			}
+			if(request == null) {
+				return;
+			}
+			if(this.peerConnectSession.isAmChoked()) {
+				continue;
+			}
+			if(this.torrentSession.havePiece(request[0])) {
+				piece(request[0], request[1], request[2]);
 			}
 		}
 	}
@@ -961,27 +1077,41 @@ public final class PeerSubMessageHandler implements IMessageCodec<ByteBuffer> {
 	 * begin：Piece内偏移
 	 * X：block长度（默认16KB）
 	 * </pre>
+	 * <p>消息头部（13字节）写入缓冲池缓冲后，Piece数据直接从文件读取到消息头部后面，发送后缓冲由消息代理归还。</p>
 	 * 
 	 * @param index Piece索引
 	 * @param begin Piece内偏移
-	 * @param bytes Piece数据 
+	 * @param length block长度
 	 */
-	private void piece(int index, int begin, byte[] bytes) {
+	private void piece(int index, int begin, int length) {
 		if(!this.torrentSession.uploadable()) {
 			LOGGER.debug("发送piece消息：任务不可上传");
 			return;
 		}
-		if(bytes == null) {
-			LOGGER.debug("发送piece消息：数据为空");
+		// length_prefix（4字节） + message_id（1字节） + index（4字节） + begin（4字节） + block
+		final int capacity = 13 + length;
+		ByteBuffer buffer = null;
+		try {
+			PacketSizeException.verify(length);
+			buffer = ByteBufferPool.getInstance().allocate(capacity);
+			buffer.putInt(capacity - 4);
+			buffer.put(PeerConfig.Type.PIECE.id());
+			buffer.putInt(index);
+			buffer.putInt(begin);
+			if(!this.torrentSession.read(index, begin, length, buffer)) {
+				LOGGER.debug("发送piece消息：数据为空");
+				ByteBufferPool.getInstance().release(buffer);
+				return;
+			}
+		} catch (NetException e) {
+			LOGGER.error("发送piece消息异常", e);
+			ByteBufferPool.getInstance().release(buffer);
 			return;
 		}
 		LOGGER.debug("发送piece消息：{}-{}", index, begin);
-		this.peerSession.upload(bytes.length); // 上传数据统计
-		final ByteBuffer buffer = ByteBuffer.allocate(8 + bytes.length);
-		buffer.putInt(index);
-		buffer.putInt(begin);
-		buffer.put(bytes);
-		pushMessage(PeerConfig.Type.PIECE, buffer.array());
+		this.peerSession.upload(length); // 上传数据统计
+		// 消息异步发送：发送完成后由消息代理归还缓冲
+		this.sendEncrypt(buffer);
 	}
 
 	/**
@@ -1034,7 +1164,13 @@ public final class PeerSubMessageHandler implements IMessageCodec<ByteBuffer> {
 	 * @param buffer 消息
 	 */
 	private void cancel(ByteBuffer buffer) {
-		LOGGER.debug("处理cancel消息");
+		final int index = buffer.getInt();
+		final int begin = buffer.getInt();
+		final int length = buffer.getInt();
+		LOGGER.debug("处理cancel消息：{}-{}-{}", index, begin, length);
+		synchronized (this.pendingRequests) {
+			this.pendingRequests.removeIf(request -> request[0] == index && request[1] == begin && request[2] == length);
+		}
 	}
 	
 	/**
@@ -1192,9 +1328,90 @@ public final class PeerSubMessageHandler implements IMessageCodec<ByteBuffer> {
 	 * @see IMessageEncryptHandler#close()
 	 */
 	public void close() {
+		this.removeAvailability();
+		synchronized (this.pendingRequests) {
+			this.pendingRequests.clear();
+		}
 		this.messageEncryptHandler.close();
 	}
 	
+	/**
+	 * <p>处理Peer取消Piece（dontHave消息）</p>
+	 * 
+	 * @param index Piece索引
+	 */
+	public void pieceOff(int index) {
+		this.peerSession.pieceOff(index);
+		this.removeAvailability(index);
+	}
+	
+	/**
+	 * <p>增加Piece可用度</p>
+	 * <p>只有没有计入可用度的Piece增加可用度</p>
+	 * 
+	 * @param index Piece索引
+	 */
+	private void addAvailability(int index) {
+		if(index < 0) {
+			return;
+		}
+		synchronized (this.availabilityPieces) {
+			if(this.availabilityPieces.get(index)) {
+				return;
+			}
+			this.availabilityPieces.set(index);
+		}
+		this.torrentSession.addAvailability(index);
+	}
+	
+	/**
+	 * <p>增加Piece可用度</p>
+	 * <p>只有没有计入可用度的Piece增加可用度</p>
+	 * 
+	 * @param pieces Piece位图
+	 */
+	private void addAvailability(BitSet pieces) {
+		final BitSet newPieces = new BitSet();
+		newPieces.or(pieces);
+		synchronized (this.availabilityPieces) {
+			newPieces.andNot(this.availabilityPieces);
+			this.availabilityPieces.or(newPieces);
+		}
+		this.torrentSession.addAvailability(newPieces);
+	}
+	
+	/**
+	 * <p>减少Piece可用度</p>
+	 * 
+	 * @param index Piece索引
+	 */
+	private void removeAvailability(int index) {
+		if(index < 0) {
+			return;
+		}
+		synchronized (this.availabilityPieces) {
+			if(!this.availabilityPieces.get(index)) {
+				return;
+			}
+			this.availabilityPieces.clear(index);
+		}
+		this.torrentSession.removeAvailability(index);
+	}
+	
+	/**
+	 * <p>减少当前连接计入的所有Piece可用度</p>
+	 */
+	private void removeAvailability() {
+		final BitSet oldPieces = new BitSet();
+		synchronized (this.availabilityPieces) {
+			oldPieces.or(this.availabilityPieces);
+			this.availabilityPieces.clear();
+		}
+		if(this.torrentSession != null && !oldPieces.isEmpty()) {
+			this.torrentSession.removeAvailability(oldPieces);
+		}
+	}
+	
 	/**
 	 * <p>是否可用</p>
 	 * 
@@ -1206,6 +1423,17 @@ public final class PeerSubMessageHandler implements IMessageCodec<ByteBuffer> {
 		return this.messageEncryptHandler.available();
 	}
 	
+	/**
+	 * <p>是否可写</p>
+	 * 
+	 * @return 是否可写
+	 * 
+	 * @see IMessageEncryptHandler#writable()
+	 */
+	public boolean writable() {
+		return this.messageEncryptHandler.writable();
+	}
+	
 	/**
 	 * <p>发送消息</p>
 	 * 
@@ -1307,4 +1535,4 @@ public final class PeerSubMessageHandler implements IMessageCodec<ByteBuffer> {
 		}
 	}
 	
-}
\ No newline at end of file
+}
\ No newline at end of file
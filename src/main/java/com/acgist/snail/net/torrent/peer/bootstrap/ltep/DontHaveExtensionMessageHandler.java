@@ -54,7 +54,7 @@ public final class DontHaveExtensionMessageHandler extends ExtensionTypeMessageH
 	private void dontHave(ByteBuffer buffer) {
 		final int index = buffer.getInt();
 		LOGGER.debug("处理dontHave消息：{}", index);
-		this.peerSession.pieceOff(index);
+		this.extensionMessageHandler.pieceOff(index);
 	}
 
 }
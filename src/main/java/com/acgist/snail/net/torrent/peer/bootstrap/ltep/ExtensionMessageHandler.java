@@ -248,6 +248,11 @@ public final class ExtensionMessageHandler implements IExtensionMessageHandler {
 		if(metadataSize != null && this.infoHash.size() <= 0) {
 			this.infoHash.size(metadataSize.intValue());
 		}
+		// 支持的未完成请求数量
+		final Long reqq = decoder.getLong(EX_REQQ);
+		if(reqq != null && reqq.intValue() > 0) {
+			this.peerSession.reqq(reqq.intValue());
+		}
 		// 只上传不下载
 		final Long uploadOnly = decoder.getLong(EX_UPLOAD_ONLY);
 		if(uploadOnly != null && uploadOnly.intValue() == UPLOAD_ONLY) {
@@ -404,6 +409,17 @@ public final class ExtensionMessageHandler implements IExtensionMessageHandler {
 		}
 	}
 	
+	/**
+	 * <p>处理Peer取消Piece</p>
+	 * 
+	 * @param index Piece索引
+	 * 
+	 * @see PeerSubMessageHandler#pieceOff(int)
+	 */
+	public void pieceOff(int index) {
+		this.peerSubMessageHandler.pieceOff(index);
+	}
+	
 	/**
 	 * <p>处理dontHave消息</p>
 	 * 
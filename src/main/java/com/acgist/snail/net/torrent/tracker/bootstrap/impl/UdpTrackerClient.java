@@ -3,6 +3,9 @@ package com.acgist.snail.net.torrent.tracker.bootstrap.impl;
 import java.net.URI;
 import java.nio.ByteBuffer;
 import java.time.Duration;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,7 +47,15 @@ public final class UdpTrackerClient extends com.acgist.snail.net.torrent.tracker
 	 * <p>连接ID</p>
 	 * <p>先获取连接ID（发送声明消息时需要使用）</p>
 	 */
-	private Long connectionId;
+	private volatile Long connectionId;
+	/**
+	 * <p>连接ID锁</p>
+	 */
+	private final Lock connectLock = new ReentrantLock();
+	/**
+	 * <p>连接ID条件</p>
+	 */
+	private final Condition connectCondition = this.connectLock.newCondition();
 	/**
 	 * <p>TrackerClient</p>
 	 */
@@ -75,14 +86,17 @@ public final class UdpTrackerClient extends com.acgist.snail.net.torrent.tracker
 	public void announce(Integer sid, TorrentSession torrentSession) throws NetException {
 		// 获取连接ID
 		if(this.connectionId == null) {
-			synchronized (this) {
+			this.connectLock.lock();
+			try {
 				if(this.connectionId == null) {
 					buildConnectionId();
+					ThreadUtils.await(this.connectCondition, Duration.ofSeconds(SystemConfig.CONNECT_TIMEOUT));
 				}
-				ThreadUtils.wait(this, Duration.ofSeconds(SystemConfig.CONNECT_TIMEOUT));
 				if(this.connectionId == null) {
 					throw new NetException("UDP Tracker声明消息错误（connectionId）");
 				}
+			} finally {
+				this.connectLock.unlock();
 			}
 		}
 		if(this.connectionId != null) {
@@ -122,9 +136,7 @@ public final class UdpTrackerClient extends com.acgist.snail.net.torrent.tracker
 	public void connectionId(Long connectionId) {
 		LOGGER.debug("UDP Tracker设置连接ID：{}", connectionId);
 		this.connectionId = connectionId;
-		synchronized (this) {
-			this.notifyAll();
-		}
+		ThreadUtils.signalAll(this.connectLock, this.connectCondition);
 	}
 	
 	/**
@@ -6,12 +6,18 @@ import java.net.SocketAddress;
 import java.nio.ByteBuffer;
 import java.time.Duration;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.acgist.snail.net.ByteBufferPool;
 import com.acgist.snail.net.UdpMessageHandler;
 import com.acgist.snail.net.torrent.IMessageEncryptHandler;
 import com.acgist.snail.net.torrent.PeerCryptMessageCodec;
@@ -20,8 +26,10 @@ import com.acgist.snail.net.torrent.peer.bootstrap.PeerSubMessageHandler;
 import com.acgist.snail.net.torrent.utp.bootstrap.UtpService;
 import com.acgist.snail.net.torrent.utp.bootstrap.UtpWindow;
 import com.acgist.snail.net.torrent.utp.bootstrap.UtpWindowData;
+import com.acgist.snail.system.bandwidth.BandwidthScheduler;
 import com.acgist.snail.system.config.SystemConfig;
 import com.acgist.snail.system.config.UtpConfig;
+import com.acgist.snail.system.context.SystemThreadContext;
 import com.acgist.snail.system.exception.NetException;
 import com.acgist.snail.utils.CollectionUtils;
 import com.acgist.snail.utils.DateUtils;
@@ -97,8 +105,25 @@ public final class UtpMessageHandler extends UdpMessageHandler implements IMessa
 	private final AtomicInteger ackLossTimes;
 	/**
 	 * <p>连接锁</p>
+	 * <p>是否收到连接响应</p>
 	 */
 	private final AtomicBoolean connectLock;
+	/**
+	 * <p>连接等待锁</p>
+	 */
+	private final Lock connectWaitLock = new ReentrantLock();
+	/**
+	 * <p>连接响应条件</p>
+	 */
+	private final Condition connectCondition = this.connectWaitLock.newCondition();
+	/**
+	 * <p>发送队列：等待令牌的消息</p>
+	 */
+	private final Queue<ByteBuffer> sendQueue = new ConcurrentLinkedQueue<>();
+	/**
+	 * <p>发送锁：保证消息发送顺序</p>
+	 */
+	private final Lock sendLock = new ReentrantLock();
 	/**
 	 * <p>Peer代理</p>
 	 */
@@ -216,7 +241,8 @@ public final class UtpMessageHandler extends UdpMessageHandler implements IMessa
 	}
 
 	/**
-	 * <p>UDP拆包</p>
+	 * <p>发送消息</p>
+	 * <p>消息放入发送队列后申请令牌，令牌不足时等待令牌（不阻塞当前线程）。</p>
 	 * 
 	 * @param buffer 消息
 	 * 
@@ -234,17 +260,50 @@ public final class UtpMessageHandler extends UdpMessageHandler implements IMessa
 			LOGGER.warn("UTP消息发送失败：{}", buffer);
 			return;
 		}
-		byte[] bytes;
-		int remaining;
-		while((remaining = buffer.remaining()) > 0) { // UDP拆包
-			if(remaining > UtpConfig.UTP_PACKET_MAX_LENGTH) {
-				bytes = new byte[UtpConfig.UTP_PACKET_MAX_LENGTH];
+		final int size = buffer.remaining();
+		this.sendQueue.offer(buffer);
+		final Thread thread = Thread.currentThread();
+		BandwidthScheduler.upload().acquire(this.peerSubMessageHandler.uploadBandwidth(), size, () -> {
+			if(thread == Thread.currentThread()) {
+				this.flush();
 			} else {
-				bytes = new byte[remaining];
+				// 带宽调度器线程不能阻塞：发送窗口已满时需要等待
+				SystemThreadContext.submit(this::flush);
 			}
-			buffer.get(bytes);
-			final UtpWindowData windowData = this.sendWindow.build(bytes);
-			this.data(windowData);
+		});
+	}
+	
+	/**
+	 * <p>UDP拆包</p>
+	 * <p>每次分配令牌发送一条发送队列队首消息：保证消息发送顺序</p>
+	 */
+	private void flush() {
+		this.sendLock.lock();
+		try {
+			final ByteBuffer buffer = this.sendQueue.poll();
+			if(buffer == null) {
+				return;
+			}
+			if(available()) {
+				byte[] bytes;
+				int remaining;
+				while((remaining = buffer.remaining()) > 0) { // UDP拆包
+					if(remaining > UtpConfig.UTP_PACKET_MAX_LENGTH) {
+						bytes = new byte[UtpConfig.UTP_PACKET_MAX_LENGTH];
+					} else {
+						bytes = new byte[remaining];
+					}
+					buffer.get(bytes);
+					final UtpWindowData windowData = this.sendWindow.build(bytes);
+					this.data(windowData);
+				}
+			} else {
+				LOGGER.debug("UTP消息发送失败：通道不可用");
+			}
+			// 数据已经复制：归还缓冲
+			ByteBufferPool.getInstance().release(buffer);
+		} finally {
+			this.sendLock.unlock();
 		}
 	}
 	
@@ -257,10 +316,13 @@ public final class UtpMessageHandler extends UdpMessageHandler implements IMessa
 		this.connect = false;
 		this.syn();
 		if(!this.connectLock.get()) {
-			synchronized (this.connectLock) {
+			this.connectWaitLock.lock();
+			try {
 				if(!this.connectLock.get()) {
-					ThreadUtils.wait(this.connectLock, Duration.ofSeconds(SystemConfig.CONNECT_TIMEOUT));
+					ThreadUtils.await(this.connectCondition, Duration.ofSeconds(SystemConfig.CONNECT_TIMEOUT));
 				}
+			} finally {
+				this.connectWaitLock.unlock();
 			}
 		}
 		// 连接失败移除
@@ -316,6 +378,8 @@ public final class UtpMessageHandler extends UdpMessageHandler implements IMessa
 	 * @throws NetException 网络异常
 	 */
 	private void data(int timestamp, short seqnr, short acknr, ByteBuffer buffer) throws NetException {
+		// UDP数据不能等待读取：只扣除令牌（透支时缩小接收窗口）
+		BandwidthScheduler.download().consume(this.peerSubMessageHandler.downloadBandwidth(), buffer.remaining());
 		try {
 			this.recvWindow.receive(timestamp, seqnr, buffer);
 		} catch (IOException e) {
@@ -335,13 +399,29 @@ public final class UtpMessageHandler extends UdpMessageHandler implements IMessa
 		buffer.putShort(this.sendId);
 		buffer.putInt(windowData.pushUpdateGetTimestamp()); // 更新发送时间
 		buffer.putInt(windowData.getTimestamp() - this.recvWindow.timestamp());
-		buffer.putInt(this.recvWindow.remainWndSize());
+		buffer.putInt(this.wndSize());
 		buffer.putShort(windowData.getSeqnr());
 		buffer.putShort(this.recvWindow.seqnr()); // acknr=请求seqnr
 		buffer.put(windowData.getData());
 		this.pushMessage(buffer);
 	}
 
+	/**
+	 * <p>获取接收窗口剩余大小</p>
+	 * <p>下载令牌透支时按照透支令牌数量缩小接收窗口，通知对方降低发送速度。</p>
+	 * <p>至少保留一个数据包大小：防止窗口为零时对方停止发送</p>
+	 * 
+	 * @return 接收窗口剩余大小
+	 */
+	private int wndSize() {
+		final int wndSize = this.recvWindow.remainWndSize();
+		final long overdraft = BandwidthScheduler.download().overdraft(this.peerSubMessageHandler.downloadBandwidth());
+		if(overdraft <= 0L) {
+			return wndSize;
+		}
+		return (int) Math.min(wndSize, Math.max(UtpConfig.UTP_PACKET_MAX_LENGTH, wndSize - overdraft));
+	}
+	
 	/**
 	 * <p>处理响应消息</p>
 	 * <p>如果多次返回已处理的数据编号，则视为丢包重新发送最后一个未确认数据包。</p>
@@ -358,9 +438,12 @@ public final class UtpMessageHandler extends UdpMessageHandler implements IMessa
 			if(this.connect) {
 				this.recvWindow.connect(timestamp, (short) (seqnr - 1)); // 注意：seqnr-1
 			}
-			synchronized (this.connectLock) {
+			this.connectWaitLock.lock();
+			try {
 				this.connectLock.set(true);
-				this.connectLock.notifyAll();
+				this.connectCondition.signalAll();
+			} finally {
+				this.connectWaitLock.unlock();
 			}
 		}
 		final boolean loss = this.sendWindow.ack(acknr, wndSize); // 是否可能丢包
@@ -391,7 +474,7 @@ public final class UtpMessageHandler extends UdpMessageHandler implements IMessa
 		buffer.putShort(this.sendId);
 		buffer.putInt(now);
 		buffer.putInt(now - timestamp);
-		buffer.putInt(this.recvWindow.remainWndSize());
+		buffer.putInt(this.wndSize());
 		buffer.putShort(this.sendWindow.seqnr());
 		buffer.putShort(seqnr); // acknr=请求seqnr
 		this.pushMessage(buffer);
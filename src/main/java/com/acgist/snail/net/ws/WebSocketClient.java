@@ -37,7 +37,7 @@ public abstract class WebSocketClient<T extends WebSocketMessageHandler> extends
 	 * @throws NetException 网络异常
 	 */
 	private void buildWebSocket(String url, int connectTimeout, int receiveTimeout) throws NetException {
-		final HttpClient client = HTTPClient.newClient(connectTimeout);
+		final HttpClient client = HTTPClient.getClient(connectTimeout);
 		final CompletableFuture<WebSocket> future = client
 			.newWebSocketBuilder()
 			.connectTimeout(Duration.ofSeconds(connectTimeout))
@@ -1,6 +1,7 @@
 package com.acgist.snail.pojo;
 
 import com.acgist.snail.system.IStatistics;
+import com.acgist.snail.system.bandwidth.Bandwidth;
 
 /**
  * <p>统计接口</p>
@@ -12,7 +13,7 @@ public interface IStatisticsSession extends IStatistics {
 
 	/**
 	 * <p>判断是否在下载数据</p>
-	 * <p>最后一次下载限速采样时间是否在一秒内</p>
+	 * <p>最后一次下载数据时间是否在一秒内</p>
 	 * 
 	 * @return 是否下载数据
 	 */
@@ -21,7 +22,8 @@ public interface IStatisticsSession extends IStatistics {
 	/**
 	 * {@inheritDoc}
 	 * 
-	 * <p>如果存在父类优先更新父类数据：防止限速导致父类更新不及时</p>
+	 * <p>同时更新父类数据</p>
+	 * <p>只统计数据：限速使用{@linkplain #uploadBandwidth() 上传带宽}</p>
 	 */
 	@Override
 	void upload(int buffer);
@@ -29,11 +31,28 @@ public interface IStatisticsSession extends IStatistics {
 	/**
 	 * {@inheritDoc}
 	 * 
-	 * <p>如果存在父类优先更新父类数据：防止限速导致父类更新不及时</p>
+	 * <p>同时更新父类数据</p>
+	 * <p>只统计数据：限速使用{@linkplain #downloadBandwidth() 下载带宽}</p>
 	 */
 	@Override
 	void download(int buffer);
 	
+	/**
+	 * <p>获取上传带宽</p>
+	 * <p>上级带宽是父类的上传带宽</p>
+	 * 
+	 * @return 上传带宽
+	 */
+	Bandwidth uploadBandwidth();
+	
+	/**
+	 * <p>获取下载带宽</p>
+	 * <p>上级带宽是父类的下载带宽</p>
+	 * 
+	 * @return 下载带宽
+	 */
+	Bandwidth downloadBandwidth();
+	
 	/**
 	 * <p>获取上传速度</p>
 	 * 
@@ -130,6 +130,14 @@ public interface ITaskSession extends ITaskSessionTable, ITaskSessionEntity, ITa
 	 * @return BT任务选择下载文件列表
 	 */
 	List<String> selectTorrentFiles();
+	
+	/**
+	 * <p>获取HTTP、FTP任务镜像下载链接列表</p>
+	 * <p>不含任务下载链接</p>
+	 * 
+	 * @return 镜像下载链接列表
+	 */
+	List<String> mirrorUrls();
 
 	/**
 	 * <p>获取统计信息</p>
@@ -124,4 +124,14 @@ public interface ITaskSessionEntity {
 	 */
 	void setDescription(String description);
 	
+	/**
+	 * @return 镜像下载链接列表（B编码）
+	 */
+	String getMirrors();
+	
+	/**
+	 * @param mirrors 镜像下载链接列表（B编码）
+	 */
+	void setMirrors(String mirrors);
+	
 }
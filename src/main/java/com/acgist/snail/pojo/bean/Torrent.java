@@ -54,6 +54,16 @@ public final class Torrent {
 	 * <p>DHT节点：{@value}</p>
 	 */
 	public static final String ATTR_NODES = "nodes";
+	/**
+	 * <p>Web种子（BEP 19）：{@value}</p>
+	 * <p>协议链接：http://www.bittorrent.org/beps/bep_0019.html</p>
+	 */
+	public static final String ATTR_URL_LIST = "url-list";
+	/**
+	 * <p>HTTP种子（BEP 17）：{@value}</p>
+	 * <p>协议链接：http://www.bittorrent.org/beps/bep_0017.html</p>
+	 */
+	public static final String ATTR_HTTPSEEDS = "httpseeds";
 	
 	//================种子文件自带信息================//
 	/**
@@ -92,6 +102,14 @@ public final class Torrent {
 	 * <p>DHT节点</p>
 	 */
 	private Map<String, Integer> nodes;
+	/**
+	 * <p>Web种子（BEP 19）</p>
+	 */
+	private List<String> urlList;
+	/**
+	 * <p>HTTP种子（BEP 17）</p>
+	 */
+	private List<String> httpseeds;
 	
 	//================种子文件临时信息================//
 	/**
@@ -128,6 +146,8 @@ public final class Torrent {
 		} else {
 			torrent.setNodes(new LinkedHashMap<>());
 		}
+		torrent.setUrlList(urls(decoder.get(ATTR_URL_LIST)));
+		torrent.setHttpseeds(urls(decoder.get(ATTR_HTTPSEEDS)));
 		return torrent;
 	}
 	
@@ -181,6 +201,33 @@ public final class Torrent {
 			.collect(Collectors.toList());
 	}
 	
+	/**
+	 * <p>获取Web种子地址列表</p>
+	 * <p>单个地址时是字符串，多个地址时是list。</p>
+	 * 
+	 * @param value Web种子数据
+	 * 
+	 * @return Web种子地址列表
+	 */
+	private static final List<String> urls(Object value) {
+		if(value == null) {
+			return new ArrayList<>(0);
+		}
+		if(value instanceof List) {
+			return ((List<?>) value).stream()
+				.map(BEncodeDecoder::getString)
+				.filter(StringUtils::isNotEmpty)
+				.collect(Collectors.toList());
+		}
+		final String url = BEncodeDecoder.getString(value);
+		if(StringUtils.isEmpty(url)) {
+			return new ArrayList<>(0);
+		}
+		final List<String> urls = new ArrayList<>(1);
+		urls.add(url);
+		return urls;
+	}
+	
 	/**
 	 * <p>获取DHT节点</p>
 	 * <p>每个元素都是一个list，每个list里面包含节点的IP和端口。</p>
@@ -284,4 +331,20 @@ public final class Torrent {
 		this.nodes = nodes;
 	}
 
+	public List<String> getUrlList() {
+		return urlList;
+	}
+
+	public void setUrlList(List<String> urlList) {
+		this.urlList = urlList;
+	}
+
+	public List<String> getHttpseeds() {
+		return httpseeds;
+	}
+
+	public void setHttpseeds(List<String> httpseeds) {
+		this.httpseeds = httpseeds;
+	}
+
 }
@@ -69,6 +69,11 @@ public final class TaskEntity extends BaseEntity implements ITaskSessionEntity {
 	 * </p>BT任务保存选择下载文件列表（B编码）</p>
 	 */
 	private String description;
+	/**
+	 * <p>镜像下载链接列表（B编码）</p>
+	 * <p>HTTP、FTP任务镜像下载链接</p>
+	 */
+	private String mirrors;
 	
 	public TaskEntity() {
 	}
@@ -172,5 +177,15 @@ public final class TaskEntity extends BaseEntity implements ITaskSessionEntity {
 	public void setDescription(String description) {
 		this.description = description;
 	}
+	
+	@Override
+	public String getMirrors() {
+		return mirrors;
+	}
+	
+	@Override
+	public void setMirrors(String mirrors) {
+		this.mirrors = mirrors;
+	}
 
 }
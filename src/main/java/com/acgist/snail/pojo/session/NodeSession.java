@@ -18,7 +18,7 @@ public final class NodeSession implements Comparable<NodeSession> {
 		
 		/** 未知：没有使用 */
 		UNUSE,
-		/** 验证：没有收到响应 */
+		/** 验证：请求超时没有收到响应 */
 		VERIFY,
 		/** 可用：收到响应 */
 		AVAILABLE;
@@ -41,6 +41,11 @@ public final class NodeSession implements Comparable<NodeSession> {
 	 * <p>节点状态</p>
 	 */
 	private Status status;
+	/**
+	 * <p>连续失败次数</p>
+	 * <p>请求超时没有收到响应加一，收到响应清零。</p>
+	 */
+	private int failures;
 
 	private NodeSession(byte[] id, String host, int port) {
 		this.id = id;
@@ -73,6 +78,28 @@ public final class NodeSession implements Comparable<NodeSession> {
 		this.status = status;
 	}
 	
+	public int getFailures() {
+		return failures;
+	}
+	
+	/**
+	 * <p>收到响应</p>
+	 * <p>清除失败次数，设置为可用状态。</p>
+	 */
+	public void response() {
+		this.failures = 0;
+		this.status = Status.AVAILABLE;
+	}
+	
+	/**
+	 * <p>请求超时</p>
+	 * <p>失败次数加一，设置为验证状态。</p>
+	 */
+	public void timeout() {
+		this.failures++;
+		this.status = Status.VERIFY;
+	}
+	
 	@Override
 	public int compareTo(NodeSession target) {
 		final byte[] sourceId = this.id;
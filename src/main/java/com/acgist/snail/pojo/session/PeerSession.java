@@ -5,6 +5,9 @@ import java.time.Duration;
 import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.acgist.snail.net.torrent.PeerConnect;
 import com.acgist.snail.net.torrent.bootstrap.PeerDownloader;
@@ -67,6 +70,11 @@ public final class PeerSession implements IStatistics {
 	 * <p>DHT端口</p>
 	 */
 	private Integer dhtPort;
+	/**
+	 * <p>Peer支持的未完成请求数量（reqq）</p>
+	 * <p>扩展协议握手时设置</p>
+	 */
+	private volatile int reqq = PeerConfig.DEFAULT_REQQ;
 	/**
 	 * <p>已下载Piece位图</p>
 	 */
@@ -98,7 +106,11 @@ public final class PeerSession implements IStatistics {
 	 * <p>holepunch等待锁</p>
 	 * <p>向中继发出rendezvous消息进入等待，收到中继connect消息后设置可以连接并释放等待锁。</p>
 	 */
-	private final Object holepunchLock = new Object();
+	private final Lock holepunchLock = new ReentrantLock();
+	/**
+	 * <p>holepunch连接条件</p>
+	 */
+	private final Condition holepunchCondition = this.holepunchLock.newCondition();
 	/**
 	 * <p>PEX来源</p>
 	 * <p>直接连接不上时使用holepunch协议连接，PEX来源作为中继。</p>
@@ -228,6 +240,24 @@ public final class PeerSession implements IStatistics {
 		this.dhtPort = dhtPort;
 	}
 	
+	/**
+	 * <p>获取Peer支持的未完成请求数量（reqq）</p>
+	 * 
+	 * @return 未完成请求数量
+	 */
+	public int reqq() {
+		return this.reqq;
+	}
+	
+	/**
+	 * <p>设置Peer支持的未完成请求数量（reqq）</p>
+	 * 
+	 * @param reqq 未完成请求数量
+	 */
+	public void reqq(int reqq) {
+		this.reqq = reqq;
+	}
+	
 	/**
 	 * <p>清空Piece位图</p>
 	 * <p>清空：已下载Piece位图、下载错误Piece位图、推荐下载Piece位图、快速允许下载Piece位图</p>
@@ -296,7 +326,19 @@ public final class PeerSession implements IStatistics {
 	 * @return 可用的Piece位图
 	 */
 	public BitSet availablePieces() {
-		final BitSet bitSet = new BitSet();
+		return this.availablePieces(new BitSet());
+	}
+	
+	/**
+	 * <p>获取可用的Piece位图</p>
+	 * <p>数据写入指定的Piece位图：选择Piece时重复使用，不用每次创建。</p>
+	 * 
+	 * @param bitSet 写入的Piece位图
+	 * 
+	 * @return 可用的Piece位图：{@code bitSet}
+	 */
+	public BitSet availablePieces(BitSet bitSet) {
+		bitSet.clear();
 		bitSet.or(this.pieces);
 		bitSet.andNot(this.badPieces);
 		return bitSet;
@@ -694,10 +736,13 @@ public final class PeerSession implements IStatistics {
 		if(this.holepunchConnect) { // 已经连接
 			return;
 		}
-		synchronized (this.holepunchLock) {
+		this.holepunchLock.lock();
+		try {
 			this.holepunchWait = true;
-			ThreadUtils.wait(this.holepunchLock, Duration.ofSeconds(PeerConfig.HOLEPUNCH_LOCK_TIME));
+			ThreadUtils.await(this.holepunchCondition, Duration.ofSeconds(PeerConfig.HOLEPUNCH_LOCK_TIME));
 			this.holepunchWait = false;
+		} finally {
+			this.holepunchLock.unlock();
 		}
 	}
 	
@@ -705,9 +750,12 @@ public final class PeerSession implements IStatistics {
 	 * <p>释放holepunch等待锁</p>
 	 */
 	public void unlockHolepunch() {
-		synchronized (this.holepunchLock) {
+		this.holepunchLock.lock();
+		try {
 			this.holepunchConnect = true;
-			this.holepunchLock.notifyAll();
+			this.holepunchCondition.signalAll();
+		} finally {
+			this.holepunchLock.unlock();
 		}
 	}
 	
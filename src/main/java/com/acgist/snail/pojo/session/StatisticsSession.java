@@ -1,17 +1,17 @@
 package com.acgist.snail.pojo.session;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.util.concurrent.atomic.AtomicLong;
 
 import com.acgist.snail.pojo.IStatisticsSession;
+import com.acgist.snail.system.bandwidth.Bandwidth;
+import com.acgist.snail.system.bandwidth.BandwidthScheduler;
 import com.acgist.snail.system.config.DownloadConfig;
 import com.acgist.snail.utils.DateUtils;
-import com.acgist.snail.utils.ThreadUtils;
 
 /**
  * <p>统计信息</p>
  * <p>速度、限速、统计等</p>
+ * <p>限速：每个统计信息对应一个{@linkplain Bandwidth 带宽}，带宽层级和统计信息层级一致（全局 → 任务 → Peer）。</p>
  * 
  * TODO：伪共享
  * 
@@ -20,10 +20,6 @@ import com.acgist.snail.utils.ThreadUtils;
  */
 public final class StatisticsSession implements IStatisticsSession {
 
-	/**
-	 * <p>限速开关</p>
-	 */
-	private final boolean limit;
 	/**
 	 * <p>速度统计开关</p>
 	 */
@@ -49,21 +45,17 @@ public final class StatisticsSession implements IStatisticsSession {
 	 */
 	private final SpeedSession downloadSpeed;
 	/**
-	 * <p>上传限速采样</p>
-	 */
-	private final AtomicLong uploadBufferLimit = new AtomicLong(0);
-	/**
-	 * <p>上传限速最后一次采样时间</p>
+	 * <p>上传带宽</p>
 	 */
-	private volatile long uploadBufferLimitTime;
+	private final Bandwidth uploadBandwidth;
 	/**
-	 * <p>下载限速采样</p>
+	 * <p>下载带宽</p>
 	 */
-	private final AtomicLong downloadBufferLimit = new AtomicLong(0);
+	private final Bandwidth downloadBandwidth;
 	/**
-	 * <p>下载限速最后一次采样时间</p>
+	 * <p>最后一次下载数据时间</p>
 	 */
-	private volatile long downloadBufferLimitTime;
+	private volatile long downloadTime;
 	
 	public StatisticsSession() {
 		this(false, true, null);
@@ -74,12 +66,20 @@ public final class StatisticsSession implements IStatisticsSession {
 	}
 	
 	public StatisticsSession(boolean limit, boolean speed, IStatisticsSession parent) {
-		this.limit = limit;
 		this.speed = speed;
 		this.parent = parent;
-		final long time = System.currentTimeMillis();
-		this.uploadBufferLimitTime = time;
-		this.downloadBufferLimitTime = time;
+		if(parent == null) {
+			// 没有父类：全局统计
+			this.uploadBandwidth = BandwidthScheduler.upload().root();
+			this.downloadBandwidth = BandwidthScheduler.download().root();
+		} else if(limit) {
+			this.uploadBandwidth = BandwidthScheduler.upload().newBandwidth(parent.uploadBandwidth(), DownloadConfig::getUploadBufferByte, Bandwidth.Priority.NORMAL);
+			this.downloadBandwidth = BandwidthScheduler.download().newBandwidth(parent.downloadBandwidth(), DownloadConfig::getDownloadBufferByte, Bandwidth.Priority.NORMAL);
+		} else {
+			this.uploadBandwidth = BandwidthScheduler.upload().newBandwidth(parent.uploadBandwidth(), () -> 0L, Bandwidth.Priority.NORMAL);
+			this.downloadBandwidth = BandwidthScheduler.download().newBandwidth(parent.downloadBandwidth(), () -> 0L, Bandwidth.Priority.NORMAL);
+		}
+		this.downloadTime = System.currentTimeMillis();
 		if(speed) {
 			this.uploadSpeed = new SpeedSession();
 			this.downloadSpeed = new SpeedSession();
@@ -91,7 +91,7 @@ public final class StatisticsSession implements IStatisticsSession {
 
 	@Override
 	public boolean downloading() {
-		return System.currentTimeMillis() - this.downloadBufferLimitTime < DateUtils.ONE_SECOND;
+		return System.currentTimeMillis() - this.downloadTime < DateUtils.ONE_SECOND;
 	}
 	
 	@Override
@@ -103,7 +103,6 @@ public final class StatisticsSession implements IStatisticsSession {
 			this.uploadSpeed.buffer(buffer);
 		}
 		this.uploadSize.addAndGet(buffer);
-		this.uploadBufferLimit(buffer);
 	}
 	
 	@Override
@@ -115,7 +114,7 @@ public final class StatisticsSession implements IStatisticsSession {
 			this.downloadSpeed.buffer(buffer);
 		}
 		this.downloadSize.addAndGet(buffer);
-		this.downloadBufferLimit(buffer);
+		this.downloadTime = System.currentTimeMillis();
 	}
 	
 	@Override
@@ -123,6 +122,16 @@ public final class StatisticsSession implements IStatisticsSession {
 		return this;
 	}
 	
+	@Override
+	public Bandwidth uploadBandwidth() {
+		return this.uploadBandwidth;
+	}
+	
+	@Override
+	public Bandwidth downloadBandwidth() {
+		return this.downloadBandwidth;
+	}
+	
 	@Override
 	public long uploadSpeed() {
 		if(this.speed) {
@@ -173,78 +182,4 @@ public final class StatisticsSession implements IStatisticsSession {
 		}
 	}
 	
-	/**
-	 * <p>上传速度限制</p>
-	 * 
-	 * @param buffer 下载数据大小
-	 */
-	private void uploadBufferLimit(long buffer) {
-		final long interval = System.currentTimeMillis() - this.uploadBufferLimitTime;
-		if(this.limit) { // 限速
-			final int limitBuffer = DownloadConfig.getUploadBufferByte();
-			final long uploadBuffer = this.uploadBufferLimit.addAndGet(buffer);
-			if(uploadBuffer >= limitBuffer || interval >= DateUtils.ONE_SECOND) { // 限速控制
-				synchronized (this.uploadBufferLimit) { // 阻塞其他线程
-					if(uploadBuffer == this.uploadBufferLimit.get()) { // 验证
-						// 期望时间：更加精确：可以使用一秒
-						final long expectTime = BigDecimal.valueOf(uploadBuffer)
-							.multiply(BigDecimal.valueOf(DateUtils.ONE_SECOND))
-							.divide(BigDecimal.valueOf(limitBuffer), RoundingMode.HALF_UP)
-							.longValue();
-						if(interval < expectTime) { // 限速时间
-							ThreadUtils.sleep(expectTime - interval);
-						}
-						this.uploadBufferLimit.set(0); // 清零：不能在休眠前清零
-						this.uploadBufferLimitTime = System.currentTimeMillis();
-					} else { // 防止误差
-						this.uploadBufferLimit.addAndGet(buffer);
-					}
-				}
-			}
-		} else {
-			if(interval >= DateUtils.ONE_SECOND) {
-//				this.uploadBufferLimit.set(0); // 不限速不清零
-				// 不限速但是必须更新时间
-				this.uploadBufferLimitTime = System.currentTimeMillis();
-			}
-		}
-	}
-	
-	/**
-	 * <p>下载速度限制</p>
-	 * 
-	 * @param buffer 下载数据大小
-	 */
-	private void downloadBufferLimit(long buffer) {
-		final long interval = System.currentTimeMillis() - this.downloadBufferLimitTime;
-		if(this.limit) { // 限速
-			final int limitBuffer = DownloadConfig.getDownloadBufferByte();
-			final long downloadBuffer = this.downloadBufferLimit.addAndGet(buffer);
-			if(downloadBuffer >= limitBuffer || interval >= DateUtils.ONE_SECOND) { // 限速控制
-				synchronized (this.downloadBufferLimit) { // 阻塞其他线程
-					if(downloadBuffer == this.downloadBufferLimit.get()) { // 验证
-						// 期望时间：更加精确：可以使用一秒
-						final long expectTime = BigDecimal.valueOf(downloadBuffer)
-							.multiply(BigDecimal.valueOf(DateUtils.ONE_SECOND))
-							.divide(BigDecimal.valueOf(limitBuffer), RoundingMode.HALF_UP)
-							.longValue();
-						if(interval < expectTime) { // 限速时间
-							ThreadUtils.sleep(expectTime - interval);
-						}
-						this.downloadBufferLimit.set(0); // 清零：不能在休眠前清零
-						this.downloadBufferLimitTime = System.currentTimeMillis();
-					} else { // 防止误差
-						this.downloadBufferLimit.addAndGet(buffer);
-					}
-				}
-			}
-		} else {
-			if(interval >= DateUtils.ONE_SECOND) {
-//				this.downloadBufferLimit.set(0); // 不限速不清零
-				// 不限速但是必须更新时间
-				this.downloadBufferLimitTime = System.currentTimeMillis();
-			}
-		}
-	}
-	
 }
@@ -8,6 +8,9 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.stream.Collectors;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.acgist.snail.downloader.DownloaderManager;
 import com.acgist.snail.downloader.IDownloader;
 import com.acgist.snail.gui.GuiManager;
@@ -19,7 +22,10 @@ import com.acgist.snail.protocol.Protocol.Type;
 import com.acgist.snail.protocol.ProtocolManager;
 import com.acgist.snail.repository.impl.TaskRepository;
 import com.acgist.snail.system.SystemStatistics;
+import com.acgist.snail.system.bandwidth.Bandwidth;
+import com.acgist.snail.system.bencode.BEncodeDecoder;
 import com.acgist.snail.system.exception.DownloadException;
+import com.acgist.snail.system.exception.PacketSizeException;
 import com.acgist.snail.utils.BeanUtils;
 import com.acgist.snail.utils.DateUtils;
 import com.acgist.snail.utils.FileUtils;
@@ -33,6 +39,8 @@ import com.acgist.snail.utils.StringUtils;
  */
 public final class TaskSession implements ITaskSession {
 
+	private static final Logger LOGGER = LoggerFactory.getLogger(TaskSession.class);
+	
 	/**
 	 * <p>时间格式工厂</p>
 	 */
@@ -59,6 +67,7 @@ public final class TaskSession implements ITaskSession {
 		}
 		this.entity = entity;
 		this.statistics = new StatisticsSession(true, SystemStatistics.getInstance().statistics());
+		this.buildPriority();
 	}
 	
 	public static final ITaskSession newInstance(TaskEntity entity) throws DownloadException {
@@ -109,6 +118,31 @@ public final class TaskSession implements ITaskSession {
 		}
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>镜像下载链接单独保存（B编码列表）：任务描述保存BT任务选择下载文件列表</p>
+	 */
+	@Override
+	public List<String> mirrorUrls() {
+		final Type type = this.entity.getType();
+		if(type != Type.HTTP && type != Type.FTP) {
+			return List.of();
+		}
+		final String mirrors = this.entity.getMirrors();
+		if(StringUtils.isEmpty(mirrors)) {
+			return List.of();
+		}
+		try {
+			return BEncodeDecoder.newInstance(mirrors).nextList().stream()
+				.map(BEncodeDecoder::getString)
+				.collect(Collectors.toList());
+		} catch (PacketSizeException e) {
+			LOGGER.error("解析镜像下载链接异常：{}", mirrors, e);
+		}
+		return List.of();
+	}
+	
 	@Override
 	public IStatisticsSession statistics() {
 		return this.statistics;
@@ -225,6 +259,23 @@ public final class TaskSession implements ITaskSession {
 	}
 	
 
+	/**
+	 * <p>设置带宽优先级</p>
+	 * <p>磁力链接（只下载种子文件）：高；已经完成任务（做种）：低，优先保证下载中任务的上传；其他任务：普通；</p>
+	 */
+	private void buildPriority() {
+		final Bandwidth.Priority priority;
+		if(this.entity.getType() == Type.MAGNET) {
+			priority = Bandwidth.Priority.HIGH;
+		} else if(this.complete()) {
+			priority = Bandwidth.Priority.LOW;
+		} else {
+			priority = Bandwidth.Priority.NORMAL;
+		}
+		this.statistics.uploadBandwidth().priority(priority);
+		this.statistics.downloadBandwidth().priority(priority);
+	}
+	
 	@Override
 	public void updateStatus(Status status) {
 		if(complete()) {
@@ -234,6 +285,7 @@ public final class TaskSession implements ITaskSession {
 			this.entity.setEndDate(new Date()); // 设置完成时间
 		}
 		this.entity.setStatus(status);
+		this.buildPriority();
 		final TaskRepository repository = new TaskRepository();
 		repository.update(this.entity);
 		DownloaderManager.getInstance().refresh(); // 刷新下载
@@ -352,4 +404,14 @@ public final class TaskSession implements ITaskSession {
 		this.entity.setDescription(description);
 	}
 	
+	@Override
+	public String getMirrors() {
+		return this.entity.getMirrors();
+	}
+	
+	@Override
+	public void setMirrors(String mirrors) {
+		this.entity.setMirrors(mirrors);
+	}
+	
 }
@@ -1,5 +1,6 @@
 package com.acgist.snail.pojo.session;
 
+import java.nio.ByteBuffer;
 import java.time.Duration;
 import java.util.BitSet;
 import java.util.List;
@@ -16,8 +17,10 @@ import com.acgist.snail.net.torrent.bootstrap.DhtLauncher;
 import com.acgist.snail.net.torrent.bootstrap.PeerDownloaderGroup;
 import com.acgist.snail.net.torrent.bootstrap.PeerUploader;
 import com.acgist.snail.net.torrent.bootstrap.PeerUploaderGroup;
+import com.acgist.snail.net.torrent.bootstrap.PiecePipeline;
 import com.acgist.snail.net.torrent.bootstrap.TorrentStreamGroup;
 import com.acgist.snail.net.torrent.bootstrap.TrackerLauncherGroup;
+import com.acgist.snail.net.torrent.bootstrap.WebSeedDownloaderGroup;
 import com.acgist.snail.net.torrent.peer.bootstrap.PeerManager;
 import com.acgist.snail.net.torrent.peer.bootstrap.PeerSubMessageHandler;
 import com.acgist.snail.pojo.IStatisticsSession;
@@ -68,6 +71,14 @@ public final class TorrentSession {
 	 * <p>Peer优化任务执行周期</p>
 	 */
 	private static final Duration PEER_OPTIMIZE_INTERVAL = Duration.ofSeconds(SystemConfig.getPeerOptimizeInterval());
+	/**
+	 * <p>快速恢复数据保存周期</p>
+	 */
+	private static final Duration RESUME_INTERVAL = Duration.ofSeconds(SystemConfig.getResumeInterval());
+	/**
+	 * <p>释放资源等待任务线程池关闭时间</p>
+	 */
+	private static final Duration RELEASE_TIMEOUT = Duration.ofSeconds(5);
 
 	/**
 	 * <p>动作：磁力链接下载、BT任务下载</p>
@@ -113,10 +124,18 @@ public final class TorrentSession {
 	 * <p>PeerDownloader组</p>
 	 */
 	private PeerDownloaderGroup peerDownloaderGroup;
+	/**
+	 * <p>WebSeedDownloader组</p>
+	 */
+	private volatile WebSeedDownloaderGroup webSeedDownloaderGroup;
 	/**
 	 * <p>文件流组</p>
 	 */
 	private TorrentStreamGroup torrentStreamGroup;
+	/**
+	 * <p>Piece保存流水线</p>
+	 */
+	private PiecePipeline piecePipeline;
 	/**
 	 * <p>Tracker组</p>
 	 */
@@ -150,6 +169,10 @@ public final class TorrentSession {
 	 * <p>TrackerLauncherGroup定时器</p>
 	 */
 	private ScheduledFuture<?> trackerLauncherGroupTimer;
+	/**
+	 * <p>快速恢复数据定时任务</p>
+	 */
+	private ScheduledFuture<?> resumeTimer;
 	
 	/**
 	 * <p>BT任务信息</p>
@@ -262,6 +285,7 @@ public final class TorrentSession {
 			return true;
 		}
 		this.loadExecutor();
+		this.loadPiecePipeline();
 		if(findPeer) {
 			this.loadTrackerLauncherGroup();
 			this.loadTrackerLauncherGroupTimer();
@@ -275,12 +299,14 @@ public final class TorrentSession {
 		this.loadPeerDownloaderGroup();
 		this.loadPeerDownloaderGroupTimer();
 		this.loadPeerUploaderDownload();
+		this.loadResumeTimer();
 		if(this.isPrivateTorrent()) {
 			LOGGER.debug("私有种子：不加载PEX任务");
 		} else {
 			this.loadPexTimer();
 		}
 		this.downloadable = true;
+		this.loadWebSeedDownloaderGroup();
 		return false;
 	}
 
@@ -300,6 +326,13 @@ public final class TorrentSession {
 		this.executor = SystemThreadContext.newCacheExecutor(SystemThreadContext.SNAIL_THREAD_BT);
 	}
 
+	/**
+	 * <p>加载Piece保存流水线</p>
+	 */
+	private void loadPiecePipeline() {
+		this.piecePipeline = PiecePipeline.newInstance(this);
+	}
+	
 	/**
 	 * <p>加载定时线程池</p>
 	 */
@@ -334,6 +367,15 @@ public final class TorrentSession {
 		});
 	}
 
+	/**
+	 * <p>加载WebSeedDownloader</p>
+	 * <p>开始下载后加载：下载线程需要判断任务是否可以下载</p>
+	 */
+	private void loadWebSeedDownloaderGroup() {
+		this.webSeedDownloaderGroup = WebSeedDownloaderGroup.newInstance(this);
+		this.webSeedDownloaderGroup.download();
+	}
+
 	/**
 	 * <p>加载PeerUploader</p>
 	 */
@@ -397,9 +439,19 @@ public final class TorrentSession {
 
 	/**
 	 * <p>加载DHT定时任务</p>
+	 * <p>立即执行：DHT查找异步执行，不会阻塞定时线程。</p>
 	 */
 	private void loadDhtLauncherTimer() {
-		this.dhtLauncherTimer = this.timerFixedDelay(DHT_INTERVAL.getSeconds(), DHT_INTERVAL.getSeconds(), TimeUnit.SECONDS, this.dhtLauncher);
+		this.dhtLauncherTimer = this.timerFixedDelay(0L, DHT_INTERVAL.getSeconds(), TimeUnit.SECONDS, this.dhtLauncher);
+	}
+	
+	/**
+	 * <p>加载快速恢复数据定时任务</p>
+	 */
+	private void loadResumeTimer() {
+		this.resumeTimer = this.timerFixedDelay(RESUME_INTERVAL.toSeconds(), RESUME_INTERVAL.toSeconds(), TimeUnit.SECONDS, () -> {
+			this.torrentStreamGroup.saveResume();
+		});
 	}
 	
 	/**
@@ -505,12 +557,12 @@ public final class TorrentSession {
 	
 	/**
 	 * <p>检测任务是否下载完成</p>
-	 * <p>如果任务已经完成：刷出缓存、解除下载锁、UploadOnly</p>
+	 * <p>如果任务已经完成：刷出缓存（删除快速恢复文件）、解除下载锁、UploadOnly</p>
 	 */
 	public void checkCompletedAndDone() {
 		if(this.torrentStreamGroup.complete()) {
 			LOGGER.debug("任务下载完成：{}", name());
-			this.torrentStreamGroup.flush();
+			this.torrentStreamGroup.saveResume();
 			final var downloader = this.taskSession.downloader();
 			if(downloader != null) {
 				downloader.unlockDownload(); // 解除下载锁
@@ -534,19 +586,29 @@ public final class TorrentSession {
 	public void releaseDownload() {
 		LOGGER.debug("Torrent释放资源（下载）");
 		SystemThreadContext.shutdown(this.pexTimer);
+		SystemThreadContext.shutdown(this.resumeTimer);
 		SystemThreadContext.shutdown(this.peerDownloaderGroupTimer);
 		if(this.peerDownloaderGroup != null) {
 			this.peerDownloaderGroup.release();
 		}
+		if(this.webSeedDownloaderGroup != null) {
+			this.webSeedDownloaderGroup.release();
+		}
 		SystemThreadContext.shutdown(this.dhtLauncherTimer);
 		SystemThreadContext.shutdown(this.trackerLauncherGroupTimer);
 		if(this.trackerLauncherGroup != null) {
 			this.trackerLauncherGroup.release();
 		}
+		if(this.piecePipeline != null) {
+			// 保存已经校验的Piece
+			this.piecePipeline.release();
+		}
 		if(this.torrentStreamGroup != null) {
-			this.torrentStreamGroup.flush();
+			// 刷出缓存并保存快速恢复数据
+			this.torrentStreamGroup.saveResume();
 		}
-		SystemThreadContext.shutdownNow(this.executor);
+		// 不能直接中断：中断正在保存Piece的线程会关闭文件通道
+		SystemThreadContext.shutdownAwait(this.executor, RELEASE_TIMEOUT.toSeconds(), TimeUnit.SECONDS);
 		this.downloadable = false;
 	}
 	
@@ -567,6 +629,58 @@ public final class TorrentSession {
 		this.uploadable = false;
 	}
 
+	/**
+	 * <p>增加Piece可用度</p>
+	 * 
+	 * @param index Piece索引
+	 * 
+	 * @see TorrentStreamGroup#addAvailability(int)
+	 */
+	public void addAvailability(int index) {
+		if(this.torrentStreamGroup != null) {
+			this.torrentStreamGroup.addAvailability(index);
+		}
+	}
+	
+	/**
+	 * <p>增加Piece可用度</p>
+	 * 
+	 * @param pieces Piece位图
+	 * 
+	 * @see TorrentStreamGroup#addAvailability(BitSet)
+	 */
+	public void addAvailability(BitSet pieces) {
+		if(this.torrentStreamGroup != null) {
+			this.torrentStreamGroup.addAvailability(pieces);
+		}
+	}
+	
+	/**
+	 * <p>减少Piece可用度</p>
+	 * 
+	 * @param index Piece索引
+	 * 
+	 * @see TorrentStreamGroup#removeAvailability(int)
+	 */
+	public void removeAvailability(int index) {
+		if(this.torrentStreamGroup != null) {
+			this.torrentStreamGroup.removeAvailability(index);
+		}
+	}
+	
+	/**
+	 * <p>减少Piece可用度</p>
+	 * 
+	 * @param pieces Piece位图
+	 * 
+	 * @see TorrentStreamGroup#removeAvailability(BitSet)
+	 */
+	public void removeAvailability(BitSet pieces) {
+		if(this.torrentStreamGroup != null) {
+			this.torrentStreamGroup.removeAvailability(pieces);
+		}
+	}
+
 	/**
 	 * <p>保存种子文件</p>
 	 * <p>重新加载种子文件和InfoHash</p>
@@ -809,7 +923,42 @@ public final class TorrentSession {
 	public byte[] read(int index, int begin, int length) throws NetException {
 		return this.torrentStreamGroup.read(index, begin, length);
 	}
+	
+	/**
+	 * @param index Piece索引
+	 * @param begin Piece偏移
+	 * @param length 数据长度
+	 * @param buffer 缓冲
+	 * 
+	 * @return 是否读取成功
+	 * 
+	 * @throws NetException 网络异常
+	 * 
+	 * @see TorrentStreamGroup#read(int, int, int, ByteBuffer)
+	 */
+	public boolean read(int index, int begin, int length, ByteBuffer buffer) throws NetException {
+		return this.torrentStreamGroup.read(index, begin, length, buffer);
+	}
 
+	/**
+	 * @param peerSession Peer信息
+	 * @param piece 下载完成的Piece
+	 * 
+	 * @see PiecePipeline#submit(PeerSession, TorrentPiece)
+	 */
+	public void complete(PeerSession peerSession, TorrentPiece piece) {
+		this.piecePipeline.submit(peerSession, piece);
+	}
+	
+	/**
+	 * @return 流水线是否已满
+	 * 
+	 * @see PiecePipeline#full()
+	 */
+	public boolean pipelineFull() {
+		return this.piecePipeline != null && this.piecePipeline.full();
+	}
+	
 	/**
 	 * @param piece Piece数据
 	 * 
@@ -833,12 +982,25 @@ public final class TorrentSession {
 	}
 
 	/**
+	 * <p>Piece下载失败：唤醒等待Piece的Web种子</p>
+	 * 
 	 * @param piece Piece
 	 * 
 	 * @see TorrentStreamGroup#undone(TorrentPiece)
 	 */
 	public void undone(TorrentPiece piece) {
 		this.torrentStreamGroup.undone(piece);
+		this.signalWebSeed();
+	}
+	
+	/**
+	 * @see WebSeedDownloaderGroup#signal()
+	 */
+	public void signalWebSeed() {
+		final WebSeedDownloaderGroup group = this.webSeedDownloaderGroup;
+		if(group != null) {
+			group.signal();
+		}
 	}
 	
 	/**
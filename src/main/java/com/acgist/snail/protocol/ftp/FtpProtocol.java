@@ -2,6 +2,7 @@ package com.acgist.snail.protocol.ftp;
 
 import com.acgist.snail.downloader.IDownloader;
 import com.acgist.snail.downloader.ftp.FtpDownloader;
+import com.acgist.snail.downloader.mirror.MirrorDownloader;
 import com.acgist.snail.net.ftp.FtpClient;
 import com.acgist.snail.net.ftp.bootstrap.FtpClientBuilder;
 import com.acgist.snail.pojo.ITaskSession;
@@ -39,7 +40,10 @@ public final class FtpProtocol extends Protocol {
 	
 	@Override
 	public IDownloader buildDownloader(ITaskSession taskSession) {
-		return FtpDownloader.newInstance(taskSession);
+		if(taskSession.mirrorUrls().isEmpty()) {
+			return FtpDownloader.newInstance(taskSession);
+		}
+		return MirrorDownloader.newInstance(taskSession);
 	}
 
 	@Override
@@ -5,6 +5,7 @@ import org.slf4j.LoggerFactory;
 
 import com.acgist.snail.downloader.IDownloader;
 import com.acgist.snail.downloader.http.HttpDownloader;
+import com.acgist.snail.downloader.mirror.MirrorDownloader;
 import com.acgist.snail.net.http.HTTPClient;
 import com.acgist.snail.pojo.ITaskSession;
 import com.acgist.snail.pojo.wrapper.HttpHeaderWrapper;
@@ -52,7 +53,10 @@ public final class HttpProtocol extends Protocol {
 	
 	@Override
 	public IDownloader buildDownloader(ITaskSession taskSession) {
-		return HttpDownloader.newInstance(taskSession);
+		if(taskSession.mirrorUrls().isEmpty()) {
+			return HttpDownloader.newInstance(taskSession);
+		}
+		return MirrorDownloader.newInstance(taskSession);
 	}
 
 	@Override
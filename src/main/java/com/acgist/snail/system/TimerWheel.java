@@ -0,0 +1,171 @@
+package com.acgist.snail.system;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.acgist.snail.system.context.SystemThreadContext;
+
+/**
+ * <p>时间轮</p>
+ * <p>大量超时任务共用一个定时任务：每个{@linkplain #TICK_DURATION 时间间隔}处理一个槽位中到期的任务</p>
+ * <p>添加和取消任务时间复杂度：O(1)</p>
+ * <p>超时精度：{@linkplain #TICK_DURATION 时间间隔}</p>
+ * <p>注意：任务在定时线程中执行，任务不能阻塞，耗时任务需要提交到其他线程池执行。</p>
+ * 
+ * @author acgist
+ * @since 1.3.0
+ */
+public final class TimerWheel {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(TimerWheel.class);
+
+	/**
+	 * <p>时间间隔（毫秒）：{@value}</p>
+	 */
+	private static final long TICK_DURATION = 100L;
+	/**
+	 * <p>槽位数量：{@value}</p>
+	 */
+	private static final int WHEEL_SIZE = 512;
+
+	private static final TimerWheel INSTANCE = new TimerWheel(TICK_DURATION, WHEEL_SIZE);
+
+	/**
+	 * <p>时间间隔（毫秒）</p>
+	 */
+	private final long tickDuration;
+	/**
+	 * <p>槽位</p>
+	 */
+	private final List<List<Timeout>> wheel;
+	/**
+	 * <p>当前刻度</p>
+	 */
+	private long tick;
+
+	private TimerWheel(long tickDuration, int wheelSize) {
+		this.tick = 0L;
+		this.tickDuration = tickDuration;
+		this.wheel = new ArrayList<>(wheelSize);
+		for (int index = 0; index < wheelSize; index++) {
+			this.wheel.add(new LinkedList<>());
+		}
+		SystemThreadContext.timer(tickDuration, tickDuration, TimeUnit.MILLISECONDS, this::tick);
+	}
+
+	public static final TimerWheel getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * <p>添加超时任务</p>
+	 * 
+	 * @param delay 超时时间
+	 * @param unit 时间单位
+	 * @param runnable 任务
+	 * 
+	 * @return 超时任务
+	 */
+	public Timeout timeout(long delay, TimeUnit unit, Runnable runnable) {
+		// 向上取整：不能提前执行
+		final long ticks = Math.max(1L, (unit.toMillis(delay) + this.tickDuration - 1) / this.tickDuration);
+		synchronized (this.wheel) {
+			final Timeout timeout = new Timeout(this.tick + ticks, runnable);
+			this.wheel.get((int) (timeout.deadline % this.wheel.size())).add(timeout);
+			return timeout;
+		}
+	}
+
+	/**
+	 * <p>执行当前槽位到期任务</p>
+	 */
+	private void tick() {
+		final List<Timeout> timeouts = new ArrayList<>();
+		synchronized (this.wheel) {
+			this.tick++;
+			final var iterator = this.wheel.get((int) (this.tick % this.wheel.size())).iterator();
+			this.expire(iterator, timeouts);
+		}
+		for (Timeout timeout : timeouts) {
+			// 取出后取消的任务
+			if(timeout.cancel) {
+				continue;
+			}
+			try {
+				timeout.runnable.run();
+			} catch (Exception e) {
+				LOGGER.error("时间轮任务执行异常", e);
+			}
+		}
+	}
+
+	/**
+	 * <p>删除到期任务和取消任务</p>
+	 * 
+	 * @param iterator 槽位任务
+	 * @param timeouts 到期任务
+	 */
+	private void expire(Iterator<Timeout> iterator, List<Timeout> timeouts) {
+		while(iterator.hasNext()) {
+			final Timeout timeout = iterator.next();
+			if(timeout.cancel) {
+				iterator.remove();
+			} else if(timeout.deadline <= this.tick) {
+				iterator.remove();
+				timeouts.add(timeout);
+			}
+		}
+	}
+
+	/**
+	 * <p>超时任务</p>
+	 * 
+	 * @author acgist
+	 * @since 1.3.0
+	 */
+	public static final class Timeout {
+
+		/**
+		 * <p>到期刻度</p>
+		 */
+		private final long deadline;
+		/**
+		 * <p>任务</p>
+		 */
+		private final Runnable runnable;
+		/**
+		 * <p>是否取消</p>
+		 * <p>取消的任务在槽位处理时删除</p>
+		 */
+		private volatile boolean cancel = false;
+
+		private Timeout(long deadline, Runnable runnable) {
+			this.deadline = deadline;
+			this.runnable = runnable;
+		}
+
+		/**
+		 * <p>取消任务</p>
+		 */
+		public void cancel() {
+			this.cancel = true;
+		}
+
+		/**
+		 * <p>判断是否取消</p>
+		 * 
+		 * @return {@code true}-取消；{@code false}-没有取消；
+		 */
+		public boolean canceled() {
+			return this.cancel;
+		}
+
+	}
+
+}
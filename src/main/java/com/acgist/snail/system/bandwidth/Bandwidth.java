@@ -0,0 +1,325 @@
+package com.acgist.snail.system.bandwidth;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.LongSupplier;
+
+import com.acgist.snail.system.config.SystemConfig;
+import com.acgist.snail.utils.DateUtils;
+
+/**
+ * <p>带宽（令牌桶）</p>
+ * <p>令牌按照速度补充，最多保存一秒的令牌。读写数据前申请令牌，申请时只要令牌大于零就可以使用（允许透支），透支的令牌等待补充后抵扣。</p>
+ * <p>带宽按照全局、任务、Peer组成树形结构：所有上级带宽都有令牌时才能使用，使用后所有上级带宽同时扣除。</p>
+ * <p>令牌不足时申请放入等待队列，由{@linkplain BandwidthScheduler 带宽调度器}补充令牌后按照优先级和赤字轮询（按照字节公平）顺序分配。</p>
+ * <p>注意：令牌和等待队列只能在带宽调度器加锁后修改</p>
+ * 
+ * @author acgist
+ * @since 1.3.0
+ */
+public final class Bandwidth {
+
+	/**
+	 * <p>优先级</p>
+	 * <p>分配令牌时优先分配给高优先级的带宽，相同优先级的带宽轮询分配。</p>
+	 * <p>任务带宽：磁力链接-高；做种任务-低；其他任务-普通；</p>
+	 * 
+	 * @author acgist
+	 * @since 1.3.0
+	 */
+	public enum Priority {
+
+		/** 高 */
+		HIGH,
+		/** 普通 */
+		NORMAL,
+		/** 低 */
+		LOW;
+
+	}
+
+	/**
+	 * <p>赤字轮询配额（B）：{@value}</p>
+	 * <p>每轮轮询给下级带宽补充的令牌配额</p>
+	 */
+	private static final long QUANTUM = 16L * SystemConfig.ONE_KB;
+
+	/**
+	 * <p>上级带宽</p>
+	 */
+	private final Bandwidth parent;
+	/**
+	 * <p>速度（B/s）：小于等于零-不限速</p>
+	 */
+	private final LongSupplier rate;
+	/**
+	 * <p>优先级</p>
+	 */
+	private volatile Priority priority;
+	/**
+	 * <p>令牌数量：可以小于零（透支）</p>
+	 */
+	private long tokens;
+	/**
+	 * <p>最后一次补充令牌时间</p>
+	 */
+	private long refillTime;
+	/**
+	 * <p>是否已经加入上级带宽的等待带宽队列</p>
+	 */
+	private boolean active;
+	/**
+	 * <p>赤字（B）：上级带宽轮询时剩余的配额，小于零时需要等待补充配额。</p>
+	 */
+	private long deficit;
+	/**
+	 * <p>等待队列：当前带宽的令牌申请</p>
+	 */
+	private final Deque<Waiter> waiters;
+	/**
+	 * <p>等待带宽队列：存在等待令牌申请的下级带宽（轮询）</p>
+	 */
+	private final Deque<Bandwidth> actives;
+
+	Bandwidth(Bandwidth parent, LongSupplier rate, Priority priority) {
+		this.parent = parent;
+		this.rate = rate;
+		this.priority = priority;
+		this.tokens = Math.max(0L, rate.getAsLong());
+		this.refillTime = System.currentTimeMillis();
+		this.waiters = new ArrayDeque<>();
+		this.actives = new ArrayDeque<>();
+	}
+
+	/**
+	 * <p>获取优先级</p>
+	 * 
+	 * @return 优先级
+	 */
+	public Priority priority() {
+		return this.priority;
+	}
+
+	/**
+	 * <p>设置优先级</p>
+	 * 
+	 * @param priority 优先级
+	 */
+	public void priority(Priority priority) {
+		this.priority = priority;
+	}
+
+	/**
+	 * <p>补充令牌</p>
+	 * <p>不足一个令牌时不更新补充时间：防止频繁补充丢失令牌</p>
+	 * 
+	 * @param now 当前时间
+	 */
+	private void refill(long now) {
+		final long rate = this.rate.getAsLong();
+		if(rate <= 0L) {
+			this.refillTime = now;
+			return;
+		}
+		final long add = rate * (now - this.refillTime) / DateUtils.ONE_SECOND;
+		if(add > 0L) {
+			this.tokens = Math.min(rate, this.tokens + add);
+			this.refillTime = now;
+		}
+	}
+
+	/**
+	 * <p>判断当前带宽是否有令牌</p>
+	 * 
+	 * @param now 当前时间
+	 * 
+	 * @return 是否有令牌
+	 */
+	private boolean available(long now) {
+		this.refill(now);
+		return this.rate.getAsLong() <= 0L || this.tokens > 0L;
+	}
+
+	/**
+	 * <p>判断当前带宽和所有上级带宽是否都有令牌</p>
+	 * 
+	 * @param now 当前时间
+	 * 
+	 * @return 是否有令牌
+	 */
+	boolean chainAvailable(long now) {
+		Bandwidth bandwidth = this;
+		while(bandwidth != null) {
+			if(!bandwidth.available(now)) {
+				return false;
+			}
+			bandwidth = bandwidth.parent;
+		}
+		return true;
+	}
+
+	/**
+	 * <p>获取当前带宽和所有上级带宽的最大透支令牌数量</p>
+	 * 
+	 * @param now 当前时间
+	 * 
+	 * @return 透支令牌数量：零-没有透支
+	 */
+	long chainOverdraft(long now) {
+		long overdraft = 0L;
+		Bandwidth bandwidth = this;
+		while(bandwidth != null) {
+			bandwidth.refill(now);
+			if(bandwidth.rate.getAsLong() > 0L) {
+				overdraft = Math.max(overdraft, -bandwidth.tokens);
+			}
+			bandwidth = bandwidth.parent;
+		}
+		return overdraft;
+	}
+
+	/**
+	 * <p>扣除令牌：当前带宽和所有上级带宽</p>
+	 * 
+	 * @param size 令牌数量
+	 */
+	void consume(long size) {
+		Bandwidth bandwidth = this;
+		while(bandwidth != null) {
+			if(bandwidth.rate.getAsLong() > 0L) {
+				bandwidth.tokens -= size;
+			}
+			bandwidth = bandwidth.parent;
+		}
+	}
+
+	/**
+	 * <p>归还令牌：当前带宽和所有上级带宽</p>
+	 * 
+	 * @param size 令牌数量
+	 */
+	void refund(long size) {
+		Bandwidth bandwidth = this;
+		while(bandwidth != null) {
+			final long rate = bandwidth.rate.getAsLong();
+			if(rate > 0L) {
+				bandwidth.tokens = Math.min(rate, bandwidth.tokens + size);
+			}
+			bandwidth = bandwidth.parent;
+		}
+	}
+
+	/**
+	 * <p>判断是否存在等待令牌申请（包含下级带宽）</p>
+	 * 
+	 * @return 是否存在等待令牌申请
+	 */
+	boolean pending() {
+		return !this.waiters.isEmpty() || !this.actives.isEmpty();
+	}
+
+	/**
+	 * <p>添加等待令牌申请</p>
+	 * <p>当前带宽和上级带宽依次加入上级带宽的等待带宽队列</p>
+	 * 
+	 * @param waiter 令牌申请
+	 */
+	void offer(Waiter waiter) {
+		this.waiters.offer(waiter);
+		Bandwidth bandwidth = this;
+		while(bandwidth.parent != null && !bandwidth.active) {
+			bandwidth.active = true;
+			bandwidth.parent.actives.offer(bandwidth);
+			bandwidth = bandwidth.parent;
+		}
+	}
+
+	/**
+	 * <p>取出可以分配令牌的令牌申请</p>
+	 * <p>优先分配当前带宽的令牌申请，然后按照优先级从高到低赤字轮询下级带宽。</p>
+	 * <p>赤字轮询：下级带宽分配令牌后扣除赤字，赤字不小于零时继续分配，小于零时放到队尾等待下一轮补充{@linkplain #QUANTUM 配额}，保证相同优先级的下级带宽按照字节（不是申请次数）公平分配。</p>
+	 * 
+	 * @param now 当前时间
+	 * 
+	 * @return 令牌申请：{@code null}-没有可以分配令牌的令牌申请
+	 */
+	Waiter poll(long now) {
+		if(!this.available(now)) {
+			return null;
+		}
+		Waiter waiter = this.waiters.poll();
+		if(waiter != null) {
+			return waiter;
+		}
+		for (Priority value : Priority.values()) {
+			boolean retry = true;
+			while(retry) {
+				retry = false;
+				final int size = this.actives.size();
+				for (int index = 0; index < size; index++) {
+					final Bandwidth bandwidth = this.actives.poll();
+					if(bandwidth.priority != value) {
+						this.actives.offer(bandwidth);
+						continue;
+					}
+					if(bandwidth.deficit < 0L) {
+						// 补充配额放到队尾：下一轮分配
+						bandwidth.deficit += QUANTUM;
+						this.actives.offer(bandwidth);
+						retry = true;
+						continue;
+					}
+					waiter = bandwidth.poll(now);
+					if(waiter != null) {
+						bandwidth.deficit -= waiter.size;
+					}
+					if(!bandwidth.pending()) {
+						// 没有等待令牌申请：清除剩余配额（保留赤字）
+						bandwidth.active = false;
+						bandwidth.deficit = Math.min(0L, bandwidth.deficit);
+					} else if(waiter != null && bandwidth.deficit >= 0L) {
+						// 放到队首：继续使用剩余配额
+						this.actives.offerFirst(bandwidth);
+					} else {
+						// 放到队尾：轮询
+						this.actives.offer(bandwidth);
+					}
+					if(waiter != null) {
+						return waiter;
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * <p>令牌申请</p>
+	 * 
+	 * @author acgist
+	 * @since 1.3.0
+	 */
+	static final class Waiter {
+
+		/**
+		 * <p>申请带宽</p>
+		 */
+		final Bandwidth bandwidth;
+		/**
+		 * <p>令牌数量</p>
+		 */
+		final int size;
+		/**
+		 * <p>分配令牌后执行的任务</p>
+		 */
+		final Runnable callback;
+
+		Waiter(Bandwidth bandwidth, int size, Runnable callback) {
+			this.bandwidth = bandwidth;
+			this.size = size;
+			this.callback = callback;
+		}
+
+	}
+
+}
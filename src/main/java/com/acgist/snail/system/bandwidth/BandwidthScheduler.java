@@ -0,0 +1,208 @@
+package com.acgist.snail.system.bandwidth;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.acgist.snail.system.bandwidth.Bandwidth.Priority;
+import com.acgist.snail.system.bandwidth.Bandwidth.Waiter;
+import com.acgist.snail.system.config.SystemConfig;
+import com.acgist.snail.system.context.SystemThreadContext;
+
+/**
+ * <p>带宽调度器</p>
+ * <p>分层令牌桶：全局带宽 → 任务带宽 → Peer带宽，上传和下载分别使用一个调度器。</p>
+ * <p>申请令牌时如果所有上级带宽都有令牌直接执行任务，否则放入等待队列直接返回（不会阻塞线程），每个{@linkplain #TICK_DURATION 时间间隔}补充令牌后按照优先级和轮询顺序执行等待任务。</p>
+ * <p>注意：等待任务在定时线程中执行，任务不能阻塞。</p>
+ * 
+ * @author acgist
+ * @since 1.3.0
+ */
+public final class BandwidthScheduler {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(BandwidthScheduler.class);
+
+	/**
+	 * <p>时间间隔（毫秒）：{@value}</p>
+	 */
+	private static final long TICK_DURATION = 100L;
+
+	private static final BandwidthScheduler UPLOAD = new BandwidthScheduler(SystemConfig::getUploadBandwidthByte);
+	private static final BandwidthScheduler DOWNLOAD = new BandwidthScheduler(SystemConfig::getDownloadBandwidthByte);
+
+	/**
+	 * <p>全局带宽</p>
+	 * <p>令牌和等待队列使用全局带宽加锁</p>
+	 */
+	private final Bandwidth root;
+
+	private BandwidthScheduler(LongSupplier rate) {
+		this.root = new Bandwidth(null, rate, Priority.NORMAL);
+		SystemThreadContext.timer(TICK_DURATION, TICK_DURATION, TimeUnit.MILLISECONDS, this::dispatch);
+	}
+
+	/**
+	 * <p>获取上传带宽调度器</p>
+	 * 
+	 * @return 上传带宽调度器
+	 */
+	public static final BandwidthScheduler upload() {
+		return UPLOAD;
+	}
+
+	/**
+	 * <p>获取下载带宽调度器</p>
+	 * 
+	 * @return 下载带宽调度器
+	 */
+	public static final BandwidthScheduler download() {
+		return DOWNLOAD;
+	}
+
+	/**
+	 * <p>获取全局带宽</p>
+	 * 
+	 * @return 全局带宽
+	 */
+	public Bandwidth root() {
+		return this.root;
+	}
+
+	/**
+	 * <p>创建带宽</p>
+	 * 
+	 * @param parent 上级带宽：{@code null}-全局带宽
+	 * @param rate 速度（B/s）：小于等于零-不限速
+	 * @param priority 优先级
+	 * 
+	 * @return 带宽
+	 */
+	public Bandwidth newBandwidth(Bandwidth parent, LongSupplier rate, Priority priority) {
+		return new Bandwidth(parent == null ? this.root : parent, rate, priority);
+	}
+
+	/**
+	 * <p>申请令牌</p>
+	 * <p>有令牌时在当前线程直接执行任务，否则放入等待队列（不阻塞当前线程）。</p>
+	 * 
+	 * @param bandwidth 带宽：{@code null}-不限速
+	 * @param size 令牌数量
+	 * @param callback 分配令牌后执行的任务
+	 */
+	public void acquire(Bandwidth bandwidth, int size, Runnable callback) {
+		if(bandwidth == null) {
+			callback.run();
+			return;
+		}
+		final long now = System.currentTimeMillis();
+		synchronized (this.root) {
+			// 已经有等待令牌申请时放入等待队列：保证顺序
+			if(bandwidth.pending() || !bandwidth.chainAvailable(now)) {
+				bandwidth.offer(new Waiter(bandwidth, Math.max(1, size), callback));
+				return;
+			}
+			bandwidth.consume(size);
+		}
+		callback.run();
+	}
+
+	/**
+	 * <p>申请令牌</p>
+	 * <p>没有令牌时阻塞当前线程：只能在独占线程（例如HTTP下载线程）中使用</p>
+	 * 
+	 * @param bandwidth 带宽：{@code null}-不限速
+	 * @param size 令牌数量
+	 */
+	public void acquire(Bandwidth bandwidth, int size) {
+		if(bandwidth == null) {
+			return;
+		}
+		final CountDownLatch latch = new CountDownLatch(1);
+		this.acquire(bandwidth, size, latch::countDown);
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			LOGGER.debug("申请令牌等待异常", e);
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * <p>获取透支令牌数量</p>
+	 * <p>没有办法等待令牌的数据（例如UDP数据）根据透支令牌数量通知对方降低发送速度</p>
+	 * 
+	 * @param bandwidth 带宽：{@code null}-不限速
+	 * 
+	 * @return 当前带宽和所有上级带宽的最大透支令牌数量：零-没有透支
+	 */
+	public long overdraft(Bandwidth bandwidth) {
+		if(bandwidth == null) {
+			return 0L;
+		}
+		final long now = System.currentTimeMillis();
+		synchronized (this.root) {
+			return bandwidth.chainOverdraft(now);
+		}
+	}
+
+	/**
+	 * <p>扣除令牌</p>
+	 * <p>没有办法等待令牌的数据（例如UDP数据）直接扣除</p>
+	 * 
+	 * @param bandwidth 带宽：{@code null}-不限速
+	 * @param size 令牌数量
+	 */
+	public void consume(Bandwidth bandwidth, int size) {
+		if(bandwidth == null) {
+			return;
+		}
+		synchronized (this.root) {
+			bandwidth.consume(size);
+		}
+	}
+
+	/**
+	 * <p>归还令牌</p>
+	 * <p>申请令牌数量大于实际使用数量时归还</p>
+	 * 
+	 * @param bandwidth 带宽：{@code null}-不限速
+	 * @param size 令牌数量
+	 */
+	public void refund(Bandwidth bandwidth, int size) {
+		if(bandwidth == null || size <= 0) {
+			return;
+		}
+		synchronized (this.root) {
+			bandwidth.refund(size);
+		}
+	}
+
+	/**
+	 * <p>分配令牌</p>
+	 * <p>等待任务在释放锁后执行</p>
+	 */
+	private void dispatch() {
+		final long now = System.currentTimeMillis();
+		final List<Runnable> callbacks = new ArrayList<>();
+		synchronized (this.root) {
+			Waiter waiter;
+			while((waiter = this.root.poll(now)) != null) {
+				waiter.bandwidth.consume(waiter.size);
+				callbacks.add(waiter.callback);
+			}
+		}
+		for (Runnable callback : callbacks) {
+			try {
+				callback.run();
+			} catch (Exception e) {
+				LOGGER.error("执行带宽等待任务异常", e);
+			}
+		}
+	}
+
+}
@@ -131,10 +131,6 @@ public final class DhtConfig extends PropertiesConfig {
 	 * <p>超过最大数量均匀剔除多余Node</p>
 	 */
 	public static final int MAX_NODE_SIZE = 1024;
-	/**
-	 * <p>DHT请求清理周期：{@value}</p>
-	 */
-	public static final int DHT_REQUEST_CLEAN_INTERVAL = 10;
 	/**
 	 * <p>DHT响应超时</p>
 	 */
@@ -22,6 +22,11 @@ public final class PeerConfig {
 	 * <p>超过最大次数标记失败</p>
 	 */
 	public static final int MAX_FAIL_TIMES = 3;
+	/**
+	 * <p>Peer默认支持未完成请求数量（reqq）：{@value}</p>
+	 * <p>扩展协议握手没有发送reqq时使用（libtorrent默认值）</p>
+	 */
+	public static final int DEFAULT_REQQ = 250;
 	/**
 	 * <p>PeerId长度：{@value}</p>
 	 */
@@ -204,6 +204,10 @@ public final class SystemConfig extends PropertiesConfig {
 	 * <p>单个任务Peer数量（同时下载）</p>
 	 */
 	private int peerSize;
+	/**
+	 * <p>全局Peer半开连接数量（正在连接）</p>
+	 */
+	private int peerHalfOpenSize;
 	/**
 	 * <p>单个任务Tracker数量</p>
 	 */
@@ -212,6 +216,11 @@ public final class SystemConfig extends PropertiesConfig {
 	 * <p>任务即将完成时可以重复下载的Piece数量</p>
 	 */
 	private int pieceRepeatSize;
+	/**
+	 * <p>顺序下载Piece数量</p>
+	 * <p>索引小于该值的Piece按照顺序优先下载，其他Piece稀有优先。</p>
+	 */
+	private int pieceSequentialSize;
 	/**
 	 * <p>DHT执行周期（秒）</p>
 	 */
@@ -232,6 +241,39 @@ public final class SystemConfig extends PropertiesConfig {
 	 * <p>Peer（连接、接入）优化周期（秒）</p>
 	 */
 	private int peerOptimizeInterval;
+	/**
+	 * <p>快速恢复数据保存周期（秒）</p>
+	 */
+	private int resumeInterval;
+	/**
+	 * <p>BT任务做种使用内存映射</p>
+	 */
+	private boolean torrentStoreMapped;
+	/**
+	 * <p>TCP发送队列高水位（KB）</p>
+	 * <p>发送队列数据大小超过高水位时连接不可写</p>
+	 */
+	private int tcpSendHighWater;
+	/**
+	 * <p>HTTP分段下载连接数量</p>
+	 * <p>服务器支持断点续传时使用多个连接分段下载：{@code 1}-关闭</p>
+	 */
+	private int httpSegmentSize;
+	/**
+	 * <p>全局上传速度（KB/s）</p>
+	 * <p>所有任务共享：{@code 0}-不限速</p>
+	 */
+	private int uploadBandwidth;
+	/**
+	 * <p>全局下载速度（KB/s）</p>
+	 * <p>所有任务共享：{@code 0}-不限速</p>
+	 */
+	private int downloadBandwidth;
+	/**
+	 * <p>系统线程池使用虚拟线程</p>
+	 * <p>需要JDK支持虚拟线程，不支持时使用平台线程。</p>
+	 */
+	private boolean virtualThread;
 	/**
 	 * <p>外网IP地址</p>
 	 */
@@ -253,13 +295,22 @@ public final class SystemConfig extends PropertiesConfig {
 		this.servicePort = getInteger("acgist.service.port", 16888);
 		this.torrentPort = getInteger("acgist.torrent.port", 18888);
 		this.peerSize = getInteger("acgist.peer.size", 20);
+		this.peerHalfOpenSize = getInteger("acgist.peer.half.open.size", 64);
 		this.trackerSize = getInteger("acgist.tracker.size", 50);
 		this.pieceRepeatSize = getInteger("acgist.piece.repeat.size", 4);
+		this.pieceSequentialSize = getInteger("acgist.piece.sequential.size", 0);
 		this.dhtInterval = getInteger("acgist.dht.interval", 120);
 		this.pexInterval = getInteger("acgist.pex.interval", 120);
 		this.lsdInterval = getInteger("acgist.lsd.interval", 120);
 		this.trackerInterval = getInteger("acgist.tracker.interval", 120);
 		this.peerOptimizeInterval = getInteger("acgist.peer.optimize.interval", 60);
+		this.resumeInterval = getInteger("acgist.resume.interval", 60);
+		this.torrentStoreMapped = getBoolean("acgist.torrent.store.mapped", false);
+		this.tcpSendHighWater = getInteger("acgist.tcp.send.high.water", 1024);
+		this.httpSegmentSize = getInteger("acgist.http.segment.size", 4);
+		this.uploadBandwidth = getInteger("acgist.bandwidth.upload", 0);
+		this.downloadBandwidth = getInteger("acgist.bandwidth.download", 0);
+		this.virtualThread = getBoolean("acgist.virtual.thread", false);
 	}
 
 	/**
@@ -277,13 +328,22 @@ public final class SystemConfig extends PropertiesConfig {
 		LOGGER.info("系统服务端口：{}", this.servicePort);
 		LOGGER.info("BT服务端口（Peer、DHT、UTP、STUN）：{}", this.torrentPort);
 		LOGGER.info("单个任务Peer数量（同时下载）：{}", this.peerSize);
+		LOGGER.info("全局Peer半开连接数量（正在连接）：{}", this.peerHalfOpenSize);
 		LOGGER.info("单个任务Tracker数量：{}", this.trackerSize);
 		LOGGER.info("任务即将完成时可以重复下载的Piece数量：{}", this.pieceRepeatSize);
+		LOGGER.info("顺序下载Piece数量：{}", this.pieceSequentialSize);
 		LOGGER.info("DHT执行周期（秒）：{}", this.dhtInterval);
 		LOGGER.info("PEX执行周期（秒）：{}", this.pexInterval);
 		LOGGER.info("本地发现执行周期（秒）：{}", this.lsdInterval);
 		LOGGER.info("Tracker执行周期（秒）：{}", this.trackerInterval);
 		LOGGER.info("Peer（连接、接入）优化周期（秒）：{}", this.peerOptimizeInterval);
+		LOGGER.info("快速恢复数据保存周期（秒）：{}", this.resumeInterval);
+		LOGGER.info("BT任务做种使用内存映射：{}", this.torrentStoreMapped);
+		LOGGER.info("TCP发送队列高水位（KB）：{}", this.tcpSendHighWater);
+		LOGGER.info("HTTP分段下载连接数量：{}", this.httpSegmentSize);
+		LOGGER.info("全局上传速度（KB/s）：{}", this.uploadBandwidth);
+		LOGGER.info("全局下载速度（KB/s）：{}", this.downloadBandwidth);
+		LOGGER.info("系统线程池使用虚拟线程：{}", this.virtualThread);
 		LOGGER.info("用户工作目录：{}", SystemConfig.USER_DIR);
 	}
 	
@@ -432,6 +492,15 @@ public final class SystemConfig extends PropertiesConfig {
 		return INSTANCE.peerSize;
 	}
 	
+	/**
+	 * <p>获取全局Peer半开连接数量（正在连接）</p>
+	 * 
+	 * @return 全局Peer半开连接数量
+	 */
+	public static final int getPeerHalfOpenSize() {
+		return INSTANCE.peerHalfOpenSize;
+	}
+	
 	/**
 	 * <p>获取单个任务Tracker数量</p>
 	 * 
@@ -449,6 +518,15 @@ public final class SystemConfig extends PropertiesConfig {
 	public static final int getPieceRepeatSize() {
 		return INSTANCE.pieceRepeatSize;
 	}
+	
+	/**
+	 * <p>获取顺序下载Piece数量</p>
+	 * 
+	 * @return 顺序下载Piece数量
+	 */
+	public static final int getPieceSequentialSize() {
+		return INSTANCE.pieceSequentialSize;
+	}
 
 	/**
 	 * <p>获取DHT执行周期（秒）</p>
@@ -494,6 +572,69 @@ public final class SystemConfig extends PropertiesConfig {
 	public static final int getPeerOptimizeInterval() {
 		return INSTANCE.peerOptimizeInterval;
 	}
+	
+	/**
+	 * <p>获取快速恢复数据保存周期（秒）</p>
+	 * 
+	 * @return 快速恢复数据保存周期
+	 */
+	public static final int getResumeInterval() {
+		return INSTANCE.resumeInterval;
+	}
+
+	/**
+	 * <p>获取BT任务做种是否使用内存映射</p>
+	 * 
+	 * @return {@code true}-使用；{@code false}-不使用；
+	 */
+	public static final boolean getTorrentStoreMapped() {
+		return INSTANCE.torrentStoreMapped;
+	}
+
+	/**
+	 * <p>获取TCP发送队列高水位（B）</p>
+	 * 
+	 * @return TCP发送队列高水位（B）
+	 */
+	public static final int getTcpSendHighWaterByte() {
+		return INSTANCE.tcpSendHighWater * ONE_KB;
+	}
+
+	/**
+	 * <p>获取HTTP分段下载连接数量</p>
+	 * 
+	 * @return HTTP分段下载连接数量
+	 */
+	public static final int getHttpSegmentSize() {
+		return INSTANCE.httpSegmentSize;
+	}
+
+	/**
+	 * <p>获取全局上传速度（B/s）</p>
+	 * 
+	 * @return 全局上传速度（B/s）：小于等于零-不限速
+	 */
+	public static final long getUploadBandwidthByte() {
+		return (long) INSTANCE.uploadBandwidth * ONE_KB;
+	}
+
+	/**
+	 * <p>获取全局下载速度（B/s）</p>
+	 * 
+	 * @return 全局下载速度（B/s）：小于等于零-不限速
+	 */
+	public static final long getDownloadBandwidthByte() {
+		return (long) INSTANCE.downloadBandwidth * ONE_KB;
+	}
+
+	/**
+	 * <p>获取系统线程池是否使用虚拟线程</p>
+	 * 
+	 * @return {@code true}-使用；{@code false}-不使用；
+	 */
+	public static final boolean getVirtualThread() {
+		return INSTANCE.virtualThread;
+	}
 
 	/**
 	 * <p>获取用户工作目录</p>
@@ -1,10 +1,18 @@
 package com.acgist.snail.system.context;
 
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -13,10 +21,15 @@ import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.acgist.snail.system.config.SystemConfig;
 import com.acgist.snail.system.exception.TimerArgumentException;
 
 /**
  * <p>系统线程上下文</p>
+ * <p>虚拟线程：{@linkplain SystemConfig#getVirtualThread() 开启虚拟线程}并且JDK支持虚拟线程时，{@linkplain #newExecutor(int, int, int, long, String) 线程池}和{@linkplain #newCacheExecutor(String) 缓存线程池}每个任务使用一个虚拟线程执行；JDK不支持时使用平台线程。</p>
+ * <p>虚拟线程池使用信号量保持线程池拒绝任务的限制：没有完成的任务数量不超过最大线程数量和等待线程队列长度之和；不限制同时执行任务数量（阻塞任务不用排队等待平台线程）；缓存线程池不限制。</p>
+ * <p>虚拟线程中的等待使用{@code Lock}和{@code Condition}（{@linkplain com.acgist.snail.utils.ThreadUtils#await(java.util.concurrent.locks.Condition, java.time.Duration) 线程等待}）：{@code synchronized}中等待会占用载体线程。</p>
+ * <p>定时线程池、文件校验线程池和{@linkplain #newSingleExecutor(String) 单线程线程池}始终使用平台线程。</p>
  * 
  * @author acgist
  * @since 1.0.0
@@ -47,7 +60,19 @@ public final class SystemThreadContext {
 	public static final String SNAIL_THREAD_UDP_SERVER = SNAIL_THREAD + "-UDP-Server";
 	/** HTTP客户端线程 */
 	public static final String SNAIL_THREAD_HTTP_CLIENT = SNAIL_THREAD + "-HTTP-Client";
+	/** HTTP分段下载线程 */
+	public static final String SNAIL_THREAD_HTTP_SEGMENT = SNAIL_THREAD + "-HTTP-Segment";
+	/** 镜像下载线程 */
+	public static final String SNAIL_THREAD_MIRROR = SNAIL_THREAD + "-Mirror";
+	/** 文件校验线程 */
+	public static final String SNAIL_THREAD_VERIFY = SNAIL_THREAD + "-Verify";
 	
+	/**
+	 * <p>虚拟线程构建方法：{@code Thread.ofVirtual()}</p>
+	 * <p>{@code null}-没有开启虚拟线程或者JDK不支持虚拟线程</p>
+	 * <p>项目编译版本不支持虚拟线程：使用反射调用</p>
+	 */
+	private static final Method VIRTUAL_THREAD_BUILDER = virtualThreadBuilder();
 	/**
 	 * <p>系统线程池：加快系统运行、防止卡顿</p>
 	 * <p>例如：初始化、关闭资源、文件校验等等</p>
@@ -57,11 +82,17 @@ public final class SystemThreadContext {
 	 * <p>系统定时线程池：定时任务</p>
 	 */
 	private static final ScheduledExecutorService EXECUTOR_TIMER;
+	/**
+	 * <p>文件校验线程池：ForkJoin</p>
+	 * <p>线程数量：CPU核心数量</p>
+	 */
+	private static final ForkJoinPool EXECUTOR_VERIFY;
 	
 	static {
 		LOGGER.info("启动系统线程池");
 		EXECUTOR = newExecutor(4, 20, 100, 60L, SNAIL_THREAD);
 		EXECUTOR_TIMER = newTimerExecutor(2, SNAIL_THREAD_TIMER);
+		EXECUTOR_VERIFY = newForkJoinExecutor(Runtime.getRuntime().availableProcessors(), SNAIL_THREAD_VERIFY);
 	}
 	
 	/**
@@ -73,6 +104,34 @@ public final class SystemThreadContext {
 		EXECUTOR.submit(runnable);
 	}
 
+	/**
+	 * <p>异步校验任务</p>
+	 * <p>使用文件校验线程池执行</p>
+	 * 
+	 * @param runnable 任务
+	 * 
+	 * @since 1.3.0
+	 */
+	public static final void submitVerify(Runnable runnable) {
+		EXECUTOR_VERIFY.execute(runnable);
+	}
+	
+	/**
+	 * <p>校验任务</p>
+	 * <p>使用文件校验线程池执行并等待结果</p>
+	 * 
+	 * @param <T> 结果类型
+	 * 
+	 * @param task 任务
+	 * 
+	 * @return 结果
+	 * 
+	 * @since 1.3.0
+	 */
+	public static final <T> T invoke(ForkJoinTask<T> task) {
+		return EXECUTOR_VERIFY.invoke(task);
+	}
+	
 	/**
 	 * <p>定时任务（不重复执行）</p>
 	 * 
@@ -133,6 +192,10 @@ public final class SystemThreadContext {
 	 * @return 线程池
 	 */
 	public static final ExecutorService newExecutor(int corePoolSize, int maximumPoolSize, int queueSize, long keepAliveTime, String name) {
+		final ExecutorService virtualExecutor = newVirtualExecutor(name);
+		if(virtualExecutor != null) {
+			return new BoundedExecutor(virtualExecutor, maximumPoolSize, queueSize);
+		}
 		return new ThreadPoolExecutor(
 			corePoolSize,
 			maximumPoolSize,
@@ -156,6 +219,10 @@ public final class SystemThreadContext {
 	 * @return 线程池
 	 */
 	public static final ExecutorService newCacheExecutor(String name) {
+		final ExecutorService virtualExecutor = newVirtualExecutor(name);
+		if(virtualExecutor != null) {
+			return virtualExecutor;
+		}
 		return new ThreadPoolExecutor(
 			0,
 			Integer.MAX_VALUE,
@@ -166,6 +233,94 @@ public final class SystemThreadContext {
 		);
 	}
 	
+	/**
+	 * <p>创建单线程线程池</p>
+	 * <p>始终使用平台线程：适用于长时间阻塞的轮询线程（例如：Selector），虚拟线程阻塞时会占用载体线程。</p>
+	 * 
+	 * @param name 线程池名称
+	 * 
+	 * @return 线程池
+	 * 
+	 * @since 1.3.0
+	 */
+	public static final ExecutorService newSingleExecutor(String name) {
+		return newSingleExecutor(Integer.MAX_VALUE, name);
+	}
+	
+	/**
+	 * <p>创建单线程线程池</p>
+	 * <p>始终使用平台线程：任务按照提交顺序执行</p>
+	 * 
+	 * @param queueSize 等待线程队列长度
+	 * @param name 线程池名称
+	 * 
+	 * @return 线程池
+	 * 
+	 * @since 1.3.0
+	 */
+	public static final ExecutorService newSingleExecutor(int queueSize, String name) {
+		return new ThreadPoolExecutor(
+			1,
+			1,
+			0L,
+			TimeUnit.SECONDS,
+			new LinkedBlockingQueue<Runnable>(queueSize),
+			SystemThreadContext.newThreadFactory(name)
+		);
+	}
+	
+	/**
+	 * <p>创建虚拟线程池</p>
+	 * <p>每个任务使用一个虚拟线程执行</p>
+	 * 
+	 * @param name 线程池名称
+	 * 
+	 * @return 线程池；{@code null}-没有开启虚拟线程或者JDK不支持虚拟线程；
+	 * 
+	 * @since 1.3.0
+	 */
+	private static final ExecutorService newVirtualExecutor(String name) {
+		if(VIRTUAL_THREAD_BUILDER == null) {
+			return null;
+		}
+		try {
+			// Thread.ofVirtual().name(name, 0).factory()
+			final Object builder = VIRTUAL_THREAD_BUILDER.invoke(null);
+			final Class<?> builderClazz = Class.forName("java.lang.Thread$Builder");
+			builderClazz.getMethod("name", String.class, long.class).invoke(builder, name + "-", 0L);
+			final ThreadFactory threadFactory = (ThreadFactory) builderClazz.getMethod("factory").invoke(builder);
+			// Executors.newThreadPerTaskExecutor(threadFactory)
+			final Method newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+			return (ExecutorService) newThreadPerTaskExecutor.invoke(null, threadFactory);
+		} catch (Exception e) {
+			LOGGER.error("创建虚拟线程池异常：{}", name, e);
+		}
+		return null;
+	}
+	
+	/**
+	 * <p>获取虚拟线程构建方法</p>
+	 * 
+	 * @return 虚拟线程构建方法；{@code null}-没有开启虚拟线程或者JDK不支持虚拟线程；
+	 * 
+	 * @since 1.3.0
+	 */
+	private static final Method virtualThreadBuilder() {
+		if(!SystemConfig.getVirtualThread()) {
+			return null;
+		}
+		try {
+			final Method method = Thread.class.getMethod("ofVirtual");
+			// 预览版本：没有开启预览功能时调用异常
+			method.invoke(null);
+			LOGGER.info("系统线程池使用虚拟线程");
+			return method;
+		} catch (Exception | LinkageError e) {
+			LOGGER.warn("JDK不支持虚拟线程：使用平台线程");
+		}
+		return null;
+	}
+	
 	/**
 	 * <p>创建定时线程池</p>
 	 * 
@@ -181,6 +336,31 @@ public final class SystemThreadContext {
 		);
 	}
 	
+	/**
+	 * <p>创建ForkJoin线程池</p>
+	 * <p>线程名称：线程池名称-线程索引</p>
+	 * 
+	 * @param parallelism 并行线程数量
+	 * @param name 线程池名称
+	 * 
+	 * @return 线程池
+	 * 
+	 * @since 1.3.0
+	 */
+	public static final ForkJoinPool newForkJoinExecutor(int parallelism, String name) {
+		return new ForkJoinPool(
+			parallelism,
+			pool -> {
+				final var thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+				thread.setName(name + "-" + thread.getPoolIndex());
+				thread.setDaemon(true);
+				return thread;
+			},
+			null,
+			false
+		);
+	}
+	
 	/**
 	 * <p>创建线程池工厂</p>
 	 * 
@@ -188,7 +368,7 @@ public final class SystemThreadContext {
 	 * 
 	 * @return 线程池工厂
 	 */
-	private static final ThreadFactory newThreadFactory(String poolName) {
+	public static final ThreadFactory newThreadFactory(String poolName) {
 		return new ThreadFactory() {
 			@Override
 			public Thread newThread(Runnable runnable) {
@@ -207,6 +387,7 @@ public final class SystemThreadContext {
 		LOGGER.info("关闭系统线程池");
 		shutdown(EXECUTOR);
 		shutdown(EXECUTOR_TIMER);
+		shutdown(EXECUTOR_VERIFY);
 	}
 	
 	/**
@@ -225,6 +406,33 @@ public final class SystemThreadContext {
 		}
 	}
 	
+	/**
+	 * <p>关闭线程池</p>
+	 * <p>等待正在执行的任务结束，超时后再中断任务。</p>
+	 * 
+	 * @param executor 线程池
+	 * @param timeout 等待时间
+	 * @param unit 时间单位
+	 * 
+	 * @since 1.3.0
+	 */
+	public static final void shutdownAwait(ExecutorService executor, long timeout, TimeUnit unit) {
+		if(executor == null || executor.isShutdown()) {
+			return;
+		}
+		try {
+			executor.shutdown();
+			if(!executor.awaitTermination(timeout, unit)) {
+				executor.shutdownNow();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			executor.shutdownNow();
+		} catch (Exception e) {
+			LOGGER.error("关闭线程池异常", e);
+		}
+	}
+	
 	/**
 	 * <p>关闭线程池</p>
 	 * <p>注意：立即关闭可能导致部分任务没有执行</p>
@@ -260,4 +468,80 @@ public final class SystemThreadContext {
 		}
 	}
 
+	/**
+	 * <p>限制线程池</p>
+	 * <p>使用信号量限制虚拟线程池：没有完成的任务数量超过最大线程数量和等待线程队列长度之和时拒绝任务（和平台线程池一致）。</p>
+	 * <p>不限制同时执行任务数量：每个任务使用一个虚拟线程，阻塞任务不会占用平台线程。</p>
+	 * 
+	 * @author acgist
+	 * @since 1.3.0
+	 */
+	private static final class BoundedExecutor extends AbstractExecutorService {
+
+		/**
+		 * <p>线程池</p>
+		 */
+		private final ExecutorService executor;
+		/**
+		 * <p>提交任务信号量</p>
+		 * <p>没有完成的任务</p>
+		 */
+		private final Semaphore submitted;
+
+		/**
+		 * @param executor 线程池
+		 * @param maximumPoolSize 最大线程数量
+		 * @param queueSize 等待线程队列长度
+		 */
+		private BoundedExecutor(ExecutorService executor, int maximumPoolSize, int queueSize) {
+			this.executor = executor;
+			this.submitted = new Semaphore((int) Math.min(Integer.MAX_VALUE, (long) maximumPoolSize + queueSize));
+		}
+
+		@Override
+		public void execute(Runnable runnable) {
+			if(!this.submitted.tryAcquire()) {
+				throw new RejectedExecutionException("线程池已满");
+			}
+			try {
+				this.executor.execute(() -> {
+					try {
+						runnable.run();
+					} finally {
+						this.submitted.release();
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				this.submitted.release();
+				throw e;
+			}
+		}
+
+		@Override
+		public void shutdown() {
+			this.executor.shutdown();
+		}
+
+		@Override
+		public List<Runnable> shutdownNow() {
+			return this.executor.shutdownNow();
+		}
+
+		@Override
+		public boolean isShutdown() {
+			return this.executor.isShutdown();
+		}
+
+		@Override
+		public boolean isTerminated() {
+			return this.executor.isTerminated();
+		}
+
+		@Override
+		public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+			return this.executor.awaitTermination(timeout, unit);
+		}
+
+	}
+
 }
@@ -20,6 +20,12 @@ public final class DatabaseInitializer extends Initializer {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(DatabaseInitializer.class);
 	
+	/**
+	 * <p>升级SQL语句</p>
+	 * <p>旧版本数据库没有新增字段：添加字段（字段已经存在时忽略）</p>
+	 */
+	private static final String UPGRADE_SQL = "ALTER TABLE tb_task ADD COLUMN IF NOT EXISTS `mirrors` MEDIUMTEXT DEFAULT NULL";
+	
 	private DatabaseManager databaseManager = DatabaseManager.getInstance();
 	
 	private DatabaseInitializer() {
@@ -33,12 +39,14 @@ public final class DatabaseInitializer extends Initializer {
 	 * {@inheritDoc}
 	 * 
 	 * <p>如果数据库表没有创建：执行建表语句</p>
+	 * <p>如果数据库表已经创建：执行升级语句</p>
 	 */
 	@Override
 	protected void init() {
 		LOGGER.info("初始化数据库");
 		if(haveTable()) { // 已经创建
 			LOGGER.debug("数据库已经初始化");
+			upgradeTable();
 		} else { // 没有创建：执行创建语句
 			buildTable();
 		}
@@ -62,6 +70,14 @@ public final class DatabaseInitializer extends Initializer {
 		this.databaseManager.update(sql);
 	}
 
+	/**
+	 * <p>执行升级语句</p>
+	 */
+	private void upgradeTable() {
+		LOGGER.debug("数据库升级");
+		this.databaseManager.update(UPGRADE_SQL);
+	}
+
 	/**
 	 * <p>读取建表SQL</p>
 	 * 
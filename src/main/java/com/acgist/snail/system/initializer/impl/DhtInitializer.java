@@ -3,7 +3,6 @@ package com.acgist.snail.system.initializer.impl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.acgist.snail.net.torrent.dht.bootstrap.DhtManager;
 import com.acgist.snail.net.torrent.dht.bootstrap.NodeManager;
 import com.acgist.snail.system.initializer.Initializer;
 
@@ -27,7 +26,6 @@ public final class DhtInitializer extends Initializer {
 	@Override
 	protected void init() {
 		LOGGER.info("初始化DHT");
-		DhtManager.getInstance().register();
 		NodeManager.getInstance().register();
 	}
 
@@ -1,6 +1,9 @@
 package com.acgist.snail.utils;
 
 import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,6 +40,7 @@ public final class ThreadUtils {
 	
 	/**
 	 * <p>线程等待</p>
+	 * <p>只在平台线程（界面、协议加载、NAT）中使用：虚拟线程使用{@link #await(Condition, Duration)}</p>
 	 * <pre>
 	 * synchronized(object) {
 	 * 	ThreadUtils.wait(object, Duration.ofSeconds(number));
@@ -55,4 +59,47 @@ public final class ThreadUtils {
 		}
 	}
 	
+	/**
+	 * <p>线程等待</p>
+	 * <p>可能运行在虚拟线程中的等待使用{@code Lock}和{@code Condition}：{@code synchronized}中等待会占用载体线程</p>
+	 * <pre>
+	 * lock.lock();
+	 * try {
+	 * 	ThreadUtils.await(condition, Duration.ofSeconds(number));
+	 * } finally {
+	 * 	lock.unlock();
+	 * }
+	 * </pre>
+	 * 
+	 * @param condition 等待条件：需要加锁
+	 * @param timeout 等待时间：转为毫秒不宜过大
+	 * 
+	 * @since 1.3.0
+	 */
+	public static final void await(Condition condition, Duration timeout) {
+		try {
+			condition.await(timeout.toMillis(), TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			LOGGER.debug("线程等待异常", e);
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * <p>唤醒所有等待线程</p>
+	 * 
+	 * @param lock 锁
+	 * @param condition 等待条件
+	 * 
+	 * @since 1.3.0
+	 */
+	public static final void signalAll(Lock lock, Condition condition) {
+		lock.lock();
+		try {
+			condition.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
 }
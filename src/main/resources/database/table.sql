@@ -30,5 +30,6 @@ create table tb_task (
 	`size` BIGINT DEFAULT NULL,
 	`endDate` TIMESTAMP DEFAULT NULL,
 	`description` MEDIUMTEXT DEFAULT NULL,
+	`mirrors` MEDIUMTEXT DEFAULT NULL,
 	PRIMARY KEY (`id`)
 );
@@ -49,6 +49,7 @@ public class ApplicationTest extends BaseTest {
 				map.put("url", "https://mirrors.tuna.tsinghua.edu.cn/apache/tomcat/tomcat-9/v9.0.33/bin/apache-tomcat-9.0.33.zip");
 //				map.put("url", "E:\\snail\\0000.torrent");
 //				map.put("files", "l50:[UHA-WINGS][Vinland Saga][01][x264 1080p][CHT].mp4e");
+//				map.put("mirrors", "l86:https://mirrors.aliyun.com/apache/tomcat/tomcat-9/v9.0.33/bin/apache-tomcat-9.0.33.zipe");
 				client.send(ApplicationMessage.message(Type.TASK_NEW, BEncodeEncoder.encodeMapString(map)));
 			} else if(message.equalsIgnoreCase(Type.TASK_LIST.name())) {
 				client.send(ApplicationMessage.message(Type.TASK_LIST, message));
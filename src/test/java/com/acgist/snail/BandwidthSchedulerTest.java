@@ -0,0 +1,104 @@
+package com.acgist.snail;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.acgist.snail.system.bandwidth.Bandwidth;
+import com.acgist.snail.system.bandwidth.Bandwidth.Priority;
+import com.acgist.snail.system.bandwidth.BandwidthScheduler;
+import com.acgist.snail.system.config.SystemConfig;
+
+public class BandwidthSchedulerTest extends BaseTest {
+
+	private static final int RATE = 64 * SystemConfig.ONE_KB;
+	private static final int SIZE = 16 * SystemConfig.ONE_KB;
+
+	@Test
+	public void testFair() throws InterruptedException {
+		final BandwidthScheduler scheduler = BandwidthScheduler.download();
+		final Bandwidth task = scheduler.newBandwidth(null, () -> RATE, Priority.NORMAL);
+		final Bandwidth peerA = scheduler.newBandwidth(task, () -> 0L, Priority.NORMAL);
+		final Bandwidth peerB = scheduler.newBandwidth(task, () -> 0L, Priority.NORMAL);
+		// 透支令牌：所有申请进入等待队列
+		scheduler.consume(task, RATE + SIZE);
+		final AtomicInteger countA = new AtomicInteger();
+		final AtomicInteger countB = new AtomicInteger();
+		final CountDownLatch latch = new CountDownLatch(10);
+		final long begin = System.currentTimeMillis();
+		this.loop(scheduler, peerA, countA, latch);
+		this.loop(scheduler, peerB, countB, latch);
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		final long time = System.currentTimeMillis() - begin;
+		this.log("时间：{}，A：{}，B：{}", time, countA.get(), countB.get());
+		// 令牌允许透支：(10 - 1) * 16KB / 64KB/s = 2.25s
+		assertTrue(time >= 1500);
+		assertTrue(Math.abs(countA.get() - countB.get()) <= 1);
+	}
+
+	@Test
+	public void testFairBytes() throws InterruptedException {
+		final BandwidthScheduler scheduler = BandwidthScheduler.download();
+		final Bandwidth task = scheduler.newBandwidth(null, () -> RATE, Priority.NORMAL);
+		final Bandwidth peerA = scheduler.newBandwidth(task, () -> 0L, Priority.NORMAL);
+		final Bandwidth peerB = scheduler.newBandwidth(task, () -> 0L, Priority.NORMAL);
+		// 用完令牌：所有申请进入等待队列
+		scheduler.consume(task, RATE);
+		final AtomicLong bytesA = new AtomicLong();
+		final AtomicLong bytesB = new AtomicLong();
+		final CountDownLatch latch = new CountDownLatch(1);
+		final int smallSize = SystemConfig.ONE_KB;
+		// A每次申请16KB，B每次申请1KB：两个Peer按照字节公平分配
+		for (int index = 0; index < 8; index++) {
+			scheduler.acquire(peerA, SIZE, () -> this.count(bytesA, bytesB, SIZE, latch));
+		}
+		for (int index = 0; index < 128; index++) {
+			scheduler.acquire(peerB, smallSize, () -> this.count(bytesB, bytesA, smallSize, latch));
+		}
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		this.log("A：{}，B：{}", bytesA.get(), bytesB.get());
+		// 误差：一轮配额（16KB）和一次申请
+		assertTrue(Math.abs(bytesA.get() - bytesB.get()) <= 2 * SIZE + smallSize);
+	}
+
+	@Test
+	public void testPriority() throws InterruptedException {
+		final BandwidthScheduler scheduler = BandwidthScheduler.download();
+		final Bandwidth task = scheduler.newBandwidth(null, () -> RATE, Priority.NORMAL);
+		final Bandwidth high = scheduler.newBandwidth(task, () -> 0L, Priority.HIGH);
+		final Bandwidth low = scheduler.newBandwidth(task, () -> 0L, Priority.LOW);
+		// 透支令牌：所有申请进入等待队列
+		scheduler.consume(task, RATE + SIZE);
+		final AtomicInteger highCount = new AtomicInteger();
+		final AtomicInteger lowCount = new AtomicInteger();
+		final CountDownLatch latch = new CountDownLatch(4);
+		this.loop(scheduler, low, lowCount, latch);
+		this.loop(scheduler, high, highCount, latch);
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		this.log("高：{}，低：{}", highCount.get(), lowCount.get());
+		assertEquals(0, lowCount.get());
+	}
+
+	private void count(AtomicLong bytes, AtomicLong other, int size, CountDownLatch latch) {
+		if(latch.getCount() > 0 && bytes.addAndGet(size) + other.get() >= 3 * RATE) {
+			latch.countDown();
+		}
+	}
+
+	private void loop(BandwidthScheduler scheduler, Bandwidth bandwidth, AtomicInteger count, CountDownLatch latch) {
+		scheduler.acquire(bandwidth, SIZE, () -> {
+			if(latch.getCount() > 0) {
+				count.incrementAndGet();
+				latch.countDown();
+				this.loop(scheduler, bandwidth, count, latch);
+			}
+		});
+	}
+
+}
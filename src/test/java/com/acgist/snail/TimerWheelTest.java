@@ -0,0 +1,29 @@
+package com.acgist.snail;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import com.acgist.snail.system.TimerWheel;
+
+public class TimerWheelTest extends BaseTest {
+
+	@Test
+	public void testTimeout() throws InterruptedException {
+		final CountDownLatch latch = new CountDownLatch(2);
+		final AtomicBoolean cancel = new AtomicBoolean(false);
+		final long begin = System.currentTimeMillis();
+		TimerWheel.getInstance().timeout(200, TimeUnit.MILLISECONDS, latch::countDown);
+		TimerWheel.getInstance().timeout(500, TimeUnit.MILLISECONDS, latch::countDown);
+		TimerWheel.getInstance().timeout(300, TimeUnit.MILLISECONDS, () -> cancel.set(true)).cancel();
+		assertTrue(latch.await(2, TimeUnit.SECONDS));
+		assertTrue(System.currentTimeMillis() - begin >= 500);
+		assertFalse(cancel.get());
+	}
+
+}
@@ -0,0 +1,210 @@
+package com.acgist.snail.dht;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.acgist.snail.BaseTest;
+import com.acgist.snail.net.torrent.dht.bootstrap.DhtLookup;
+import com.acgist.snail.net.torrent.dht.bootstrap.Response;
+import com.acgist.snail.net.torrent.dht.bootstrap.request.FindNodeRequest;
+import com.acgist.snail.net.torrent.dht.bootstrap.response.FindNodeResponse;
+import com.acgist.snail.system.config.DhtConfig;
+import com.acgist.snail.system.config.DhtConfig.QType;
+import com.acgist.snail.utils.ArrayUtils;
+import com.acgist.snail.utils.NetUtils;
+
+public class DhtLookupTest extends BaseTest {
+
+	private static final String HOST = "127.0.0.1";
+	/**
+	 * <p>没有NodeId的节点地址</p>
+	 */
+	private static final String SEED_HOST = "127.0.0.2";
+	private static final int ALPHA = 3;
+	private static final int K = 8;
+	private static final int NODE_SIZE = 512;
+
+	@Test
+	public void testConverge() {
+		final Network network = new Network(10000, 1);
+		final DhtLookup lookup = DhtLookup.newInstance(QType.FIND_NODE, network.target, network);
+		lookup.lookup(network.seeds(ALPHA));
+		network.run(lookup, false);
+		this.log("请求数量：{}", network.queried.size());
+		assertTrue(lookup.complete());
+		// 查询到最近的K个节点
+		assertTrue(network.queried.containsAll(network.closest(K)));
+		assertTrue(network.maxInflight <= ALPHA);
+	}
+
+	@Test
+	public void testSeeds() {
+		final Network network = new Network(20000, 2);
+		final DhtLookup lookup = DhtLookup.newInstance(QType.FIND_NODE, network.target, network);
+		final List<InetSocketAddress> seeds = new ArrayList<>(network.seeds(ALPHA));
+		// 没有响应的节点
+		for (int index = 0; index < 256; index++) {
+			seeds.add(NetUtils.buildSocketAddress(SEED_HOST, 30000 + index));
+		}
+		lookup.lookup(seeds);
+		// 没有响应的节点最后超时：不能阻塞查找
+		network.run(lookup, true);
+		assertTrue(lookup.complete());
+		assertTrue(network.queried.containsAll(network.closest(K)));
+		assertTrue(network.maxInflight <= ALPHA);
+		assertTrue(network.timeout > 0 && network.timeout <= 32);
+	}
+
+	/**
+	 * <p>模拟网络：每个节点按照前缀长度记录每个节点桶K个节点</p>
+	 */
+	private static final class Network implements DhtLookup.Querier {
+
+		private final int port;
+		private final byte[] target;
+		private final Map<Integer, byte[]> ids = new HashMap<>();
+		private final Map<Integer, List<Integer>> routes = new HashMap<>();
+		private final LinkedList<Map.Entry<InetSocketAddress, Consumer<Response>>> pending = new LinkedList<>();
+		private final Set<Integer> queried = new HashSet<>();
+		private int maxInflight;
+		/**
+		 * <p>没有NodeId的节点超时数量</p>
+		 */
+		private int timeout;
+
+		private Network(int port, long seed) {
+			this.port = port;
+			final Random random = new Random(seed);
+			this.target = new byte[DhtConfig.NODE_ID_LENGTH];
+			random.nextBytes(this.target);
+			for (int index = 0; index < NODE_SIZE; index++) {
+				final byte[] id = new byte[DhtConfig.NODE_ID_LENGTH];
+				random.nextBytes(id);
+				this.ids.put(port + index, id);
+			}
+			this.ids.forEach((source, sourceId) -> {
+				final Map<Integer, List<Integer>> buckets = new HashMap<>();
+				this.ids.forEach((target, targetId) -> {
+					if(!source.equals(target)) {
+						final List<Integer> bucket = buckets.computeIfAbsent(prefixLength(sourceId, targetId), key -> new ArrayList<>());
+						if(bucket.size() < K) {
+							bucket.add(target);
+						}
+					}
+				});
+				this.routes.put(source, buckets.values().stream().flatMap(List::stream).collect(Collectors.toList()));
+			});
+		}
+
+		private List<InetSocketAddress> seeds(int size) {
+			return this.ids.keySet().stream()
+				.sorted()
+				.limit(size)
+				.map(value -> NetUtils.buildSocketAddress(SEED_HOST, value))
+				.collect(Collectors.toList());
+		}
+
+		private List<Integer> closest(int size) {
+			return this.closest(this.ids.keySet(), size);
+		}
+
+		private List<Integer> closest(Iterable<Integer> ports, int size) {
+			final List<Integer> list = new ArrayList<>();
+			ports.forEach(list::add);
+			return list.stream()
+				.sorted((a, b) -> ArrayUtils.compareUnsigned(ArrayUtils.xor(this.ids.get(a), this.target), ArrayUtils.xor(this.ids.get(b), this.target)))
+				.limit(size)
+				.collect(Collectors.toList());
+		}
+
+		@Override
+		public void query(InetSocketAddress address, Consumer<Response> callback) {
+			this.pending.add(Map.entry(address, callback));
+		}
+
+		/**
+		 * @param lookup 查找
+		 * @param timeoutLast 没有响应的节点最后超时
+		 */
+		private void run(DhtLookup lookup, boolean timeoutLast) {
+			while(!this.pending.isEmpty()) {
+				this.maxInflight = Math.max(this.maxInflight, this.inflight());
+				Map.Entry<InetSocketAddress, Consumer<Response>> entry = null;
+				if(timeoutLast) {
+					entry = this.pending.stream()
+						.filter(value -> this.ids.containsKey(value.getKey().getPort()))
+						.findFirst()
+						.orElse(null);
+				}
+				if(entry == null) {
+					entry = this.pending.getFirst();
+				} else {
+					assertFalse(lookup.complete());
+				}
+				this.pending.remove(entry);
+				final int port = entry.getKey().getPort();
+				final byte[] id = this.ids.get(port);
+				if(id == null) {
+					if(SEED_HOST.equals(entry.getKey().getHostString())) {
+						this.timeout++;
+					}
+					entry.getValue().accept(null);
+					continue;
+				}
+				this.queried.add(port);
+				entry.getValue().accept(this.response(id, this.closest(this.routes.get(port), K)));
+			}
+			assertEquals(0, this.pending.size());
+		}
+
+		/**
+		 * <p>正在查询的请求数量（不含没有NodeId的节点）</p>
+		 */
+		private int inflight() {
+			return (int) this.pending.stream()
+				.filter(value -> HOST.equals(value.getKey().getHostString()))
+				.count();
+		}
+
+		private Response response(byte[] id, List<Integer> nodes) {
+			final FindNodeResponse response = FindNodeResponse.newInstance(FindNodeRequest.newRequest(this.target));
+			response.put(DhtConfig.KEY_ID, id);
+			final ByteBuffer buffer = ByteBuffer.allocate(nodes.size() * 26);
+			nodes.forEach(value -> {
+				buffer.put(this.ids.get(value));
+				buffer.putInt(NetUtils.encodeIpToInt(HOST));
+				buffer.putShort(NetUtils.encodePort(value));
+			});
+			response.put(DhtConfig.KEY_NODES, buffer.array());
+			return response;
+		}
+
+		private static int prefixLength(byte[] source, byte[] target) {
+			for (int index = 0; index < source.length; index++) {
+				final int value = (source[index] ^ target[index]) & 0xFF;
+				if(value != 0) {
+					return index * Byte.SIZE + Integer.numberOfLeadingZeros(value) - (Integer.SIZE - Byte.SIZE);
+				}
+			}
+			return source.length * Byte.SIZE;
+		}
+
+	}
+
+}
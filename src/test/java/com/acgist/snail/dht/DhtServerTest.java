@@ -26,7 +26,6 @@ public class DhtServerTest extends BaseTest {
 	@Test
 	public void testFindNode() {
 		NodeManager.getInstance().newNodeSession("12345678901234567890".getBytes(), "192.168.1.100", 1234);
-		NodeManager.getInstance().sortNodes();
 		final var client = DhtClient.newInstance(HOST, PORT);
 		client.findNode(HASH);
 		this.pause();
@@ -35,7 +34,6 @@ public class DhtServerTest extends BaseTest {
 	@Test
 	public void testGetPeers() throws DownloadException {
 		NodeManager.getInstance().newNodeSession("12345678901234567890".getBytes(), "192.168.1.100", 1234);
-		NodeManager.getInstance().sortNodes();
 		final var client = DhtClient.newInstance(HOST, PORT);
 		final var infoHash = InfoHash.newInstance(HASH);
 		client.getPeers(infoHash);
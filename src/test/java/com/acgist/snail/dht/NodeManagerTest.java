@@ -1,12 +1,19 @@
 package com.acgist.snail.dht;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.stream.Collectors;
 
 import org.junit.Test;
 
 import com.acgist.snail.BaseTest;
+import com.acgist.snail.net.torrent.dht.bootstrap.NodeBucket;
 import com.acgist.snail.net.torrent.dht.bootstrap.NodeManager;
 import com.acgist.snail.pojo.session.NodeSession;
 import com.acgist.snail.utils.ArrayUtils;
@@ -32,7 +39,7 @@ public class NodeManagerTest extends BaseTest {
 		}
 		String id = "0000000000000000000000000000000000613709"; // 查找ID
 		nodes.add(NodeManager.getInstance().newNodeSession(StringUtils.unhex(id), "0", 0));
-		NodeManager.getInstance().sortNodes();
+		this.log("系统节点数量：{}", NodeManager.getInstance().nodes().size());
 		this.log("查找ID：{}", id);
 		this.cost();
 		var list = NodeManager.getInstance().findNode(id);
@@ -50,6 +57,57 @@ public class NodeManagerTest extends BaseTest {
 		});
 	}
 
+	@Test
+	public void testFindNodeClosest() {
+		final Random random = new Random();
+		for (int index = 0; index < 10000; index++) {
+			final byte[] nodeId = new byte[20];
+			random.nextBytes(nodeId);
+			NodeManager.getInstance().newNodeSession(nodeId, "0", 0);
+		}
+		this.log("系统节点数量：{}", NodeManager.getInstance().nodes().size());
+		final byte[] target = new byte[20];
+		random.nextBytes(target);
+		final var expect = NodeManager.getInstance().nodes().stream()
+			.filter(node -> node.getStatus() != NodeSession.Status.VERIFY)
+			.sorted((a, b) -> ArrayUtils.compareUnsigned(ArrayUtils.xor(a.getId(), target), ArrayUtils.xor(b.getId(), target)))
+			.limit(8)
+			.collect(Collectors.toList());
+		assertEquals(expect, NodeManager.getInstance().findNode(target));
+	}
+	
+	@Test
+	public void testReplace() {
+		final Random random = new Random();
+		final NodeBucket bucket = NodeBucket.newInstance();
+		final List<NodeSession> nodes = new ArrayList<>();
+		for (int index = 0; index < NodeBucket.K; index++) {
+			final byte[] nodeId = new byte[20];
+			random.nextBytes(nodeId);
+			final NodeSession node = NodeSession.newInstance(nodeId, "0", index);
+			assertTrue(bucket.put(node));
+			nodes.add(node);
+		}
+		final byte[] nodeId = new byte[20];
+		random.nextBytes(nodeId);
+		final NodeSession node = NodeSession.newInstance(nodeId, "0", NodeBucket.K);
+		assertFalse(bucket.put(node));
+		// 没有使用和正常响应的节点不能替换
+		nodes.get(0).response();
+		assertFalse(bucket.replace(node));
+		// 请求超时的节点可以替换
+		nodes.get(1).timeout();
+		nodes.get(2).timeout();
+		nodes.get(2).timeout();
+		assertTrue(bucket.replace(node));
+		assertNull(bucket.select(nodes.get(2).getId()));
+		assertEquals(node, bucket.select(nodeId));
+		nodes.get(2).response();
+		assertTrue(bucket.replace(nodes.get(2)));
+		assertNull(bucket.select(nodes.get(1).getId()));
+		assertFalse(bucket.replace(nodes.get(1)));
+	}
+	
 	private String buildId() {
 		long value;
 		final Random random = new Random();
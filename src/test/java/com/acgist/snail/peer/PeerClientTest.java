@@ -55,7 +55,7 @@ public class PeerClientTest extends BaseTest {
 		final var peerSession = PeerSession.newInstance(statisticsSession, host, port); // Peer
 		peerSession.flags(PeerConfig.PEX_UTP); // UTP支持
 		final var launcher = PeerDownloader.newInstance(peerSession, torrentSession); // 下载器
-		launcher.handshake(); // 发送握手
+		launcher.handshake(ok -> this.log("握手结果：" + ok)); // 发送握手
 		new Thread(() -> {
 			while(true) {
 				this.log("下载速度：" + statisticsSession.downloadSpeed());
@@ -80,7 +80,7 @@ public class PeerClientTest extends BaseTest {
 		final Integer port = 49160; // FDM测试端口
 		final var peerSession = PeerSession.newInstance(new StatisticsSession(), host, port);
 		final var launcher = PeerDownloader.newInstance(peerSession, torrentSession);
-		launcher.handshake();
+		launcher.handshake(ok -> this.log("握手结果：" + ok));
 		this.pause();
 	}
 
@@ -80,7 +80,7 @@ public class PeerServerTest extends BaseTest {
 		final var peerSession = PeerSession.newInstance(statisticsSession, host, port); // Peer
 		peerSession.flags(PeerConfig.PEX_UTP); // UTP支持
 		final var launcher = PeerDownloader.newInstance(peerSession, torrentSession); // 下载器
-		launcher.handshake();
+		launcher.handshake(ok -> LOGGER.debug("握手结果：{}", ok));
 		new Thread(() -> {
 			while(true) {
 				LOGGER.debug("下载速度：{}", statisticsSession.downloadSpeed());
@@ -0,0 +1,106 @@
+package com.acgist.snail.torrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+
+import org.junit.Test;
+
+import com.acgist.snail.BaseTest;
+import com.acgist.snail.net.torrent.bootstrap.PiecePicker;
+
+public class PiecePickerTest extends BaseTest {
+
+	@Test
+	public void testRarest() {
+		final int pieceSize = 8;
+		final BitSet allPieces = new BitSet();
+		allPieces.set(0, pieceSize);
+		final PiecePicker picker = PiecePicker.newInstance(pieceSize, 0);
+		picker.candidates(allPieces, new BitSet());
+		picker.addAvailability(allPieces);
+		picker.addAvailability(allPieces);
+		picker.removeAvailability(5);
+		picker.removeAvailability(2);
+		picker.removeAvailability(2);
+		assertEquals(0, picker.availability(2));
+		assertEquals(2, picker.pick(allPieces, new BitSet()));
+		assertEquals(5, picker.pick(allPieces, new BitSet()));
+		// Peer没有的Piece不能选择
+		final BitSet peerPieces = new BitSet();
+		peerPieces.set(2);
+		assertEquals(-1, picker.pick(peerPieces, new BitSet()));
+		picker.candidate(2);
+		assertEquals(2, picker.pick(peerPieces, new BitSet()));
+	}
+
+	@Test
+	public void testSequential() {
+		final int pieceSize = 8;
+		final BitSet allPieces = new BitSet();
+		allPieces.set(0, pieceSize);
+		final PiecePicker picker = PiecePicker.newInstance(pieceSize, 2);
+		picker.candidates(allPieces, new BitSet());
+		picker.addAvailability(allPieces);
+		picker.removeAvailability(6);
+		assertEquals(0, picker.pick(allPieces, new BitSet()));
+		assertEquals(1, picker.pick(allPieces, new BitSet()));
+		assertEquals(6, picker.pick(allPieces, new BitSet()));
+	}
+
+	@Test
+	public void testBucket() {
+		final int pieceSize = 16;
+		final BitSet allPieces = new BitSet();
+		allPieces.set(0, pieceSize);
+		final PiecePicker picker = PiecePicker.newInstance(pieceSize, 0);
+		picker.candidates(allPieces, new BitSet());
+		for (int index = 0; index < pieceSize; index++) {
+			// 可用度：index % 4
+			for (int count = 0; count < index % 4; count++) {
+				picker.addAvailability(index);
+			}
+		}
+		// Peer没有可用度为零的Piece
+		final BitSet peerPieces = new BitSet();
+		peerPieces.set(0, pieceSize);
+		for (int index = 0; index < pieceSize; index += 4) {
+			peerPieces.clear(index);
+		}
+		final int index = picker.pick(peerPieces, new BitSet());
+		assertEquals(1, picker.availability(index));
+		// 可用度修改后移动到其他桶
+		picker.addAvailability(index);
+		picker.candidate(index);
+		assertEquals(1, picker.availability(picker.pick(peerPieces, new BitSet())));
+	}
+
+	@Test
+	public void testRandom() {
+		final int pieceSize = 100;
+		final int[] indexes = {10, 11, 12, 90};
+		final BitSet selectPieces = new BitSet();
+		for (int index : indexes) {
+			selectPieces.set(index);
+		}
+		final PiecePicker picker = PiecePicker.newInstance(pieceSize, 0);
+		picker.candidates(selectPieces, new BitSet());
+		final BitSet peerPieces = new BitSet();
+		peerPieces.set(0, pieceSize);
+		final int[] counts = new int[pieceSize];
+		final int times = 4000;
+		for (int time = 0; time < times; time++) {
+			final int index = picker.pick(peerPieces, new BitSet());
+			counts[index]++;
+			picker.candidate(index);
+		}
+		// 可用度相同的Piece被选中的概率相同：不受Piece之间间隔影响
+		for (int index : indexes) {
+			this.log("Piece：{}，次数：{}", index, counts[index]);
+			assertTrue(counts[index] > times / indexes.length * 0.8);
+			assertTrue(counts[index] < times / indexes.length * 1.2);
+		}
+	}
+
+}
@@ -0,0 +1,52 @@
+package com.acgist.snail.torrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.acgist.snail.BaseTest;
+import com.acgist.snail.net.torrent.bootstrap.TorrentStreamResume;
+import com.acgist.snail.utils.FileUtils;
+
+public class TorrentStreamResumeTest extends BaseTest {
+
+	@Test
+	public void testResume() throws IOException {
+		final File folder = Files.createTempDirectory("snail-resume").toFile();
+		final String path = FileUtils.file(folder.getPath(), "resume.data");
+		FileUtils.write(path, new byte[] { 1, 2, 3, 4 });
+		final BitSet pieces = new BitSet();
+		pieces.set(1);
+		pieces.set(3);
+		TorrentStreamResume resume = TorrentStreamResume.newInstance(folder.getPath(), "infoHashHex", 8);
+		assertNull(resume.pieces(path));
+		resume.save(pieces, List.of(path));
+		resume = TorrentStreamResume.newInstance(folder.getPath(), "infoHashHex", 8);
+		assertNotNull(resume.pieces(path));
+		assertEquals(pieces, resume.pieces(path));
+		// 文件被替换：大小相同修改时间不同
+		FileUtils.write(path, new byte[] { 4, 3, 2, 1 });
+		new File(path).setLastModified(new File(path).lastModified() + 2000);
+		assertNull(resume.pieces(path));
+		resume.save(pieces, List.of(path));
+		resume = TorrentStreamResume.newInstance(folder.getPath(), "infoHashHex", 8);
+		assertEquals(pieces, resume.pieces(path));
+		// 保存后继续写入数据
+		FileUtils.write(path, new byte[] { 1, 2, 3, 4, 5 });
+		assertNull(resume.pieces(path));
+		// 任务完成删除快速恢复文件
+		resume.delete();
+		resume = TorrentStreamResume.newInstance(folder.getPath(), "infoHashHex", 8);
+		assertNull(resume.pieces(path));
+		FileUtils.delete(folder.getPath());
+	}
+
+}